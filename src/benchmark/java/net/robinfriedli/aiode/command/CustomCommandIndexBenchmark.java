@@ -0,0 +1,88 @@
+package net.robinfriedli.aiode.command;
+
+import org.testng.annotations.*;
+
+import net.robinfriedli.aiode.entities.Preset;
+import net.robinfriedli.aiode.entities.StoredScript;
+
+import static com.google.common.truth.Truth.*;
+
+/**
+ * Measures the latency of resolving presets and scripts through the {@link CustomCommandIndex} with 100 presets and
+ * 100 scripts per guild. Run using the benchmark gradle task.
+ */
+public class CustomCommandIndexBenchmark {
+
+    private static final int GUILD_COUNT = 1000;
+    private static final int ENTITY_COUNT_PER_GUILD = 100;
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    private CustomCommandIndex customCommandIndex;
+
+    @BeforeClass
+    public void setUp() {
+        customCommandIndex = new CustomCommandIndex(true, null);
+
+        StoredScript.ScriptUsage scriptUsage = new StoredScript.ScriptUsage();
+        scriptUsage.setUniqueId("script");
+
+        long pk = 0;
+        for (int guild = 0; guild < GUILD_COUNT; guild++) {
+            String guildId = String.valueOf(guild);
+            for (int i = 0; i < ENTITY_COUNT_PER_GUILD; i++) {
+                Preset preset = new Preset();
+                preset.setPk(++pk);
+                preset.setName("preset" + i);
+                preset.setGuildId(guildId);
+                customCommandIndex.addPreset(preset);
+
+                StoredScript storedScript = new StoredScript();
+                storedScript.setPk(++pk);
+                storedScript.setIdentifier("script" + i);
+                storedScript.setGuildId(guild);
+                storedScript.setScriptUsage(scriptUsage);
+                customCommandIndex.addScript(storedScript);
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkResolution() {
+        String[] inputs = {"preset57 $spotify some track", "script3 argument", "play $spotify $list some playlist"};
+
+        long warmupSink = resolve(inputs, WARMUP_ITERATIONS);
+        long start = System.nanoTime();
+        long sink = resolve(inputs, MEASURED_ITERATIONS);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf(
+            "Resolved %d command inputs against %d presets and %d scripts per guild in %dms (%.1fns per resolution, %d)%n",
+            MEASURED_ITERATIONS,
+            ENTITY_COUNT_PER_GUILD,
+            ENTITY_COUNT_PER_GUILD,
+            elapsed / 1_000_000,
+            (double) elapsed / MEASURED_ITERATIONS,
+            sink + warmupSink
+        );
+        assertThat(sink).isGreaterThan(0L);
+    }
+
+    private long resolve(String[] inputs, int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            String guildId = String.valueOf(i % GUILD_COUNT);
+            String input = inputs[i % inputs.length];
+            CustomCommandIndex.Entry preset = customCommandIndex.findPreset(guildId, input);
+            CustomCommandIndex.Entry script = customCommandIndex.findScript(guildId, input);
+            if (preset != null) {
+                sink += preset.getPk();
+            }
+            if (script != null) {
+                sink += script.getPk();
+            }
+        }
+        return sink;
+    }
+
+}
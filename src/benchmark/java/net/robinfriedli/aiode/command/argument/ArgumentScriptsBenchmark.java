@@ -0,0 +1,133 @@
+package net.robinfriedli.aiode.command.argument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.*;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+import net.robinfriedli.aiode.boot.configurations.JxpComponent;
+import net.robinfriedli.aiode.entities.xml.CommandContribution;
+import net.robinfriedli.jxp.api.XmlElement;
+import net.robinfriedli.jxp.persist.Context;
+
+import static com.google.common.truth.Truth.*;
+import static net.robinfriedli.jxp.queries.Conditions.*;
+
+/**
+ * Compares verifying the argument rules of `search $spotify $own $select=5` by evaluating each expression in a new
+ * GroovyShell, as each command invocation used to, with evaluating the expressions precompiled by {@link ArgumentScripts}.
+ * The expressions are read from the commands.xml contributions. Run using the benchmark gradle task.
+ */
+public class ArgumentScriptsBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 2_000;
+
+    private final StubCommand command = new StubCommand();
+    private final List<String> expressions = new ArrayList<>();
+
+    @BeforeClass
+    public void setUp() {
+        Context context = new JxpComponent().getJxpBackend().createContext(getClass().getResourceAsStream("/xml-contributions/commands.xml"));
+        CommandContribution search = context.query(and(
+            instanceOf(CommandContribution.class),
+            attribute("identifier").is("search")
+        ), CommandContribution.class).getOnlyResult();
+
+        for (String argument : new String[]{"own", "select"}) {
+            ArgumentDefinition argumentDefinition = search.getArguments().get(argument);
+            for (XmlElement rule : argumentDefinition.getRules()) {
+                expressions.add(rule.getTextContent());
+            }
+            for (XmlElement valueCheck : argumentDefinition.getValueChecks()) {
+                expressions.add(valueCheck.getAttribute("check").getValue());
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkVerification() {
+        verifyWithShell(WARMUP_ITERATIONS);
+        long shellStart = System.nanoTime();
+        long shellSink = verifyWithShell(MEASURED_ITERATIONS);
+        long shellElapsed = System.nanoTime() - shellStart;
+
+        verifyPrecompiled(WARMUP_ITERATIONS);
+        long precompiledStart = System.nanoTime();
+        long precompiledSink = verifyPrecompiled(MEASURED_ITERATIONS);
+        long precompiledElapsed = System.nanoTime() - precompiledStart;
+
+        System.out.printf(
+            "Verified %d invocations with %d argument expressions: %.1fus per invocation using a new GroovyShell, %.1fus per invocation using precompiled scripts%n",
+            MEASURED_ITERATIONS,
+            expressions.size(),
+            (double) shellElapsed / MEASURED_ITERATIONS / 1000,
+            (double) precompiledElapsed / MEASURED_ITERATIONS / 1000
+        );
+        assertThat(precompiledSink).isEqualTo(shellSink);
+    }
+
+    private long verifyWithShell(int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            GroovyShell groovyShell = new GroovyShell(createBinding());
+            for (String expression : expressions) {
+                if ((boolean) groovyShell.evaluate(expression)) {
+                    sink++;
+                }
+            }
+        }
+        return sink;
+    }
+
+    private long verifyPrecompiled(int iterations) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            Binding binding = createBinding();
+            for (String expression : expressions) {
+                if ((boolean) ArgumentScripts.evaluate(expression, binding)) {
+                    sink++;
+                }
+            }
+        }
+        return sink;
+    }
+
+    private Binding createBinding() {
+        Binding binding = new Binding();
+        binding.setVariable("command", command);
+        binding.setVariable("value", 5);
+        return binding;
+    }
+
+    public static class StubCommand {
+
+        public StubSource getSource() {
+            return StubSource.SPOTIFY;
+        }
+
+    }
+
+    public enum StubSource {
+
+        SPOTIFY,
+        YOUTUBE,
+        FILEBROKER;
+
+        public boolean isSpotify() {
+            return this == SPOTIFY;
+        }
+
+        public boolean isYouTube() {
+            return this == YOUTUBE;
+        }
+
+        public boolean isFilebroker() {
+            return this == FILEBROKER;
+        }
+
+    }
+
+}
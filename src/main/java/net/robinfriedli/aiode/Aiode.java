@@ -36,7 +36,9 @@ import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
 import net.robinfriedli.aiode.exceptions.handler.ExceptionHandlerRegistry;
 import net.robinfriedli.aiode.login.LoginManager;
+import net.robinfriedli.aiode.persist.DatabaseCleanupService;
 import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import net.robinfriedli.aiode.scripting.GroovyScriptCache;
 import net.robinfriedli.aiode.scripting.GroovyVariableManager;
 import net.robinfriedli.aiode.servers.HttpServerManager;
 import net.robinfriedli.filebroker.FilebrokerApi;
@@ -70,9 +72,11 @@ public class Aiode {
     private final CommandManager commandManager;
     private final ConfigurableApplicationContext springBootContext;
     private final CronJobService cronJobService;
+    private final DatabaseCleanupService databaseCleanupService;
     private final ExceptionHandlerRegistry exceptionHandlerRegistry;
     private final FilebrokerApi filebrokerApi;
     private final GroovySandboxComponent groovySandboxComponent;
+    private final GroovyScriptCache groovyScriptCache;
     private final GroovyVariableManager groovyVariableManager;
     private final GuildManager guildManager;
     private final GuildPropertyManager guildPropertyManager;
@@ -100,9 +104,11 @@ public class Aiode {
         CommandManager commandManager,
         ConfigurableApplicationContext springBootContext,
         CronJobService cronJobService,
+        DatabaseCleanupService databaseCleanupService,
         ExceptionHandlerRegistry exceptionHandlerRegistry,
         FilebrokerApi filebrokerApi,
         GroovySandboxComponent groovySandboxComponent,
+        GroovyScriptCache groovyScriptCache,
         GroovyVariableManager groovyVariableManager,
         GuildManager guildManager,
         GuildPropertyManager guildPropertyManager,
@@ -129,9 +135,11 @@ public class Aiode {
         this.commandManager = commandManager;
         this.springBootContext = springBootContext;
         this.cronJobService = cronJobService;
+        this.databaseCleanupService = databaseCleanupService;
         this.exceptionHandlerRegistry = exceptionHandlerRegistry;
         this.filebrokerApi = filebrokerApi;
         this.groovySandboxComponent = groovySandboxComponent;
+        this.groovyScriptCache = groovyScriptCache;
         this.groovyVariableManager = groovyVariableManager;
         this.guildManager = guildManager;
         this.guildPropertyManager = guildPropertyManager;
@@ -288,6 +296,10 @@ public class Aiode {
         return cronJobService;
     }
 
+    public DatabaseCleanupService getDatabaseCleanupService() {
+        return databaseCleanupService;
+    }
+
     public ExceptionHandlerRegistry getExceptionHandlerRegistry() {
         return exceptionHandlerRegistry;
     }
@@ -300,6 +312,10 @@ public class Aiode {
         return groovySandboxComponent;
     }
 
+    public GroovyScriptCache getGroovyScriptCache() {
+        return groovyScriptCache;
+    }
+
     public GroovyVariableManager getGroovyVariableManager() {
         return groovyVariableManager;
     }
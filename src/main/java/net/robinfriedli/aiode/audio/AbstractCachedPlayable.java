@@ -0,0 +1,35 @@
+package net.robinfriedli.aiode.audio;
+
+import javax.annotation.Nullable;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
+
+/**
+ * Finds the AudioTrack loaded for this Playable in the shared {@link AudioTrackCache}, only remembering whether it has
+ * been loaded. The track is put in the cache under {@link AudioTrackCache#keyOf(Playable)} by whoever loaded it.
+ */
+public abstract class AbstractCachedPlayable implements Playable {
+
+    private volatile boolean loaded;
+
+    @Nullable
+    @Override
+    public AudioTrack getCached() {
+        if (!loaded) {
+            return null;
+        }
+
+        try {
+            return Aiode.get().getAudioManager().getAudioTrackCache().get(AudioTrackCache.keyOf(this));
+        } catch (UnavailableResourceException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void setCached(AudioTrack audioTrack) {
+        loaded = true;
+    }
+}
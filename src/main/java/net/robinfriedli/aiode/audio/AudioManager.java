@@ -1,6 +1,5 @@
 package net.robinfriedli.aiode.audio;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -31,7 +30,6 @@ import dev.lavalink.youtube.clients.Music;
 import dev.lavalink.youtube.clients.TvHtml5Embedded;
 import dev.lavalink.youtube.clients.Web;
 import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
 import net.dv8tion.jda.api.exceptions.InsufficientPermissionException;
@@ -41,17 +39,15 @@ import net.robinfriedli.aiode.audio.queue.AudioQueue;
 import net.robinfriedli.aiode.audio.spotify.SpotifyService;
 import net.robinfriedli.aiode.audio.youtube.YouTubeService;
 import net.robinfriedli.aiode.boot.AbstractShutdownable;
-import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
 import net.robinfriedli.aiode.command.widget.WidgetRegistry;
 import net.robinfriedli.aiode.command.widget.widgets.NowPlayingWidget;
 import net.robinfriedli.aiode.concurrent.CompletableFutures;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
-import net.robinfriedli.aiode.concurrent.HistoryPool;
 import net.robinfriedli.aiode.discord.GuildContext;
+import net.robinfriedli.aiode.discord.GuildActivityTracker;
 import net.robinfriedli.aiode.discord.GuildManager;
-import net.robinfriedli.aiode.entities.PlaybackHistory;
-import net.robinfriedli.aiode.entities.UserPlaybackHistory;
 import net.robinfriedli.aiode.exceptions.InvalidCommandException;
+import net.robinfriedli.aiode.persist.HistoryWriter;
 import net.robinfriedli.filebroker.FilebrokerApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -66,16 +62,20 @@ public class AudioManager extends AbstractShutdownable {
 
     private final AudioPlayerManager playerManager;
     private final AudioTrackLoader audioTrackLoader;
+    private final AudioTrackCache audioTrackCache;
     private final FilebrokerApi filebrokerApi;
+    private final GuildActivityTracker guildActivityTracker;
     private final GuildManager guildManager;
-    private final HibernateComponent hibernateComponent;
+    private final HistoryWriter historyWriter;
     private final Logger logger;
     private final YouTubeService youTubeService;
 
     public AudioManager(
+        AudioTrackCache audioTrackCache,
         FilebrokerApi filebrokerApi,
+        GuildActivityTracker guildActivityTracker,
         GuildManager guildManager,
-        HibernateComponent hibernateComponent,
+        HistoryWriter historyWriter,
         YouTubeService youTubeService,
         @Value("${aiode.preferences.ipv6_blocks:#{null}}") String ipv6Blocks,
         @Value("${aiode.tokens.yt-oauth-refresh-token:#{null}}") String ytOauthRefreshToken,
@@ -85,9 +85,11 @@ public class AudioManager extends AbstractShutdownable {
         playerManager = new DefaultAudioPlayerManager();
         audioTrackLoader = new AudioTrackLoader(playerManager);
 
+        this.audioTrackCache = audioTrackCache;
         this.filebrokerApi = filebrokerApi;
+        this.guildActivityTracker = guildActivityTracker;
         this.guildManager = guildManager;
-        this.hibernateComponent = hibernateComponent;
+        this.historyWriter = historyWriter;
         this.logger = LoggerFactory.getLogger(getClass());
         this.youTubeService = youTubeService;
 
@@ -183,6 +185,10 @@ public class AudioManager extends AbstractShutdownable {
         return youTubeService;
     }
 
+    public AudioTrackCache getAudioTrackCache() {
+        return audioTrackCache;
+    }
+
     public AudioPlayerManager getPlayerManager() {
         return playerManager;
     }
@@ -194,7 +200,7 @@ public class AudioManager extends AbstractShutdownable {
     public void setChannel(AudioPlayback audioPlayback, AudioChannel channel) {
         audioPlayback.setVoiceChannel(channel);
         Guild guild = audioPlayback.getGuild();
-        guild.getAudioManager().setSendingHandler(new AudioPlayerSendHandler(audioPlayback.getAudioPlayer()));
+        guild.getAudioManager().setSendingHandler(new AudioPlayerSendHandler(audioPlayback));
         try {
             guild.getAudioManager().openAudioConnection(channel);
         } catch (InsufficientPermissionException e) {
@@ -203,27 +209,8 @@ public class AudioManager extends AbstractShutdownable {
     }
 
     void createHistoryEntry(Playable playable, Guild guild, AudioChannel audioChannel) {
-        HistoryPool.execute(() -> {
-            try {
-                hibernateComponent.consumeSession(session -> {
-                    PlaybackHistory playbackHistory = new PlaybackHistory(LocalDateTime.now(), playable, guild, session);
-
-                    session.persist(playbackHistory);
-                    if (audioChannel != null) {
-                        Member selfMember = guild.getSelfMember();
-                        for (Member member : audioChannel.getMembers()) {
-                            if (!member.equals(selfMember)) {
-                                UserPlaybackHistory userPlaybackHistory = new UserPlaybackHistory(member.getUser(), playbackHistory);
-                                session.persist(userPlaybackHistory);
-                            }
-                        }
-                    }
-
-                });
-            } catch (Exception e) {
-                logger.error("Exception while creating playback history entry", e);
-            }
-        });
+        historyWriter.addPlaybackHistory(playable, guild, audioChannel);
+        guildActivityTracker.recordActivity(guild);
     }
 
     void createNowPlayingWidget(CompletableFuture<Message> futureMessage, AudioPlayback playback) {
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Message;
@@ -32,8 +33,9 @@ public class AudioPlayback {
     private static final RateLimitInvoker MESSAGE_DELETION_RATE_LIMITED = new RateLimitInvoker("audio_playback_message_deletion", 2, Duration.ofSeconds(1));
 
     private final DiscordEntity.Guild guild;
-    private final AudioPlayer audioPlayer;
     private final AudioQueue audioQueue;
+    private final TrackPrefetcher trackPrefetcher;
+    private final PlaybackHandoff playbackHandoff;
     private final Logger logger;
 
     private DiscordEntity<? extends AudioChannel> audioChannel;
@@ -46,33 +48,43 @@ public class AudioPlayback {
     @Nullable
     private LocalDateTime aloneSince;
 
-    public AudioPlayback(AudioPlayer player, Guild guild) {
+    /**
+     * @param player        the player to start with
+     * @param playerManager the manager creating the player used to start the next track ahead of time, see
+     *                      {@link PlaybackHandoff}
+     * @param guild         the guild of this playback
+     */
+    public AudioPlayback(AudioPlayer player, AudioPlayerManager playerManager, Guild guild) {
         this.guild = new DiscordEntity.Guild(guild);
-        audioPlayer = player;
         this.logger = LoggerFactory.getLogger(getClass());
         SpringPropertiesConfig springPropertiesConfig = Aiode.get().getSpringPropertiesConfig();
         Integer queueSizeMax = springPropertiesConfig.getApplicationProperty(Integer.class, "aiode.preferences.queue_size_max");
         audioQueue = new AudioQueue(queueSizeMax);
+        trackPrefetcher = new TrackPrefetcher(audioQueue);
+        playbackHandoff = new PlaybackHandoff(player, playerManager, audioQueue);
     }
 
     public boolean isPlaying() {
-        return !isPaused() && audioPlayer.getPlayingTrack() != null;
+        return !isPaused() && getAudioPlayer().getPlayingTrack() != null;
     }
 
     public void pause() {
-        audioPlayer.setPaused(true);
+        getAudioPlayer().setPaused(true);
     }
 
     public void unpause() {
-        audioPlayer.setPaused(false);
+        getAudioPlayer().setPaused(false);
     }
 
     public boolean isPaused() {
+        AudioPlayer audioPlayer = getAudioPlayer();
         return audioPlayer.isPaused() && audioPlayer.getPlayingTrack() != null;
     }
 
     public void stop() {
-        audioPlayer.stopTrack();
+        getAudioPlayer().stopTrack();
+        playbackHandoff.disarm();
+        trackPrefetcher.clear();
         setLastPlaybackNotification(null);
         leaveChannel();
     }
@@ -81,14 +93,26 @@ public class AudioPlayback {
         return guild.get();
     }
 
+    /**
+     * @return the player that is currently playing, this changes whenever the {@link PlaybackHandoff} switches to the
+     * standby player
+     */
     public AudioPlayer getAudioPlayer() {
-        return audioPlayer;
+        return playbackHandoff.getActivePlayer();
     }
 
     public AudioQueue getAudioQueue() {
         return audioQueue;
     }
 
+    TrackPrefetcher getTrackPrefetcher() {
+        return trackPrefetcher;
+    }
+
+    PlaybackHandoff getPlaybackHandoff() {
+        return playbackHandoff;
+    }
+
     public AudioChannel getAudioChannel() {
         if (audioChannel != null) {
             return audioChannel.get();
@@ -150,20 +174,20 @@ public class AudioPlayback {
     }
 
     public long getCurrentPositionMs() {
-        AudioTrack playingTrack = audioPlayer.getPlayingTrack();
+        AudioTrack playingTrack = getAudioPlayer().getPlayingTrack();
         return playingTrack != null ? playingTrack.getPosition() : 0;
     }
 
     public void setPosition(long ms) {
-        audioPlayer.getPlayingTrack().setPosition(ms);
+        getAudioPlayer().getPlayingTrack().setPosition(ms);
     }
 
     public int getVolume() {
-        return audioPlayer.getVolume();
+        return getAudioPlayer().getVolume();
     }
 
     public void setVolume(int volume) {
-        audioPlayer.setVolume(volume);
+        getAudioPlayer().setVolume(volume);
     }
 
     public void leaveChannel() {
@@ -183,7 +207,7 @@ public class AudioPlayback {
             changedAnything = true;
         }
         if (isPaused()) {
-            audioPlayer.stopTrack();
+            getAudioPlayer().stopTrack();
             changedAnything = true;
         }
         if (getVolume() != defaultVolume) {
@@ -249,14 +273,26 @@ public class AudioPlayback {
         return currentQueueIterator;
     }
 
+    /**
+     * Register the QueueIterator on both players, replacing the current QueueIterator and stopping the track armed by
+     * the {@link PlaybackHandoff}.
+     */
     public void setCurrentQueueIterator(QueueIterator queueIterator) {
+        playbackHandoff.disarm();
         if (currentQueueIterator != null) {
-            audioPlayer.removeListener(currentQueueIterator);
+            playbackHandoff.removeListener(currentQueueIterator);
             currentQueueIterator.setReplaced();
         }
 
         currentQueueIterator = queueIterator;
-        audioPlayer.addListener(queueIterator);
+        playbackHandoff.addListener(queueIterator);
+    }
+
+    /**
+     * Destroy the player and the standby player, if any, when the guild is removed.
+     */
+    public void destroy() {
+        playbackHandoff.destroy();
     }
 
     @Nullable
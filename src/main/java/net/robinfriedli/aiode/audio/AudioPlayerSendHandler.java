@@ -3,17 +3,25 @@ package net.robinfriedli.aiode.audio;
 import java.nio.ByteBuffer;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 import net.dv8tion.jda.api.audio.AudioSendHandler;
 
+/**
+ * Provides the frames of the active player of an {@link AudioPlayback}. If the active track finishes while providing a
+ * frame and the {@link PlaybackHandoff} switched to the standby player, the frame is provided by the next track right
+ * away.
+ */
 public class AudioPlayerSendHandler implements AudioSendHandler {
 
-    private final AudioPlayer audioPlayer;
+    private final AudioPlayback playback;
+    private final PlaybackHandoff playbackHandoff;
     private final ByteBuffer buffer;
     private final MutableAudioFrame audioFrame;
 
-    public AudioPlayerSendHandler(AudioPlayer audioPlayer) {
-        this.audioPlayer = audioPlayer;
+    public AudioPlayerSendHandler(AudioPlayback playback) {
+        this.playback = playback;
+        playbackHandoff = playback.getPlaybackHandoff();
         buffer = ByteBuffer.allocate(2048);
         audioFrame = new MutableAudioFrame();
         audioFrame.setBuffer(buffer);
@@ -21,7 +29,21 @@ public class AudioPlayerSendHandler implements AudioSendHandler {
 
     @Override
     public boolean canProvide() {
-        return audioPlayer.provide(audioFrame);
+        AudioPlayer audioPlayer = playbackHandoff.getActivePlayer();
+        if (audioPlayer.provide(audioFrame)) {
+            AudioTrack playingTrack = audioPlayer.getPlayingTrack();
+            if (playbackHandoff.shouldPrestart(playingTrack)) {
+                QueueIterator queueIterator = playback.getCurrentQueueIterator();
+                if (queueIterator != null) {
+                    queueIterator.prepareHandoff(playingTrack);
+                }
+            }
+            return true;
+        }
+
+        // the track might have finished within the call above, in which case the players might have been swapped
+        AudioPlayer nextPlayer = playbackHandoff.getActivePlayer();
+        return nextPlayer != audioPlayer && nextPlayer.provide(audioFrame);
     }
 
     @Override
@@ -34,4 +56,4 @@ public class AudioPlayerSendHandler implements AudioSendHandler {
     public boolean isOpus() {
         return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,146 @@
+package net.robinfriedli.aiode.audio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sedmelluq.discord.lavaplayer.source.soundcloud.SoundCloudAudioTrack;
+import com.sedmelluq.discord.lavaplayer.source.soundcloud.SoundCloudM3uAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import dev.lavalink.youtube.track.YoutubeAudioTrack;
+import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Process wide cache of loaded {@link AudioTrack}s keyed by the playback url of the {@link Playable} they were loaded
+ * for, see {@link #keyOf(Playable)}, which all callers use to put, get and invalidate tracks. Enables starting a track that has been played in any guild recently by cloning the
+ * cached track instead of looking it up via the source again. The cache is bounded by an estimate of the memory used by
+ * the metadata of the cached tracks, entries expire after a time depending on the source of the track since sources
+ * like SoundCloud and live streams are resolved to stream urls that stop working eventually.
+ */
+@Component
+public class AudioTrackCache {
+
+    private static final long DEFAULT_TTL_MS = TimeUnit.HOURS.toMillis(12);
+    private static final long YOUTUBE_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    private static final long SOUNDCLOUD_TTL_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long STREAM_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    // approximate size of an AudioTrack and AudioTrackInfo instance without the strings they reference
+    private static final int BASE_ENTRY_SIZE = 256;
+
+    private final Cache<String, CachedTrack> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+
+    public AudioTrackCache(@Value("${aiode.preferences.audio_track_cache_size_mb:64}") long maxSizeMb) {
+        cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxSizeMb << 20)
+            .weigher((String identifier, CachedTrack cachedTrack) -> cachedTrack.weight)
+            .expireAfterWrite(DEFAULT_TTL_MS, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * @return the key the track loaded for the provided playable is cached under, which is the identifier the track is
+     * loaded with
+     */
+    public static String keyOf(Playable playable) throws UnavailableResourceException {
+        return playable.getPlaybackUrl();
+    }
+
+    /**
+     * @return the cached track loaded with the given identifier or null if not present or expired. The returned track
+     * must not be played directly, play a {@link AudioTrack#makeClone()} instead.
+     */
+    @Nullable
+    public AudioTrack get(String identifier) {
+        CachedTrack cachedTrack = cache.getIfPresent(identifier);
+        if (cachedTrack == null) {
+            missCount.increment();
+            return null;
+        }
+
+        if (System.currentTimeMillis() > cachedTrack.expiresAtMillis) {
+            cache.asMap().remove(identifier, cachedTrack);
+            expiredCount.increment();
+            missCount.increment();
+            return null;
+        }
+
+        hitCount.increment();
+        return cachedTrack.track;
+    }
+
+    public void put(String identifier, AudioTrack track) {
+        AudioTrackInfo info = track.getInfo();
+        int weight = BASE_ENTRY_SIZE + 2 * (identifier.length()
+            + length(info.title)
+            + length(info.author)
+            + length(info.identifier)
+            + length(info.uri)
+            + length(info.artworkUrl)
+            + length(info.isrc));
+        // cache a clone without user data, the provided track is usually played and references the Playable
+        AudioTrack clone = track.makeClone();
+        clone.setUserData(null);
+        cache.put(identifier, new CachedTrack(clone, System.currentTimeMillis() + getTtlMillis(track), weight));
+    }
+
+    public void invalidate(String identifier) {
+        cache.invalidate(identifier);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    private long getTtlMillis(AudioTrack track) {
+        if (track.getInfo().isStream) {
+            return STREAM_TTL_MS;
+        } else if (track instanceof SoundCloudAudioTrack || track instanceof SoundCloudM3uAudioTrack) {
+            return SOUNDCLOUD_TTL_MS;
+        } else if (track instanceof YoutubeAudioTrack || track instanceof com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioTrack) {
+            return YOUTUBE_TTL_MS;
+        }
+
+        return DEFAULT_TTL_MS;
+    }
+
+    private static int length(@Nullable String s) {
+        return Strings.nullToEmpty(s).length();
+    }
+
+    private static class CachedTrack {
+
+        private final AudioTrack track;
+        private final long expiresAtMillis;
+        private final int weight;
+
+        private CachedTrack(AudioTrack track, long expiresAtMillis, int weight) {
+            this.track = track;
+            this.expiresAtMillis = expiresAtMillis;
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -1,282 +1,149 @@
 package net.robinfriedli.aiode.audio;
 
-import java.sql.Date;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.List;
 
-import com.google.common.collect.Lists;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.User;
 import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
-import net.robinfriedli.aiode.entities.Artist;
-import net.robinfriedli.aiode.entities.GlobalArtistChart;
-import net.robinfriedli.aiode.entities.GlobalTrackChart;
 import net.robinfriedli.aiode.entities.PlaybackHistory;
-import net.robinfriedli.aiode.entities.PlaybackHistorySource;
-import net.robinfriedli.aiode.entities.SpotifyItemKind;
-import net.robinfriedli.aiode.entities.UserPlaybackHistory;
-import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
-import net.robinfriedli.aiode.persist.qb.builders.SelectQueryBuilder;
+import net.robinfriedli.aiode.persist.HistoryWriter;
 import org.hibernate.Session;
-import org.hibernate.query.Query;
 import org.springframework.stereotype.Component;
 
+/**
+ * Provides the track and artist charts globally, per guild and per user, all time and for the current month. The charts
+ * are read from the track_chart_count and artist_chart_count tables, which hold the number of times each track and
+ * artist has been played per {@link Scope} and period and are incremented by the {@link HistoryWriter} when writing
+ * {@link PlaybackHistory} entries, so reading a chart is an index range scan regardless of the size of the history.
+ */
 @Component
 public class ChartService {
 
+    public static final String ALL_TIME_PERIOD = "ALL";
+    public static final String GLOBAL_SCOPE_ID = "";
+
+    private static final int TRACK_CHART_SIZE = 10;
+    private static final int ARTIST_CHART_SIZE = 5;
+
     private final HibernateComponent hibernateComponent;
-    private final QueryBuilderFactory queryBuilderFactory;
 
-    public ChartService(HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory) {
+    public ChartService(HibernateComponent hibernateComponent) {
         this.hibernateComponent = hibernateComponent;
-        this.queryBuilderFactory = queryBuilderFactory;
     }
 
-    public void refreshPersistentGlobalCharts() {
-        hibernateComponent.consumeSession(session -> {
-            session.createNativeMutationQuery("delete from global_artist_chart").executeUpdate();
-            session.createNativeMutationQuery("delete from global_track_chart").executeUpdate();
-
-            for (Object[] record : getGlobalTrackChart(session)) {
-                GlobalTrackChart globalTrackChart = new GlobalTrackChart();
-                globalTrackChart.setSource(session.get(PlaybackHistorySource.class, (long) record[0]));
-                globalTrackChart.setTrackId((String) record[1]);
-                globalTrackChart.setCount((long) record[2]);
-                Long spotifyItemKindPk = (Long) record[3];
-                if (spotifyItemKindPk != null) {
-                    globalTrackChart.setSpotifyItemKind(session.get(SpotifyItemKind.class, spotifyItemKindPk));
-                }
-                globalTrackChart.setMonthly(false);
-                session.persist(globalTrackChart);
-            }
-
-            for (Object[] record : getGlobalTrackMonthlyChart(session)) {
-                GlobalTrackChart globalTrackChart = new GlobalTrackChart();
-                globalTrackChart.setSource(session.get(PlaybackHistorySource.class, (long) record[0]));
-                globalTrackChart.setTrackId((String) record[1]);
-                globalTrackChart.setCount((long) record[2]);
-                Long spotifyItemKindPk = (Long) record[3];
-                if (spotifyItemKindPk != null) {
-                    globalTrackChart.setSpotifyItemKind(session.get(SpotifyItemKind.class, spotifyItemKindPk));
-                }
-                globalTrackChart.setMonthly(true);
-                session.persist(globalTrackChart);
-            }
-
-            for (Object[] record : getGlobalArtistChart(session)) {
-                GlobalArtistChart globalArtistChart = new GlobalArtistChart();
-                globalArtistChart.setArtist(session.get(Artist.class, record[0]));
-                globalArtistChart.setCount((Long) record[1]);
-                globalArtistChart.setMonthly(false);
-                session.persist(globalArtistChart);
-            }
-
-            for (Object[] record : getGlobalArtistMonthlyChart(session)) {
-                GlobalArtistChart globalArtistChart = new GlobalArtistChart();
-                globalArtistChart.setArtist(session.get(Artist.class, record[0]));
-                globalArtistChart.setCount((Long) record[1]);
-                globalArtistChart.setMonthly(true);
-                session.persist(globalArtistChart);
-            }
+    /**
+     * @return the period key of the monthly charts for the month of the provided date, e.g. "2024-09"
+     */
+    public static String getMonthlyPeriod(LocalDate date) {
+        return YearMonth.from(date).toString();
+    }
+
+    /**
+     * Delete the counts of the monthly charts of past months, which are no longer displayed.
+     *
+     * @return the number of deleted rows
+     */
+    public int pruneMonthlyChartCounts() {
+        String currentPeriod = getMonthlyPeriod(LocalDate.now());
+        return hibernateComponent.invokeWithSession(session -> {
+            int deletedTrackCounts = session
+                .createNativeMutationQuery("delete from track_chart_count where period <> ? and period < ?")
+                .setParameter(1, ALL_TIME_PERIOD)
+                .setParameter(2, currentPeriod)
+                .executeUpdate();
+            int deletedArtistCounts = session
+                .createNativeMutationQuery("delete from artist_chart_count where period <> ? and period < ?")
+                .setParameter(1, ALL_TIME_PERIOD)
+                .setParameter(2, currentPeriod)
+                .executeUpdate();
+            return deletedTrackCounts + deletedArtistCounts;
         });
     }
 
-    public SelectQueryBuilder<PlaybackHistory> getGlobalTrackChartQuery() {
-        return queryBuilderFactory
-            .select(PlaybackHistory.class,
-                (from, cb) -> from.get("fkSource"),
-                (from, cb) -> from.get("trackId"),
-                (from, cb) -> cb.count(from.get("pk")),
-                (from, cb) -> from.get("fkSpotifyItemKind"))
-            .where((cb, root) -> cb.isNotNull(root.get("trackId")))
-            .groupBySeveral((from, cb) -> Lists.newArrayList(from.get("trackId"), from.get("fkSource"), from.get("fkSpotifyItemKind")))
-            .orderBy((from, cb) -> cb.desc(cb.count(from.get("pk"))));
-    }
-
     public List<Object[]> getGlobalTrackChart(Session session) {
-        return getGlobalTrackChartQuery().build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<GlobalTrackChart> getPersistentGlobalTrackChartQuery() {
-        return queryBuilderFactory
-            .select(GlobalTrackChart.class,
-                (from, cb) -> from.get("fkSource"),
-                (from, cb) -> from.get("trackId"),
-                (from, cb) -> from.get("count"),
-                (from, cb) -> from.get("fkSpotifyItemKind"))
-            .where((cb, root) -> cb.not(root.get("isMonthly")))
-            .orderBy((from, cb) -> cb.desc(from.get("count")));
-    }
-
-    public List<Object[]> getPersistentGlobalTrackChart(Session session) {
-        return getPersistentGlobalTrackChartQuery().build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<PlaybackHistory> getGlobalTrackMonthlyChartQuery() {
-        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        return getGlobalTrackChartQuery().fork().where((cb, root) -> cb.greaterThan(root.get("timestamp"), startOfMonth));
+        return getTrackChart(session, Scope.GLOBAL, GLOBAL_SCOPE_ID, ALL_TIME_PERIOD);
     }
 
     public List<Object[]> getGlobalTrackMonthlyChart(Session session) {
-        return getGlobalTrackMonthlyChartQuery().build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<GlobalTrackChart> getPersistentGlobalTrackMonthlyChartQuery() {
-        return queryBuilderFactory
-            .select(GlobalTrackChart.class,
-                (from, cb) -> from.get("fkSource"),
-                (from, cb) -> from.get("trackId"),
-                (from, cb) -> from.get("count"),
-                (from, cb) -> from.get("fkSpotifyItemKind"))
-            .where((cb, root) -> cb.isTrue(root.get("isMonthly")))
-            .orderBy((from, cb) -> cb.desc(from.get("count")));
-    }
-
-    public List<Object[]> getPersistentGlobalTrackMonthlyChart(Session session) {
-        return getPersistentGlobalTrackMonthlyChartQuery().build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<PlaybackHistory> getGuildTrackChartQuery(Guild guild) {
-        return getGlobalTrackChartQuery().fork().where((cb, root) -> cb.equal(root.get("guildId"), guild.getId()));
+        return getTrackChart(session, Scope.GLOBAL, GLOBAL_SCOPE_ID, getMonthlyPeriod(LocalDate.now()));
     }
 
     public List<Object[]> getGuildTrackChart(Guild guild, Session session) {
-        return getGuildTrackChartQuery(guild).build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<PlaybackHistory> getGuildTrackMonthlyChartQuery(Guild guild) {
-        return getGlobalTrackMonthlyChartQuery().fork().where((cb, root) -> cb.equal(root.get("guildId"), guild.getId()));
+        return getTrackChart(session, Scope.GUILD, guild.getId(), ALL_TIME_PERIOD);
     }
 
     public List<Object[]> getGuildTrackMonthlyChart(Guild guild, Session session) {
-        return getGuildTrackMonthlyChartQuery(guild).build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<PlaybackHistory> getUserTrackChartQuery(User user, Session session) {
-        return getGlobalTrackChartQuery().where((cb, root, subQueryFactory) -> root.get("pk").in(
-            subQueryFactory
-                .createUncorrelatedSubQuery(UserPlaybackHistory.class, "playbackHistoryPk", Long.class)
-                .where((cb1, root1) -> cb1.equal(root1.get("userId"), user.getId()))
-                .build(session)
-        ));
+        return getTrackChart(session, Scope.GUILD, guild.getId(), getMonthlyPeriod(LocalDate.now()));
     }
 
     public List<Object[]> getUserTrackChart(User user, Session session) {
-        return getUserTrackChartQuery(user, session).build(session).setMaxResults(10).getResultList();
-    }
-
-    public SelectQueryBuilder<PlaybackHistory> getUserTrackMonthlyChartQuery(User user, Session session) {
-        return getGlobalTrackMonthlyChartQuery().fork().where((cb, root, subQueryFactory) -> root.get("pk").in(
-            subQueryFactory
-                .createUncorrelatedSubQuery(UserPlaybackHistory.class, "playbackHistoryPk", Long.class)
-                .where((cb1, root1) -> cb1.equal(root1.get("userId"), user.getId()))
-                .build(session)
-        ));
+        return getTrackChart(session, Scope.USER, user.getId(), ALL_TIME_PERIOD);
     }
 
     public List<Object[]> getUserTrackMonthlyChart(User user, Session session) {
-        return getUserTrackMonthlyChartQuery(user, session).build(session).setMaxResults(10).getResultList();
-    }
-
-    public Query<Object[]> getGlobalArtistChartQuery(Session session) {
-        return session.createNativeQuery("select artist_pk, count(*) as c " +
-            "from playback_history_artist group by artist_pk order by c desc limit 5", Object[].class);
+        return getTrackChart(session, Scope.USER, user.getId(), getMonthlyPeriod(LocalDate.now()));
     }
 
     public List<Object[]> getGlobalArtistChart(Session session) {
-        return getGlobalArtistChartQuery(session).getResultList();
-    }
-
-    public Query<Object[]> getPersistentGlobalArtistChartQuery(Session session) {
-        return session.createNativeQuery("select artist_pk, count as c " +
-            "from global_artist_chart where not is_monthly order by c desc limit 5", Object[].class);
-    }
-
-    public List<Object[]> getPersistentGlobalArtistChart(Session session) {
-        return getPersistentGlobalArtistChartQuery(session).getResultList();
-    }
-
-    public Query<Object[]> getGlobalArtistMonthlyChartQuery(Session session) {
-        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        Date dateAtStartOfMonth = Date.valueOf(startOfMonth.toLocalDate());
-        Query<Object[]> globalArtistMonthlyQuery = session.createNativeQuery("select artist_pk, count(*) as c " +
-            "from playback_history_artist as p " +
-            "where p.playback_history_pk in(select pk from playback_history where timestamp > ?) " +
-            "group by artist_pk order by c desc limit 5", Object[].class);
-        globalArtistMonthlyQuery.setParameter(1, dateAtStartOfMonth);
-        return globalArtistMonthlyQuery;
+        return getArtistChart(session, Scope.GLOBAL, GLOBAL_SCOPE_ID, ALL_TIME_PERIOD);
     }
 
     public List<Object[]> getGlobalArtistMonthlyChart(Session session) {
-        return getGlobalArtistMonthlyChartQuery(session).getResultList();
-    }
-
-    public Query<Object[]> getPersistentGlobalArtistMonthlyChartQuery(Session session) {
-        return session.createNativeQuery("select artist_pk, count as c " +
-            "from global_artist_chart " +
-            "where is_monthly " +
-            "order by c desc limit 5", Object[].class);
-    }
-
-    public List<Object[]> getPersistentGlobalArtistMonthlyChart(Session session) {
-        return getPersistentGlobalArtistMonthlyChartQuery(session).getResultList();
-    }
-
-    public Query<Object[]> getGuildArtistChartQuery(Guild guild, Session session) {
-        Query<Object[]> guildArtistQuery = session.createNativeQuery("select artist_pk, count(*) as c from " +
-            "playback_history_artist as p where p.playback_history_pk in(select pk from playback_history where guild_id = ?) " +
-            "group by artist_pk order by c desc limit 5", Object[].class);
-        guildArtistQuery.setParameter(1, guild.getId());
-        return guildArtistQuery;
+        return getArtistChart(session, Scope.GLOBAL, GLOBAL_SCOPE_ID, getMonthlyPeriod(LocalDate.now()));
     }
 
     public List<Object[]> getGuildArtistChart(Guild guild, Session session) {
-        return getGuildArtistChartQuery(guild, session).getResultList();
-    }
-
-    public Query<Object[]> getGuildArtistMonthlyChartQuery(Guild guild, Session session) {
-        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        Date dateAtStartOfMonth = Date.valueOf(startOfMonth.toLocalDate());
-        Query<Object[]> guildArtistMonthlyQuery = session.createNativeQuery("select artist_pk, count(*) as c " +
-            "from playback_history_artist where playback_history_pk in(select pk from playback_history " +
-            "where timestamp > ? and guild_id = ?) " +
-            "group by artist_pk order by c desc limit 5", Object[].class);
-        guildArtistMonthlyQuery.setParameter(1, dateAtStartOfMonth);
-        guildArtistMonthlyQuery.setParameter(2, guild.getId());
-        return guildArtistMonthlyQuery;
+        return getArtistChart(session, Scope.GUILD, guild.getId(), ALL_TIME_PERIOD);
     }
 
     public List<Object[]> getGuildArtistMonthlyChart(Guild guild, Session session) {
-        return getGuildArtistMonthlyChartQuery(guild, session).getResultList();
-    }
-
-    public Query<Object[]> getUserArtistChartQuery(User user, Session session) {
-        Query<Object[]> userArtistQuery = session.createNativeQuery("select artist_pk, count(*) as c from " +
-            "playback_history_artist as p where p.playback_history_pk in(select pk from playback_history where pk IN(SELECT playback_history_pk FROM user_playback_history WHERE user_id = ?)) " +
-            "group by artist_pk order by c desc limit 5", Object[].class);
-        userArtistQuery.setParameter(1, user.getId());
-        return userArtistQuery;
+        return getArtistChart(session, Scope.GUILD, guild.getId(), getMonthlyPeriod(LocalDate.now()));
     }
 
     public List<Object[]> getUserArtistChart(User user, Session session) {
-        return getUserArtistChartQuery(user, session).getResultList();
-    }
-
-    public Query<Object[]> getUserArtistMonthlyChartQuery(User user, Session session) {
-        LocalDateTime startOfMonth = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-        Date dateAtStartOfMonth = Date.valueOf(startOfMonth.toLocalDate());
-        Query<Object[]> userArtistMonthlyQuery = session.createNativeQuery("select artist_pk, count(*) as c " +
-            "from playback_history_artist where playback_history_pk in(select pk from playback_history " +
-            "where timestamp > ? and pk IN(SELECT playback_history_pk FROM user_playback_history WHERE user_id = ?)) " +
-            "group by artist_pk order by c desc limit 5", Object[].class);
-        userArtistMonthlyQuery.setParameter(1, dateAtStartOfMonth);
-        userArtistMonthlyQuery.setParameter(2, user.getId());
-        return userArtistMonthlyQuery;
+        return getArtistChart(session, Scope.USER, user.getId(), ALL_TIME_PERIOD);
     }
 
     public List<Object[]> getUserArtistMonthlyChart(User user, Session session) {
-        return getUserArtistMonthlyChartQuery(user, session).getResultList();
+        return getArtistChart(session, Scope.USER, user.getId(), getMonthlyPeriod(LocalDate.now()));
+    }
+
+    /**
+     * @return the most played tracks as records of fk_source, track_id, count and fk_spotify_item_kind
+     */
+    private List<Object[]> getTrackChart(Session session, Scope scope, String scopeId, String period) {
+        return session.createNativeQuery("select fk_source, track_id, count, fk_spotify_item_kind from track_chart_count " +
+                "where scope = ? and scope_id = ? and period = ? order by count desc limit ?", Object[].class)
+            .setParameter(1, scope.name())
+            .setParameter(2, scopeId)
+            .setParameter(3, period)
+            .setParameter(4, TRACK_CHART_SIZE)
+            .getResultList();
+    }
+
+    /**
+     * @return the most played artists as records of artist_pk and count
+     */
+    private List<Object[]> getArtistChart(Session session, Scope scope, String scopeId, String period) {
+        return session.createNativeQuery("select artist_pk, count from artist_chart_count " +
+                "where scope = ? and scope_id = ? and period = ? order by count desc limit ?", Object[].class)
+            .setParameter(1, scope.name())
+            .setParameter(2, scopeId)
+            .setParameter(3, period)
+            .setParameter(4, ARTIST_CHART_SIZE)
+            .getResultList();
+    }
+
+    /**
+     * The scope of a chart count, the scope id is the guild id for {@link #GUILD}, the user id for {@link #USER} and
+     * {@link #GLOBAL_SCOPE_ID} for {@link #GLOBAL}.
+     */
+    public enum Scope {
+        GLOBAL,
+        GUILD,
+        USER
     }
 
 }
@@ -0,0 +1,282 @@
+package net.robinfriedli.aiode.audio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventListener;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import net.robinfriedli.aiode.audio.queue.AudioQueue;
+import net.robinfriedli.aiode.concurrent.DaemonThreadPool;
+
+/**
+ * Alternates between two {@link AudioPlayer}s to start the next track of the queue without a gap. Shortly before the
+ * track of the active player ends, the {@link QueueIterator} arms the handoff by starting the prefetched next track on
+ * the standby player. The standby player is never polled, so the armed track only opens its stream and buffers its
+ * first frames. When the active track finishes, this listener swaps the players synchronously within the call of the
+ * {@link AudioPlayerSendHandler} that consumed the last frame, which then provides the first frame of the armed track
+ * within the same 20ms interval instead of waiting for the QueueIterator to load and start the next track. The
+ * QueueIterator is notified of the completed handoff by the end event of the previous track and only iterates the
+ * queue.
+ * <p>
+ * This listener is registered on both players before any QueueIterator so that the swap has happened by the time the
+ * QueueIterator receives the end event.
+ * <p>
+ * The standby player is only created when a handoff is first armed and destroyed again when the handoff is disarmed, so
+ * guilds that are not playing a queue only hold one player.
+ */
+class PlaybackHandoff extends AudioEventAdapter {
+
+    // how long before the end of the current track to start the next track on the standby player
+    static final long PRESTART_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final AudioPlayerManager playerManager;
+    private final AudioQueue queue;
+    // the listeners registered on both players, added to the standby player when it is created, guarded by this
+    private final List<AudioEventListener> listeners = new ArrayList<>();
+
+    private volatile AudioPlayer activePlayer;
+    // guarded by this, created when arming the first handoff
+    @Nullable
+    private AudioPlayer standbyPlayer;
+    // the last track the prestart has been requested for, only accessed by the thread of the send handler
+    private AudioTrack prestartRequestedTrack;
+
+    // guarded by this
+    @Nullable
+    private Handoff armedHandoff;
+    @Nullable
+    private Handoff completedHandoff;
+
+    PlaybackHandoff(AudioPlayer player, AudioPlayerManager playerManager, AudioQueue queue) {
+        this.activePlayer = player;
+        this.playerManager = playerManager;
+        this.queue = queue;
+        player.addListener(this);
+    }
+
+    AudioPlayer getActivePlayer() {
+        return activePlayer;
+    }
+
+    /**
+     * Called by the send handler after the active player provided a frame of the given track.
+     *
+     * @return true once per track when it is about to end and the next track should be armed
+     */
+    boolean shouldPrestart(@Nullable AudioTrack playingTrack) {
+        if (playingTrack == null || playingTrack == prestartRequestedTrack || playingTrack.getInfo().isStream) {
+            return false;
+        }
+
+        if (playingTrack.getDuration() - playingTrack.getPosition() > PRESTART_MS) {
+            return false;
+        }
+
+        prestartRequestedTrack = playingTrack;
+        return true;
+    }
+
+    /**
+     * Start the given track on the standby player to be handed off to when the ending track finishes. Does nothing if
+     * the ending track has already stopped playing.
+     *
+     * @param endingTrack the track currently playing on the active player
+     * @param next        the playable that follows the ending track in the queue
+     * @param nextTrack   the loaded track of the next playable
+     * @return true if the handoff has been armed
+     */
+    boolean arm(AudioTrack endingTrack, Playable next, AudioTrack nextTrack) {
+        Handoff previousHandoff;
+        AudioPlayer player;
+        synchronized (this) {
+            previousHandoff = armedHandoff;
+            armedHandoff = null;
+            if (standbyPlayer == null) {
+                standbyPlayer = createStandbyPlayer();
+            }
+            player = standbyPlayer;
+        }
+
+        // not holding the monitor while starting the track since the player dispatches the start event while holding
+        // its own lock, which the end event of the standby player holds when entering this monitor
+        if (previousHandoff != null) {
+            stopIfPlaying(player, previousHandoff.nextTrack);
+        }
+        player.setVolume(activePlayer.getVolume());
+        player.playTrack(nextTrack);
+
+        boolean armed;
+        synchronized (this) {
+            armed = player == standbyPlayer && activePlayer.getPlayingTrack() == endingTrack;
+            if (armed) {
+                armedHandoff = new Handoff(endingTrack, next, nextTrack);
+            }
+        }
+
+        if (!armed) {
+            stopIfPlaying(player, nextTrack);
+        }
+        return armed;
+    }
+
+    /**
+     * Stop the armed track and destroy the standby player, e.g. when a track is started manually or the playback is
+     * stopped. The standby player is created again when the next handoff is armed.
+     */
+    void disarm() {
+        AudioPlayer player;
+        synchronized (this) {
+            player = standbyPlayer;
+            armedHandoff = null;
+            standbyPlayer = null;
+        }
+
+        if (player != null) {
+            player.destroy();
+        }
+    }
+
+    /**
+     * @return the completed handoff for the given track that has finished on the previously active player, or null if
+     * the track did not hand off to the next track
+     */
+    @Nullable
+    synchronized Handoff consumeHandoff(AudioTrack endedTrack) {
+        Handoff handoff = completedHandoff;
+        if (handoff != null && handoff.endingTrack == endedTrack) {
+            completedHandoff = null;
+            return handoff;
+        }
+
+        return null;
+    }
+
+    void addListener(AudioEventListener listener) {
+        AudioPlayer player;
+        AudioPlayer standby;
+        synchronized (this) {
+            // a standby player created from here on registers the listener itself
+            listeners.add(listener);
+            player = activePlayer;
+            standby = standbyPlayer;
+        }
+
+        // not holding the monitor while entering the lock of the players, see arm
+        player.addListener(listener);
+        if (standby != null) {
+            standby.addListener(listener);
+        }
+    }
+
+    void removeListener(AudioEventListener listener) {
+        AudioPlayer player;
+        AudioPlayer standby;
+        synchronized (this) {
+            listeners.remove(listener);
+            player = activePlayer;
+            standby = standbyPlayer;
+        }
+
+        player.removeListener(listener);
+        if (standby != null) {
+            standby.removeListener(listener);
+        }
+    }
+
+    void destroy() {
+        disarm();
+        activePlayer.destroy();
+    }
+
+    @Override
+    public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+        AudioPlayer playerToStop = null;
+        AudioTrack trackToStop = null;
+        synchronized (this) {
+            Handoff handoff = armedHandoff;
+            if (handoff == null) {
+                return;
+            }
+
+            if (player == activePlayer && track == handoff.endingTrack) {
+                armedHandoff = null;
+                if (endReason == AudioTrackEndReason.FINISHED
+                    && standbyPlayer.getPlayingTrack() == handoff.nextTrack
+                    && isNext(handoff.next)) {
+                    standbyPlayer.setVolume(activePlayer.getVolume());
+                    activePlayer = standbyPlayer;
+                    standbyPlayer = player;
+                    completedHandoff = handoff;
+                } else {
+                    // the queue was modified or the track was stopped, the QueueIterator continues as usual
+                    playerToStop = standbyPlayer;
+                    trackToStop = handoff.nextTrack;
+                }
+            } else if (player == standbyPlayer && track == handoff.nextTrack) {
+                // the armed track failed or was cleaned up before the active track finished
+                armedHandoff = null;
+            }
+        }
+
+        if (trackToStop != null) {
+            // do not enter the lock of the standby player while the active player dispatches the event
+            AudioPlayer finalPlayerToStop = playerToStop;
+            AudioTrack finalTrackToStop = trackToStop;
+            DaemonThreadPool.execute(() -> stopIfPlaying(finalPlayerToStop, finalTrackToStop));
+        }
+    }
+
+    private AudioPlayer createStandbyPlayer() {
+        AudioPlayer player = playerManager.createPlayer();
+        player.addListener(this);
+        for (AudioEventListener listener : listeners) {
+            player.addListener(listener);
+        }
+        return player;
+    }
+
+    private boolean isNext(Playable playable) {
+        if (queue.getRepeatOne()) {
+            return false;
+        }
+
+        List<Playable> next = queue.listNext(1);
+        return !next.isEmpty() && next.get(0) == playable;
+    }
+
+    private static void stopIfPlaying(AudioPlayer player, AudioTrack track) {
+        if (player.getPlayingTrack() == track) {
+            player.stopTrack();
+        }
+    }
+
+    static class Handoff {
+
+        private final AudioTrack endingTrack;
+        private final Playable next;
+        private final AudioTrack nextTrack;
+
+        private Handoff(AudioTrack endingTrack, Playable next, AudioTrack nextTrack) {
+            this.endingTrack = endingTrack;
+            this.next = next;
+            this.nextTrack = nextTrack;
+        }
+
+        Playable getNext() {
+            return next;
+        }
+
+        AudioTrack getNextTrack() {
+            return nextTrack;
+        }
+
+    }
+
+}
@@ -1,10 +1,14 @@
 package net.robinfriedli.aiode.audio;
 
 import java.awt.Color;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,15 +31,13 @@ import net.robinfriedli.aiode.audio.queue.AudioQueue;
 import net.robinfriedli.aiode.audio.spotify.SpotifyTrackRedirect;
 import net.robinfriedli.aiode.audio.youtube.YouTubeVideo;
 import net.robinfriedli.aiode.boot.SpringPropertiesConfig;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
 import net.robinfriedli.aiode.discord.MessageService;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
 import net.robinfriedli.aiode.discord.property.properties.ColorSchemeProperty;
-import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.exceptions.ExceptionUtils;
 import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
 import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
 import net.robinfriedli.aiode.filebroker.FilebrokerPlayableWrapper;
-import net.robinfriedli.aiode.persist.StaticSessionProvider;
 import net.robinfriedli.aiode.util.EmojiConstants;
 import net.robinfriedli.threadpool.ThreadPool;
 import org.jetbrains.annotations.NotNull;
@@ -51,31 +53,42 @@ public class QueueIterator extends AudioEventAdapter {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private static final ThreadPool AUDIO_EVENT_POOL = ThreadPool.Builder.create()
-        .setCoreSize(3)
-        .setMaxSize(50)
-        .setKeepAlive(5L, TimeUnit.MINUTES)
-        .setThreadFactory(new ThreadFactory() {
-
-            private final AtomicInteger threadNumber = new AtomicInteger(1);
-
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread t = new Thread(r);
-                t.setName("audio-event-pool-thread-" + threadNumber.getAndIncrement());
-                t.setDaemon(true);
-                t.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
-                return t;
-            }
-        })
-        .build();
+    private static final ExecutorService AUDIO_EVENT_POOL = VirtualThreads.createPool(
+        "audio-event-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
+            .setCoreSize(3)
+            .setMaxSize(50)
+            .setKeepAlive(5L, TimeUnit.MINUTES)
+            .setThreadFactory(new ThreadFactory() {
+
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread t = new Thread(r);
+                    t.setName("audio-event-pool-thread-" + threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    t.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
+                    return t;
+                }
+            })
+            .build()
+    );
 
     private final AudioPlayback playback;
     private final AudioQueue queue;
+    // serialises handling audio events, not using a monitor since handling an event blocks while loading the next track
+    private final Lock eventLock = new ReentrantLock();
     private final AudioManager audioManager;
     private final MessageService messageService;
     private final AudioTrackLoader audioTrackLoader;
+    private final AudioTrackCache audioTrackCache;
+    private final TrackPrefetcher trackPrefetcher;
+    private final PlaybackHandoff playbackHandoff;
     private Playable currentlyPlaying;
+    // the AudioTrackCache key of the current track, invalidated if the track fails
+    private volatile String currentTrackKey;
 
     private volatile boolean isReplaced;
     // Incremented when attempting to play the next track and reset when a track ends successfully.
@@ -93,27 +106,46 @@ public class QueueIterator extends AudioEventAdapter {
         this.audioManager = audioManager;
         messageService = Aiode.get().getMessageService();
         audioTrackLoader = new AudioTrackLoader(audioManager.getPlayerManager());
+        audioTrackCache = audioManager.getAudioTrackCache();
+        trackPrefetcher = playback.getTrackPrefetcher();
+        playbackHandoff = playback.getPlaybackHandoff();
     }
 
     @Override
     public void onTrackStart(AudioPlayer player, AudioTrack track) {
+        if (player != playback.getAudioPlayer()) {
+            // the next track has been armed on the standby player
+            return;
+        }
+
         handleAudioEvent(() -> {
             if (playback.isPaused()) {
                 playback.unpause();
             }
 
-            Playable current = track.getUserData(Playable.class);
-            if (current != null) {
-                audioManager.createHistoryEntry(current, playback.getGuild(), playback.getAudioChannel());
-                if (shouldSendPlaybackNotification()) {
-                    sendCurrentTrackNotification(current, track);
-                }
-            }
+            handleTrackStart(track);
         });
     }
 
     @Override
     public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason reason) {
+        PlaybackHandoff.Handoff handoff = playbackHandoff.consumeHandoff(track);
+        if (handoff != null) {
+            handleAudioEvent(() -> {
+                // the next track has already been started by the PlaybackHandoff
+                resetAttemptCount();
+                queue.iterate();
+                currentlyPlaying = handoff.getNext();
+                currentTrackKey = getCacheKey(handoff.getNext());
+                handleTrackStart(handoff.getNextTrack());
+            });
+            return;
+        }
+
+        if (player != playback.getAudioPlayer()) {
+            return;
+        }
+
         if (reason.mayStartNext) {
             handleAudioEvent(() -> {
                 if (retryCurrent) {
@@ -136,8 +168,18 @@ public class QueueIterator extends AudioEventAdapter {
 
     @Override
     public void onTrackException(AudioPlayer player, AudioTrack track, FriendlyException exception) {
+        if (player != playback.getAudioPlayer()) {
+            // the armed track failed on the standby player, it will be loaded again when the QueueIterator gets to it
+            return;
+        }
+
         Throwable e = ExceptionUtils.getRootCause(exception);
         Playable playable = track.getUserData(Playable.class);
+        // the cached track might reference a stream that is no longer available
+        String failedTrackKey = currentTrackKey;
+        if (failedTrackKey != null) {
+            audioTrackCache.invalidate(failedTrackKey);
+        }
         if (!isYouTubeBanned && isYouTubeBanError(playable, e)) {
             isYouTubeBanned = true;
             if (playable instanceof SpotifyTrackRedirect spotifyTrackRedirect) {
@@ -161,6 +203,38 @@ public class QueueIterator extends AudioEventAdapter {
         isReplaced = true;
     }
 
+    /**
+     * Called by the {@link AudioPlayerSendHandler} when the given track is about to end to start the next track on the
+     * standby player of the {@link PlaybackHandoff} if it has already been prefetched.
+     */
+    void prepareHandoff(AudioTrack endingTrack) {
+        handleAudioEvent(() -> {
+            if (retryCurrent || queue.getRepeatOne() || playback.getAudioPlayer().getPlayingTrack() != endingTrack) {
+                return;
+            }
+
+            List<Playable> next = queue.listNext(1);
+            if (next.isEmpty()) {
+                return;
+            }
+
+            Playable nextPlayable = next.get(0);
+            if (isYouTubeBanned && nextPlayable instanceof SpotifyTrackRedirect) {
+                return;
+            }
+
+            // do not wait for the prefetch while the current track is ending, the track is loaded when it is played instead
+            AudioTrack nextTrack = trackPrefetcher.takeIfDone(nextPlayable);
+            if (nextTrack == null) {
+                return;
+            }
+
+            nextPlayable.setCached(nextTrack);
+            nextTrack.setUserData(nextPlayable);
+            playbackHandoff.arm(endingTrack, nextPlayable, nextTrack);
+        });
+    }
+
     void playNext() {
         if (isReplaced) {
             return;
@@ -191,67 +265,87 @@ public class QueueIterator extends AudioEventAdapter {
 
         Playable track = queue.getCurrent();
         AudioItem result = null;
-        if (!ignoreCache) {
+        // when YouTube is banned the prefetched track of a SpotifyTrackRedirect might be the YouTube video
+        if (!ignoreCache && !(isYouTubeBanned && track instanceof SpotifyTrackRedirect)) {
+            result = trackPrefetcher.take(track);
+        }
+
+        // likewise the cached track of a SpotifyTrackRedirect might be the YouTube video. Playables that cache their
+        // track in the AudioTrackCache are looked up by their cache key below, so that each lookup is only recorded once
+        if (result == null
+            && !ignoreCache
+            && !(track instanceof AbstractCachedPlayable)
+            && !(isYouTubeBanned && track instanceof SpotifyTrackRedirect)) {
             AudioTrack cachedTracked = track.getCached();
             if (cachedTracked != null) {
                 result = cachedTracked.makeClone();
             }
         }
 
+        String cacheKey = null;
         if (result == null) {
             String playbackUrl;
             try {
                 // for SpotifyTrackRedirect, prioritise YouTube last when banned
+                Playable loadedPlayable = track;
                 if (isYouTubeBanned && track instanceof SpotifyTrackRedirect spotifyTrackRedirect) {
                     FilebrokerPlayableWrapper completedFilebrokerPost = spotifyTrackRedirect.getCompletedFilebrokerPost();
                     if (completedFilebrokerPost != null) {
-                        playbackUrl = completedFilebrokerPost.getPlaybackUrl();
+                        loadedPlayable = completedFilebrokerPost;
                     } else {
                         UrlPlayable completedSoundCloudTrack = spotifyTrackRedirect.getCompletedSoundCloudTrack();
                         if (completedSoundCloudTrack != null) {
-                            playbackUrl = completedSoundCloudTrack.getPlaybackUrl();
-                        } else {
-                            playbackUrl = track.getPlaybackUrl();
+                            loadedPlayable = completedSoundCloudTrack;
                         }
                     }
-                } else {
-                    playbackUrl = track.getPlaybackUrl();
                 }
+                playbackUrl = loadedPlayable.getPlaybackUrl();
+                cacheKey = AudioTrackCache.keyOf(loadedPlayable);
             } catch (UnavailableResourceException e) {
                 iterateQueue(playback, queue, true);
                 return;
             }
 
-            try {
-                result = audioTrackLoader.loadByIdentifier(playbackUrl);
-            } catch (FriendlyException e) {
-                if (!isYouTubeBanned && isYouTubeBanError(track, e)) {
-                    isYouTubeBanned = true;
-                    if (track instanceof SpotifyTrackRedirect spotifyTrackRedirect && spotifyTrackRedirect.getCompletedSoundCloudTrack() != null) {
-                        // retry redirect using soundcloud on yt ban
-                        retryCurrent = true;
-                        logger.warn("Failed to play YouTube video for redirected Spotify track, trying SoundCloud instead");
-                        playNext();
-                        return;
+            // the same track might have been loaded recently for another playable or guild
+            AudioTrack sharedCachedTrack = !ignoreCache ? audioTrackCache.get(cacheKey) : null;
+            if (sharedCachedTrack != null) {
+                result = sharedCachedTrack.makeClone();
+            } else {
+                try {
+                    result = audioTrackLoader.loadByIdentifier(playbackUrl);
+                    if (result instanceof AudioTrack loadedTrack) {
+                        audioTrackCache.put(cacheKey, loadedTrack);
+                    }
+                } catch (FriendlyException e) {
+                    if (!isYouTubeBanned && isYouTubeBanError(track, e)) {
+                        isYouTubeBanned = true;
+                        if (track instanceof SpotifyTrackRedirect spotifyTrackRedirect && spotifyTrackRedirect.getCompletedSoundCloudTrack() != null) {
+                            // retry redirect using soundcloud on yt ban
+                            retryCurrent = true;
+                            logger.warn("Failed to play YouTube video for redirected Spotify track, trying SoundCloud instead");
+                            playNext();
+                            return;
+                        }
                     }
-                }
 
-                if (e.severity == FriendlyException.Severity.COMMON) {
-                    logger.warn("Common lavaplayer track error: " + e.getMessage());
-                } else {
-                    logger.error("Lavaplayer track exception", e);
-                }
+                    if (e.severity == FriendlyException.Severity.COMMON) {
+                        logger.warn("Common lavaplayer track error: " + e.getMessage());
+                    } else {
+                        logger.error("Lavaplayer track exception", e);
+                    }
 
-                sendError(track, e);
+                    sendError(track, e);
 
-                iterateQueue(playback, queue, true);
-                return;
+                    iterateQueue(playback, queue, true);
+                    return;
+                }
             }
         }
         if (result != null) {
             if (result instanceof AudioTrack audioTrack) {
                 track.setCached(audioTrack);
                 audioTrack.setUserData(track);
+                currentTrackKey = cacheKey != null ? cacheKey : getCacheKey(track);
                 playback.getAudioPlayer().playTrack(audioTrack);
                 currentlyPlaying = track;
             } else {
@@ -286,6 +380,28 @@ public class QueueIterator extends AudioEventAdapter {
         }
     }
 
+    @Nullable
+    private static String getCacheKey(Playable playable) {
+        try {
+            return AudioTrackCache.keyOf(playable);
+        } catch (UnavailableResourceException e) {
+            return null;
+        }
+    }
+
+    private void handleTrackStart(AudioTrack track) {
+        // load the upcoming tracks while this one is playing
+        trackPrefetcher.refresh();
+
+        Playable current = track.getUserData(Playable.class);
+        if (current != null) {
+            audioManager.createHistoryEntry(current, playback.getGuild(), playback.getAudioChannel());
+            if (shouldSendPlaybackNotification()) {
+                sendCurrentTrackNotification(current, track);
+            }
+        }
+    }
+
     private boolean isYouTubeBanError(@Nullable Playable track, Throwable e) {
         return e.getMessage() != null
             && (track instanceof YouTubeVideo || (track instanceof SpotifyTrackRedirect spotifyTrackRedirect && spotifyTrackRedirect.isYouTube()))
@@ -368,11 +484,7 @@ public class QueueIterator extends AudioEventAdapter {
         embedBuilder.setAuthor("Support aiode", "https://ko-fi.com/R5R0XAC5J", "https://storage.ko-fi.com/cdn/brandasset/kofi_s_logo_nolabel.png");
 
         Guild guild = playback.getGuild();
-        Color color = StaticSessionProvider.invokeWithSession(session -> {
-            GuildSpecification specification = Aiode.get().getGuildManager().getContextForGuild(guild).getSpecification(session);
-            return ColorSchemeProperty.getColor(specification);
-        });
-        embedBuilder.setColor(color);
+        embedBuilder.setColor(Aiode.get().getGuildManager().getContextForGuild(guild).getSettings().getColor());
 
         CompletableFuture<Message> futureMessage = messageService.send(embedBuilder.build(), communicationChannel);
         futureMessage.thenAccept(playback::setLastPlaybackNotification);
@@ -385,21 +497,18 @@ public class QueueIterator extends AudioEventAdapter {
                 return;
             }
 
-            synchronized (this) {
+            eventLock.lock();
+            try {
                 runnable.run();
+            } finally {
+                eventLock.unlock();
             }
         });
     }
 
     private boolean shouldSendPlaybackNotification() {
-        return StaticSessionProvider.invokeWithSession(session -> {
-            Guild guild = playback.getGuild();
-            GuildSpecification specification = Aiode.get().getGuildManager().getContextForGuild(guild).getSpecification(session);
-            GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-            return guildPropertyManager
-                .getPropertyValueOptional("sendPlaybackNotification", Boolean.class, specification)
-                .orElse(true);
-        });
+        Guild guild = playback.getGuild();
+        return Aiode.get().getGuildManager().getContextForGuild(guild).getSettings().isSendPlaybackNotification();
     }
 
     private void appendIfTrue(StringBuilder builder, String s, boolean b) {
@@ -0,0 +1,239 @@
+package net.robinfriedli.aiode.audio;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Sets;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioItem;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.audio.queue.AudioQueue;
+import net.robinfriedli.aiode.audio.queue.QueueSnapshot;
+import net.robinfriedli.aiode.boot.ShutdownableExecutorService;
+import net.robinfriedli.aiode.concurrent.ForkTaskThreadPool;
+import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
+import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
+import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
+import net.robinfriedli.threadpool.ThreadPool;
+
+/**
+ * Resolves and loads the {@link AudioTrack}s of the next {@link #LOOKAHEAD} tracks in the queue in the background while
+ * the current track is playing, so that the {@link QueueIterator} can start the next track without waiting for the
+ * source. The upcoming tracks are determined by {@link AudioQueue#listNext(int)}, which respects shuffle and repeat all.
+ * Prefetched tracks are keyed by the identity of the {@link Playable} and only handed out for the exact playable that
+ * is about to be played. While the playback is active, the prefetches are refreshed right away whenever the queue is
+ * modified, starting prefetches for tracks that moved into the lookahead window and cancelling the prefetches of tracks
+ * that are no longer upcoming. There is one instance per {@link AudioPlayback} so that prefetched tracks survive
+ * replacing the QueueIterator.
+ */
+class TrackPrefetcher {
+
+    static final int LOOKAHEAD = 2;
+
+    // sources like SoundCloud resolve tracks to stream urls that expire, discard tracks prefetched during long tracks
+    private static final long MAX_AGE_MS = TimeUnit.MINUTES.toMillis(30);
+    // maximum time the audio event thread waits for a prefetch that is still loading before loading the track itself
+    private static final long MAX_WAIT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private static final ForkTaskThreadPool PREFETCH_POOL = new ForkTaskThreadPool(VirtualThreads.createPool(
+        "track-prefetch-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
+            .setCoreSize(3)
+            .setMaxSize(20)
+            .setKeepAlive(1L, TimeUnit.MINUTES)
+            .setThreadFactory(new LoggingThreadFactory("track-prefetch-pool")).build()
+    ));
+
+    static {
+        Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(PREFETCH_POOL));
+    }
+
+    private final AudioQueue queue;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<Playable, Prefetch> prefetches = new IdentityHashMap<>();
+
+    // set when a track starts playing and reset when the playback is stopped, guarded by this
+    private boolean active;
+
+    TrackPrefetcher(AudioQueue queue) {
+        this.queue = queue;
+        queue.addChangeListener(changedQueue -> onQueueChanged());
+    }
+
+    /**
+     * Start prefetching the upcoming tracks of the queue that are not being prefetched already and cancel the prefetches
+     * of tracks that are no longer upcoming. Called when a track starts playing and when the queue is modified while
+     * playing.
+     */
+    synchronized void refresh() {
+        active = true;
+        if (queue.getRepeatOne()) {
+            // the current track is played again, which is served by the AudioTrackCache
+            cancelAll();
+            return;
+        }
+
+        List<Playable> upcoming = queue.listNext(LOOKAHEAD);
+        cancelStale(upcoming, queue.snapshot());
+
+        for (Playable playable : upcoming) {
+            if (!prefetches.containsKey(playable)) {
+                Prefetch prefetch = new Prefetch();
+                prefetch.future = PREFETCH_POOL.submit(() -> load(playable, prefetch));
+                prefetches.put(playable, prefetch);
+            }
+        }
+    }
+
+    /**
+     * Remove the prefetched track for the given playable, waiting up to {@link #MAX_WAIT_MS} for the prefetch to complete
+     * if it is still loading.
+     *
+     * @return the prefetched track or null if the playable has not been prefetched, prefetching failed or timed out, in
+     * which case the caller loads the track as usual
+     */
+    @Nullable
+    AudioTrack take(Playable playable) {
+        Prefetch prefetch;
+        synchronized (this) {
+            prefetch = prefetches.remove(playable);
+        }
+
+        if (prefetch == null) {
+            return null;
+        }
+
+        AudioTrack audioTrack;
+        try {
+            audioTrack = prefetch.future.get(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            logger.warn("Prefetching track {} did not complete within {}ms, loading it directly", playable.display(), MAX_WAIT_MS);
+            prefetch.future.cancel(true);
+            return null;
+        } catch (CancellationException | ExecutionException e) {
+            return null;
+        }
+
+        if (audioTrack == null || System.currentTimeMillis() - prefetch.loadedAtMillis > MAX_AGE_MS) {
+            return null;
+        }
+
+        return audioTrack;
+    }
+
+    /**
+     * Remove the prefetched track for the given playable if prefetching has completed, else leave the prefetch to be
+     * taken when the playable is played.
+     *
+     * @return the prefetched track or null if the playable has not been prefetched yet
+     */
+    @Nullable
+    AudioTrack takeIfDone(Playable playable) {
+        synchronized (this) {
+            Prefetch prefetch = prefetches.get(playable);
+            if (prefetch == null || !prefetch.future.isDone()) {
+                return null;
+            }
+        }
+
+        return take(playable);
+    }
+
+    /**
+     * Cancel all prefetches and stop refreshing them when the queue is modified, e.g. when the playback is stopped.
+     */
+    synchronized void clear() {
+        active = false;
+        cancelAll();
+    }
+
+    /**
+     * Called by the {@link AudioQueue} after each modification while holding its write lock.
+     */
+    private synchronized void onQueueChanged() {
+        if (active) {
+            refresh();
+        }
+    }
+
+    private void cancelAll() {
+        for (Prefetch prefetch : prefetches.values()) {
+            prefetch.future.cancel(true);
+        }
+        prefetches.clear();
+    }
+
+    private void cancelStale(List<Playable> upcoming, QueueSnapshot snapshot) {
+        Set<Playable> retained = Sets.newIdentityHashSet();
+        retained.addAll(upcoming);
+        // the QueueIterator iterates the queue before taking the prefetch of the track it moved to
+        Playable current = snapshot.getCurrent();
+        if (current != null) {
+            retained.add(current);
+        }
+        Iterator<Map.Entry<Playable, Prefetch>> iterator = prefetches.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Playable, Prefetch> entry = iterator.next();
+            if (!retained.contains(entry.getKey())) {
+                entry.getValue().future.cancel(true);
+                iterator.remove();
+            }
+        }
+    }
+
+    @Nullable
+    private AudioTrack load(Playable playable, Prefetch prefetch) {
+        AudioManager audioManager = Aiode.get().getAudioManager();
+        AudioTrackCache audioTrackCache = audioManager.getAudioTrackCache();
+        try {
+            String playbackUrl = playable.getPlaybackUrl();
+            String cacheKey = AudioTrackCache.keyOf(playable);
+            AudioTrack cachedTrack = audioTrackCache.get(cacheKey);
+            AudioTrack audioTrack;
+            if (cachedTrack != null) {
+                audioTrack = cachedTrack.makeClone();
+            } else {
+                AudioItem result = new AudioTrackLoader(audioManager.getPlayerManager()).loadByIdentifier(playbackUrl);
+                if (!(result instanceof AudioTrack loadedTrack)) {
+                    return null;
+                }
+                audioTrack = loadedTrack;
+                audioTrackCache.put(cacheKey, audioTrack);
+            }
+
+            prefetch.loadedAtMillis = System.currentTimeMillis();
+            return audioTrack;
+        } catch (UnavailableResourceException | FriendlyException e) {
+            // the QueueIterator loads the track again when it is played and handles the error
+            logger.debug("Could not prefetch track {}", playable.display(), e);
+            return null;
+        }
+    }
+
+    private static class Prefetch {
+
+        private Future<AudioTrack> future;
+        private volatile long loadedAtMillis;
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package net.robinfriedli.aiode.audio.exec;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -15,6 +16,7 @@ import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.concurrent.QueuedTask;
 import net.robinfriedli.aiode.concurrent.ThreadContext;
 import net.robinfriedli.aiode.concurrent.ThreadExecutionQueue;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
 import net.robinfriedli.aiode.discord.GuildContext;
 import net.robinfriedli.aiode.exceptions.CommandRuntimeException;
 import net.robinfriedli.aiode.exceptions.handler.TrackLoadingExceptionHandlerExecutor;
@@ -30,20 +32,24 @@ import org.jetbrains.annotations.NotNull;
  */
 public class PooledTrackLoadingExecutor implements TrackLoadingExecutor {
 
-    static final ThreadPoolExecutor GLOBAL_POOL = new ThreadPoolExecutor(3, Integer.MAX_VALUE,
-        60L, TimeUnit.SECONDS,
-        new SynchronousQueue<>(),
-        new ThreadFactory() {
-            private final AtomicLong threadId = new AtomicLong(1);
+    static final ExecutorService GLOBAL_POOL = VirtualThreads.createPool(
+        "pooled-track-loading",
+        new TrackLoadingUncaughtExceptionHandler(LoggerFactory.getLogger(PooledTrackLoadingExecutor.class)),
+        () -> new ThreadPoolExecutor(3, Integer.MAX_VALUE,
+            60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadFactory() {
+                private final AtomicLong threadId = new AtomicLong(1);
 
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread thread = new Thread(r);
-                thread.setName("pooled-track-loading-thread-" + threadId.getAndIncrement());
-                thread.setUncaughtExceptionHandler(new TrackLoadingUncaughtExceptionHandler(LoggerFactory.getLogger(PooledTrackLoadingExecutor.class)));
-                return thread;
-            }
-        });
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setName("pooled-track-loading-thread-" + threadId.getAndIncrement());
+                    thread.setUncaughtExceptionHandler(new TrackLoadingUncaughtExceptionHandler(LoggerFactory.getLogger(PooledTrackLoadingExecutor.class)));
+                    return thread;
+                }
+            })
+    );
 
     static {
         Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(GLOBAL_POOL));
@@ -1,25 +1,69 @@
 package net.robinfriedli.aiode.audio.exec;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
 
 import com.google.common.collect.Lists;
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.audio.Playable;
+import net.robinfriedli.aiode.audio.queue.AudioQueue;
 import net.robinfriedli.aiode.audio.spotify.SpotifyRedirectService;
 import net.robinfriedli.aiode.audio.spotify.SpotifyTrackRedirect;
 import net.robinfriedli.aiode.audio.youtube.YouTubeService;
+import net.robinfriedli.aiode.boot.ShutdownableExecutorService;
+import net.robinfriedli.aiode.concurrent.ExecutionContext;
+import net.robinfriedli.aiode.concurrent.ForkTaskThreadPool;
+import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
+import net.robinfriedli.aiode.entities.SpotifyRedirectIndex;
+import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
 import net.robinfriedli.aiode.function.CheckedConsumer;
 import net.robinfriedli.aiode.persist.StaticSessionProvider;
 import net.robinfriedli.filebroker.FilebrokerApi;
+import net.robinfriedli.threadpool.ThreadPool;
 import org.hibernate.Session;
 
+/**
+ * Redirects a batch of Spotify tracks. The persisted {@link SpotifyRedirectIndex} entries for the entire batch are
+ * loaded in one go and the tracks are then redirected by several workers concurrently, while the
+ * {@link SpotifyRedirectService} bounds the number of concurrent requests per source. Workers always pick the pending
+ * track closest to the current position of the guild's {@link AudioQueue}, so that the tracks that are going to be
+ * played next become playable first. The workers of all batches share a bounded pool and inherit the
+ * {@link ExecutionContext} of the loading thread through the {@link ForkTaskThreadPool}.
+ */
 public class SpotifyTrackRedirectionRunnable implements TrackLoadingRunnable<SpotifyTrackRedirect> {
 
+    private static final int WORKERS_PER_BATCH = 6;
+    private static final ForkTaskThreadPool WORKER_POOL = new ForkTaskThreadPool(VirtualThreads.createPool(
+        "spotify-redirect-worker-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
+            .setCoreSize(3)
+            .setMaxSize(20)
+            .setKeepAlive(1L, TimeUnit.MINUTES)
+            .setThreadFactory(new LoggingThreadFactory("spotify-redirect-worker-pool")).build()
+    ));
+
+    static {
+        Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(WORKER_POOL));
+    }
+
     private final List<SpotifyTrackRedirect> tracksToRedirect;
     private final FilebrokerApi filebrokerApi;
     private final YouTubeService youTubeService;
 
-    private SpotifyRedirectService spotifyRedirectService;
-
     public SpotifyTrackRedirectionRunnable(FilebrokerApi filebrokerApi, YouTubeService youTubeService, SpotifyTrackRedirect... tracksToRedirect) {
         this(filebrokerApi, Lists.newArrayList(tracksToRedirect), youTubeService);
     }
@@ -47,23 +91,121 @@ public class SpotifyTrackRedirectionRunnable implements TrackLoadingRunnable<Spo
 
     @Override
     public void loadItem(SpotifyTrackRedirect item) throws Exception {
-        if (spotifyRedirectService != null) {
+        StaticSessionProvider.consumeSession((CheckedConsumer<Session>) session -> {
+            SpotifyRedirectService spotifyRedirectService = new SpotifyRedirectService(filebrokerApi, session, youTubeService);
             spotifyRedirectService.redirectTrack(item);
-        } else {
-            StaticSessionProvider.consumeSession((CheckedConsumer<Session>) session -> {
-                SpotifyRedirectService spotifyRedirectService = new SpotifyRedirectService(filebrokerApi, session, youTubeService);
-                spotifyRedirectService.redirectTrack(item);
-            });
-        }
+        });
     }
 
     @Override
-    public void doRun() {
-        if (!tracksToRedirect.isEmpty()) {
-            StaticSessionProvider.consumeSession((CheckedConsumer<Session>) session -> {
-                spotifyRedirectService = new SpotifyRedirectService(filebrokerApi, session, youTubeService);
-                loadItems();
-            });
+    public void loadItems() throws Exception {
+        List<SpotifyTrackRedirect> pendingTracks = tracksToRedirect.stream().filter(track -> !track.isDone()).collect(Collectors.toList());
+        if (pendingTracks.isEmpty()) {
+            return;
+        }
+
+        List<String> spotifyIds = pendingTracks.stream().map(track -> track.getSpotifyTrack().getId()).collect(Collectors.toList());
+        Map<String, SpotifyRedirectIndex> persistedIndices = StaticSessionProvider.invokeWithSession(session ->
+            SpotifyRedirectIndex.queryExistingIndices(session, spotifyIds)
+        );
+
+        ExecutionContext executionContext = ExecutionContext.Current.get();
+        AudioQueue audioQueue = executionContext != null ? executionContext.getGuildContext().getPlayback().getAudioQueue() : null;
+        PrioritisedRedirectQueue redirectQueue = new PrioritisedRedirectQueue(pendingTracks, audioQueue);
+
+        int workerCount = Math.min(WORKERS_PER_BATCH, pendingTracks.size());
+        List<Future<?>> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(WORKER_POOL.submit(() -> {
+                StaticSessionProvider.consumeSession((CheckedConsumer<Session>) session -> {
+                    SpotifyRedirectService spotifyRedirectService = new SpotifyRedirectService(filebrokerApi, session, youTubeService);
+                    SpotifyTrackRedirect track;
+                    while (!Thread.currentThread().isInterrupted() && (track = redirectQueue.poll()) != null) {
+                        spotifyRedirectService.redirectTrack(track, persistedIndices);
+                    }
+                });
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            handleCancellation();
+            // restore the interrupt so that the loading thread and the TrackLoadingExecutor still see it
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            handleCancellation();
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queue of the tracks of a batch that have not been redirected yet, ordered by their distance to the current position
+     * of the {@link AudioQueue}. Tracks that are not part of the queue (yet) keep their original order behind all tracks
+     * in the queue. The order is only recomputed when the position or size of the queue has changed since the last poll.
+     */
+    private static class PrioritisedRedirectQueue {
+
+        @Nullable
+        private final AudioQueue audioQueue;
+
+        private Deque<SpotifyTrackRedirect> pending;
+        private int lastPosition = -1;
+        private int lastSize = -1;
+
+        private PrioritisedRedirectQueue(List<SpotifyTrackRedirect> tracks, @Nullable AudioQueue audioQueue) {
+            this.audioQueue = audioQueue;
+            pending = new ArrayDeque<>(tracks);
+        }
+
+        @Nullable
+        private synchronized SpotifyTrackRedirect poll() {
+            if (audioQueue != null) {
+                reorderIfQueueChanged(audioQueue);
+            }
+
+            SpotifyTrackRedirect next;
+            while ((next = pending.poll()) != null) {
+                // might have been loaded prioritised by Playable#fetch
+                if (!next.isDone()) {
+                    return next;
+                }
+            }
+
+            return null;
         }
+
+        private void reorderIfQueueChanged(AudioQueue audioQueue) {
+            int position = audioQueue.getPosition();
+            int size = audioQueue.getSize();
+            if (position == lastPosition && size == lastSize) {
+                return;
+            }
+
+            lastPosition = position;
+            lastSize = size;
+            List<Playable> queuedTracks = audioQueue.getTracks();
+            Map<Playable, Integer> distances = new IdentityHashMap<>();
+            for (int i = 0; i < queuedTracks.size(); i++) {
+                // tracks before the current position are only played again when repeating the queue
+                int distance = i >= position ? i - position : queuedTracks.size() + position - i;
+                distances.putIfAbsent(queuedTracks.get(i), distance);
+            }
+
+            // stable sort, tracks that are not in the queue keep their previous order
+            List<SpotifyTrackRedirect> remainingTracks = new ArrayList<>(pending);
+            remainingTracks.sort(Comparator.comparingInt(track -> distances.getOrDefault(track, Integer.MAX_VALUE)));
+            pending = new ArrayDeque<>(remainingTracks);
+        }
+
     }
+
 }
@@ -5,7 +5,7 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 import net.dv8tion.jda.api.entities.User;
-import net.robinfriedli.aiode.audio.AbstractSoftCachedPlayable;
+import net.robinfriedli.aiode.audio.AbstractCachedPlayable;
 import net.robinfriedli.aiode.audio.Playable;
 import net.robinfriedli.aiode.audio.youtube.HollowYouTubeVideo;
 import net.robinfriedli.aiode.audio.youtube.YouTubeService;
@@ -20,7 +20,7 @@ import org.hibernate.Session;
  * mp3 provided by Spotify using the $preview argument. Normally Spotify tracks are wrapped by {@link HollowYouTubeVideo}
  * and, usually asynchronously, redirected to YouTube, see {@link YouTubeService#redirectSpotify(HollowYouTubeVideo)}
  */
-public class PlayableTrackWrapper extends AbstractSoftCachedPlayable implements Playable {
+public class PlayableTrackWrapper extends AbstractCachedPlayable implements Playable {
 
     private final SpotifyTrack trackWrapper;
 
@@ -0,0 +1,287 @@
+package net.robinfriedli.aiode.audio.spotify;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.boot.Shutdownable;
+import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
+import net.robinfriedli.aiode.cron.tasks.RefreshSpotifyRedirectIndicesTask;
+import net.robinfriedli.aiode.entities.SpotifyRedirectIndex;
+import net.robinfriedli.aiode.entities.SpotifyRedirectIndexModificationLock;
+import net.robinfriedli.aiode.persist.StaticSessionProvider;
+
+/**
+ * Write-behind buffer for the {@link SpotifyRedirectIndex} modifications made by the {@link SpotifyRedirectService}.
+ * Instead of opening a session and running several queries for each redirected track, modifications are coalesced by
+ * spotify id and periodically flushed using batched JDBC statements. The {@link SpotifyRedirectIndexModificationLock}
+ * is checked once per flush; while the {@link RefreshSpotifyRedirectIndicesTask} holds the lock, only new indices are
+ * inserted and all other modifications are discarded.
+ */
+public class SpotifyRedirectIndexWriter implements Shutdownable {
+
+    private static final long FLUSH_INTERVAL_MILLIS = 5000;
+    private static final int FLUSH_THRESHOLD = 500;
+
+    private static final String INSERT_STATEMENT = "insert into spotify_redirect_index " +
+        "(spotify_id, youtube_id, filebroker_pk, soundcloud_uri, last_updated, last_used, fk_spotify_item_kind) " +
+        "values (?, ?, ?, ?, ?, ?, (select pk from spotify_item_kind where unique_id = ?))";
+    private static final String UPSERT_STATEMENT = INSERT_STATEMENT + " on conflict (spotify_id) do update set " +
+        "youtube_id = coalesce(excluded.youtube_id, spotify_redirect_index.youtube_id), " +
+        "filebroker_pk = coalesce(excluded.filebroker_pk, spotify_redirect_index.filebroker_pk), " +
+        "soundcloud_uri = coalesce(excluded.soundcloud_uri, spotify_redirect_index.soundcloud_uri), " +
+        "last_updated = excluded.last_updated, " +
+        "last_used = excluded.last_used";
+    private static final String INSERT_IF_ABSENT_STATEMENT = INSERT_STATEMENT + " on conflict (spotify_id) do nothing";
+    private static final String TOUCH_STATEMENT = "update spotify_redirect_index set last_used = ? where spotify_id = ?";
+    private static final String CLEAR_FILEBROKER_PK_STATEMENT = "update spotify_redirect_index set filebroker_pk = null where spotify_id = ?";
+    private static final String DELETE_STATEMENT = "delete from spotify_redirect_index where spotify_id = ?";
+
+    private static final SpotifyRedirectIndexWriter INSTANCE = new SpotifyRedirectIndexWriter();
+
+    static {
+        Aiode.SHUTDOWNABLES.add(INSTANCE);
+    }
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(new LoggingThreadFactory("spotify-redirect-index-writer"));
+
+    private volatile long lastFlushDurationMs;
+    private volatile int lastFlushSize;
+
+    private SpotifyRedirectIndexWriter() {
+        flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static SpotifyRedirectIndexWriter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Update the last used date of the existing index.
+     */
+    public void touch(String spotifyId) {
+        enqueue(spotifyId, PendingWrite::touch);
+    }
+
+    /**
+     * Insert or update the index with the values the spotify track has been redirected to, null values do not overwrite
+     * existing values.
+     */
+    public void put(String spotifyId, SpotifyTrackKind kind, @Nullable String youTubeId, @Nullable Long fileBrokerPk, @Nullable String soundCloudUri) {
+        enqueue(spotifyId, pendingWrite -> pendingWrite.put(kind, youTubeId, fileBrokerPk, soundCloudUri));
+    }
+
+    /**
+     * Remove the filebroker post from the existing index, e.g. if it has become unavailable.
+     */
+    public void clearFileBrokerPk(String spotifyId) {
+        enqueue(spotifyId, PendingWrite::clearFileBrokerPk);
+    }
+
+    public void delete(String spotifyId) {
+        enqueue(spotifyId, PendingWrite::delete);
+    }
+
+    /**
+     * @return the number of spotify ids with modifications that have not been flushed yet
+     */
+    public int getPendingCount() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * @return the duration of the last flush in milliseconds, including failed flushes
+     */
+    public long getLastFlushDurationMs() {
+        return lastFlushDurationMs;
+    }
+
+    /**
+     * @return the number of spotify ids the last flush attempted to write
+     */
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    @Override
+    public void shutdown(int delayMs) {
+        flushExecutor.shutdown();
+        try {
+            if (flushExecutor.awaitTermination(delayMs, TimeUnit.MILLISECONDS)) {
+                flush();
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void enqueue(String spotifyId, Consumer<PendingWrite> modification) {
+        pendingWrites.compute(spotifyId, (id, pendingWrite) -> {
+            PendingWrite write = pendingWrite != null ? pendingWrite : new PendingWrite(id);
+            modification.accept(write);
+            return write;
+        });
+
+        if (pendingWrites.size() >= FLUSH_THRESHOLD && flushRequested.compareAndSet(false, true) && !flushExecutor.isShutdown()) {
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    private synchronized void flush() {
+        flushRequested.set(false);
+        List<PendingWrite> writes = new ArrayList<>();
+        for (String spotifyId : pendingWrites.keySet()) {
+            PendingWrite write = pendingWrites.remove(spotifyId);
+            if (write != null) {
+                writes.add(write);
+            }
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        try {
+            StaticSessionProvider.consumeSession(session -> session.doWork(connection -> write(connection, writes)));
+        } catch (Exception e) {
+            logger.error(String.format("Failed to write %d SpotifyRedirectIndex modifications", writes.size()), e);
+        }
+
+        lastFlushDurationMs = System.currentTimeMillis() - startMillis;
+        lastFlushSize = writes.size();
+    }
+
+    private void write(Connection connection, List<PendingWrite> writes) throws SQLException {
+        boolean locked;
+        try (PreparedStatement lockQuery = connection.prepareStatement("select count(*) from spotify_redirect_index_modification_lock");
+             ResultSet resultSet = lockQuery.executeQuery()) {
+            locked = resultSet.next() && resultSet.getLong(1) > 0;
+        }
+
+        LocalDate now = LocalDate.now();
+        try (PreparedStatement deleteStatement = connection.prepareStatement(DELETE_STATEMENT);
+             PreparedStatement clearFileBrokerPkStatement = connection.prepareStatement(CLEAR_FILEBROKER_PK_STATEMENT);
+             PreparedStatement upsertStatement = connection.prepareStatement(locked ? INSERT_IF_ABSENT_STATEMENT : UPSERT_STATEMENT);
+             PreparedStatement touchStatement = connection.prepareStatement(TOUCH_STATEMENT)) {
+            for (PendingWrite write : writes) {
+                if (write.delete && !locked) {
+                    deleteStatement.setString(1, write.spotifyId);
+                    deleteStatement.addBatch();
+                }
+
+                if (write.clearFileBrokerPk && !locked) {
+                    clearFileBrokerPkStatement.setString(1, write.spotifyId);
+                    clearFileBrokerPkStatement.addBatch();
+                }
+
+                if (write.kind != null) {
+                    upsertStatement.setString(1, write.spotifyId);
+                    upsertStatement.setString(2, write.youTubeId);
+                    if (write.fileBrokerPk != null) {
+                        upsertStatement.setLong(3, write.fileBrokerPk);
+                    } else {
+                        upsertStatement.setNull(3, Types.BIGINT);
+                    }
+                    upsertStatement.setString(4, write.soundCloudUri);
+                    upsertStatement.setObject(5, now);
+                    upsertStatement.setObject(6, now);
+                    upsertStatement.setString(7, write.kind.name());
+                    upsertStatement.addBatch();
+                } else if (write.touched && !locked) {
+                    touchStatement.setObject(1, now);
+                    touchStatement.setString(2, write.spotifyId);
+                    touchStatement.addBatch();
+                }
+            }
+
+            deleteStatement.executeBatch();
+            clearFileBrokerPkStatement.executeBatch();
+            upsertStatement.executeBatch();
+            touchStatement.executeBatch();
+        }
+    }
+
+    /**
+     * All pending modifications for one spotify id, coalesced into the final state to write.
+     */
+    private static class PendingWrite {
+
+        private final String spotifyId;
+
+        @Nullable
+        private SpotifyTrackKind kind;
+        @Nullable
+        private String youTubeId;
+        @Nullable
+        private Long fileBrokerPk;
+        @Nullable
+        private String soundCloudUri;
+        private boolean touched;
+        private boolean clearFileBrokerPk;
+        private boolean delete;
+
+        private PendingWrite(String spotifyId) {
+            this.spotifyId = spotifyId;
+        }
+
+        private void touch() {
+            // touching a deleted index has no effect
+            touched = !delete;
+        }
+
+        private void put(SpotifyTrackKind kind, @Nullable String youTubeId, @Nullable Long fileBrokerPk, @Nullable String soundCloudUri) {
+            // if a delete is pending the index is deleted and then inserted again with the new values
+            this.kind = kind;
+            if (youTubeId != null) {
+                this.youTubeId = youTubeId;
+            }
+            if (fileBrokerPk != null) {
+                this.fileBrokerPk = fileBrokerPk;
+                clearFileBrokerPk = false;
+            }
+            if (soundCloudUri != null) {
+                this.soundCloudUri = soundCloudUri;
+            }
+        }
+
+        private void clearFileBrokerPk() {
+            if (!delete || kind != null) {
+                fileBrokerPk = null;
+                clearFileBrokerPk = true;
+            }
+        }
+
+        private void delete() {
+            kind = null;
+            youTubeId = null;
+            fileBrokerPk = null;
+            soundCloudUri = null;
+            touched = false;
+            clearFileBrokerPk = false;
+            delete = true;
+        }
+
+    }
+
+}
@@ -1,6 +1,7 @@
 package net.robinfriedli.aiode.audio.spotify;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.rmi.RemoteException;
 import java.time.LocalDate;
 import java.time.Month;
@@ -11,11 +12,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.function.BiConsumer;
+import java.util.concurrent.locks.Lock;
 
 import javax.annotation.Nullable;
 
@@ -33,14 +33,9 @@ import net.robinfriedli.aiode.audio.UrlPlayable;
 import net.robinfriedli.aiode.audio.youtube.HollowYouTubeVideo;
 import net.robinfriedli.aiode.audio.youtube.YouTubeService;
 import net.robinfriedli.aiode.audio.youtube.YouTubeVideo;
-import net.robinfriedli.aiode.boot.ShutdownableExecutorService;
-import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
 import net.robinfriedli.aiode.entities.SpotifyRedirectIndex;
-import net.robinfriedli.aiode.entities.SpotifyRedirectIndexModificationLock;
 import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
 import net.robinfriedli.aiode.filebroker.FilebrokerPlayableWrapper;
-import net.robinfriedli.aiode.function.HibernateInvoker;
-import net.robinfriedli.aiode.persist.StaticSessionProvider;
 import net.robinfriedli.filebroker.FilebrokerApi;
 import org.hibernate.Session;
 import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
@@ -52,32 +47,45 @@ import static net.robinfriedli.aiode.entities.SpotifyRedirectIndex.*;
 /**
  * Service that aids loading the corresponding YouTube video for a Spotify track since Spotify does not allow playback
  * of full tracks via its api. Checks if there is a persisted {@link SpotifyRedirectIndex} or loads the YouTube video
- * via {@link YouTubeService#redirectSpotify(HollowYouTubeVideo)} if not.
+ * via {@link YouTubeService#redirectSpotify(HollowYouTubeVideo)} if not. Since several tracks may be redirected
+ * concurrently, the number of concurrent requests is bounded per source, keeping the filebroker requests within the
+ * limits of the {@link FilebrokerApi} rate limiters and limiting the burst of YouTube API requests. Modifications of
+ * the index are written asynchronously by the {@link SpotifyRedirectIndexWriter}.
  */
 public class SpotifyRedirectService {
 
-    private static final ExecutorService SINGE_THREAD_EXECUTOR_SERVICE = Executors.newSingleThreadExecutor(new LoggingThreadFactory("spotify-redirect-service-pool"));
-
-    static {
-        Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(SINGE_THREAD_EXECUTOR_SERVICE));
-    }
+    private static final Semaphore FILEBROKER_PERMITS = new Semaphore(5);
+    private static final Semaphore SOUNDCLOUD_PERMITS = new Semaphore(4);
+    private static final Semaphore YOUTUBE_PERMITS = new Semaphore(4);
 
     private final FilebrokerApi filebrokerApi;
-    private final HibernateInvoker invoker;
+    private final SpotifyRedirectIndexWriter indexWriter;
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Session session;
     private final YouTubeService youTubeService;
 
     public SpotifyRedirectService(FilebrokerApi filebrokerApi, Session session, YouTubeService youTubeService) {
         this.filebrokerApi = filebrokerApi;
-        invoker = HibernateInvoker.create();
+        indexWriter = SpotifyRedirectIndexWriter.get();
         this.session = session;
         this.youTubeService = youTubeService;
     }
 
-    @SuppressWarnings("SynchronizationOnLocalVariableOrMethodParameter")
     public void redirectTrack(SpotifyTrackRedirect spotifyTrackRedirect) throws IOException {
-        synchronized (spotifyTrackRedirect) {
+        redirectTrack(spotifyTrackRedirect, null);
+    }
+
+    /**
+     * Redirect the provided track to a filebroker post, soundcloud track or YouTube video.
+     *
+     * @param spotifyTrackRedirect the track to redirect
+     * @param prefetchedIndices    the persisted indices already queried for the batch of tracks the provided track belongs
+     *                             to, mapped by spotify id, or null to query the index for this track
+     */
+    public void redirectTrack(SpotifyTrackRedirect spotifyTrackRedirect, @Nullable Map<String, SpotifyRedirectIndex> prefetchedIndices) throws IOException {
+        Lock lock = spotifyTrackRedirect.getLock();
+        lock.lock();
+        try {
             if (spotifyTrackRedirect.isDone()) {
                 return;
             }
@@ -86,27 +94,25 @@ public class SpotifyRedirectService {
                 spotifyTrackRedirect.markLoading();
                 SpotifyTrack spotifyTrack = spotifyTrackRedirect.getSpotifyTrack();
                 String spotifyTrackId = spotifyTrack.getId();
-                Optional<SpotifyRedirectIndex> persistedSpotifyRedirectIndex;
-                if (!Strings.isNullOrEmpty(spotifyTrackId)) {
-                    persistedSpotifyRedirectIndex = queryExistingIndex(session, spotifyTrackId);
-                } else {
-                    persistedSpotifyRedirectIndex = Optional.empty();
-                }
+                Optional<SpotifyRedirectIndex> persistedSpotifyRedirectIndex = findExistingIndex(spotifyTrackId, prefetchedIndices);
 
                 if (persistedSpotifyRedirectIndex.isPresent() && persistedSpotifyRedirectIndex.get().getFileBrokerPk() != null) {
                     Long fileBrokerPk = persistedSpotifyRedirectIndex.get().getFileBrokerPk();
+                    FILEBROKER_PERMITS.acquire();
                     try {
                         FilebrokerApi.PostDetailed post = filebrokerApi.getPostAsync(fileBrokerPk, null, null).get(10, TimeUnit.SECONDS);
                         spotifyTrackRedirect.complete(new FilebrokerPlayableWrapper(new FilebrokerApi.Post(post)));
-                        runUpdateTask(spotifyTrackId, (index, session) -> index.setLastUsed(LocalDate.now()));
+                        indexWriter.touch(spotifyTrackId);
                         return;
                     } catch (ExecutionException e) {
                         if (e.getCause() instanceof FilebrokerApi.InvalidHttpResponseException filebrokerApiException && filebrokerApiException.getStatus() == 403) {
                             logger.warn("Filebroker post for redirected spotify track {} has become unavailable", spotifyTrackId);
-                            runUpdateTask(spotifyTrackId, (track, session) -> track.setFileBrokerPk(null));
+                            indexWriter.clearFileBrokerPk(spotifyTrackId);
                         } else {
                             logger.error("Failed to load filebroker post for redirected spotify track " + spotifyTrackId, e);
                         }
+                    } finally {
+                        FILEBROKER_PERMITS.release();
                     }
                 }
 
@@ -114,11 +120,14 @@ public class SpotifyRedirectService {
                 if (post == null) {
                     AudioTrack soundCloudTrack = null;
                     if (persistedSpotifyRedirectIndex.isPresent() && !Strings.isNullOrEmpty(persistedSpotifyRedirectIndex.get().getSoundCloudUri())) {
+                        SOUNDCLOUD_PERMITS.acquire();
                         try {
                             AudioTrackLoader audioTrackLoader = new AudioTrackLoader(Aiode.get().getAudioManager().getPlayerManager());
                             soundCloudTrack = (AudioTrack) audioTrackLoader.loadByIdentifier(persistedSpotifyRedirectIndex.get().getSoundCloudUri());
                         } catch (Exception e) {
                             logger.error("Failed to load soundcloud track with uri {} for track {}", persistedSpotifyRedirectIndex.get().getSoundCloudUri(), spotifyTrackId, e);
+                        } finally {
+                            SOUNDCLOUD_PERMITS.release();
                         }
                     }
                     if (soundCloudTrack == null) {
@@ -127,66 +136,18 @@ public class SpotifyRedirectService {
                             soundCloudTrack = findSoundCloudTrackForSpotifyTrack(spotifyTrack);
                         }
                     }
-                    redirectTrackToYouTube(spotifyTrackRedirect.getYouTubeVideo());
+                    redirectTrackToYouTube(spotifyTrackRedirect.getYouTubeVideo(), prefetchedIndices);
                     if (soundCloudTrack == null) {
                         spotifyTrackRedirect.complete(null);
                     } else {
-                        String soundCloudUri = soundCloudTrack.getInfo().uri;
-                        if (persistedSpotifyRedirectIndex.isPresent()) {
-                            runUpdateTask(spotifyTrackId, (index, session) -> {
-                                LocalDate now = LocalDate.now();
-                                index.setLastUsed(now);
-                                index.setLastUpdated(now);
-                                index.setSoundCloudUri(soundCloudUri);
-                            });
-                        } else {
-                            SINGE_THREAD_EXECUTOR_SERVICE.execute(() -> StaticSessionProvider.consumeSession(otherThreadSession -> {
-                                try {
-                                    SpotifyRedirectIndex spotifyRedirectIndex = new SpotifyRedirectIndex(spotifyTrack.getId(), null, null, soundCloudUri, spotifyTrack.getKind(), otherThreadSession);
-                                    // check again if the index was not created by other thread
-                                    Optional<SpotifyRedirectIndex> createdIndex = queryExistingIndex(otherThreadSession, spotifyTrackId);
-                                    if (createdIndex.isEmpty()) {
-                                        invoker.invoke(() -> otherThreadSession.persist(spotifyRedirectIndex));
-                                    } else {
-                                        runUpdateTask(spotifyTrackId, (index, session) -> {
-                                            LocalDate now = LocalDate.now();
-                                            index.setLastUsed(now);
-                                            index.setLastUpdated(now);
-                                            index.setSoundCloudUri(soundCloudUri);
-                                        });
-                                    }
-                                } catch (Exception e) {
-                                    logger.error("Exception while creating SpotifyRedirectIndex", e);
-                                }
-                            }));
-                        }
+                        indexWriter.put(spotifyTrackId, spotifyTrack.getKind(), null, null, soundCloudTrack.getInfo().uri);
                         UrlPlayable soundCloudPlayable = new UrlPlayable(soundCloudTrack);
                         spotifyTrackRedirect.complete(soundCloudPlayable);
                     }
                     return;
                 }
 
-                if (persistedSpotifyRedirectIndex.isPresent()) {
-                    runUpdateTask(spotifyTrackId, (index, session) -> {
-                        LocalDate now = LocalDate.now();
-                        index.setLastUsed(now);
-                        index.setLastUpdated(now);
-                        index.setFileBrokerPk(post.getPk());
-                    });
-                } else {
-                    SINGE_THREAD_EXECUTOR_SERVICE.execute(() -> StaticSessionProvider.consumeSession(otherThreadSession -> {
-                        try {
-                            SpotifyRedirectIndex spotifyRedirectIndex = new SpotifyRedirectIndex(spotifyTrack.getId(), null, post.getPk(), null, spotifyTrack.getKind(), otherThreadSession);
-                            // check again if the index was not created by other thread
-                            if (queryExistingIndex(otherThreadSession, spotifyTrackId).isEmpty()) {
-                                invoker.invoke(() -> otherThreadSession.persist(spotifyRedirectIndex));
-                            }
-                        } catch (Exception e) {
-                            logger.error("Exception while creating SpotifyRedirectIndex", e);
-                        }
-                    }));
-                }
-
+                indexWriter.put(spotifyTrackId, spotifyTrack.getKind(), null, post.getPk(), null);
                 spotifyTrackRedirect.complete(new FilebrokerPlayableWrapper(post));
             } catch (InterruptedException | TimeoutException e) {
                 throw new RemoteException("Failed to load track redirect for spotify track " + spotifyTrackRedirect.getSpotifyTrack().getId(), e);
@@ -195,6 +156,8 @@ public class SpotifyRedirectService {
                     spotifyTrackRedirect.complete(null);
                 }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -230,12 +193,15 @@ public class SpotifyRedirectService {
         FilebrokerApi.SearchResult searchResult;
         List<FilebrokerApi.Post> posts;
 
+        FILEBROKER_PERMITS.acquire();
         try {
             searchResult = filebrokerApi.searchPostsAsync(filebrokerQueryBuilder.toString(), null, null).get(10, TimeUnit.SECONDS);
             posts = searchResult.getPosts();
         } catch (ExecutionException e) {
             logger.error("Failed to execute filebroker query to redirect spotify track " + spotifyTrack.getId(), e);
             posts = null;
+        } finally {
+            FILEBROKER_PERMITS.release();
         }
 
         if (posts == null || posts.isEmpty()) {
@@ -280,8 +246,20 @@ public class SpotifyRedirectService {
             return null;
         }
 
-        AudioTrackLoader audioTrackLoader = new AudioTrackLoader(Aiode.get().getAudioManager().getPlayerManager());
-        AudioItem audioItem = audioTrackLoader.loadByIdentifier(String.format("scsearch:%s %s", trackName, artist));
+        try {
+            SOUNDCLOUD_PERMITS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        AudioItem audioItem;
+        try {
+            AudioTrackLoader audioTrackLoader = new AudioTrackLoader(Aiode.get().getAudioManager().getPlayerManager());
+            audioItem = audioTrackLoader.loadByIdentifier(String.format("scsearch:%s %s", trackName, artist));
+        } finally {
+            SOUNDCLOUD_PERMITS.release();
+        }
         if (!(audioItem instanceof AudioPlaylist audioPlaylist)) {
             return null;
         }
@@ -315,6 +293,10 @@ public class SpotifyRedirectService {
     }
 
     public void redirectTrackToYouTube(HollowYouTubeVideo youTubeVideo) throws IOException {
+        redirectTrackToYouTube(youTubeVideo, null);
+    }
+
+    public void redirectTrackToYouTube(HollowYouTubeVideo youTubeVideo, @Nullable Map<String, SpotifyRedirectIndex> prefetchedIndices) throws IOException {
         SpotifyTrack spotifyTrack = youTubeVideo.getRedirectedSpotifyTrack();
 
         if (spotifyTrack == null) {
@@ -326,15 +308,23 @@ public class SpotifyRedirectService {
             return;
         }
 
-        youTubeVideo.markLoading();
-        String spotifyTrackId = spotifyTrack.getId();
-        Optional<SpotifyRedirectIndex> persistedSpotifyRedirectIndex;
-        if (!Strings.isNullOrEmpty(spotifyTrackId)) {
-            persistedSpotifyRedirectIndex = queryExistingIndex(session, spotifyTrackId);
-        } else {
-            persistedSpotifyRedirectIndex = Optional.empty();
+        acquireYouTubePermit();
+        try {
+            // check again as the video might have been loaded while waiting for a permit
+            if (youTubeVideo.isDone()) {
+                return;
+            }
+
+            youTubeVideo.markLoading();
+            Optional<SpotifyRedirectIndex> persistedSpotifyRedirectIndex = findExistingIndex(spotifyTrack.getId(), prefetchedIndices);
+            redirectTrackToYouTube(youTubeVideo, spotifyTrack, persistedSpotifyRedirectIndex);
+        } finally {
+            YOUTUBE_PERMITS.release();
         }
+    }
 
+    private void redirectTrackToYouTube(HollowYouTubeVideo youTubeVideo, SpotifyTrack spotifyTrack, Optional<SpotifyRedirectIndex> persistedSpotifyRedirectIndex) throws IOException {
+        String spotifyTrackId = spotifyTrack.getId();
         if (persistedSpotifyRedirectIndex.isPresent() && persistedSpotifyRedirectIndex.get().getYouTubeId() != null) {
             SpotifyRedirectIndex spotifyRedirectIndex = persistedSpotifyRedirectIndex.get();
             YouTubeVideo video = youTubeService.getVideoForId(spotifyRedirectIndex.getYouTubeId());
@@ -349,55 +339,40 @@ public class SpotifyRedirectService {
 
                 youTubeVideo.setTitle(spotifyTrack.getDisplay());
 
-                runUpdateTask(spotifyTrackId, (index, session) -> index.setLastUsed(LocalDate.now()));
+                indexWriter.touch(spotifyTrackId);
                 return;
             } else {
-                runUpdateTask(spotifyTrackId, (index, session) -> session.remove(index));
+                indexWriter.delete(spotifyTrackId);
             }
         }
 
         youTubeService.redirectSpotify(youTubeVideo);
         if (!youTubeVideo.isCanceled() && !Strings.isNullOrEmpty(spotifyTrack.getId())) {
-            if (persistedSpotifyRedirectIndex.isPresent()) {
-                runUpdateTask(spotifyTrackId, (index, session) -> {
-                    LocalDate now = LocalDate.now();
-                    index.setLastUsed(now);
-                    index.setLastUpdated(now);
-                    try {
-                        index.setYouTubeId(youTubeVideo.getVideoId());
-                    } catch (UnavailableResourceException e) {
-                        logger.warn("Tried creating a SpotifyRedirectIndex for an unavailable Track");
-                    }
-                });
-            } else {
-                SINGE_THREAD_EXECUTOR_SERVICE.execute(() -> StaticSessionProvider.consumeSession(otherThreadSession -> {
-                    try {
-                        String videoId = youTubeVideo.getVideoId();
-                        SpotifyRedirectIndex spotifyRedirectIndex = new SpotifyRedirectIndex(spotifyTrack.getId(), videoId, null, null, spotifyTrack.getKind(), otherThreadSession);
-                        // check again if the index was not created by other thread
-                        if (queryExistingIndex(otherThreadSession, spotifyTrackId).isEmpty()) {
-                            invoker.invoke(() -> otherThreadSession.persist(spotifyRedirectIndex));
-                        }
-                    } catch (UnavailableResourceException e) {
-                        logger.warn("Tried creating a SpotifyRedirectIndex for an unavailable Track");
-                    } catch (Exception e) {
-                        logger.error("Exception while creating SpotifyRedirectIndex", e);
-                    }
-                }));
+            try {
+                indexWriter.put(spotifyTrackId, spotifyTrack.getKind(), youTubeVideo.getVideoId(), null, null);
+            } catch (UnavailableResourceException e) {
+                logger.warn("Tried creating a SpotifyRedirectIndex for an unavailable Track");
             }
         }
     }
 
-    private void runUpdateTask(String spotifyId, BiConsumer<SpotifyRedirectIndex, Session> sessionConsumer) {
-        SINGE_THREAD_EXECUTOR_SERVICE.execute(() -> StaticSessionProvider.consumeSession(session -> {
-            Long modificationLocks = session
-                .createQuery("select count(*) from " + SpotifyRedirectIndexModificationLock.class.getName(), Long.class)
-                .uniqueResult();
-            if (modificationLocks == 0) {
-                Optional<SpotifyRedirectIndex> foundIndex = queryExistingIndex(session, spotifyId);
-                foundIndex.ifPresent(spotifyRedirectIndex -> sessionConsumer.accept(spotifyRedirectIndex, session));
-            }
-        }));
+    private Optional<SpotifyRedirectIndex> findExistingIndex(String spotifyTrackId, @Nullable Map<String, SpotifyRedirectIndex> prefetchedIndices) {
+        if (Strings.isNullOrEmpty(spotifyTrackId)) {
+            return Optional.empty();
+        } else if (prefetchedIndices != null) {
+            return Optional.ofNullable(prefetchedIndices.get(spotifyTrackId));
+        } else {
+            return queryExistingIndex(session, spotifyTrackId);
+        }
+    }
+
+    private void acquireYouTubePermit() throws InterruptedIOException {
+        try {
+            YOUTUBE_PERMITS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to redirect track to YouTube");
+        }
     }
 
 }
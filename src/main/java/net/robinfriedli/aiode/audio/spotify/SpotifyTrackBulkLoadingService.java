@@ -4,46 +4,90 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.google.common.collect.Lists;
+import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.function.CheckedFunction;
 import net.robinfriedli.aiode.function.modes.SpotifyAuthorizationMode;
 import net.robinfriedli.aiode.util.BulkOperationService;
 import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
 import se.michaelthelin.spotify.model_objects.credentials.ClientCredentials;
 
 /**
  * BulkOperationService extension that loads 50 Spotify tracks per request and performs the mapped action for each loaded
  * track. Note that {@link BulkOperationService#perform()} must be called with Spotify Credentials in this case, see
- * {@link SpotifyAuthorizationMode}.
+ * {@link SpotifyAuthorizationMode}. Up to aiode.preferences.spotify_bulk_load_parallelism requests are executed
+ * concurrently. When Spotify responds with 429 all requests of this service are paused for the duration specified by
+ * the Retry-After header before retrying.
  */
 public class SpotifyTrackBulkLoadingService extends BulkOperationService<SpotifyTrackBulkLoadingService.SpotifyItem, SpotifyTrack> {
 
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int MAX_RATE_LIMIT_RETRIES = 3;
+
     public SpotifyTrackBulkLoadingService(SpotifyApi spotifyApi) {
         this(spotifyApi, false);
     }
 
     public SpotifyTrackBulkLoadingService(SpotifyApi spotifyApi, boolean acceptNullValues) {
-        super(50, new CheckedFunction<>() {
+        super(50, getParallelism(), new CheckedFunction<>() {
 
             // time of first request, spotify credentials expire after and hour so if the task takes too long the credentials have to be refreshed
             private final LocalDateTime conceptionTime = LocalDateTime.now();
             private final SpotifyService spotifyService = new SpotifyService(spotifyApi);
             private LocalDateTime timeToRefreshCredentials = conceptionTime.plusMinutes(50);
+            // guards refreshing the credentials, which sends a request, without pinning the carrier of a virtual thread
+            private final Lock credentialsLock = new ReentrantLock();
+            // shared by all concurrently loaded batches, no requests are sent before this time after receiving a 429
+            private volatile long pausedUntilMillis;
 
             @Override
             public List<Pair<SpotifyItem, SpotifyTrack>> doApply(List<SpotifyItem> ids) throws Exception {
-                LocalDateTime now = LocalDateTime.now();
-                if (now.compareTo(timeToRefreshCredentials) > 0) {
-                    ClientCredentials credentials = spotifyApi.clientCredentials().build().execute();
-                    spotifyApi.setAccessToken(credentials.getAccessToken());
-                    timeToRefreshCredentials = now.plusMinutes(50);
+                refreshCredentialsIfExpired();
+
+                int attempt = 0;
+                while (true) {
+                    long pauseMillis = pausedUntilMillis - System.currentTimeMillis();
+                    if (pauseMillis > 0) {
+                        Thread.sleep(pauseMillis);
+                    }
+
+                    try {
+                        return load(ids);
+                    } catch (TooManyRequestsException e) {
+                        if (++attempt > MAX_RATE_LIMIT_RETRIES) {
+                            throw e;
+                        }
+                        // Retry-After is specified in seconds, wait at least one second if it is missing
+                        long retryAfterMillis = TimeUnit.SECONDS.toMillis(Math.max(e.getRetryAfter(), 1));
+                        pausedUntilMillis = Math.max(pausedUntilMillis, System.currentTimeMillis() + retryAfterMillis);
+                    }
                 }
+            }
 
+            private void refreshCredentialsIfExpired() throws Exception {
+                credentialsLock.lock();
+                try {
+                    LocalDateTime now = LocalDateTime.now();
+                    if (now.compareTo(timeToRefreshCredentials) > 0) {
+                        ClientCredentials credentials = spotifyApi.clientCredentials().build().execute();
+                        spotifyApi.setAccessToken(credentials.getAccessToken());
+                        timeToRefreshCredentials = now.plusMinutes(50);
+                    }
+                } finally {
+                    credentialsLock.unlock();
+                }
+            }
+
+            private List<Pair<SpotifyItem, SpotifyTrack>> load(List<SpotifyItem> ids) throws Exception {
                 Map<SpotifyTrackKind, List<SpotifyItem>> kindIdMap = ids.stream().collect(Collectors.groupingBy(SpotifyItem::getKind));
                 List<Pair<SpotifyItem, SpotifyTrack>> keyValuePairs = Lists.newArrayList();
 
@@ -72,6 +116,11 @@ public class SpotifyTrackBulkLoadingService extends BulkOperationService<Spotify
         });
     }
 
+    private static int getParallelism() {
+        Integer parallelism = Aiode.get().getSpringPropertiesConfig().getApplicationProperty(Integer.class, "aiode.preferences.spotify_bulk_load_parallelism");
+        return Objects.requireNonNullElse(parallelism, DEFAULT_PARALLELISM);
+    }
+
     public static SpotifyItem createItem(String id, SpotifyTrackKind kind) {
         return new SpotifyItem(id, kind);
     }
@@ -6,11 +6,14 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.base.Strings;
 import net.dv8tion.jda.api.entities.User;
 import net.robinfriedli.aiode.Aiode;
-import net.robinfriedli.aiode.audio.AbstractSoftCachedPlayable;
+import net.robinfriedli.aiode.audio.AbstractCachedPlayable;
 import net.robinfriedli.aiode.audio.Playable;
 import net.robinfriedli.aiode.audio.UrlPlayable;
 import net.robinfriedli.aiode.audio.youtube.HollowYouTubeVideo;
@@ -29,7 +32,7 @@ import net.robinfriedli.aiode.persist.StaticSessionProvider;
 import org.hibernate.Session;
 import org.jetbrains.annotations.Nullable;
 
-public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
+public class SpotifyTrackRedirect extends AbstractCachedPlayable {
 
     private final SpotifyTrack spotifyTrack;
 
@@ -37,6 +40,11 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
     private final CompletableFuture<UrlPlayable> soundCloudTrack;
     private final HollowYouTubeVideo youTubeVideo;
 
+    // guards loading the redirect, not using the monitor of this object since loading blocks on remote calls, which would
+    // pin the carrier of a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition completed = lock.newCondition();
+
     private volatile boolean loading = false;
     private volatile boolean canceled = false;
 
@@ -80,12 +88,19 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
         youTubeVideo.cancel();
     }
 
+    /**
+     * @return the lock that must be held while loading the redirect and calling {@link #complete(Playable)}
+     */
+    public Lock getLock() {
+        return lock;
+    }
+
     public boolean isRedirectedToFilebroker() {
         return filebrokerPost.isDone() && !filebrokerPost.isCancelled() && !filebrokerPost.isCompletedExceptionally();
     }
 
     /**
-     * Complete the redirect and notify threads awaiting its completion, current thread must hold this object's monitor.
+     * Complete the redirect and notify threads awaiting its completion, current thread must hold the {@link #getLock()}.
      * Sets the redirected filebroker post or soundcloud track to the provided one or cancels it if null, the redirected YouTube video is expected
      * to be loaded by completing the {@link HollowYouTubeVideo} if there is no filebroker post or soundcloud track present.
      *
@@ -109,7 +124,7 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
         }
 
         loading = false;
-        notifyAll();
+        completed.signalAll();
     }
 
     public void markLoading() {
@@ -164,13 +179,14 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
             return applyToEither(function);
         }
 
-        synchronized (this) {
+        lock.lock();
+        try {
             if (isDone()) {
                 return applyToEither(function);
             }
 
             try {
-                wait(unit.toMillis(timeOut));
+                completed.await(timeOut, unit);
                 if (isDone()) {
                     return applyToEither(function);
                 } else {
@@ -179,6 +195,8 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -297,7 +315,8 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
     @Override
     public Playable fetch() {
         if (!isDone() && !loading) {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (isDone() || loading) {
                     return this;
                 }
@@ -307,6 +326,8 @@ public class SpotifyTrackRedirect extends AbstractSoftCachedPlayable {
                     SpotifyRedirectService spotifyRedirectService = new SpotifyRedirectService(Aiode.get().getFilebrokerApi(), session, Aiode.get().getAudioManager().getYouTubeService());
                     spotifyRedirectService.redirectTrack(this);
                 }));
+            } finally {
+                lock.unlock();
             }
         }
         return this;
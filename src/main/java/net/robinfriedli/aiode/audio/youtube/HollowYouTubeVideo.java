@@ -10,7 +10,7 @@ import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
 
 import net.robinfriedli.aiode.Aiode;
-import net.robinfriedli.aiode.audio.AbstractSoftCachedPlayable;
+import net.robinfriedli.aiode.audio.AbstractCachedPlayable;
 import net.robinfriedli.aiode.audio.Playable;
 import net.robinfriedli.aiode.audio.spotify.SpotifyRedirectService;
 import net.robinfriedli.aiode.audio.spotify.SpotifyTrack;
@@ -24,7 +24,7 @@ import org.hibernate.Session;
  * YouTube video when the data has not been loaded yet. This is used for YouTube playlist elements or Spotify tracks that
  * need to be redirected.
  */
-public class HollowYouTubeVideo extends AbstractSoftCachedPlayable implements YouTubeVideo {
+public class HollowYouTubeVideo extends AbstractCachedPlayable implements YouTubeVideo {
 
     private final CompletableFuture<String> title;
     private final CompletableFuture<String> id;
@@ -4,13 +4,13 @@ import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
-import net.robinfriedli.aiode.audio.AbstractSoftCachedPlayable;
+import net.robinfriedli.aiode.audio.AbstractCachedPlayable;
 import net.robinfriedli.aiode.audio.spotify.SpotifyTrack;
 
 /**
  * Represents a fully loaded YouTube video
  */
-public class YouTubeVideoImpl extends AbstractSoftCachedPlayable implements YouTubeVideo {
+public class YouTubeVideoImpl extends AbstractCachedPlayable implements YouTubeVideo {
 
     private final String title;
     private final String id;
@@ -8,11 +8,13 @@ import net.dv8tion.jda.api.JDA;
 import net.robinfriedli.aiode.boot.StartupTask;
 import net.robinfriedli.aiode.command.CommandManager;
 import net.robinfriedli.aiode.command.argument.ArgumentContributionDelegate;
+import net.robinfriedli.aiode.command.argument.ArgumentScripts;
 import net.robinfriedli.aiode.entities.xml.ArgumentContribution;
 import net.robinfriedli.aiode.entities.xml.CommandHierarchyNode;
 import net.robinfriedli.aiode.entities.xml.StartupTaskContribution;
 import net.robinfriedli.jxp.api.XmlElement;
 import net.robinfriedli.jxp.persist.Context;
+import org.codehaus.groovy.control.CompilationFailedException;
 import org.jetbrains.annotations.Nullable;
 
 @SuppressWarnings("unchecked")
@@ -42,6 +44,7 @@ public class InitialiseCommandContributionsTask implements StartupTask {
 
                 validateReferencedArguments(commandHierarchyNode, argumentContribution, excludedArguments);
                 validateReferencedArguments(commandHierarchyNode, argumentContribution, requiredArguments);
+                compileScripts(argumentContribution);
             }
         }
     }
@@ -65,6 +68,17 @@ public class InitialiseCommandContributionsTask implements StartupTask {
         }
     }
 
+    private void compileScripts(ArgumentContribution argumentContribution) {
+        try {
+            ArgumentScripts.compile(argumentContribution);
+        } catch (CompilationFailedException e) {
+            throw new IllegalStateException(
+                String.format("Invalid command configuration. Could not compile groovy scripts of argument %s.", argumentContribution.getId()),
+                e
+            );
+        }
+    }
+
     @Override
     public StartupTaskContribution getContribution() {
         return contribution;
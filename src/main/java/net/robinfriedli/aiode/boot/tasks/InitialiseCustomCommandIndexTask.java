@@ -0,0 +1,34 @@
+package net.robinfriedli.aiode.boot.tasks;
+
+import net.dv8tion.jda.api.JDA;
+import net.robinfriedli.aiode.boot.StartupTask;
+import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
+import net.robinfriedli.aiode.command.CustomCommandIndex;
+import net.robinfriedli.aiode.entities.xml.StartupTaskContribution;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Loads the names of all presets and scripts into the {@link CustomCommandIndex} before listeners are registered.
+ */
+public class InitialiseCustomCommandIndexTask implements StartupTask {
+
+    private final CustomCommandIndex customCommandIndex;
+    private final HibernateComponent hibernateComponent;
+    private final StartupTaskContribution contribution;
+
+    public InitialiseCustomCommandIndexTask(CustomCommandIndex customCommandIndex, HibernateComponent hibernateComponent, StartupTaskContribution contribution) {
+        this.customCommandIndex = customCommandIndex;
+        this.hibernateComponent = hibernateComponent;
+        this.contribution = contribution;
+    }
+
+    @Override
+    public void perform(@Nullable JDA shard) {
+        hibernateComponent.consumeSession(customCommandIndex::initialize);
+    }
+
+    @Override
+    public StartupTaskContribution getContribution() {
+        return contribution;
+    }
+}
@@ -1,6 +1,8 @@
 package net.robinfriedli.aiode.boot.tasks;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +15,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import groovy.lang.Tuple2;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
@@ -23,13 +27,14 @@ import net.robinfriedli.aiode.boot.StartupTask;
 import net.robinfriedli.aiode.command.CommandManager;
 import net.robinfriedli.aiode.concurrent.CompletableFutures;
 import net.robinfriedli.aiode.entities.Preset;
+import net.robinfriedli.aiode.entities.SlashCommandFingerprint;
 import net.robinfriedli.aiode.entities.xml.CommandContribution;
 import net.robinfriedli.aiode.entities.xml.StartupTaskContribution;
 import net.robinfriedli.aiode.function.HibernateInvoker;
 import net.robinfriedli.aiode.function.RateLimitInvoker;
-import net.robinfriedli.aiode.persist.qb.PredicateBuilder;
 import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
 import net.robinfriedli.exec.Mode;
+import org.hibernate.Session;
 import org.jetbrains.annotations.Nullable;
 
 public class UpsertSlashCommandsTask implements StartupTask {
@@ -37,6 +42,11 @@ public class UpsertSlashCommandsTask implements StartupTask {
     public static final RateLimitInvoker SLASH_COMMAND_UPDATE_INVOKER = new RateLimitInvoker("slash_command_update", 2, Duration.ofSeconds(1), Duration.ofMinutes(300));
     public static final Pattern SLASH_COMMAND_NAME_PATTERN = Pattern.compile("^[-_\\p{L}\\p{N}]{1,32}$");
 
+    private static final String UPSERT_FINGERPRINT_STATEMENT = "insert into slash_command_fingerprint " +
+        "(application_id, guild_id, fingerprint, last_updated) values (?, ?, ?, ?) " +
+        "on conflict (application_id, guild_id) do update set fingerprint = excluded.fingerprint, last_updated = excluded.last_updated";
+    private static final int GUILD_ID_CHUNK_SIZE = 1000;
+
     private static boolean GLOBAL_LIST_UPDATED = false;
 
     private final HibernateInvoker hibernateInvoker = new HibernateInvoker();
@@ -70,84 +80,168 @@ public class UpsertSlashCommandsTask implements StartupTask {
 
         Objects.requireNonNull(shard);
         logger.info("Updating slash commands for shard " + shard);
+        String applicationId = shard.getSelfUser().getApplicationId();
+        Map<String, SlashCommandFingerprint> fingerprints = hibernateInvoker.invokeFunction(session -> loadFingerprints(session, applicationId));
+
         if (!GLOBAL_LIST_UPDATED) {
             List<CommandContribution> commandContributions = commandManager.getCommandContributions();
             List<CommandData> slashCommandData = commandContributions.stream().map(CommandContribution::buildSlashCommandData).collect(Collectors.toList());
-            shard.updateCommands().addCommands(slashCommandData).queue();
+            String fingerprint = computeFingerprint(slashCommandData);
+            SlashCommandFingerprint storedFingerprint = fingerprints.get(SlashCommandFingerprint.GLOBAL_GUILD_ID);
+            if (storedFingerprint == null || !fingerprint.equals(storedFingerprint.getFingerprint())) {
+                CompletableFuture<List<Command>> future = shard.updateCommands().addCommands(slashCommandData).submit();
+                CompletableFutures.thenAccept(future, commands -> hibernateInvoker.invokeConsumer(futureSession ->
+                    saveFingerprint(futureSession, applicationId, SlashCommandFingerprint.GLOBAL_GUILD_ID, fingerprint)
+                ));
+            } else {
+                logger.info("Global slash commands unchanged, skipping update");
+            }
             GLOBAL_LIST_UPDATED = true;
         }
 
-        hibernateInvoker.invokeConsumer(session -> {
+        List<GuildCommandUpdate> guildCommandUpdates = hibernateInvoker.invokeFunction(session -> {
+            Map<String, List<Preset>> presetsByGuild = loadPresets(session, shard);
+            List<GuildCommandUpdate> updates = Lists.newArrayList();
             for (Guild guild : shard.getGuilds()) {
-                PredicateBuilder presetGuildIdCondition = (cb, root, subQueryFactory) -> cb.equal(root.get("guildId"), guild.getId());
-                Long guildPresetCount = queryBuilderFactory
-                    .count(Preset.class)
-                    .where(presetGuildIdCondition)
-                    .build(session)
-                    .getSingleResult();
-
-                if (guildPresetCount == 0) {
+                List<Preset> presets = presetsByGuild.getOrDefault(guild.getId(), List.of());
+                SlashCommandFingerprint storedFingerprint = fingerprints.get(guild.getId());
+                if (presets.isEmpty() && storedFingerprint == null) {
                     continue;
                 }
 
-                SLASH_COMMAND_UPDATE_INVOKER.invokeLimited(Mode.getEmpty(), () -> hibernateInvoker.invokeConsumer(guildSession -> {
-                    List<Preset> presets = queryBuilderFactory
-                        .find(Preset.class)
-                        .where(presetGuildIdCondition)
-                        .build(guildSession)
-                        .getResultList();
-
-                    List<Tuple2<CommandData, Preset>> presetCommandData = presets
-                        .stream()
-                        .filter(p -> SLASH_COMMAND_NAME_PATTERN.matcher(p.getIdentifier()).matches())
-                        .map(p -> Tuple2.tuple(p.buildSlashCommandData(commandManager), p))
-                        .toList();
-
-                    List<CommandData> commandsToAdd = Lists.newArrayList();
-                    Map<String, Preset> mappedPresets = new HashMap<>();
-                    for (Tuple2<CommandData, Preset> presetCommandDatum : presetCommandData) {
-                        CommandData commandData = presetCommandDatum.getV1();
-                        Preset preset = presetCommandDatum.getV2();
-                        if (mappedPresets.putIfAbsent(commandData.getName(), preset) != null) {
+                List<Tuple2<CommandData, Preset>> presetCommandData = presets
+                    .stream()
+                    .filter(p -> SLASH_COMMAND_NAME_PATTERN.matcher(p.getIdentifier()).matches())
+                    .map(p -> Tuple2.tuple(p.buildSlashCommandData(commandManager), p))
+                    .toList();
+
+                List<CommandData> commandsToAdd = Lists.newArrayList();
+                Map<String, Long> mappedPresetPks = new HashMap<>();
+                for (Tuple2<CommandData, Preset> presetCommandDatum : presetCommandData) {
+                    CommandData commandData = presetCommandDatum.getV1();
+                    Preset preset = presetCommandDatum.getV2();
+                    if (mappedPresetPks.putIfAbsent(commandData.getName(), preset.getPk()) != null) {
+                        logger.warn(String.format(
+                            "Encountered presets with duplicate slash command identifier '%s' on guild '%s'. Going to delete preset pk %d",
+                            commandData.getName(),
+                            guild,
+                            preset.getPk()
+                        ));
+                        session.remove(preset);
+                    } else {
+                        commandsToAdd.add(commandData);
+                    }
+                }
+
+                String fingerprint = computeFingerprint(commandsToAdd);
+                if (storedFingerprint == null || !fingerprint.equals(storedFingerprint.getFingerprint())) {
+                    updates.add(new GuildCommandUpdate(guild, commandsToAdd, mappedPresetPks, fingerprint));
+                }
+            }
+            return updates;
+        });
+
+        logger.info(String.format("Updating slash commands of %d guilds with changed presets for shard %s", guildCommandUpdates.size(), shard));
+        for (GuildCommandUpdate update : guildCommandUpdates) {
+            SLASH_COMMAND_UPDATE_INVOKER.invokeLimited(Mode.getEmpty(), () -> {
+                Guild guild = update.guild;
+                CompletableFuture<List<Command>> future = guild.updateCommands().addCommands(update.commands).submit();
+
+                CompletableFutures.thenAccept(future, commands -> hibernateInvoker.invokeConsumer(futureSession -> {
+                    for (Command command : commands) {
+                        Long presetPk = update.mappedPresetPks.get(command.getName());
+                        if (presetPk == null) {
                             logger.warn(String.format(
-                                "Encountered presets with duplicate slash command identifier '%s' on guild '%s'. Going to delete preset pk %d",
-                                commandData.getName(),
-                                guild,
-                                preset.getPk()
+                                "No preset found for name '%s' on guild %s to associate with",
+                                command.getName(),
+                                guild
                             ));
-                            session.remove(preset);
-                        } else {
-                            commandsToAdd.add(commandData);
+                            continue;
                         }
+
+                        Preset reloadedPreset = futureSession.getReference(Preset.class, presetPk);
+                        reloadedPreset.setCommandId(command.getIdLong());
                     }
 
-                    CompletableFuture<List<Command>> future = guild.updateCommands().addCommands(commandsToAdd).submit();
-
-                    CompletableFutures.thenAccept(future, commands -> hibernateInvoker.invokeConsumer(futureSession -> {
-                        for (Command command : commands) {
-                            Preset preset = mappedPresets.get(command.getName());
-                            if (preset == null) {
-                                logger.warn(String.format(
-                                    "No preset found for name '%s' on guild %s to associate with",
-                                    command.getName(),
-                                    guild
-                                ));
-                                continue;
-                            }
-
-                            Preset reloadedPreset = futureSession.getReference(Preset.class, preset.getPk());
-                            reloadedPreset.setCommandId(command.getIdLong());
-                        }
-                    }));
+                    saveFingerprint(futureSession, applicationId, guild.getId(), update.fingerprint);
                 }));
-            }
-        });
+            });
+        }
 
         logger.info("Done updating slash commands (except for queued operations) for shard " + shard);
     }
 
+    /**
+     * Load the presets of all guilds of the shard grouped by guild id, querying the guild ids in chunks to keep the
+     * number of bound parameters per query bounded.
+     */
+    private Map<String, List<Preset>> loadPresets(Session session, JDA shard) {
+        List<String> guildIds = shard.getGuilds().stream().map(Guild::getId).toList();
+        Map<String, List<Preset>> presetsByGuild = new HashMap<>();
+        for (List<String> guildIdChunk : Lists.partition(guildIds, GUILD_ID_CHUNK_SIZE)) {
+            queryBuilderFactory
+                .find(Preset.class)
+                .where((cb, root, subQueryFactory) -> root.get("guildId").in(guildIdChunk))
+                .build(session)
+                .getResultStream()
+                .forEach(preset -> presetsByGuild.computeIfAbsent(preset.getGuildId(), k -> Lists.newArrayList()).add(preset));
+        }
+        return presetsByGuild;
+    }
+
+    private Map<String, SlashCommandFingerprint> loadFingerprints(Session session, String applicationId) {
+        Map<String, SlashCommandFingerprint> fingerprints = new HashMap<>();
+        queryBuilderFactory
+            .find(SlashCommandFingerprint.class)
+            .where((cb, root, subQueryFactory) -> cb.equal(root.get("applicationId"), applicationId))
+            .build(session)
+            .getResultStream()
+            .forEach(fingerprint -> fingerprints.put(fingerprint.getGuildId(), fingerprint));
+        return fingerprints;
+    }
+
+    /**
+     * Insert or update the fingerprint atomically, nodes starting concurrently may save the same fingerprint.
+     */
+    private void saveFingerprint(Session session, String applicationId, String guildId, String fingerprint) {
+        session.createNativeMutationQuery(UPSERT_FINGERPRINT_STATEMENT)
+            .setParameter(1, applicationId)
+            .setParameter(2, guildId)
+            .setParameter(3, fingerprint)
+            .setParameter(4, LocalDateTime.now())
+            .executeUpdate();
+    }
+
+    /**
+     * @return a hash of the JSON representation of the provided commands that does not depend on their order
+     */
+    private static String computeFingerprint(List<CommandData> commands) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        commands.stream()
+            .map(command -> command.toData().toString())
+            .sorted()
+            .forEach(json -> hasher.putString(json, StandardCharsets.UTF_8).putChar('\n'));
+        return hasher.hash().toString();
+    }
+
     @Override
     public StartupTaskContribution getContribution() {
         return contribution;
     }
+
+    private static class GuildCommandUpdate {
+
+        private final Guild guild;
+        private final List<CommandData> commands;
+        private final Map<String, Long> mappedPresetPks;
+        private final String fingerprint;
+
+        private GuildCommandUpdate(Guild guild, List<CommandData> commands, Map<String, Long> mappedPresetPks, String fingerprint) {
+            this.guild = guild;
+            this.commands = commands;
+            this.mappedPresetPks = mappedPresetPks;
+            this.fingerprint = fingerprint;
+        }
+
+    }
 }
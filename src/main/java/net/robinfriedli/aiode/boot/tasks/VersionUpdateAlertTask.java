@@ -18,7 +18,6 @@ import net.dv8tion.jda.api.entities.Guild;
 import net.robinfriedli.aiode.boot.StartupTask;
 import net.robinfriedli.aiode.boot.VersionManager;
 import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
-import net.robinfriedli.aiode.discord.GuildContext;
 import net.robinfriedli.aiode.discord.GuildManager;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.entities.GuildSpecification;
@@ -128,8 +127,8 @@ public class VersionUpdateAlertTask implements StartupTask {
                     long currentTimeMillis = System.currentTimeMillis();
                     for (Guild guild : guilds) {
                         boolean alreadyNotified = StaticSessionProvider.invokeWithSession(session -> {
-                            GuildContext guildContext = guildManager.getContextForGuild(guild);
-                            GuildSpecification guildSpecification = guildContext.getSpecification(session);
+                            // avoid setting up a GuildContext for every guild
+                            GuildSpecification guildSpecification = guildManager.getSpecificationForGuild(guild, session);
                             if (Objects.equals(guildSpecification.getVersionUpdateAlertSent(), version)) {
                                 return true;
                             } else {
@@ -71,7 +71,6 @@ public abstract class AbstractCommand implements Command {
     private final CommandContext context;
     private final CommandManager commandManager;
     private final ArgumentController argumentController;
-    private final MessageService messageService;
     private final String commandBody;
     private final String identifier;
     private final String description;
@@ -101,7 +100,6 @@ public abstract class AbstractCommand implements Command {
         this.description = description;
         this.category = category;
         this.argumentController = createArgumentController();
-        this.messageService = Aiode.get().getMessageService();
         commandInput = "";
     }
 
@@ -196,7 +194,7 @@ public abstract class AbstractCommand implements Command {
     }
 
     public MessageService getMessageService() {
-        return messageService;
+        return Aiode.get().getMessageService();
     }
 
     /**
@@ -369,44 +367,44 @@ public abstract class AbstractCommand implements Command {
     }
 
     protected CompletableFuture<Message> sendMessage(String message) {
-        return messageService.send(message, getContext().getChannel());
+        return getMessageService().send(message, getContext().getChannel());
     }
 
     protected CompletableFuture<Message> sendMessage(EmbedBuilder message) {
         message.setColor(ColorSchemeProperty.getColor());
-        return messageService.send(message.build(), getContext().getChannel());
+        return getMessageService().send(message.build(), getContext().getChannel());
     }
 
     protected CompletableFuture<Message> sendMessage(MessageEmbed messageEmbed) {
-        return messageService.send(messageEmbed, getContext().getChannel());
+        return getMessageService().send(messageEmbed, getContext().getChannel());
     }
 
     protected CompletableFuture<Message> sendMessage(User user, String message) {
-        return messageService.send(message, user);
+        return getMessageService().send(message, user);
     }
 
     protected void sendWrapped(String message, String wrapper, MessageChannel channel) {
-        messageService.sendWrapped(message, wrapper, channel);
+        getMessageService().sendWrapped(message, wrapper, channel);
     }
 
     protected CompletableFuture<Message> sendMessage(InputStream file, String fileName, MessageCreateBuilder messageBuilder) {
-        return messageService.send(messageBuilder, file, fileName, getContext().getChannel());
+        return getMessageService().send(messageBuilder, file, fileName, getContext().getChannel());
     }
 
     protected CompletableFuture<Message> sendWithLogo(EmbedBuilder embedBuilder) {
-        return messageService.sendWithLogo(embedBuilder, getContext().getChannel());
+        return getMessageService().sendWithLogo(embedBuilder, getContext().getChannel());
     }
 
     protected CompletableFuture<Message> sendSuccess(String message) {
-        return messageService.sendSuccess(message, getContext().getChannel());
+        return getMessageService().sendSuccess(message, getContext().getChannel());
     }
 
     protected CompletableFuture<Message> sendError(String message) {
-        return messageService.sendError(message, getContext().getChannel());
+        return getMessageService().sendError(message, getContext().getChannel());
     }
 
     protected List<CompletableFuture<Message>> sendToActiveGuilds(MessageEmbed message) {
-        return messageService.sendToActiveGuilds(message, getContext().getSession());
+        return getMessageService().sendToActiveGuilds(message, getContext().getSession());
     }
 
     /**
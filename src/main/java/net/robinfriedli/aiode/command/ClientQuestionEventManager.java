@@ -31,4 +31,8 @@ public class ClientQuestionEventManager {
             .findFirst();
     }
 
+    public synchronized boolean hasPendingQuestions() {
+        return !pendingQuestions.isEmpty();
+    }
+
 }
@@ -7,6 +7,8 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +34,7 @@ import net.robinfriedli.aiode.exceptions.InvalidCommandException;
 import net.robinfriedli.aiode.exceptions.RateLimitException;
 import net.robinfriedli.aiode.exceptions.handler.CommandExceptionHandlerExecutor;
 import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import net.robinfriedli.aiode.util.PrefixTrie;
 import net.robinfriedli.jxp.api.JxpBackend;
 import net.robinfriedli.jxp.persist.Context;
 import org.hibernate.Session;
@@ -55,9 +58,14 @@ public class CommandManager {
     private final boolean isScriptingEnabledForSupporters;
     private final Context commandContributionContext;
     private final Context commandInterceptorContext;
+    private final CustomCommandIndex customCommandIndex;
     private final EventWaiter eventWaiter;
     private final Logger logger;
     private final QueryBuilderFactory queryBuilderFactory;
+    /**
+     * Trie of all command identifiers to find the command with the longest identifier matching the command input
+     */
+    private final PrefixTrie<CommandContribution> commandIdentifierTrie = new PrefixTrie<>();
 
     /**
      * The chain of interceptors to process the command
@@ -69,6 +77,7 @@ public class CommandManager {
                           @Value("${aiode.preferences.enable_scripting_for_supporters}") boolean isScriptingEnabledForSupporters,
                           @Value("classpath:xml-contributions/commands.xml") Resource commandResource,
                           @Value("classpath:xml-contributions/commandInterceptors.xml") Resource commandInterceptorResource,
+                          CustomCommandIndex customCommandIndex,
                           EventWaiter eventWaiter,
                           JxpBackend jxpBackend,
                           QueryBuilderFactory queryBuilderFactory) {
@@ -80,6 +89,10 @@ public class CommandManager {
         } catch (IOException e) {
             throw new RuntimeException("Could not instantiate " + getClass().getSimpleName(), e);
         }
+        for (CommandContribution commandContribution : commandContributionContext.getInstancesOf(CommandContribution.class)) {
+            commandIdentifierTrie.put(commandContribution.getIdentifier(), commandContribution);
+        }
+        this.customCommandIndex = customCommandIndex;
         this.eventWaiter = eventWaiter;
         this.logger = LoggerFactory.getLogger(getClass());
         this.queryBuilderFactory = queryBuilderFactory;
@@ -181,42 +194,12 @@ public class CommandManager {
             return Optional.empty();
         }
 
-        String formattedCommandInput = commandBody.toLowerCase();
         CommandContribution commandContribution = getCommandContributionForInput(commandBody);
         AbstractCommand commandInstance;
-        // find a preset where the preset name matches the beginning of the command, find the longest matching preset name
-        // corresponds to lower(name) = substring(lower('" + commandBody.replaceAll("'", "''") + "'), 0, length(name) + 1)
-        Optional<Preset> optionalPreset = queryBuilderFactory.find(Preset.class)
-            .where((cb, root) -> cb.equal(
-                cb.lower(root.get("name")),
-                cb.substring(cb.literal(formattedCommandInput), cb.literal(1), cb.length(root.get("name")))
-            ))
-            .orderBy((root, cb) -> cb.desc(cb.length(root.get("name"))))
-            .build(session)
-            .setMaxResults(1)
-            .setCacheable(true)
-            .uniqueResultOptional();
-
+        Optional<Preset> optionalPreset = findPresetForInput(context, commandBody, session);
         Optional<StoredScript> optionalStoredScript;
         if (includeScripts) {
-            optionalStoredScript = queryBuilderFactory.find(StoredScript.class)
-                .where(((cb, root, subQueryFactory) -> cb.and(
-                    cb.equal(
-                        cb.lower(root.get("identifier")),
-                        cb.substring(cb.literal(formattedCommandInput), cb.literal(1), cb.length(root.get("identifier")))
-                    ),
-                    cb.equal(
-                        root.get("scriptUsage").get("pk"),
-                        subQueryFactory.createUncorrelatedSubQuery(StoredScript.ScriptUsage.class, "pk", Long.class)
-                            .where((cb1, root1) -> cb1.equal(root1.get("uniqueId"), "script"))
-                            .build(session)
-                    )
-                )))
-                .orderBy((root, cb) -> cb.desc(cb.length(root.get("identifier"))))
-                .build(session)
-                .setMaxResults(1)
-                .setCacheable(true)
-                .uniqueResultOptional();
+            optionalStoredScript = findScriptForInput(context, commandBody, session);
         } else {
             optionalStoredScript = Optional.empty();
         }
@@ -287,6 +270,84 @@ public class CommandManager {
         return Optional.of(commandInstance);
     }
 
+    /**
+     * Find the preset with the longest name matching the beginning of the command input. Uses the
+     * {@link CustomCommandIndex} to find the preset and loads it by primary key (usually served by the second level
+     * cache), only falling back to querying the preset by name if the index has not been initialised yet.
+     */
+    private Optional<Preset> findPresetForInput(CommandContext context, String commandBody, Session session) {
+        if (customCommandIndex.isInitialized()) {
+            String guildId = context.getGuild().getId();
+            CustomCommandIndex.Entry entry;
+            while ((entry = customCommandIndex.findPreset(guildId, commandBody)) != null) {
+                Preset preset = session.get(Preset.class, entry.getPk());
+                if (preset != null) {
+                    return Optional.of(preset);
+                }
+
+                // the preset has been deleted without going through the interceptors, e.g. by a bulk delete
+                customCommandIndex.removePreset(guildId, entry.getPk(), entry.getIdentifier());
+            }
+
+            return Optional.empty();
+        }
+
+        // find a preset where the preset name matches the beginning of the command, find the longest matching preset name
+        // corresponds to lower(name) = substring(lower('" + commandBody.replaceAll("'", "''") + "'), 0, length(name) + 1)
+        String formattedCommandInput = commandBody.toLowerCase();
+        return queryBuilderFactory.find(Preset.class)
+            .where((cb, root) -> cb.equal(
+                cb.lower(root.get("name")),
+                cb.substring(cb.literal(formattedCommandInput), cb.literal(1), cb.length(root.get("name")))
+            ))
+            .orderBy((root, cb) -> cb.desc(cb.length(root.get("name"))))
+            .build(session)
+            .setMaxResults(1)
+            .setCacheable(true)
+            .uniqueResultOptional();
+    }
+
+    /**
+     * Find the script with the longest identifier matching the beginning of the command input, analogous to
+     * {@link #findPresetForInput(CommandContext, String, Session)}.
+     */
+    private Optional<StoredScript> findScriptForInput(CommandContext context, String commandBody, Session session) {
+        if (customCommandIndex.isInitialized()) {
+            String guildId = context.getGuild().getId();
+            CustomCommandIndex.Entry entry;
+            while ((entry = customCommandIndex.findScript(guildId, commandBody)) != null) {
+                StoredScript storedScript = session.get(StoredScript.class, entry.getPk());
+                if (storedScript != null) {
+                    return Optional.of(storedScript);
+                }
+
+                customCommandIndex.removeScript(guildId, entry.getPk(), entry.getIdentifier());
+            }
+
+            return Optional.empty();
+        }
+
+        String formattedCommandInput = commandBody.toLowerCase();
+        return queryBuilderFactory.find(StoredScript.class)
+            .where(((cb, root, subQueryFactory) -> cb.and(
+                cb.equal(
+                    cb.lower(root.get("identifier")),
+                    cb.substring(cb.literal(formattedCommandInput), cb.literal(1), cb.length(root.get("identifier")))
+                ),
+                cb.equal(
+                    root.get("scriptUsage").get("pk"),
+                    subQueryFactory.createUncorrelatedSubQuery(StoredScript.ScriptUsage.class, "pk", Long.class)
+                        .where((cb1, root1) -> cb1.equal(root1.get("uniqueId"), "script"))
+                        .build(session)
+                )
+            )))
+            .orderBy((root, cb) -> cb.desc(cb.length(root.get("identifier"))))
+            .build(session)
+            .setMaxResults(1)
+            .setCacheable(true)
+            .uniqueResultOptional();
+    }
+
     public Optional<AbstractCommand> getCommand(CommandContext commandContext, String name) {
         CommandContribution commandContribution = getCommandContribution(name);
 
@@ -297,11 +358,9 @@ public class CommandManager {
         return Optional.of(commandContribution.instantiate(this, commandContext, ""));
     }
 
+    @Nullable
     public CommandContribution getCommandContributionForInput(String input) {
-        return commandContributionContext.query(and(
-            instanceOf(CommandContribution.class),
-            xmlElement -> input.toLowerCase().startsWith(xmlElement.getAttribute("identifier").getValue())
-        ), CommandContribution.class).getOnlyResult();
+        return commandIdentifierTrie.findLongestPrefixOf(input);
     }
 
     public List<AbstractCommand> getAllCommands(CommandContext commandContext) {
@@ -359,6 +418,10 @@ public class CommandManager {
         ));
     }
 
+    public CustomCommandIndex getCustomCommandIndex() {
+        return customCommandIndex;
+    }
+
     public EventWaiter getEventWaiter() {
         return eventWaiter;
     }
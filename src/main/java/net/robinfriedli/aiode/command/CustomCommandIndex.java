@@ -0,0 +1,216 @@
+package net.robinfriedli.aiode.command;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.robinfriedli.aiode.entities.Preset;
+import net.robinfriedli.aiode.entities.StoredScript;
+import net.robinfriedli.aiode.cron.tasks.RefreshCustomCommandIndexTask;
+import net.robinfriedli.aiode.persist.interceptors.AlertPresetCreationInterceptor;
+import net.robinfriedli.aiode.persist.interceptors.AlertScriptModificationInterceptor;
+import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import net.robinfriedli.aiode.util.PrefixTrie;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In memory index of the names of all {@link Preset} and {@link StoredScript} (with script usage "script") entities
+ * per guild partition, enabling the {@link CommandManager} to find the preset or script with the longest name a command
+ * input starts with without querying the database. The index is built on startup and kept up to date by the
+ * {@link AlertPresetCreationInterceptor} and {@link AlertScriptModificationInterceptor}. Until the index has been
+ * initialised, the {@link CommandManager} falls back to querying the database.
+ * <p>
+ * The interceptors only see modifications made by this instance. Presets and scripts created by another instance (or
+ * by a bulk operation) stay invisible until the index is reloaded by the {@link RefreshCustomCommandIndexTask}, which
+ * runs every 5 minutes. Entries of presets and scripts deleted elsewhere are removed when the lookup by primary key
+ * misses.
+ */
+@Component
+public class CustomCommandIndex {
+
+    private static final String SHARED_PARTITION = "";
+
+    private final boolean partitioned;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final QueryBuilderFactory queryBuilderFactory;
+
+    private volatile Map<String, PrefixTrie<Entry>> presetIndex = new ConcurrentHashMap<>();
+    private volatile Map<String, PrefixTrie<Entry>> scriptIndex = new ConcurrentHashMap<>();
+
+    private volatile boolean initialized;
+
+    public CustomCommandIndex(@Value("${aiode.preferences.mode_partitioned}") boolean partitioned, QueryBuilderFactory queryBuilderFactory) {
+        this.partitioned = partitioned;
+        this.queryBuilderFactory = queryBuilderFactory;
+    }
+
+    /**
+     * Load the names of all presets and scripts of all guilds. This must be called from a thread that does not have an
+     * ExecutionContext, else the queries are restricted to the guild of the current context. The index is built into
+     * new maps that replace the current ones once loaded, so lookups during a reload are served by the previous index.
+     */
+    public synchronized void initialize(Session session) {
+        long millis = System.currentTimeMillis();
+        Map<String, PrefixTrie<Entry>> presetIndex = new ConcurrentHashMap<>();
+        Map<String, PrefixTrie<Entry>> scriptIndex = new ConcurrentHashMap<>();
+
+        queryBuilderFactory
+            .select(Preset.class, "pk", "name", "guildId")
+            .build(session)
+            .getResultStream()
+            .forEach(record -> putEntry(presetIndex, (String) record[2], new Entry((long) record[0], (String) record[1])));
+
+        queryBuilderFactory
+            .select(StoredScript.class, "pk", "identifier", "guildId")
+            .where((cb, root, subQueryFactory) -> cb.equal(
+                root.get("scriptUsage").get("pk"),
+                subQueryFactory.createUncorrelatedSubQuery(StoredScript.ScriptUsage.class, "pk", Long.class)
+                    .where((cb1, root1) -> cb1.equal(root1.get("uniqueId"), "script"))
+                    .build(session)
+            ))
+            .build(session)
+            .getResultStream()
+            .forEach(record -> putEntry(scriptIndex, String.valueOf(record[2]), new Entry((long) record[0], (String) record[1])));
+
+        this.presetIndex = presetIndex;
+        this.scriptIndex = scriptIndex;
+        initialized = true;
+        logger.info(
+            "Indexed presets and scripts of {} and {} guild partitions in {}ms",
+            presetIndex.size(),
+            scriptIndex.size(),
+            System.currentTimeMillis() - millis
+        );
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * @return the entry of the preset with the longest name the provided input starts with (ignoring case) or null
+     */
+    @Nullable
+    public Entry findPreset(String guildId, String input) {
+        return findLongestMatch(presetIndex, guildId, input);
+    }
+
+    /**
+     * @return the entry of the script with the longest identifier the provided input starts with (ignoring case) or null
+     */
+    @Nullable
+    public Entry findScript(String guildId, String input) {
+        return findLongestMatch(scriptIndex, guildId, input);
+    }
+
+    public void addPreset(Preset preset) {
+        putEntry(presetIndex, preset.getGuildId(), new Entry(preset.getPk(), preset.getName()));
+    }
+
+    public void removePreset(Preset preset) {
+        removePreset(preset.getGuildId(), preset.getPk(), preset.getName());
+    }
+
+    public void removePreset(String guildId, long pk, String name) {
+        removeEntry(presetIndex, guildId, new Entry(pk, name));
+    }
+
+    public void addScript(StoredScript storedScript) {
+        if (isCommandScript(storedScript)) {
+            putEntry(scriptIndex, String.valueOf(storedScript.getGuildId()), new Entry(storedScript.getPk(), storedScript.getIdentifier()));
+        }
+    }
+
+    public void removeScript(StoredScript storedScript) {
+        removeScript(String.valueOf(storedScript.getGuildId()), storedScript.getPk(), storedScript.getIdentifier());
+    }
+
+    public void removeScript(String guildId, long pk, String identifier) {
+        removeEntry(scriptIndex, guildId, new Entry(pk, identifier));
+    }
+
+    private boolean isCommandScript(StoredScript storedScript) {
+        StoredScript.ScriptUsage scriptUsage = storedScript.getScriptUsage();
+        return scriptUsage != null && "script".equals(scriptUsage.getUniqueId());
+    }
+
+    private String getPartition(String guildId) {
+        return partitioned ? guildId : SHARED_PARTITION;
+    }
+
+    @Nullable
+    private Entry findLongestMatch(Map<String, PrefixTrie<Entry>> index, String guildId, String input) {
+        PrefixTrie<Entry> trie = index.get(getPartition(guildId));
+        if (trie == null) {
+            return null;
+        }
+
+        return trie.findLongestPrefixOf(input);
+    }
+
+    private void putEntry(Map<String, PrefixTrie<Entry>> index, String guildId, Entry entry) {
+        // keep entries that share a name (possible in shared mode) with the lowest pk to be deterministic
+        index.compute(getPartition(guildId), (partition, trie) -> {
+            PrefixTrie<Entry> target = trie != null ? trie : new PrefixTrie<>();
+            Entry existing = target.get(entry.getIdentifier());
+            if (existing == null || existing.getPk() >= entry.getPk()) {
+                target.put(entry.getIdentifier(), entry);
+            }
+            return target;
+        });
+    }
+
+    private void removeEntry(Map<String, PrefixTrie<Entry>> index, String guildId, Entry entry) {
+        index.computeIfPresent(getPartition(guildId), (partition, trie) -> {
+            trie.remove(entry.getIdentifier(), entry);
+            return trie.isEmpty() ? null : trie;
+        });
+    }
+
+    /**
+     * Entry referencing a preset or script by its primary key and name.
+     */
+    public static class Entry {
+
+        private final long pk;
+        private final String identifier;
+
+        public Entry(long pk, String identifier) {
+            this.pk = pk;
+            this.identifier = identifier;
+        }
+
+        public long getPk() {
+            return pk;
+        }
+
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Entry entry)) {
+                return false;
+            }
+            return pk == entry.pk && Objects.equals(identifier, entry.identifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pk, identifier);
+        }
+
+    }
+
+}
@@ -7,7 +7,7 @@ import net.robinfriedli.aiode.audio.AudioManager;
 import net.robinfriedli.aiode.audio.queue.AudioQueue;
 import org.apache.commons.collections4.map.CaseInsensitiveMap;
 
-import groovy.lang.GroovyShell;
+import groovy.lang.Binding;
 import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.command.AbstractCommand;
 import net.robinfriedli.aiode.command.CommandContext;
@@ -31,15 +31,15 @@ public class ArgumentController {
     private final AbstractCommand sourceCommand;
     private final CommandContribution commandContribution;
     private final Map<String, ArgumentUsage> usedArguments;
-    private final GroovyShell groovyShell;
+    private final Binding binding;
 
-    private boolean shellInitialised;
+    private boolean bindingInitialised;
 
     public ArgumentController(AbstractCommand sourceCommand) {
         this.sourceCommand = sourceCommand;
         commandContribution = sourceCommand.getCommandContribution();
         usedArguments = new CaseInsensitiveMap<>();
-        groovyShell = new GroovyShell();
+        binding = new Binding();
     }
 
     /**
@@ -161,6 +161,28 @@ public class ArgumentController {
         }
     }
 
+    /**
+     * Apply the groovy variables of the current context to the binding used to evaluate the rules and value checks of
+     * the used arguments.
+     */
+    protected void prepareBinding(Binding binding) {
+        Aiode.get().getGroovyVariableManager().prepareBinding(binding);
+    }
+
+    /**
+     * @return the command prefix of the current context used to format the error message of a failed rule or value check
+     */
+    protected String getEffectiveCommandStart() {
+        return PrefixProperty.getEffectiveCommandStartForCurrentContext();
+    }
+
+    /**
+     * @return the argument prefix of the current context used to format the error message of a failed rule or value check
+     */
+    protected char getArgumentPrefix() {
+        return ArgumentPrefixProperty.getForCurrentContext().getArgumentPrefix();
+    }
+
     /**
      * Describes a single argument used in this command invocation, referencing the persistent argument description and
      * the value assigned when invoking the command, e.g. $select=5
@@ -238,14 +260,12 @@ public class ArgumentController {
                 throw new InvalidCommandException("Argument " + argument.getIdentifier() + " requires additional command input.");
             }
 
-            groovyShell.setVariable("value", hasValue() ? getValue(argument.getValueType()) : value);
+            binding.setVariable("value", hasValue() ? getValue(argument.getValueType()) : value);
 
             for (XmlElement rule : argument.getRules()) {
                 String condition = rule.getTextContent();
                 if (!evaluateScript(condition)) {
-                    String prefix = PrefixProperty.getEffectiveCommandStartForCurrentContext();
-                    char argumentPrefix = ArgumentPrefixProperty.getForCurrentContext().getArgumentPrefix();
-                    throw new InvalidCommandException(String.format(rule.getAttribute("errorMessage").getValue(), prefix, argumentPrefix, value));
+                    throw new InvalidCommandException(String.format(rule.getAttribute("errorMessage").getValue(), getEffectiveCommandStart(), getArgumentPrefix(), value));
                 }
             }
 
@@ -254,9 +274,7 @@ public class ArgumentController {
                     String check = valueCheck.getAttribute("check").getValue();
 
                     if (!evaluateScript(check)) {
-                        String prefix = PrefixProperty.getEffectiveCommandStartForCurrentContext();
-                        char argumentPrefix = ArgumentPrefixProperty.getForCurrentContext().getArgumentPrefix();
-                        throw new InvalidCommandException(String.format(valueCheck.getAttribute("errorMessage").getValue(), prefix, argumentPrefix));
+                        throw new InvalidCommandException(String.format(valueCheck.getAttribute("errorMessage").getValue(), getEffectiveCommandStart(), getArgumentPrefix()));
                     }
                 }
             }
@@ -264,15 +282,15 @@ public class ArgumentController {
 
         private boolean evaluateScript(String script) {
             try {
-                if (!shellInitialised) {
-                    Aiode.get().getGroovyVariableManager().prepareShell(groovyShell);
+                if (!bindingInitialised) {
+                    prepareBinding(binding);
                     // make sure the command variable is set to the source command is it might differ from the command of
                     // the current execution context if a command verifies another command, e.g. the PresetCommand
-                    groovyShell.setVariable("command", sourceCommand);
-                    shellInitialised = true;
+                    binding.setVariable("command", sourceCommand);
+                    bindingInitialised = true;
                 }
 
-                return (boolean) groovyShell.evaluate(script);
+                return (boolean) ArgumentScripts.evaluate(script, binding);
             } catch (ClassCastException e) {
                 throw new UnexpectedCommandSetupException(String.format("Groovy script for argument '%s' does not return boolean", argument.getIdentifier()), e);
             } catch (Exception e) {
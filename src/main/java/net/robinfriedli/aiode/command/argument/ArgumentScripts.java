@@ -0,0 +1,63 @@
+package net.robinfriedli.aiode.command.argument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.Script;
+import net.robinfriedli.aiode.boot.tasks.InitialiseCommandContributionsTask;
+import net.robinfriedli.aiode.entities.xml.ArgumentContribution;
+import net.robinfriedli.jxp.api.XmlElement;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * Holds the compiled classes of the groovy expressions used by the rules and value checks of arguments, keyed by the
+ * source of the expression. All expressions are compiled once when the command contributions are initialised by the
+ * {@link InitialiseCommandContributionsTask}, evaluating an expression then only instantiates the compiled class with
+ * the binding of the {@link ArgumentController} instead of parsing and compiling the expression in a new GroovyShell
+ * each time a command is verified. Expressions that have not been compiled at startup are compiled on first use.
+ */
+public final class ArgumentScripts {
+
+    private static final GroovyClassLoader CLASS_LOADER = new GroovyClassLoader(ArgumentScripts.class.getClassLoader());
+    private static final AtomicLong SCRIPT_COUNTER = new AtomicLong();
+    private static final Map<String, Class<? extends Script>> COMPILED_SCRIPTS = new ConcurrentHashMap<>();
+
+    private ArgumentScripts() {
+    }
+
+    /**
+     * Compile the expressions of all rules and value checks of the given argument.
+     */
+    public static void compile(ArgumentContribution argument) {
+        for (XmlElement rule : argument.getRules()) {
+            getCompiledScript(rule.getTextContent());
+        }
+
+        for (XmlElement valueCheck : argument.getValueChecks()) {
+            getCompiledScript(valueCheck.getAttribute("check").getValue());
+        }
+    }
+
+    /**
+     * Run the compiled class of the given expression with the given binding.
+     *
+     * @param source  the groovy expression
+     * @param binding the variables available to the expression
+     * @return the result of the expression
+     */
+    public static Object evaluate(String source, Binding binding) {
+        return InvokerHelper.createScript(getCompiledScript(source), binding).run();
+    }
+
+    private static Class<? extends Script> getCompiledScript(String source) {
+        // the expressions are defined by the command contributions, so the number of compiled classes is bounded
+        return COMPILED_SCRIPTS.computeIfAbsent(
+            source,
+            s -> CLASS_LOADER.parseClass(s, "ArgumentScript" + SCRIPT_COUNTER.incrementAndGet() + ".groovy").asSubclass(Script.class)
+        );
+    }
+
+}
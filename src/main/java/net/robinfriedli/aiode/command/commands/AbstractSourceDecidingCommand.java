@@ -3,12 +3,10 @@ package net.robinfriedli.aiode.command.commands;
 import java.util.Arrays;
 import java.util.Optional;
 
-import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.command.AbstractCommand;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.CommandManager;
-import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
+import net.robinfriedli.aiode.discord.property.GuildSettings;
 import net.robinfriedli.aiode.entities.xml.CommandContribution;
 
 /**
@@ -41,27 +39,17 @@ public abstract class AbstractSourceDecidingCommand extends AbstractCommand {
     }
 
     private Source getDefaultSource() {
-        GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
+        GuildSettings settings = getContext().getGuildContext().getSettings();
         if (argumentSet("list")) {
-            AbstractGuildProperty defaultListSourceProperty = guildPropertyManager.getProperty("defaultListSource");
-            if (defaultListSourceProperty != null) {
-                return getSourceForProperty(defaultListSourceProperty).orElse(DEFAULT_LIST_FALLBACK);
-            }
-
-            return DEFAULT_LIST_FALLBACK;
+            return getSourceForProperty(settings, "defaultListSource").orElse(DEFAULT_LIST_FALLBACK);
         } else {
-            AbstractGuildProperty defaultSourceProperty = guildPropertyManager.getProperty("defaultSource");
-            if (defaultSourceProperty != null) {
-                return getSourceForProperty(defaultSourceProperty).orElse(DEFAULT_FALLBACK);
-            }
-
-            return DEFAULT_FALLBACK;
+            return getSourceForProperty(settings, "defaultSource").orElse(DEFAULT_FALLBACK);
         }
     }
 
-    private Optional<Source> getSourceForProperty(AbstractGuildProperty property) {
-        return Arrays.stream(Source.values())
-            .filter(source -> source.name().equals(property.get())).findAny();
+    private Optional<Source> getSourceForProperty(GuildSettings settings, String property) {
+        return settings.getOptional(property, String.class).flatMap(value -> Arrays.stream(Source.values())
+            .filter(source -> source.name().equals(value)).findAny());
     }
 
     protected enum Source {
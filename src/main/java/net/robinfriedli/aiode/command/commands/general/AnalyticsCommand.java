@@ -4,19 +4,22 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
 import java.math.BigInteger;
 import java.util.List;
+import java.util.Set;
 
 import com.google.common.base.Strings;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.sharding.ShardManager;
 import net.robinfriedli.aiode.Aiode;
-import net.robinfriedli.aiode.audio.AudioManager;
-import net.robinfriedli.aiode.audio.AudioPlayback;
+import net.robinfriedli.aiode.audio.AudioTrackCache;
+import net.robinfriedli.aiode.audio.spotify.SpotifyRedirectIndexWriter;
 import net.robinfriedli.aiode.boot.SpringPropertiesConfig;
 import net.robinfriedli.aiode.command.AbstractCommand;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.CommandManager;
+import net.robinfriedli.aiode.discord.GuildContext;
 import net.robinfriedli.aiode.discord.GuildManager;
+import net.robinfriedli.aiode.discord.listeners.EventWaiter;
 import net.robinfriedli.aiode.entities.xml.CommandContribution;
 import org.hibernate.Session;
 
@@ -31,14 +34,14 @@ public class AnalyticsCommand extends AbstractCommand {
         ShardManager shardManager = Aiode.get().getShardManager();
         List<Guild> guilds = shardManager.getGuilds();
         Aiode aiode = Aiode.get();
-        AudioManager audioManager = aiode.getAudioManager();
         GuildManager guildManager = aiode.getGuildManager();
         SpringPropertiesConfig springPropertiesConfig = aiode.getSpringPropertiesConfig();
         Session session = getContext().getSession();
         Runtime runtime = Runtime.getRuntime();
 
         int guildCount = guilds.size();
-        long playingCount = guilds.stream().map(audioManager::getPlaybackForGuild).filter(AudioPlayback::isPlaying).count();
+        Set<GuildContext> guildContexts = guildManager.getGuildContexts();
+        long playingCount = guildContexts.stream().filter(guildContext -> guildContext.getPlayback().isPlaying()).count();
         long commandCount = session.createNativeQuery("SELECT cast(reltuples AS bigint) FROM pg_class where relname = 'command_history'", BigInteger.class).uniqueResult().longValue();
         long playlistCount = session.createNativeQuery("SELECT cast(reltuples AS bigint) FROM pg_class where relname = 'playlist'", BigInteger.class).uniqueResult().longValue();
         long trackCount = session.createNativeQuery("SELECT cast(reltuples AS bigint) FROM pg_class where relname = 'song'", BigInteger.class).uniqueResult().longValue()
@@ -56,16 +59,40 @@ public class AnalyticsCommand extends AbstractCommand {
         ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
         int threadCount = threadMXBean.getThreadCount();
         int daemonThreadCount = threadMXBean.getDaemonThreadCount();
+        SpotifyRedirectIndexWriter redirectIndexWriter = SpotifyRedirectIndexWriter.get();
+        EventWaiter eventWaiter = getManager().getEventWaiter();
+        AudioTrackCache audioTrackCache = aiode.getAudioManager().getAudioTrackCache();
 
         EmbedBuilder embedBuilder = new EmbedBuilder();
         embedBuilder.addField("Guilds", String.valueOf(guildCount), true);
         embedBuilder.addField("Guilds active", String.valueOf(guildManager.getActiveGuilds(session).size()), true);
         embedBuilder.addField("Guilds playing now", String.valueOf(playingCount), true);
+        embedBuilder.addField("Guild contexts loaded", String.valueOf(guildContexts.size()), true);
         embedBuilder.addField("Total commands entered", String.valueOf(commandCount), true);
         embedBuilder.addField("Saved playlists", String.valueOf(playlistCount), true);
         embedBuilder.addField("Saved tracks", String.valueOf(trackCount), true);
         embedBuilder.addField("Total tracks played", String.valueOf(playedCount), true);
         embedBuilder.addField("Thread count", String.format("%d (%d daemons)", threadCount, daemonThreadCount), true);
+        embedBuilder.addField("Pending redirect index writes", String.format(
+            "%d (last flush: %d in %dms)",
+            redirectIndexWriter.getPendingCount(),
+            redirectIndexWriter.getLastFlushSize(),
+            redirectIndexWriter.getLastFlushDurationMs()
+        ), true);
+        embedBuilder.addField("Pending event waiters", String.format(
+            "%d (matched: %d of %d checked, timed out: %d)",
+            eventWaiter.getPendingCount(),
+            eventWaiter.getMatchedCount(),
+            eventWaiter.getCheckedCount(),
+            eventWaiter.getTimedOutCount()
+        ), true);
+        embedBuilder.addField("Cached audio tracks", String.format(
+            "%d (hits: %d, misses: %d, expired: %d)",
+            audioTrackCache.getSize(),
+            audioTrackCache.getHitCount(),
+            audioTrackCache.getMissCount(),
+            audioTrackCache.getExpiredCount()
+        ), true);
 
         String shardRange = springPropertiesConfig.getApplicationProperty("aiode.preferences.shard_range");
         if (!Strings.isNullOrEmpty(shardRange)) {
@@ -78,10 +78,10 @@ public class ChartsCommand extends AbstractCommand {
             addTrackCharts(userTrackMonthlyChart, embedBuilder, "Monthly", session);
             addArtists(userArtistMonthlyChart, embedBuilder, "Monthly");
         } else {
-            List<Object[]> globalResults = chartService.getPersistentGlobalTrackChart(session);
-            List<Object[]> globalMonthlyResults = chartService.getPersistentGlobalTrackMonthlyChart(session);
-            List<Object[]> globalArtists = chartService.getPersistentGlobalArtistChart(session);
-            List<Object[]> globalArtistsMonthly = chartService.getPersistentGlobalArtistMonthlyChart(session);
+            List<Object[]> globalResults = chartService.getGlobalTrackChart(session);
+            List<Object[]> globalMonthlyResults = chartService.getGlobalTrackMonthlyChart(session);
+            List<Object[]> globalArtists = chartService.getGlobalArtistChart(session);
+            List<Object[]> globalArtistsMonthly = chartService.getGlobalArtistMonthlyChart(session);
 
             embedBuilder.addField("Global", "Shows the charts across all guilds", false);
             addTrackCharts(globalResults, embedBuilder, "All time", session);
@@ -20,8 +20,6 @@ import net.robinfriedli.aiode.audio.queue.QueueFragment;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.CommandManager;
 import net.robinfriedli.aiode.command.commands.AbstractQueueLoadingCommand;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
-import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.xml.CommandContribution;
 import net.robinfriedli.aiode.exceptions.InvalidCommandException;
 import net.robinfriedli.aiode.exceptions.NoResultsFoundException;
@@ -80,9 +78,7 @@ public class PlayCommand extends AbstractQueueLoadingCommand {
             throw new NoResultsFoundException("Result is empty!");
         }
 
-        GuildPropertyManager guildPropertyManager = aiode.getGuildPropertyManager();
-        GuildSpecification specification = getContext().getGuildContext().getSpecification();
-        int autoQueueMode = guildPropertyManager.getPropertyValueOptional("autoQueueMode", Integer.class, specification).orElse(1);
+        int autoQueueMode = getContext().getGuildContext().getSettings().getAutoQueueMode();
 
         if (autoQueueMode == 1 && !audioQueue.isEmpty() && !playback.isShuffle() && (playback.isPlaying() || playback.isPaused())) {
             if (!playback.isPlaying()) {
@@ -145,9 +141,7 @@ public class PlayCommand extends AbstractQueueLoadingCommand {
 
         AudioPlayer audioPlayer = playback.getAudioPlayer();
 
-        GuildPropertyManager guildPropertyManager = aiode.getGuildPropertyManager();
-        GuildSpecification specification = getContext().getGuildContext().getSpecification();
-        int autoQueueMode = guildPropertyManager.getPropertyValueOptional("autoQueueMode", Integer.class, specification).orElse(1);
+        int autoQueueMode = getContext().getGuildContext().getSettings().getAutoQueueMode();
 
         if (autoQueueMode == 1 && !queue.isEmpty() && !playback.isShuffle() && (playback.isPlaying() || playback.isPaused())) {
             if (!playback.isPlaying()) {
@@ -29,6 +29,7 @@ public class EvalCommand extends AbstractCommand {
         SafeGroovyScriptRunner groovyScriptRunner = new SafeGroovyScriptRunner(
             context,
             groovySandboxComponent,
+            aiode.getGroovyScriptCache(),
             groovyVariableManager,
             securityManager,
             argumentSet("privileged")
@@ -55,6 +55,7 @@ public class ScriptCommand extends AbstractScriptCommand {
         SafeGroovyScriptRunner groovyScriptRunner = new SafeGroovyScriptRunner(
             context,
             groovySandboxComponent,
+            aiode.getGroovyScriptCache(),
             groovyVariableManager,
             aiode.getSecurityManager(),
             argumentSet("privileged")
@@ -72,8 +72,7 @@ public class ConnectCommand extends AbstractCommand {
 
     private void awaitPrivateMessage(ClientSession clientSession, long userId, Guild guild, User user, int attemptNumber) {
         CompletableFuture<MessageReceivedEvent> futurePrivateMessage = getManager().getEventWaiter()
-            .awaitEvent(MessageReceivedEvent.class, event -> event.getAuthor().getIdLong() == userId && event.isFromType(ChannelType.PRIVATE))
-            .orTimeout(1, TimeUnit.MINUTES);
+            .awaitEvent(MessageReceivedEvent.class, event -> event.getAuthor().getIdLong() == userId && event.isFromType(ChannelType.PRIVATE), 1, TimeUnit.MINUTES);
         CompletableFutures.handleWhenComplete(futurePrivateMessage, (event, error) -> {
             try {
                 MessageService messageService = getMessageService();
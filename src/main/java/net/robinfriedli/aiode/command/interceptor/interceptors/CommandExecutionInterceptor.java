@@ -17,7 +17,6 @@ import net.robinfriedli.aiode.command.Command;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.interceptor.AbstractChainableCommandInterceptor;
 import net.robinfriedli.aiode.command.interceptor.CommandInterceptor;
-import net.robinfriedli.aiode.concurrent.HistoryPool;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.entities.CommandHistory;
 import net.robinfriedli.aiode.entities.xml.CommandInterceptorContribution;
@@ -26,7 +25,7 @@ import net.robinfriedli.aiode.exceptions.CommandFailure;
 import net.robinfriedli.aiode.exceptions.CommandRuntimeException;
 import net.robinfriedli.aiode.exceptions.NoLoginException;
 import net.robinfriedli.aiode.exceptions.UserException;
-import net.robinfriedli.aiode.persist.StaticSessionProvider;
+import net.robinfriedli.aiode.persist.HistoryWriter;
 import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
 import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
 
@@ -36,11 +35,13 @@ import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
  */
 public class CommandExecutionInterceptor extends AbstractChainableCommandInterceptor {
 
+    private final HistoryWriter historyWriter;
     private final MessageService messageService;
     private final Logger logger;
 
-    public CommandExecutionInterceptor(CommandInterceptorContribution commandInterceptorContribution, CommandInterceptor next, MessageService messageService) {
+    public CommandExecutionInterceptor(CommandInterceptorContribution commandInterceptorContribution, CommandInterceptor next, HistoryWriter historyWriter, MessageService messageService) {
         super(commandInterceptorContribution, next);
+        this.historyWriter = historyWriter;
         this.messageService = messageService;
         this.logger = LoggerFactory.getLogger(getClass());
     }
@@ -173,22 +174,19 @@ public class CommandExecutionInterceptor extends AbstractChainableCommandInterce
                              boolean aborted) {
         CommandContext context = command.getContext();
         context.interruptMonitoring();
-        HistoryPool.execute(() -> {
-            CommandHistory history = context.getCommandHistory();
-            if (history != null) {
-                history.setDurationMs(System.currentTimeMillis() - history.getStartMillis());
-                history.setCompletedSuccessfully(completedSuccessfully);
-                history.setFailedManually(failedManually);
-                history.setUnexpectedException(unexpectedException);
-                history.setErrorMessage(errorMessage);
-                history.setAborted(aborted);
-
-                StaticSessionProvider.consumeSession(session -> session.persist(history));
-            } else {
-                logger.warn("Command " + command + " has no history");
-            }
-        });
+        CommandHistory history = context.getCommandHistory();
+        if (history != null) {
+            history.setDurationMs(System.currentTimeMillis() - history.getStartMillis());
+            history.setCompletedSuccessfully(completedSuccessfully);
+            history.setFailedManually(failedManually);
+            history.setUnexpectedException(unexpectedException);
+            history.setErrorMessage(errorMessage);
+            history.setAborted(aborted);
 
+            historyWriter.addCommandHistory(history);
+        } else {
+            logger.warn("Command " + command + " has no history");
+        }
     }
 
 }
@@ -2,7 +2,7 @@ package net.robinfriedli.aiode.command.interceptor.interceptors;
 
 import java.awt.Color;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,7 +21,10 @@ import net.robinfriedli.aiode.function.LoggingRunnable;
 
 /**
  * Interceptor that monitors a command execution and sends a "Still loading..." message if the command takes longer than
- * 5 seconds to signal to the user that the bot is still execution the command
+ * 5 seconds to signal to the user that the bot is still execution the command. Instead of blocking a thread per command,
+ * the deadlines are registered with a shared scheduler so the number of threads stays constant regardless of the
+ * number of running commands. The monitoring is stopped, deleting the sent messages, when the command is post
+ * processed or the task has completed.
  */
 public class CommandMonitoringInterceptor extends AbstractChainableCommandInterceptor {
 
@@ -46,54 +49,14 @@ public class CommandMonitoringInterceptor extends AbstractChainableCommandInterc
             return;
         }
 
-        Future<?> monitoring = DaemonThreadPool.submit((LoggingRunnable) () -> {
-            Thread thread = Thread.currentThread();
-            String oldName = thread.getName();
-            thread.setName("command-monitoring-" + context);
-            boolean slashCommand = context.isSlashCommand();
-
-            CompletableFuture<Message> stillLoadingMessage = null;
-            CompletableFuture<Message> warningMessage = null;
-            try {
-                task.await(MESSAGE_AFTER_THRESHOLD);
-
-                if (!task.isDone()) {
-                    if (!slashCommand) {
-                        EmbedBuilder embedBuilder = new EmbedBuilder();
-                        embedBuilder.setDescription("Still loading...");
-                        stillLoadingMessage = messageService.send(embedBuilder, context.getChannel());
-                    }
-
-                    task.await(LOGGER_WARNING_AFTER_THRESHOLD);
-                    if (!task.isDone()) {
-                        if (!slashCommand) {
-                            EmbedBuilder warningEmbed = new EmbedBuilder();
-                            warningEmbed.setColor(Color.RED);
-                            warningEmbed.setTitle("Command timeout");
-                            warningEmbed.setDescription(
-                                String.format(
-                                    "Your command '%s' is taking very long to execute. " +
-                                        "If the command is not responding, consider interrupting it using the abort command.",
-                                    command.display())
-                            );
-                            warningMessage = messageService.send(warningEmbed.build(), context.getChannel());
-                        }
-
-                        logger.warn(String.format("Command [%s] on guild %s has exceeded the warn limit for execution duration of %d millis.",
-                            command.display(), context.getGuild(), MESSAGE_AFTER_THRESHOLD + LOGGER_WARNING_AFTER_THRESHOLD));
-                    }
-
-                    task.await();
-                    deleteMessages(stillLoadingMessage, warningMessage);
-                }
-            } catch (InterruptedException e) {
-                // CommandExecutionInterceptor interrupts monitoring in post command
-                deleteMessages(stillLoadingMessage, warningMessage);
-            } finally {
-                thread.setName(oldName);
-            }
-        });
-        context.registerMonitoring(monitoring);
+        CommandMonitoring monitoring = new CommandMonitoring(command, context, task);
+        CompletableFuture<Void> monitoringFuture = new CompletableFuture<>();
+        // CommandExecutionInterceptor cancels the monitoring in post command, which is not reached if a later
+        // interceptor throws, so the monitoring is also stopped once the task completes
+        monitoringFuture.whenComplete((result, e) -> monitoring.stop());
+        task.getCompletion().whenComplete((result, e) -> monitoring.stop());
+        monitoring.start();
+        context.registerMonitoring(monitoringFuture);
     }
 
     private void deleteMessages(CompletableFuture<Message> stillLoadingMessage, CompletableFuture<Message> warningMessage) {
@@ -116,4 +79,84 @@ public class CommandMonitoringInterceptor extends AbstractChainableCommandInterc
         }
     }
 
+    /**
+     * Registers the deadlines for a single command with the shared {@link DaemonThreadPool#SCHEDULER} and sends the
+     * corresponding messages if the command has not completed when a deadline is reached.
+     */
+    private class CommandMonitoring {
+
+        private final Command command;
+        private final CommandContext context;
+        private final CommandExecutionTask task;
+        private final boolean slashCommand;
+
+        private CompletableFuture<Message> stillLoadingMessage;
+        private CompletableFuture<Message> warningMessage;
+        private ScheduledFuture<?> nextDeadline;
+        private boolean stopped;
+
+        private CommandMonitoring(Command command, CommandContext context, CommandExecutionTask task) {
+            this.command = command;
+            this.context = context;
+            this.task = task;
+            this.slashCommand = context.isSlashCommand();
+        }
+
+        private synchronized void start() {
+            if (!stopped) {
+                nextDeadline = DaemonThreadPool.schedule((LoggingRunnable) this::onMessageThreshold, MESSAGE_AFTER_THRESHOLD);
+            }
+        }
+
+        private synchronized void stop() {
+            if (stopped) {
+                return;
+            }
+
+            stopped = true;
+            if (nextDeadline != null) {
+                nextDeadline.cancel(false);
+            }
+            deleteMessages(stillLoadingMessage, warningMessage);
+        }
+
+        private synchronized void onMessageThreshold() {
+            if (stopped || task.isDone()) {
+                return;
+            }
+
+            if (!slashCommand) {
+                EmbedBuilder embedBuilder = new EmbedBuilder();
+                embedBuilder.setDescription("Still loading...");
+                stillLoadingMessage = messageService.send(embedBuilder, context.getChannel());
+            }
+
+            nextDeadline = DaemonThreadPool.schedule((LoggingRunnable) this::onWarningThreshold, LOGGER_WARNING_AFTER_THRESHOLD);
+        }
+
+        private synchronized void onWarningThreshold() {
+            if (stopped || task.isDone()) {
+                return;
+            }
+
+            if (!slashCommand) {
+                EmbedBuilder warningEmbed = new EmbedBuilder();
+                warningEmbed.setColor(Color.RED);
+                warningEmbed.setTitle("Command timeout");
+                warningEmbed.setDescription(
+                    String.format(
+                        "Your command '%s' is taking very long to execute. " +
+                            "If the command is not responding, consider interrupting it using the abort command.",
+                        command.display())
+                );
+                warningMessage = messageService.send(warningEmbed.build(), context.getChannel());
+            }
+
+            logger.warn(String.format("Command [%s] on guild %s has exceeded the warn limit for execution duration of %d millis.",
+                command.display(), context.getGuild(), MESSAGE_AFTER_THRESHOLD + LOGGER_WARNING_AFTER_THRESHOLD));
+            nextDeadline = null;
+        }
+
+    }
+
 }
@@ -10,16 +10,20 @@ import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.interceptor.AbstractChainableCommandInterceptor;
 import net.robinfriedli.aiode.command.interceptor.CommandInterceptor;
 import net.robinfriedli.aiode.command.widget.AbstractWidgetAction;
+import net.robinfriedli.aiode.discord.GuildActivityTracker;
 import net.robinfriedli.aiode.entities.CommandHistory;
 import net.robinfriedli.aiode.entities.xml.CommandInterceptorContribution;
 
 /**
- * Interceptor that creates a commands {@link CommandHistory} entry
+ * Interceptor that creates a commands {@link CommandHistory} entry and records the activity of the guild
  */
 public class HistoryInterceptor extends AbstractChainableCommandInterceptor {
 
-    public HistoryInterceptor(CommandInterceptorContribution contribution, CommandInterceptor next) {
+    private final GuildActivityTracker guildActivityTracker;
+
+    public HistoryInterceptor(CommandInterceptorContribution contribution, CommandInterceptor next, GuildActivityTracker guildActivityTracker) {
         super(contribution, next);
+        this.guildActivityTracker = guildActivityTracker;
     }
 
     @Override
@@ -39,5 +43,6 @@ public class HistoryInterceptor extends AbstractChainableCommandInterceptor {
         history.setUser(context.getUser().getName());
         history.setUserId(context.getUser().getId());
         context.setCommandHistory(history);
+        guildActivityTracker.recordActivity(context.getGuild());
     }
 }
@@ -9,28 +9,23 @@ import net.robinfriedli.aiode.command.Command;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.interceptor.AbstractChainableCommandInterceptor;
 import net.robinfriedli.aiode.command.interceptor.CommandInterceptor;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
-import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.StoredScript;
 import net.robinfriedli.aiode.entities.xml.CommandInterceptorContribution;
-import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import net.robinfriedli.aiode.scripting.GroovyScriptCache;
 import net.robinfriedli.aiode.scripting.SafeGroovyScriptRunner;
 import org.hibernate.Session;
 
 public abstract class ScriptCommandInterceptor extends AbstractChainableCommandInterceptor {
 
     private final GroovySandboxComponent groovySandboxComponent;
-    private final GuildPropertyManager guildPropertyManager;
-    private final QueryBuilderFactory queryBuilderFactory;
+    private final GroovyScriptCache groovyScriptCache;
 
     public ScriptCommandInterceptor(CommandInterceptorContribution contribution,
                                     CommandInterceptor next,
                                     GroovySandboxComponent groovySandboxComponent,
-                                    GuildPropertyManager guildPropertyManager,
-                                    QueryBuilderFactory queryBuilderFactory) {
+                                    GroovyScriptCache groovyScriptCache) {
         super(contribution, next);
-        this.guildPropertyManager = guildPropertyManager;
-        this.queryBuilderFactory = queryBuilderFactory;
+        this.groovyScriptCache = groovyScriptCache;
         this.groovySandboxComponent = groovySandboxComponent;
     }
 
@@ -48,28 +43,12 @@ public abstract class ScriptCommandInterceptor extends AbstractChainableCommandI
         CommandContext context = command.getContext();
         Session session = context.getSession();
 
-        GuildSpecification specification = context.getGuildContext().getSpecification(session);
-        boolean enableScripting = guildPropertyManager
-            .getPropertyValueOptional("enableScripting", Boolean.class, specification)
-            .orElse(true);
-
-        if (!enableScripting) {
+        if (!context.getGuildContext().getSettings().isEnableScripting()) {
             return;
         }
 
         String usageId = getUsageId();
-        List<StoredScript> scriptInterceptors = queryBuilderFactory.find(StoredScript.class)
-            .where((cb, root, subQueryFactory) -> cb.and(
-                cb.isTrue(root.get("active")),
-                cb.equal(
-                    root.get("scriptUsage").get("pk"),
-                    subQueryFactory.createUncorrelatedSubQuery(StoredScript.ScriptUsage.class, "pk", Long.class)
-                        .where((cb1, root1) -> cb1.equal(root1.get("uniqueId"), usageId))
-                        .build(session)
-                )
-            ))
-            .build(session)
-            .getResultList();
+        List<StoredScript> scriptInterceptors = groovyScriptCache.getActiveScripts(session, context.getGuild().getId(), usageId);
 
         if (scriptInterceptors.isEmpty()) {
             return;
@@ -79,6 +58,7 @@ public abstract class ScriptCommandInterceptor extends AbstractChainableCommandI
         SafeGroovyScriptRunner scriptRunner = new SafeGroovyScriptRunner(
             context,
             groovySandboxComponent,
+            groovyScriptCache,
             aiode.getGroovyVariableManager(),
             aiode.getSecurityManager(),
             false
@@ -94,9 +74,8 @@ public abstract class ScriptCommandInterceptor extends AbstractChainableCommandI
         public ScriptCommandInterceptorPreExecution(CommandInterceptorContribution contribution,
                                                     CommandInterceptor next,
                                                     GroovySandboxComponent groovySandboxComponent,
-                                                    GuildPropertyManager guildPropertyManager,
-                                                    QueryBuilderFactory queryBuilderFactory) {
-            super(contribution, next, groovySandboxComponent, guildPropertyManager, queryBuilderFactory);
+                                                    GroovyScriptCache groovyScriptCache) {
+            super(contribution, next, groovySandboxComponent, groovyScriptCache);
         }
 
         @Override
@@ -110,9 +89,8 @@ public abstract class ScriptCommandInterceptor extends AbstractChainableCommandI
         public ScriptCommandInterceptorFinalizer(CommandInterceptorContribution contribution,
                                                  CommandInterceptor next,
                                                  GroovySandboxComponent groovySandboxComponent,
-                                                 GuildPropertyManager guildPropertyManager,
-                                                 QueryBuilderFactory queryBuilderFactory) {
-            super(contribution, next, groovySandboxComponent, guildPropertyManager, queryBuilderFactory);
+                                                 GroovyScriptCache groovyScriptCache) {
+            super(contribution, next, groovySandboxComponent, groovyScriptCache);
         }
 
         @Override
@@ -88,6 +88,16 @@ public class WidgetRegistry {
         }
     }
 
+    public boolean isEmpty() {
+        ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return activeWidgets.isEmpty();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     public void withActiveWidgets(Consumer<Collection<AbstractWidget>> c) {
         ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
         readLock.lock();
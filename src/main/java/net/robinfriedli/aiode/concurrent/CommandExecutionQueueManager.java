@@ -1,6 +1,7 @@
 package net.robinfriedli.aiode.concurrent;
 
 import java.time.Duration;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -32,20 +33,24 @@ public class CommandExecutionQueueManager {
     private static final Duration RATE_LIMIT_PERIOD = Duration.ofSeconds(5);
     private static final Duration RATE_LIMIT_VIOLATION_TIMEOUT = Duration.ofSeconds(15);
 
-    private static final ThreadPoolExecutor GLOBAL_POOL = new ThreadPoolExecutor(3, Integer.MAX_VALUE,
-        60L, TimeUnit.SECONDS,
-        new SynchronousQueue<>(),
-        new ThreadFactory() {
-            private final AtomicLong threadId = new AtomicLong(1);
-
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread thread = new Thread(r);
-                thread.setName("command-execution-queue-idle-thread-" + threadId.getAndIncrement());
-                thread.setUncaughtExceptionHandler(new CommandUncaughtExceptionHandler(LoggerFactory.getLogger(Command.class)));
-                return thread;
-            }
-        });
+    private static final ExecutorService GLOBAL_POOL = VirtualThreads.createPool(
+        "command-execution-queue",
+        new CommandUncaughtExceptionHandler(LoggerFactory.getLogger(Command.class)),
+        () -> new ThreadPoolExecutor(3, Integer.MAX_VALUE,
+            60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadFactory() {
+                private final AtomicLong threadId = new AtomicLong(1);
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setName("command-execution-queue-idle-thread-" + threadId.getAndIncrement());
+                    thread.setUncaughtExceptionHandler(new CommandUncaughtExceptionHandler(LoggerFactory.getLogger(Command.class)));
+                    return thread;
+                }
+            })
+    );
 
     static {
         Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(GLOBAL_POOL));
@@ -76,6 +81,24 @@ public class CommandExecutionQueueManager {
         guildExecutionQueues.remove(guild);
     }
 
+    /**
+     * Remove the execution queue of the guild if it is not currently running or holding any tasks, it is created again
+     * by {@link #getForGuild(Guild)} once the guild issues its next command.
+     *
+     * @return true if the queue has been removed
+     */
+    public boolean removeGuildIfIdle(Guild guild) {
+        return guildIdSync.evaluate(guild.getId(), () -> {
+            ThreadExecutionQueue threadExecutionQueue = guildExecutionQueues.get(guild);
+            if (threadExecutionQueue != null && threadExecutionQueue.isIdle()) {
+                guildExecutionQueues.remove(guild);
+                return true;
+            }
+
+            return false;
+        });
+    }
+
     public ThreadExecutionQueue getForGuild(Guild guild) {
         ThreadExecutionQueue threadExecutionQueue = guildExecutionQueues.get(guild);
 
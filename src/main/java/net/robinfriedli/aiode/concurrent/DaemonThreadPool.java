@@ -2,6 +2,8 @@ package net.robinfriedli.aiode.concurrent;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -14,29 +16,46 @@ import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExcepti
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Thread pool spawning daemon threads used for command monitoring. This pool uses a 0 capacity SynchronousQueue to ensure
- * that tasks are never queued but executed instantly.
+ * Thread pool spawning daemon threads. This pool uses a 0 capacity SynchronousQueue to ensure that tasks are never
+ * queued but executed instantly. Additionally provides a single daemon thread scheduler used for command monitoring,
+ * which registers deadlines for each command instead of blocking a thread per command. Scheduled tasks must therefore
+ * never block.
  */
 public class DaemonThreadPool {
 
-    public static final ExecutorService POOL = new ThreadPoolExecutor(3, Integer.MAX_VALUE,
-        60L, TimeUnit.SECONDS,
-        new SynchronousQueue<>(),
-        new ThreadFactory() {
-            private final AtomicLong threadId = new AtomicLong(1);
-
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread thread = new Thread(r);
-                thread.setName("daemon-pool-thread-" + threadId.getAndIncrement());
-                thread.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
-                thread.setDaemon(true);
-                return thread;
-            }
-        });
+    public static final ExecutorService POOL = VirtualThreads.createPool(
+        "daemon-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> new ThreadPoolExecutor(3, Integer.MAX_VALUE,
+            60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadFactory() {
+                private final AtomicLong threadId = new AtomicLong(1);
+
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setName("daemon-pool-thread-" + threadId.getAndIncrement());
+                    thread.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            })
+    );
+
+    public static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r);
+        thread.setName("daemon-scheduler-thread");
+        thread.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
+        thread.setDaemon(true);
+        return thread;
+    });
 
     static {
+        // the command monitoring deadlines are usually cancelled, make sure they do not pile up in the queue
+        SCHEDULER.setRemoveOnCancelPolicy(true);
         Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(POOL));
+        Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(SCHEDULER));
     }
 
     public static void execute(Runnable r) {
@@ -47,4 +66,8 @@ public class DaemonThreadPool {
         return POOL.submit(r);
     }
 
+    public static ScheduledFuture<?> schedule(Runnable r, long delayMillis) {
+        return SCHEDULER.schedule(r, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
 }
@@ -4,6 +4,7 @@ import java.util.concurrent.TimeUnit;
 
 import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.boot.ShutdownableExecutorService;
+import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
 import net.robinfriedli.threadpool.ThreadPool;
 
 /**
@@ -13,13 +14,15 @@ import net.robinfriedli.threadpool.ThreadPool;
  */
 public class EagerFetchQueue {
 
-    public static final ForkTaskThreadPool FETCH_POOL = new ForkTaskThreadPool(
-        ThreadPool.Builder.create()
+    public static final ForkTaskThreadPool FETCH_POOL = new ForkTaskThreadPool(VirtualThreads.createPool(
+        "eager-fetch-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
             .setCoreSize(3)
             .setMaxSize(20)
             .setKeepAlive(1L, TimeUnit.MINUTES)
             .setThreadFactory(new LoggingThreadFactory("eager-fetch-pool")).build()
-    );
+    ));
 
     static {
         Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(FETCH_POOL));
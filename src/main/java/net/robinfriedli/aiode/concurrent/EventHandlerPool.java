@@ -5,15 +5,20 @@ import java.util.concurrent.TimeUnit;
 
 import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.boot.ShutdownableExecutorService;
+import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
 import net.robinfriedli.threadpool.ThreadPool;
 
 public class EventHandlerPool {
 
-    public static final ExecutorService POOL = ThreadPool.Builder.create()
-        .setCoreSize(3)
-        .setMaxSize(50)
-        .setKeepAlive(5L, TimeUnit.MINUTES)
-        .setThreadFactory(new LoggingThreadFactory("event-handler-pool")).build();
+    public static final ExecutorService POOL = VirtualThreads.createPool(
+        "event-handler-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
+            .setCoreSize(3)
+            .setMaxSize(50)
+            .setKeepAlive(5L, TimeUnit.MINUTES)
+            .setThreadFactory(new LoggingThreadFactory("event-handler-pool")).build()
+    );
 
     static {
         Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(POOL));
@@ -2,16 +2,16 @@ package net.robinfriedli.aiode.concurrent;
 
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
-import net.robinfriedli.threadpool.ThreadPool;
 import org.jetbrains.annotations.NotNull;
 
 public class ForkTaskThreadPool extends AbstractExecutorService {
 
-    private final ThreadPool threadPool;
+    private final ExecutorService threadPool;
 
-    public ForkTaskThreadPool(ThreadPool threadPool) {
+    public ForkTaskThreadPool(ExecutorService threadPool) {
         this.threadPool = threadPool;
     }
 
@@ -28,7 +28,7 @@ public class ForkTaskThreadPool extends AbstractExecutorService {
         });
     }
 
-    public ThreadPool getThreadPool() {
+    public ExecutorService getThreadPool() {
         return threadPool;
     }
 
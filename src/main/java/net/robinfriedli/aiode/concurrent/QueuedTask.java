@@ -1,5 +1,9 @@
 package net.robinfriedli.aiode.concurrent;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import net.robinfriedli.aiode.exceptions.CommandRuntimeException;
 import net.robinfriedli.aiode.exceptions.handler.ExceptionHandlerExecutor;
 
@@ -10,6 +14,8 @@ public class QueuedTask implements Runnable {
 
     private final Runnable task;
     private final ThreadExecutionQueue queue;
+    private final CountDownLatch completionLatch = new CountDownLatch(1);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
     private volatile boolean complete;
     private volatile boolean terminated;
     private String name;
@@ -23,6 +29,7 @@ public class QueuedTask implements Runnable {
     @Override
     public void run() {
         if (terminated) {
+            completion.complete(null);
             return;
         }
 
@@ -49,10 +56,8 @@ public class QueuedTask implements Runnable {
             }
         } finally {
             complete = true;
-
-            synchronized (this) {
-                notifyAll();
-            }
+            completionLatch.countDown();
+            completion.complete(null);
 
             ThreadContext.Current.clear();
             queue.removeFromPool(this);
@@ -73,19 +78,23 @@ public class QueuedTask implements Runnable {
             return;
         }
 
-        synchronized (this) {
-            long millisToWait = millis;
-            while (!(isDone() || (millis > 0 && millisToWait <= 0))) {
-                // recheck condition after acquiring lock in case of a race condition
-                // wait in a loop to guard against spurious wakeups, keep waiting until command is done or until the
-                // specified amount of milliseconds has passed, if amount to wait is greater than 0 (0 means indefinite wait)
-                long currentTime = System.currentTimeMillis();
-                wait(millisToWait);
-                millisToWait -= (System.currentTimeMillis() - currentTime);
-            }
+        // waiting on a latch rather than the monitor of this task does not pin the carrier of a virtual thread
+        // a millis value of 0 means indefinite wait
+        if (millis > 0) {
+            completionLatch.await(millis, TimeUnit.MILLISECONDS);
+        } else {
+            completionLatch.await();
         }
     }
 
+    /**
+     * @return a future that is completed when this task has finished running, or when it returns without running
+     * because it has been terminated before it started. Dependent actions run on the thread of the task.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
     public boolean isComplete() {
         return complete;
     }
@@ -137,9 +146,8 @@ public class QueuedTask implements Runnable {
     }
 
     private void runWithSlot() {
-        Object slot;
         try {
-            slot = queue.takeSlot();
+            queue.acquireSlot();
         } catch (InterruptedException e) {
             return;
         }
@@ -147,7 +155,7 @@ public class QueuedTask implements Runnable {
         try {
             task.run();
         } finally {
-            queue.freeSlot(slot);
+            queue.releaseSlot();
         }
     }
 }
@@ -3,8 +3,9 @@ package net.robinfriedli.aiode.concurrent;
 import java.time.Duration;
 import java.util.Vector;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
@@ -15,16 +16,18 @@ import net.robinfriedli.aiode.exceptions.RateLimitException;
 import net.robinfriedli.aiode.function.RateLimitInvoker;
 
 /**
- * Thread queue that allows a certain amount of threads to run concurrently based on the size parameter
+ * Thread queue that allows a certain amount of threads to run concurrently based on the size parameter. The limit is
+ * enforced by a semaphore with one permit per slot rather than by the size of the thread pool, so the queue may also
+ * submit its tasks to an unbounded virtual thread executor, see {@link VirtualThreads}.
  */
 public class ThreadExecutionQueue {
 
     private final AtomicInteger threadNumber;
-    private final BlockingQueue<Object> slotStack;
+    private final Semaphore slots;
     private final BlockingQueue<QueuedTask> queue;
     private final int queueSize;
     private final String name;
-    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService threadPool;
     private final Vector<QueuedTask> currentPool;
 
     @Nullable
@@ -38,7 +41,7 @@ public class ThreadExecutionQueue {
     private volatile boolean closed;
     private volatile long timeoutNanosTimeStamp;
 
-    public ThreadExecutionQueue(String name, int concurrentSize, ThreadPoolExecutor threadPool) {
+    public ThreadExecutionQueue(String name, int concurrentSize, ExecutorService threadPool) {
         this(name, concurrentSize, 0, threadPool, null, 0, null, null);
     }
 
@@ -46,20 +49,17 @@ public class ThreadExecutionQueue {
         String name,
         int concurrentSize,
         int queueSize,
-        ThreadPoolExecutor threadPool,
+        ExecutorService threadPool,
         @Nullable String rateLimiterIdentifier,
         int limitForPeriod,
         @Nullable Duration period,
         @Nullable Duration violationTimeout
     ) {
         threadNumber = new AtomicInteger(1);
-        slotStack = new LinkedBlockingQueue<>(concurrentSize);
+        slots = new Semaphore(concurrentSize);
         this.name = name;
         this.threadPool = threadPool;
         currentPool = new Vector<>(concurrentSize);
-        for (int i = 0; i < concurrentSize; i++) {
-            slotStack.add(new Object());
-        }
 
         this.queueSize = queueSize;
         if (queueSize == 0) {
@@ -158,7 +158,7 @@ public class ThreadExecutionQueue {
                     );
                 }
 
-                if (!slotStack.isEmpty()) {
+                if (slots.availablePermits() > 0) {
                     runNext();
                     return true;
                 }
@@ -219,16 +219,16 @@ public class ThreadExecutionQueue {
         return currentPool.isEmpty() && queue.isEmpty();
     }
 
-    Object takeSlot() throws InterruptedException {
-        return slotStack.take();
+    void acquireSlot() throws InterruptedException {
+        slots.acquire();
     }
 
     void removeFromPool(QueuedTask queuedTask) {
         currentPool.remove(queuedTask);
     }
 
-    synchronized void freeSlot(Object slot) {
-        slotStack.add(slot);
+    synchronized void releaseSlot() {
+        slots.release();
         if (!closed) {
             runNext();
         }
@@ -0,0 +1,74 @@
+package net.robinfriedli.aiode.concurrent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether the pools running blocking tasks, such as command execution, track loading and event handling, use
+ * virtual threads instead of platform threads, configured by the {@link #PROPERTY} application property. Since the pools
+ * are created in static initializers before the spring context is available, the property is read from the
+ * application.properties file directly and may be overridden using a system property of the same name.
+ * <p>
+ * In virtual thread mode each task runs on a new virtual thread, limits on the number of concurrent tasks are still
+ * enforced where they are needed by the {@link ThreadExecutionQueue} of each guild. {@link ThreadContext} propagation
+ * is unaffected since it is based on thread locals that are installed by the task.
+ */
+public final class VirtualThreads {
+
+    public static final String PROPERTY = "aiode.preferences.enable_virtual_threads";
+
+    private static final boolean ENABLED = readEnabled();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @param name               the name of the pool, used as prefix for the names of its threads
+     * @param exceptionHandler   the uncaught exception handler for virtual threads
+     * @param platformThreadPool supplier for the pool used if virtual threads are disabled
+     * @return an executor that starts a new virtual thread for each task or the pool created by the supplier
+     */
+    public static ExecutorService createPool(String name, Thread.UncaughtExceptionHandler exceptionHandler, Supplier<ExecutorService> platformThreadPool) {
+        if (!ENABLED) {
+            return platformThreadPool.get();
+        }
+
+        return Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual()
+                .name(name + "-virtual-thread-", 1)
+                .uncaughtExceptionHandler(exceptionHandler)
+                .factory()
+        );
+    }
+
+    private static boolean readEnabled() {
+        String systemProperty = System.getProperty(PROPERTY);
+        if (systemProperty != null) {
+            return Boolean.parseBoolean(systemProperty);
+        }
+
+        try (InputStream inputStream = VirtualThreads.class.getResourceAsStream("/application.properties")) {
+            if (inputStream == null) {
+                return false;
+            }
+
+            Properties properties = new Properties();
+            properties.load(inputStream);
+            return Boolean.parseBoolean(properties.getProperty(PROPERTY, "false"));
+        } catch (IOException e) {
+            LoggerFactory.getLogger(VirtualThreads.class).error("Could not read " + PROPERTY + ", using platform threads", e);
+            return false;
+        }
+    }
+
+}
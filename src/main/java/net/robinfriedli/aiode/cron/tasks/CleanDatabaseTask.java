@@ -0,0 +1,40 @@
+package net.robinfriedli.aiode.cron.tasks;
+
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.cron.AbstractCronTask;
+import net.robinfriedli.aiode.persist.DatabaseCleanupService;
+import net.robinfriedli.exec.Mode;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Task that deletes data of guilds the bot is no longer a part of if enabled by the aiode.preferences.enable_db_cleanup
+ * property. Progress is logged by the {@link DatabaseCleanupService} after each batch.
+ */
+public class CleanDatabaseTask extends AbstractCronTask {
+
+    @Override
+    protected void run(JobExecutionContext jobExecutionContext) {
+        Aiode aiode = Aiode.get();
+        Boolean enabled = aiode.getSpringPropertiesConfig().getApplicationProperty(Boolean.class, "aiode.preferences.enable_db_cleanup");
+        if (enabled == null || !enabled) {
+            return;
+        }
+
+        DatabaseCleanupService databaseCleanupService = aiode.getDatabaseCleanupService();
+        if (databaseCleanupService.isRunning()) {
+            return;
+        }
+
+        try {
+            databaseCleanupService.clean();
+        } catch (IllegalStateException e) {
+            Aiode.LOGGER.warn("Skipping scheduled database cleanup: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected Mode getMode() {
+        // the DatabaseCleanupService manages a transaction per batch
+        return Mode.create();
+    }
+}
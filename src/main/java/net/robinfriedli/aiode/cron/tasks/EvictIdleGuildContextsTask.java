@@ -0,0 +1,60 @@
+package net.robinfriedli.aiode.cron.tasks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.concurrent.CommandExecutionQueueManager;
+import net.robinfriedli.aiode.cron.AbstractCronTask;
+import net.robinfriedli.aiode.discord.GuildContext;
+import net.robinfriedli.aiode.discord.GuildManager;
+import net.robinfriedli.exec.Mode;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Task that periodically evicts the {@link GuildContext} and command execution queue of guilds that have not been used
+ * for {@link #MAX_IDLE_MINUTES} minutes and do not hold any state, they are set up again when the guild is used next.
+ */
+public class EvictIdleGuildContextsTask extends AbstractCronTask {
+
+    private static final long MAX_IDLE_MINUTES = 30;
+
+    @Override
+    protected void run(JobExecutionContext jobExecutionContext) {
+        Aiode aiode = Aiode.get();
+        GuildManager guildManager = aiode.getGuildManager();
+        CommandExecutionQueueManager executionQueueManager = aiode.getExecutionQueueManager();
+        Logger logger = LoggerFactory.getLogger(getClass());
+        long maxIdleMillis = TimeUnit.MINUTES.toMillis(MAX_IDLE_MINUTES);
+
+        int evictedGuilds = 0;
+        for (GuildContext guildContext : guildManager.getGuildContexts()) {
+            Guild guild = guildContext.retrieveGuild();
+            if (guild == null) {
+                // handled by the ClearAbandonedGuildContextsTask
+                continue;
+            }
+
+            try {
+                if (guildManager.evictIfIdle(guild, maxIdleMillis)) {
+                    executionQueueManager.removeGuildIfIdle(guild);
+                    ++evictedGuilds;
+                }
+            } catch (Exception e) {
+                logger.error("Exception while evicting context of guild " + guild, e);
+            }
+        }
+
+        if (evictedGuilds > 0) {
+            logger.info("Evicted context for " + evictedGuilds + " idle guilds");
+        }
+    }
+
+    @Override
+    protected Mode getMode() {
+        return Mode.create();
+    }
+}
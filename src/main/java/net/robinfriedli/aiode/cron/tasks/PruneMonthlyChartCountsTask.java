@@ -7,15 +7,14 @@ import net.robinfriedli.aiode.function.modes.HibernateTransactionMode;
 import net.robinfriedli.exec.Mode;
 import org.quartz.JobExecutionContext;
 
-public class RefreshPersistentGlobalChartsTask extends AbstractCronTask {
+public class PruneMonthlyChartCountsTask extends AbstractCronTask {
 
     @Override
     protected void run(JobExecutionContext jobExecutionContext) throws Exception {
         ChartService chartService = Aiode.get().getChartService();
-        Aiode.LOGGER.info("Starting to refresh persistent global charts");
         long millis = System.currentTimeMillis();
-        chartService.refreshPersistentGlobalCharts();
-        Aiode.LOGGER.info("Completed refreshing persistent global charts after {}ms", System.currentTimeMillis() - millis);
+        int deletedCount = chartService.pruneMonthlyChartCounts();
+        Aiode.LOGGER.info("Deleted {} chart counts of past months after {}ms", deletedCount, System.currentTimeMillis() - millis);
     }
 
     @Override
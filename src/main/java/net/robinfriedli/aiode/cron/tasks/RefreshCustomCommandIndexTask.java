@@ -0,0 +1,26 @@
+package net.robinfriedli.aiode.cron.tasks;
+
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.command.CustomCommandIndex;
+import net.robinfriedli.aiode.cron.AbstractCronTask;
+import net.robinfriedli.aiode.persist.StaticSessionProvider;
+import net.robinfriedli.exec.Mode;
+import org.quartz.JobExecutionContext;
+
+/**
+ * Task that periodically reloads the {@link CustomCommandIndex} to pick up presets and scripts created by other
+ * instances, which are not seen by the interceptors of this instance.
+ */
+public class RefreshCustomCommandIndexTask extends AbstractCronTask {
+
+    @Override
+    protected void run(JobExecutionContext jobExecutionContext) {
+        CustomCommandIndex customCommandIndex = Aiode.get().getCommandManager().getCustomCommandIndex();
+        StaticSessionProvider.consumeSession(customCommandIndex::initialize);
+    }
+
+    @Override
+    protected Mode getMode() {
+        return Mode.create();
+    }
+}
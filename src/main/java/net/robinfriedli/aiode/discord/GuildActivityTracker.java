@@ -0,0 +1,119 @@
+package net.robinfriedli.aiode.discord;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Sets;
+import net.dv8tion.jda.api.entities.Guild;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the last time each guild entered a command or started a track in memory, replacing the queries on the
+ * command and playback history when looking up active guilds. Activities are kept in a concurrent map of guild id to
+ * the time of the last activity and a sorted index to find all guilds active since a point in time in O(active guilds)
+ * without locking. Activities older than {@link #RETENTION_MS} are pruned. Since this only tracks the activity of this
+ * instance since it was started, {@link #coversPeriod(long)} tells callers whether they need to fall back to the
+ * history tables.
+ */
+@Component
+public class GuildActivityTracker {
+
+    public static final long RETENTION_MS = TimeUnit.HOURS.toMillis(2);
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Long, Long> lastActivities = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Activity> activityIndex = new ConcurrentSkipListSet<>();
+
+    public void recordActivity(Guild guild) {
+        recordActivity(guild.getIdLong());
+    }
+
+    public void recordActivity(long guildId) {
+        long nanos = System.nanoTime();
+        Long previous = lastActivities.put(guildId, nanos);
+        activityIndex.add(new Activity(nanos, guildId));
+        if (previous != null && previous != nanos) {
+            // a concurrent update may leave a stale index entry behind, those are skipped when reading and pruned eventually
+            activityIndex.remove(new Activity(previous, guildId));
+        }
+    }
+
+    /**
+     * @return the ids of all guilds that were active within the given amount of milliseconds
+     */
+    public Set<Long> getActiveGuildIds(long periodMs) {
+        long nowNanos = System.nanoTime();
+        prune(nowNanos);
+
+        long sinceNanos = nowNanos - TimeUnit.MILLISECONDS.toNanos(periodMs);
+        Set<Long> guildIds = Sets.newHashSet();
+        for (Activity activity : activityIndex.tailSet(new Activity(sinceNanos, Long.MIN_VALUE))) {
+            guildIds.add(activity.guildId);
+        }
+
+        return guildIds;
+    }
+
+    /**
+     * @return true if all activity within the given amount of milliseconds has been tracked, false if the period
+     * reaches back before this instance was started or exceeds the retention
+     */
+    public boolean coversPeriod(long periodMs) {
+        return periodMs <= RETENTION_MS && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= periodMs;
+    }
+
+    public int getTrackedGuildCount() {
+        return lastActivities.size();
+    }
+
+    private void prune(long nowNanos) {
+        long expiryNanos = nowNanos - TimeUnit.MILLISECONDS.toNanos(RETENTION_MS);
+        Iterator<Activity> expiredActivities = activityIndex.headSet(new Activity(expiryNanos, Long.MIN_VALUE)).iterator();
+        while (expiredActivities.hasNext()) {
+            Activity expired = expiredActivities.next();
+            expiredActivities.remove();
+            lastActivities.remove(expired.guildId, expired.nanos);
+        }
+    }
+
+    private static class Activity implements Comparable<Activity> {
+
+        private final long nanos;
+        private final long guildId;
+
+        private Activity(long nanos, long guildId) {
+            this.nanos = nanos;
+            this.guildId = guildId;
+        }
+
+        @Override
+        public int compareTo(Activity o) {
+            // compare the difference to be robust against nanoTime overflowing
+            int timeComparison = Long.signum(nanos - o.nanos);
+            return timeComparison != 0 ? timeComparison : Long.compare(guildId, o.guildId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Activity)) {
+                return false;
+            }
+            Activity activity = (Activity) o;
+            return nanos == activity.nanos && guildId == activity.guildId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(nanos) * 31 + Long.hashCode(guildId);
+        }
+
+    }
+
+}
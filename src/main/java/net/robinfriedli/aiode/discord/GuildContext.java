@@ -1,7 +1,6 @@
 package net.robinfriedli.aiode.discord;
 
 import net.dv8tion.jda.api.entities.Guild;
-import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.audio.AudioPlayback;
 import net.robinfriedli.aiode.audio.exec.PooledTrackLoadingExecutor;
 import net.robinfriedli.aiode.audio.exec.ReplaceableTrackLoadingExecutor;
@@ -11,9 +10,7 @@ import net.robinfriedli.aiode.command.ClientQuestionEventManager;
 import net.robinfriedli.aiode.command.widget.AbstractWidget;
 import net.robinfriedli.aiode.command.widget.WidgetRegistry;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
-import net.robinfriedli.aiode.discord.property.properties.BotNameProperty;
-import net.robinfriedli.aiode.discord.property.properties.PrefixProperty;
+import net.robinfriedli.aiode.discord.property.GuildSettings;
 import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.persist.StaticSessionProvider;
 import org.hibernate.Session;
@@ -34,14 +31,22 @@ public class GuildContext {
     private final ReplaceableTrackLoadingExecutor replaceableTrackLoadingExecutor;
     private final WidgetRegistry widgetRegistry;
 
-    public GuildContext(Guild guild, AudioPlayback playback, long specificationPk) {
+    // snapshot of the guild properties, used to read properties without loading the GuildSpecification, replaced by the
+    // GuildPropertyInterceptor after changes are committed
+    private volatile GuildSettings settings;
+
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+    private volatile boolean evicted;
+
+    public GuildContext(Guild guild, AudioPlayback playback, GuildSpecification specification, GuildSettings settings) {
         this.playback = playback;
         clientQuestionEventManager = new ClientQuestionEventManager();
         this.guild = new DiscordEntity.Guild(guild);
-        this.specificationPk = specificationPk;
+        this.specificationPk = specification.getPk();
         pooledTrackLoadingExecutor = new PooledTrackLoadingExecutor(guild.getId(), this);
         replaceableTrackLoadingExecutor = new ReplaceableTrackLoadingExecutor(this);
         widgetRegistry = new WidgetRegistry();
+        this.settings = settings;
     }
 
     public Guild getGuild() {
@@ -57,6 +62,10 @@ public class GuildContext {
         return playback;
     }
 
+    public long getSpecificationPk() {
+        return specificationPk;
+    }
+
     public GuildSpecification getSpecification(Session session) {
         GuildSpecification guildSpecification = session.getReference(GuildSpecification.class, specificationPk);
         session.refresh(guildSpecification);
@@ -74,14 +83,7 @@ public class GuildContext {
     }
 
     public String getBotName() {
-        return StaticSessionProvider.invokeWithSession(session -> {
-            GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-            GuildSpecification specification = getSpecification(session);
-
-            return guildPropertyManager
-                .getPropertyValueOptional("botName", String.class, specification)
-                .orElse(BotNameProperty.DEFAULT_FALLBACK);
-        });
+        return settings.getBotName();
     }
 
     public void setBotName(String name) {
@@ -93,14 +95,7 @@ public class GuildContext {
     }
 
     public String getPrefix() {
-        return StaticSessionProvider.invokeWithSession(session -> {
-            GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-            GuildSpecification specification = getSpecification(session);
-
-            return guildPropertyManager
-                .getPropertyValueOptional("prefix", String.class, specification)
-                .orElse(PrefixProperty.DEFAULT_FALLBACK);
-        });
+        return settings.getPrefix();
     }
 
     public void setPrefix(String prefix) {
@@ -111,6 +106,17 @@ public class GuildContext {
         });
     }
 
+    /**
+     * @return the values of the guild properties as of the last committed change
+     */
+    public GuildSettings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(GuildSettings settings) {
+        this.settings = settings;
+    }
+
     public PooledTrackLoadingExecutor getPooledTrackLoadingExecutor() {
         return pooledTrackLoadingExecutor;
     }
@@ -126,4 +132,52 @@ public class GuildContext {
     public ClientQuestionEventManager getClientQuestionEventManager() {
         return clientQuestionEventManager;
     }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    /**
+     * Record an access of this context to delay its eviction.
+     *
+     * @return false if this context has already been evicted by the {@link GuildManager} and must not be used anymore
+     */
+    boolean touch() {
+        lastAccessMillis = System.currentTimeMillis();
+        return !evicted;
+    }
+
+    /**
+     * Mark this context as evicted if it has not been accessed for the given amount of time and does not hold any state
+     * that would be lost, i.e. nothing is playing or queued and there are no running tasks, active widgets or pending
+     * questions. If the context is accessed concurrently either the access observes the eviction and sets up a new
+     * context or the eviction observes the access and is reverted.
+     *
+     * @return true if the context has been evicted
+     */
+    boolean evictIfIdle(long maxIdleMillis) {
+        long lastAccess = lastAccessMillis;
+        if (System.currentTimeMillis() - lastAccess < maxIdleMillis || !isIdle()) {
+            return false;
+        }
+
+        evicted = true;
+        if (lastAccessMillis != lastAccess) {
+            evicted = false;
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean isIdle() {
+        return !playback.isPlaying()
+            && !playback.isPaused()
+            && playback.getAudioChannel() == null
+            && playback.getAudioQueue().isEmpty()
+            && pooledTrackLoadingExecutor.isIdle()
+            && replaceableTrackLoadingExecutor.isIdle()
+            && widgetRegistry.isEmpty()
+            && !clientQuestionEventManager.hasPendingQuestions();
+    }
 }
@@ -8,7 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
@@ -18,7 +18,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.channel.ChannelType;
@@ -33,17 +35,12 @@ import net.robinfriedli.aiode.boot.VersionManager;
 import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
 import net.robinfriedli.aiode.command.CommandManager;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
-import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
 import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
-import net.robinfriedli.aiode.entities.AccessConfiguration;
-import net.robinfriedli.aiode.entities.CommandHistory;
+import net.robinfriedli.aiode.discord.property.GuildSettings;
 import net.robinfriedli.aiode.entities.GuildSpecification;
-import net.robinfriedli.aiode.entities.PlaybackHistory;
 import net.robinfriedli.aiode.entities.Playlist;
 import net.robinfriedli.aiode.entities.PlaylistItem;
-import net.robinfriedli.aiode.entities.xml.CommandContribution;
 import net.robinfriedli.aiode.entities.xml.EmbedDocumentContribution;
-import net.robinfriedli.aiode.entities.xml.Version;
 import net.robinfriedli.aiode.function.HibernateInvoker;
 import net.robinfriedli.aiode.persist.interceptors.InterceptorChain;
 import net.robinfriedli.aiode.persist.interceptors.PlaylistItemTimestampInterceptor;
@@ -65,33 +62,40 @@ import se.michaelthelin.spotify.SpotifyApi;
 import static net.robinfriedli.jxp.queries.Conditions.*;
 
 /**
- * Manages the {@link GuildContext} for all guilds.
+ * Manages the {@link GuildContext} for all guilds. Contexts are created when a guild is first used and evicted again
+ * after a period of inactivity, for all other guilds only the primary key of their {@link GuildSpecification} and their
+ * {@link CommandPrefixes} are kept so that setting up the context later does not require querying the specification by
+ * guild id and the context is only set up once a message has been recognised as command.
  */
 @Component
 public class GuildManager {
 
-    private final CommandManager commandManager;
     private final Context embedDocumentContext;
+    private final GuildActivityTracker guildActivityTracker;
+    private final GuildPropertyManager guildPropertyManager;
     @Nullable
     private final Context defaultPlaylistContext;
     private final HibernateComponent hibernateComponent;
     private final SnowflakeMap<GuildContext> guildContexts = new SnowflakeMap<>();
+    private final Map<Long, Long> specificationPks = new ConcurrentHashMap<>();
+    private final Map<Long, CommandPrefixes> commandPrefixes = new ConcurrentHashMap<>();
     private final Logger logger;
     private final Mode mode;
     private final MutexSync<Long> guildSetupSync;
     private final QueryBuilderFactory queryBuilderFactory;
-    private final VersionManager versionManager;
+    private final GuildSpecificationBootstrap specificationBootstrap;
     private AudioManager audioManager;
 
     public GuildManager(CommandManager commandManager,
                         @Value("classpath:xml-contributions/embedDocuments.xml") Resource embedDocumentsResource,
                         @Value("classpath:playlists.xml") Resource playlistsResource,
+                        GuildActivityTracker guildActivityTracker,
+                        GuildPropertyManager guildPropertyManager,
                         HibernateComponent hibernateComponent,
                         JxpBackend jxpBackend,
                         @Value("${aiode.preferences.mode_partitioned}") boolean modePartitioned,
                         QueryBuilderFactory queryBuilderFactory,
                         VersionManager versionManager) {
-        this.commandManager = commandManager;
         try {
             embedDocumentContext = jxpBackend.createLazyContext(embedDocumentsResource.getInputStream());
             if (playlistsResource.exists()) {
@@ -102,20 +106,71 @@ public class GuildManager {
         } catch (IOException e) {
             throw new RuntimeException("Could not instantiate " + getClass().getSimpleName(), e);
         }
+        this.guildActivityTracker = guildActivityTracker;
+        this.guildPropertyManager = guildPropertyManager;
         this.hibernateComponent = hibernateComponent;
         logger = LoggerFactory.getLogger(getClass());
         this.mode = modePartitioned ? GuildManager.Mode.PARTITIONED : GuildManager.Mode.SHARED;
         guildSetupSync = new MutexSync<>();
         this.queryBuilderFactory = queryBuilderFactory;
-        this.versionManager = versionManager;
+        specificationBootstrap = new GuildSpecificationBootstrap(commandManager, versionManager);
     }
 
     public void addGuild(Guild guild) {
         guildSetupSync.evaluate(guild.getIdLong(), () -> initializeGuild(guild));
     }
 
+    /**
+     * Load the primary keys of the {@link GuildSpecification} of all guilds of the shard in bulk without creating their
+     * {@link GuildContext}. Guilds that have not been set up yet, e.g. because they were joined while the shard was
+     * offline, are set up within the same transaction using batch inserts, see {@link GuildSpecificationBootstrap}.
+     */
+    public void bootstrapGuilds(JDA shard) {
+        List<Guild> guilds = shard.getGuilds();
+        long startMillis = System.currentTimeMillis();
+        GuildSpecificationBootstrap.Result result = hibernateComponent.invokeWithSession(session -> specificationBootstrap.bootstrap(session, guilds));
+        specificationPks.putAll(result.getSpecificationPks());
+        commandPrefixes.putAll(result.getCommandPrefixes());
+        Set<Long> initializedGuildIds = result.getInitializedGuildIds();
+        logger.info(String.format("Bootstrapped %d guilds for shard %d in %dms, set up %d new guilds",
+            guilds.size(), shard.getShardInfo().getShardId(), System.currentTimeMillis() - startMillis, initializedGuildIds.size()));
+
+        for (Guild guild : guilds) {
+            if (initializedGuildIds.contains(guild.getIdLong())) {
+                handleNewGuild(guild, getContextForGuild(guild));
+            } else if (!specificationPks.containsKey(guild.getIdLong())) {
+                // the specification was created concurrently, set up the guild individually
+                addGuild(guild);
+            }
+        }
+    }
+
     public void removeGuild(Guild guild) {
-        guildContexts.remove(guild);
+        GuildContext removedContext = guildContexts.remove(guild);
+        if (removedContext != null) {
+            removedContext.getPlayback().destroy();
+        }
+        specificationPks.remove(guild.getIdLong());
+        commandPrefixes.remove(guild.getIdLong());
+    }
+
+    /**
+     * Evict the {@link GuildContext} of the guild if it has not been used for the given amount of time and does not
+     * hold any state, leaving only the primary key of the guild's specification.
+     *
+     * @return true if the context has been evicted
+     */
+    public boolean evictIfIdle(Guild guild, long maxIdleMillis) {
+        return guildSetupSync.evaluate(guild.getIdLong(), () -> {
+            GuildContext guildContext = guildContexts.get(guild);
+            if (guildContext == null || !guildContext.evictIfIdle(maxIdleMillis)) {
+                return false;
+            }
+
+            guildContexts.remove(guild);
+            guildContext.getPlayback().destroy();
+            return true;
+        });
     }
 
     public String getNameForGuild(Guild guild) {
@@ -130,12 +185,12 @@ public class GuildManager {
     public GuildContext getContextForGuild(Guild guild) {
         GuildContext guildContext = guildContexts.get(guild);
 
-        if (guildContext == null) {
+        if (guildContext == null || !guildContext.touch()) {
             return guildSetupSync.evaluate(guild.getIdLong(), () -> {
-                // if another thread is currently setting up the guild the guild context will have been created once
-                // the synchronisation lock has been acquired
+                // if another thread is currently setting up or evicting the guild the guild context will have been
+                // created or removed once the synchronisation lock has been acquired
                 GuildContext recheck = guildContexts.get(guild);
-                if (recheck != null) {
+                if (recheck != null && recheck.touch()) {
                     return recheck;
                 }
 
@@ -146,6 +201,53 @@ public class GuildManager {
         return guildContext;
     }
 
+    /**
+     * @return the prefix and bot name of the provided guild if its specification has been loaded, else null. Unlike
+     * {@link #getContextForGuild(Guild)} this never accesses the database or sets up the {@link GuildContext} and is
+     * safe to call from the gateway thread.
+     */
+    @Nullable
+    public CommandPrefixes getCommandPrefixes(Guild guild) {
+        return commandPrefixes.get(guild.getIdLong());
+    }
+
+    /**
+     * Load the {@link GuildSpecification} of the provided guild without setting up its {@link GuildContext} if the
+     * specification is already known.
+     */
+    public GuildSpecification getSpecificationForGuild(Guild guild, Session session) {
+        GuildContext guildContext = guildContexts.get(guild);
+        if (guildContext != null) {
+            return guildContext.getSpecification(session);
+        }
+
+        Long specificationPk = specificationPks.get(guild.getIdLong());
+        if (specificationPk != null) {
+            GuildSpecification specification = session.get(GuildSpecification.class, specificationPk);
+            if (specification != null) {
+                return specification;
+            }
+        }
+
+        return getContextForGuild(guild).getSpecification(session);
+    }
+
+    /**
+     * Replace the {@link GuildSettings} and {@link CommandPrefixes} of the guild after changes to its
+     * {@link GuildSpecification} have been committed.
+     */
+    public void updateSettings(GuildSpecification specification) {
+        Guild guild = Aiode.get().getShardManager().getGuildById(specification.getGuildId());
+        if (guild != null) {
+            GuildSettings settings = guildPropertyManager.buildSettings(specification);
+            commandPrefixes.put(guild.getIdLong(), CommandPrefixes.of(settings));
+            GuildContext guildContext = guildContexts.get(guild);
+            if (guildContext != null) {
+                guildContext.setSettings(settings);
+            }
+        }
+    }
+
     public Set<Guild> getActiveGuilds(Session session) {
         // consider all guilds were active within the last 10 minutes to be active
         return getActiveGuilds(session, 600000);
@@ -153,7 +255,8 @@ public class GuildManager {
 
     /**
      * Return guilds that are active now (playing music) or were active withing the specified amount of milliseconds
-     * (by entering a command or listening a song).
+     * (by entering a command or listening a song). Recent activity is read from the {@link GuildActivityTracker}, the
+     * command and playback history is only queried if the period reaches back before this instance was started.
      *
      * @param session the hibernate session
      * @param delayMs the maximum amount of time since the last action for a guild to be considered active in milliseconds
@@ -162,7 +265,6 @@ public class GuildManager {
     public Set<Guild> getActiveGuilds(Session session, long delayMs) {
         Aiode aiode = Aiode.get();
         ShardManager shardManager = aiode.getShardManager();
-        QueryBuilderFactory queryBuilderFactory = aiode.getQueryBuilderFactory();
         Set<Guild> activeGuilds = Sets.newHashSet();
         Set<String> activeGuildIds = Sets.newHashSet();
 
@@ -170,26 +272,34 @@ public class GuildManager {
             activeGuilds.add(ExecutionContext.Current.require().getGuild());
         }
 
-        for (Guild guild : shardManager.getGuilds()) {
-            AudioPlayback playback = audioManager.getPlaybackForGuild(guild);
-            if (playback.isPlaying()) {
+        // guilds without context cannot be playing
+        for (GuildContext guildContext : guildContexts.values()) {
+            Guild guild = guildContext.retrieveGuild();
+            if (guild != null && guildContext.getPlayback().isPlaying()) {
                 activeGuilds.add(guild);
             }
         }
 
-        long startMillis = System.currentTimeMillis() - delayMs;
-        Set<String> recentCommandGuildIds = queryBuilderFactory.select(CommandHistory.class, "guildId", String.class)
-            .where((cb, root) -> cb.greaterThan(root.get("startMillis"), startMillis))
-            .build(session)
-            .getResultStream().collect(Collectors.toSet());
-        activeGuildIds.addAll(recentCommandGuildIds);
+        for (Long guildId : guildActivityTracker.getActiveGuildIds(delayMs)) {
+            Guild guild = shardManager.getGuildById(guildId);
+            if (guild != null) {
+                activeGuilds.add(guild);
+            }
+        }
 
-        LocalDateTime dateTime10MinutesAgo = LocalDateTime.ofInstant(Instant.ofEpochMilli(startMillis), ZoneId.systemDefault());
-        Set<String> recentPlaybackGuildIds = queryBuilderFactory.select(PlaybackHistory.class, "guildId", String.class)
-            .where((cb, root) -> cb.greaterThan(root.get("timestamp"), dateTime10MinutesAgo))
-            .build(session)
-            .getResultStream().collect(Collectors.toSet());
-        activeGuildIds.addAll(recentPlaybackGuildIds);
+        if (!guildActivityTracker.coversPeriod(delayMs)) {
+            long startMillis = System.currentTimeMillis() - delayMs;
+            activeGuildIds.addAll(session
+                .createQuery("select distinct guildId from CommandHistory where startMillis > :startMillis", String.class)
+                .setParameter("startMillis", startMillis)
+                .getResultList());
+
+            LocalDateTime startDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(startMillis), ZoneId.systemDefault());
+            activeGuildIds.addAll(session
+                .createQuery("select distinct guildId from PlaybackHistory where timestamp > :startDateTime", String.class)
+                .setParameter("startDateTime", startDateTime)
+                .getResultList());
+        }
 
         for (String guildId : activeGuildIds) {
             Guild guild = shardManager.getGuildById(guildId);
@@ -220,51 +330,51 @@ public class GuildManager {
 
     private GuildContext initializeGuild(Guild guild) {
         GuildContext createdContext = hibernateComponent.invokeWithSession(session -> {
-            AudioPlayer player = audioManager.getPlayerManager().createPlayer();
+            AudioPlayerManager playerManager = audioManager.getPlayerManager();
+            AudioPlayer player = playerManager.createPlayer();
 
-            Optional<GuildSpecification> existingSpecification = queryBuilderFactory.find(GuildSpecification.class)
-                .where((cb, root) -> cb.equal(root.get("guildId"), guild.getId()))
-                .build(session)
-                .uniqueResultOptional();
+            Long specificationPk = specificationPks.get(guild.getIdLong());
+            Optional<GuildSpecification> existingSpecification;
+            if (specificationPk != null) {
+                existingSpecification = Optional.ofNullable(session.get(GuildSpecification.class, specificationPk));
+            } else {
+                existingSpecification = queryBuilderFactory.find(GuildSpecification.class)
+                    .where((cb, root) -> cb.equal(root.get("guildId"), guild.getId()))
+                    .build(session)
+                    .uniqueResultOptional();
+            }
 
             if (existingSpecification.isPresent() && existingSpecification.get().isInitialized()) {
-                AudioPlayback playback = new AudioPlayback(player, guild);
+                AudioPlayback playback = new AudioPlayback(player, playerManager, guild);
                 GuildSpecification guildSpecification = existingSpecification.get();
-                GuildContext guildContext = new GuildContext(guild, playback, guildSpecification.getPk());
+                GuildContext guildContext = new GuildContext(guild, playback, guildSpecification, guildPropertyManager.buildSettings(guildSpecification));
                 if (guildSpecification.getDefaultVolume() != null) {
                     playback.setDefaultVolume(guildSpecification.getDefaultVolume());
                 }
                 return guildContext;
             } else {
-                GuildSpecification newSpecification = existingSpecification.orElseGet(() -> {
-                    GuildSpecification gs = new GuildSpecification(guild);
-                    session.persist(gs);
-                    return gs;
-                });
-                Version currentVersion = versionManager.getCurrentVersion();
-                if (currentVersion != null) {
-                    // never send new guilds an update notification about the current version
-                    newSpecification.setVersionUpdateAlertSent(currentVersion.getVersion());
+                Long newSpecificationPk = specificationBootstrap.bootstrap(session, List.of(guild)).getSpecificationPks().get(guild.getIdLong());
+                if (newSpecificationPk == null) {
+                    throw new IllegalStateException("Could not set up specification for guild " + guild);
                 }
-                session.merge(newSpecification);
-                commandManager.getCommandContributionContext()
-                    .query(attribute("restrictedAccess").is(true), CommandContribution.class)
-                    .getResultStream()
-                    .forEach(restrictedCommand -> {
-                        AccessConfiguration permissionConfiguration = new AccessConfiguration(restrictedCommand, session);
-                        session.persist(permissionConfiguration);
-                        newSpecification.addAccessConfiguration(permissionConfiguration);
-                    });
-                newSpecification.setInitialized(true);
-                session.flush();
-
-                GuildContext guildContext = new GuildContext(guild, new AudioPlayback(player, guild), newSpecification.getPk());
+                GuildSpecification newSpecification;
+                if (existingSpecification.isPresent()) {
+                    // the specification was initialized bypassing the session
+                    newSpecification = existingSpecification.get();
+                    session.refresh(newSpecification);
+                } else {
+                    newSpecification = session.get(GuildSpecification.class, newSpecificationPk);
+                }
+
+                GuildContext guildContext = new GuildContext(guild, new AudioPlayback(player, playerManager, guild), newSpecification, guildPropertyManager.buildSettings(newSpecification));
 
                 handleNewGuild(guild, guildContext);
                 return guildContext;
             }
         });
         guildContexts.put(guild, createdContext);
+        specificationPks.put(guild.getIdLong(), createdContext.getSpecificationPk());
+        commandPrefixes.put(guild.getIdLong(), CommandPrefixes.of(createdContext.getSettings()));
         return createdContext;
     }
 
@@ -315,25 +425,14 @@ public class GuildManager {
     }
 
     private TextChannel getDefaultTextChannelForGuild(Guild guild, GuildContext guildContext) {
-        Aiode aiode = Aiode.get();
         Member selfMember = guild.getSelfMember();
 
         // fetch the default text channel from the customised property
-        GuildPropertyManager guildPropertyManager = aiode.getGuildPropertyManager();
-        AbstractGuildProperty defaultTextChannelProperty = guildPropertyManager.getProperty("defaultTextChannelId");
-        if (defaultTextChannelProperty != null) {
-            String defaultTextChannelId;
-            try {
-                defaultTextChannelId = (String) hibernateComponent.invokeWithSession(session -> defaultTextChannelProperty.get(guildContext.getSpecification(session)));
-            } catch (NullPointerException e) {
-                throw new RuntimeException(e);
-            }
-
-            if (!Strings.isNullOrEmpty(defaultTextChannelId)) {
-                TextChannel textChannelById = guild.getTextChannelById(defaultTextChannelId);
-                if (textChannelById != null && selfMember.hasAccess(textChannelById) && textChannelById.canTalk(selfMember)) {
-                    return textChannelById;
-                }
+        String defaultTextChannelId = guildContext.getSettings().getSetValue("defaultTextChannelId", String.class).orElse(null);
+        if (!Strings.isNullOrEmpty(defaultTextChannelId)) {
+            TextChannel textChannelById = guild.getTextChannelById(defaultTextChannelId);
+            if (textChannelById != null && selfMember.hasAccess(textChannelById) && textChannelById.canTalk(selfMember)) {
+                return textChannelById;
             }
         }
 
@@ -369,6 +468,45 @@ public class GuildManager {
         }
     }
 
+    /**
+     * The persisted prefix and bot name of a guild, null if not set, used to recognise commands without the
+     * {@link GuildContext}.
+     */
+    public static class CommandPrefixes {
+
+        static final CommandPrefixes NONE = new CommandPrefixes(null, null);
+
+        @Nullable
+        private final String prefix;
+        @Nullable
+        private final String botName;
+
+        private CommandPrefixes(@Nullable String prefix, @Nullable String botName) {
+            this.prefix = prefix;
+            this.botName = botName;
+        }
+
+        static CommandPrefixes of(@Nullable String prefix, @Nullable String botName) {
+            // most guilds use the default prefix and name, share the instance
+            return prefix == null && botName == null ? NONE : new CommandPrefixes(prefix, botName);
+        }
+
+        static CommandPrefixes of(GuildSettings settings) {
+            return of(settings.getSetPrefix(), settings.getSetBotName());
+        }
+
+        @Nullable
+        public String getPrefix() {
+            return prefix;
+        }
+
+        @Nullable
+        public String getBotName() {
+            return botName;
+        }
+
+    }
+
     public enum Mode {
         /**
          * All database entities will be the same for all guilds, meaning all guilds share the same playlists, presets etc.
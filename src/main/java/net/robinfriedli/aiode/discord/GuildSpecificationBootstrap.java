@@ -0,0 +1,250 @@
+package net.robinfriedli.aiode.discord;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import net.dv8tion.jda.api.entities.Guild;
+import net.robinfriedli.aiode.boot.VersionManager;
+import net.robinfriedli.aiode.command.CommandManager;
+import net.robinfriedli.aiode.entities.AccessConfiguration;
+import net.robinfriedli.aiode.entities.GuildSpecification;
+import net.robinfriedli.aiode.entities.xml.CommandContribution;
+import net.robinfriedli.aiode.entities.xml.Version;
+import org.hibernate.Session;
+
+import static net.robinfriedli.jxp.queries.Conditions.*;
+
+/**
+ * Sets up the {@link GuildSpecification} and the {@link AccessConfiguration} of each restricted command for many guilds
+ * at once. Existing specifications are loaded in chunked IN queries, missing specifications and their access
+ * configurations are created using JDBC batch inserts within the transaction of the provided session instead of
+ * persisting each entity individually. The prefix and bot name of existing specifications are loaded along with their
+ * primary key for the {@link GuildManager} to recognise commands without setting up the {@link GuildContext}.
+ */
+class GuildSpecificationBootstrap {
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_SPECIFICATION_STATEMENT = "insert into guild_specification(guild_name, guild_id, version_update_alert_sent, initialized) " +
+        "values(?, ?, ?, true) on conflict(guild_id) do nothing";
+    private static final String INITIALIZE_SPECIFICATION_STATEMENT = "update guild_specification " +
+        "set initialized = true, version_update_alert_sent = coalesce(?, version_update_alert_sent) where pk = ?";
+    private static final String INSERT_ACCESS_CONFIGURATION_STATEMENT = "insert into access_configuration(permission_identifier, fk_guild_specification, fk_permission_type) " +
+        "values(?, ?, ?) on conflict(fk_guild_specification, permission_identifier) do nothing";
+
+    private final CommandManager commandManager;
+    private final VersionManager versionManager;
+
+    GuildSpecificationBootstrap(CommandManager commandManager, VersionManager versionManager) {
+        this.commandManager = commandManager;
+        this.versionManager = versionManager;
+    }
+
+    /**
+     * Load or create the specifications of the provided guilds. Guilds for which the specification could not be created
+     * because it was inserted concurrently are missing from the result.
+     *
+     * @param session the session whose transaction to use
+     * @param guilds  the guilds to set up
+     * @return the result containing the primary key of the specification of each guild
+     */
+    Result bootstrap(Session session, Collection<Guild> guilds) {
+        Map<Long, Long> specificationPks = new HashMap<>();
+        Map<Long, GuildManager.CommandPrefixes> commandPrefixes = new HashMap<>();
+        // specifications that exist but have not been initialized, e.g. because the bot left the guild during setup
+        Map<Long, Long> uninitializedSpecificationPks = new HashMap<>();
+        for (List<Guild> batch : Lists.partition(List.copyOf(guilds), BATCH_SIZE)) {
+            List<String> guildIds = batch.stream().map(Guild::getId).collect(Collectors.toList());
+            List<Object[]> results = session
+                .createQuery("select guildId, pk, initialized, prefix, botName from GuildSpecification where guildId in (:guildIds)", Object[].class)
+                .setParameterList("guildIds", guildIds)
+                .getResultList();
+            for (Object[] result : results) {
+                long guildId = Long.parseLong((String) result[0]);
+                commandPrefixes.put(guildId, GuildManager.CommandPrefixes.of((String) result[3], (String) result[4]));
+                if (Boolean.TRUE.equals(result[2])) {
+                    specificationPks.put(guildId, (Long) result[1]);
+                } else {
+                    uninitializedSpecificationPks.put(guildId, (Long) result[1]);
+                }
+            }
+        }
+
+        List<Guild> missingGuilds = guilds.stream()
+            .filter(guild -> !specificationPks.containsKey(guild.getIdLong()) && !uninitializedSpecificationPks.containsKey(guild.getIdLong()))
+            .collect(Collectors.toList());
+
+        if (missingGuilds.isEmpty() && uninitializedSpecificationPks.isEmpty()) {
+            return new Result(specificationPks, commandPrefixes, Set.of());
+        }
+
+        Map<String, Long> restrictedCommandPermissionTypes = getRestrictedCommandPermissionTypes(session);
+        Version currentVersion = versionManager.getCurrentVersion();
+        // never send new guilds an update notification about the current version
+        String versionUpdateAlertSent = currentVersion != null ? currentVersion.getVersion() : null;
+        Map<Long, Long> initializedSpecificationPks = new HashMap<>();
+        session.doWork(connection -> {
+            initializedSpecificationPks.putAll(insertSpecifications(connection, missingGuilds, versionUpdateAlertSent));
+            initializeSpecifications(connection, uninitializedSpecificationPks.values(), versionUpdateAlertSent);
+            initializedSpecificationPks.putAll(uninitializedSpecificationPks);
+            insertAccessConfigurations(connection, initializedSpecificationPks.values(), restrictedCommandPermissionTypes);
+        });
+
+        // the specifications were updated bypassing hibernate
+        for (Long pk : uninitializedSpecificationPks.values()) {
+            session.getSessionFactory().getCache().evictEntityData(GuildSpecification.class, pk);
+        }
+
+        specificationPks.putAll(initializedSpecificationPks);
+        return new Result(specificationPks, commandPrefixes, initializedSpecificationPks.keySet());
+    }
+
+    /**
+     * @return the permission identifier of each restricted command mapped to the primary key of its permission type
+     */
+    private Map<String, Long> getRestrictedCommandPermissionTypes(Session session) {
+        Map<String, Long> permissionTypes = new HashMap<>();
+        commandManager.getCommandContributionContext()
+            .query(attribute("restrictedAccess").is(true), CommandContribution.class)
+            .getResultStream()
+            .forEach(restrictedCommand -> permissionTypes.put(
+                restrictedCommand.getFullPermissionTargetIdentifier(),
+                restrictedCommand.getPermissionTargetType().getEntity(session).getPk()
+            ));
+
+        return permissionTypes;
+    }
+
+    /**
+     * @return the id of each created guild mapped to the primary key of its specification
+     */
+    private Map<Long, Long> insertSpecifications(Connection connection, List<Guild> guilds, String versionUpdateAlertSent) throws SQLException {
+        Map<Long, Long> specificationPks = new HashMap<>();
+        if (guilds.isEmpty()) {
+            return specificationPks;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SPECIFICATION_STATEMENT, new String[]{"pk", "guild_id"})) {
+            for (List<Guild> batch : Lists.partition(guilds, BATCH_SIZE)) {
+                for (Guild guild : batch) {
+                    statement.setString(1, guild.getName());
+                    statement.setString(2, guild.getId());
+                    if (versionUpdateAlertSent != null) {
+                        statement.setString(3, versionUpdateAlertSent);
+                    } else {
+                        statement.setNull(3, Types.VARCHAR);
+                    }
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+                // rows skipped due to a conflict do not return a key
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    while (generatedKeys.next()) {
+                        specificationPks.put(Long.parseLong(generatedKeys.getString("guild_id")), generatedKeys.getLong("pk"));
+                    }
+                }
+            }
+        }
+
+        return specificationPks;
+    }
+
+    private void initializeSpecifications(Connection connection, Collection<Long> specificationPks, String versionUpdateAlertSent) throws SQLException {
+        if (specificationPks.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INITIALIZE_SPECIFICATION_STATEMENT)) {
+            for (Long specificationPk : specificationPks) {
+                if (versionUpdateAlertSent != null) {
+                    statement.setString(1, versionUpdateAlertSent);
+                } else {
+                    statement.setNull(1, Types.VARCHAR);
+                }
+                statement.setLong(2, specificationPk);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    private void insertAccessConfigurations(Connection connection, Collection<Long> specificationPks, Map<String, Long> permissionTypes) throws SQLException {
+        if (specificationPks.isEmpty() || permissionTypes.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_ACCESS_CONFIGURATION_STATEMENT)) {
+            int batchSize = 0;
+            for (Long specificationPk : specificationPks) {
+                for (Map.Entry<String, Long> permissionType : permissionTypes.entrySet()) {
+                    statement.setString(1, permissionType.getKey());
+                    statement.setLong(2, specificationPk);
+                    statement.setLong(3, permissionType.getValue());
+                    statement.addBatch();
+
+                    if (++batchSize == BATCH_SIZE) {
+                        statement.executeBatch();
+                        batchSize = 0;
+                    }
+                }
+            }
+
+            if (batchSize > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    static class Result {
+
+        private final Map<Long, Long> specificationPks;
+        private final Map<Long, GuildManager.CommandPrefixes> commandPrefixes;
+        private final Set<Long> initializedGuildIds;
+
+        private Result(Map<Long, Long> specificationPks, Map<Long, GuildManager.CommandPrefixes> commandPrefixes, Set<Long> initializedGuildIds) {
+            this.specificationPks = specificationPks;
+            this.commandPrefixes = commandPrefixes;
+            this.initializedGuildIds = Sets.newHashSet(initializedGuildIds);
+            // created specifications do not have a prefix or bot name yet
+            for (Long guildId : specificationPks.keySet()) {
+                commandPrefixes.putIfAbsent(guildId, GuildManager.CommandPrefixes.NONE);
+            }
+        }
+
+        /**
+         * @return the id of each guild mapped to the primary key of its initialized specification
+         */
+        Map<Long, Long> getSpecificationPks() {
+            return specificationPks;
+        }
+
+        /**
+         * @return the id of each guild with an initialized specification mapped to its prefix and bot name
+         */
+        Map<Long, GuildManager.CommandPrefixes> getCommandPrefixes() {
+            return commandPrefixes;
+        }
+
+        /**
+         * @return the ids of the guilds that have been set up by this bootstrap and are new to the bot
+         */
+        Set<Long> getInitializedGuildIds() {
+            return initializedGuildIds;
+        }
+
+    }
+
+}
@@ -41,10 +41,8 @@ import net.robinfriedli.aiode.boot.SpringPropertiesConfig;
 import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
 import net.robinfriedli.aiode.discord.property.properties.ColorSchemeProperty;
 import net.robinfriedli.aiode.discord.property.properties.TempMessageTimeoutProperty;
-import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.function.RateLimitInvoker;
 import net.robinfriedli.aiode.function.modes.RecursionPreventionMode;
 import net.robinfriedli.exec.Invoker;
@@ -634,16 +632,8 @@ public class MessageService {
 
         private int getTimeout() {
             if (message.isFromType(ChannelType.TEXT)) {
-                return hibernateComponent.invokeWithSession(session -> {
-                    Aiode aiode = Aiode.get();
-                    GuildPropertyManager guildPropertyManager = aiode.getGuildPropertyManager();
-                    Guild guild = message.getGuild();
-                    GuildSpecification specification = aiode.getGuildManager().getContextForGuild(guild).getSpecification(session);
-
-                    return guildPropertyManager
-                        .getPropertyValueOptional("tempMessageTimeout", Integer.class, specification)
-                        .orElse(TempMessageTimeoutProperty.DEFAULT_FALLBACK);
-                });
+                Guild guild = message.getGuild();
+                return Aiode.get().getGuildManager().getContextForGuild(guild).getSettings().getTempMessageTimeout();
             }
 
             return TempMessageTimeoutProperty.DEFAULT_FALLBACK;
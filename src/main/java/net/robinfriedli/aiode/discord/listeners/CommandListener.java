@@ -31,11 +31,12 @@ import net.robinfriedli.aiode.discord.GuildManager;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
 import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
+import net.robinfriedli.aiode.discord.property.GuildSettings;
 import net.robinfriedli.aiode.discord.property.properties.BotNameProperty;
 import net.robinfriedli.aiode.discord.property.properties.PrefixProperty;
-import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.exceptions.UserException;
 import org.hibernate.Session;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
 import se.michaelthelin.spotify.SpotifyApi;
@@ -104,45 +105,30 @@ public class CommandListener extends ListenerAdapter {
             return;
         }
 
-        EventHandlerPool.execute(() -> hibernateComponent.consumeSession(session -> {
-            Guild guild = event.getGuild();
-            Message message = event.getMessage();
-            String msg = message.getContentDisplay();
-            GuildContext guildContext = guildManager.getContextForGuild(guild);
-            GuildSpecification specification = guildContext.getSpecification(session);
-            String botName = specification.getBotName();
-            String prefix = specification.getPrefix();
-            Member selfMember = guild.getSelfMember();
-            String selfMention = selfMember.getAsMention();
-
-            String lowerCaseMsg = msg.toLowerCase();
-            boolean startsWithPrefix = !Strings.isNullOrEmpty(prefix) && lowerCaseMsg.startsWith(prefix.toLowerCase());
-            boolean startsWithName = !Strings.isNullOrEmpty(botName) && lowerCaseMsg.startsWith(botName.toLowerCase());
-            boolean startsWithDefaultPrefix = !Strings.isNullOrEmpty(defaultPrefix) && lowerCaseMsg.startsWith(defaultPrefix);
-            boolean startsWithDefaultName = !Strings.isNullOrEmpty(defaultBotName) && lowerCaseMsg.startsWith(defaultBotName);
-            boolean startsWithLegacyPrefix = lowerCaseMsg.startsWith("$botify");
-            boolean startsWithMention = message.getContentRaw().startsWith(selfMention);
-
-            if (startsWithPrefix
-                || startsWithName
-                || startsWithDefaultPrefix
-                || startsWithDefaultName
-                || startsWithLegacyPrefix
-            ) {
-                String usedPrefix = extractUsedPrefix(
-                    botName,
-                    prefix,
-                    startsWithName,
-                    startsWithPrefix,
-                    startsWithDefaultName,
-                    startsWithDefaultPrefix,
-                    startsWithLegacyPrefix
-                );
-                startCommandExecution(usedPrefix, message, guild, guildContext, session, event);
-            } else if (startsWithMention) {
-                startCommandExecution("@" + selfMember.getEffectiveName(), message, guild, guildContext, session, event);
+        Guild guild = event.getGuild();
+        GuildManager.CommandPrefixes commandPrefixes = guildManager.getCommandPrefixes(guild);
+        if (commandPrefixes != null) {
+            // check whether the message is a command using the in memory prefixes on the gateway thread so that only
+            // actual commands are handed to the pool, where the GuildContext is set up if it has been evicted
+            String usedPrefix = findUsedPrefix(event.getMessage(), guild, commandPrefixes.getPrefix(), commandPrefixes.getBotName());
+            if (usedPrefix != null) {
+                EventHandlerPool.execute(() -> hibernateComponent.consumeSession(session -> {
+                    GuildContext guildContext = guildManager.getContextForGuild(guild);
+                    startCommandExecution(usedPrefix, event.getMessage(), guild, guildContext, session, event);
+                }));
             }
-        }));
+        } else {
+            // the specification of the guild has not been loaded yet, which requires database access, so handle the
+            // message on the pool
+            EventHandlerPool.execute(() -> hibernateComponent.consumeSession(session -> {
+                GuildContext guildContext = guildManager.getContextForGuild(guild);
+                GuildSettings settings = guildContext.getSettings();
+                String usedPrefix = findUsedPrefix(event.getMessage(), guild, settings.getSetPrefix(), settings.getSetBotName());
+                if (usedPrefix != null) {
+                    startCommandExecution(usedPrefix, event.getMessage(), guild, guildContext, session, event);
+                }
+            }));
+        }
     }
 
     @Override
@@ -198,18 +184,45 @@ public class CommandListener extends ListenerAdapter {
         }));
     }
 
-    private String extractUsedPrefix(
-        String botName,
-        String prefix,
-        boolean startsWithName,
-        boolean startsWithPrefix,
-        boolean startsWithDefaultName,
-        boolean startsWithDefaultPrefix,
-        boolean startsWithLegacyPrefix
-    ) {
-        boolean[] matches = {startsWithName, startsWithPrefix, startsWithDefaultName, startsWithDefaultPrefix, startsWithLegacyPrefix};
-        String[] strings = {botName, prefix, defaultBotName, defaultPrefix, "$botify"};
-        return getLongestMatch(matches, strings);
+    /**
+     * Check whether the message starts with any of the guild's prefixes, using the persisted prefix and bot name of the
+     * guild, without accessing the database.
+     *
+     * @param prefix  the prefix set for the guild or null
+     * @param botName the bot name set for the guild or null
+     * @return the used prefix or null if the message is not a command
+     */
+    @Nullable
+    private String findUsedPrefix(Message message, Guild guild, @Nullable String prefix, @Nullable String botName) {
+        String msg = message.getContentDisplay();
+
+        boolean startsWithPrefix = startsWithIgnoreCase(msg, prefix);
+        boolean startsWithName = startsWithIgnoreCase(msg, botName);
+        boolean startsWithDefaultPrefix = startsWithIgnoreCase(msg, defaultPrefix);
+        boolean startsWithDefaultName = startsWithIgnoreCase(msg, defaultBotName);
+        boolean startsWithLegacyPrefix = startsWithIgnoreCase(msg, "$botify");
+
+        if (startsWithPrefix
+            || startsWithName
+            || startsWithDefaultPrefix
+            || startsWithDefaultName
+            || startsWithLegacyPrefix
+        ) {
+            boolean[] matches = {startsWithName, startsWithPrefix, startsWithDefaultName, startsWithDefaultPrefix, startsWithLegacyPrefix};
+            String[] strings = {botName, prefix, defaultBotName, defaultPrefix, "$botify"};
+            return getLongestMatch(matches, strings);
+        }
+
+        Member selfMember = guild.getSelfMember();
+        if (message.getContentRaw().startsWith(selfMember.getAsMention())) {
+            return "@" + selfMember.getEffectiveName();
+        }
+
+        return null;
+    }
+
+    private static boolean startsWithIgnoreCase(String msg, @Nullable String prefix) {
+        return !Strings.isNullOrEmpty(prefix) && msg.regionMatches(true, 0, prefix, 0, prefix.length());
     }
 
     private String getLongestMatch(boolean[] matches, String[] strings) {
@@ -1,78 +1,154 @@
 package net.robinfriedli.aiode.discord.listeners;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
-import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Multimap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.robinfriedli.aiode.concurrent.DaemonThreadPool;
 import net.robinfriedli.aiode.concurrent.EventHandlerPool;
 import org.springframework.stereotype.Component;
 
+/**
+ * Listener that completes futures for awaited events. Awaited events are registered per event type in copy-on-write
+ * lists, so that each gateway event is checked against the filter predicates of the waiters for its exact type on the
+ * gateway thread without locking. Only matched events are handed to the {@link EventHandlerPool} to complete the future,
+ * since completing it runs the dependent actions. Timeouts are registered with the shared {@link DaemonThreadPool}
+ * scheduler instead of blocking a thread per waiter. Filter predicates must therefore be cheap and never block.
+ */
 @Component
 public class EventWaiter extends ListenerAdapter {
 
-    @SuppressWarnings("rawtypes")
-    private final Multimap<Class<? extends GenericEvent>, AwaitedEvent> awaitedEventMap = LinkedHashMultimap.create();
-    private final ReentrantReadWriteLock mapLock = new ReentrantReadWriteLock();
+    private final Map<Class<? extends GenericEvent>, List<AwaitedEvent<?>>> awaitedEventMap = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder checkedCount = new LongAdder();
+    private final LongAdder matchedCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void onGenericEvent(@Nonnull GenericEvent event) {
-        if (awaitedEventMap.isEmpty()) {
+        if (pendingCount.get() == 0) {
+            return;
+        }
+
+        List<AwaitedEvent<?>> awaitedEvents = awaitedEventMap.get(event.getClass());
+        if (awaitedEvents == null || awaitedEvents.isEmpty()) {
             return;
         }
 
-        EventHandlerPool.execute(() -> {
-            ReentrantReadWriteLock.ReadLock readLock = mapLock.readLock();
-            readLock.lock();
+        for (AwaitedEvent<?> awaitedEvent : awaitedEvents) {
+            checkedCount.increment();
+            boolean matches;
             try {
-                List<AwaitedEvent> awaitedEvents = awaitedEventMap.get(event.getClass())
-                    .stream()
-                    .filter(awaitedEvent -> awaitedEvent.getFilterPredicate().test(event))
-                    .collect(Collectors.toList());
-
-                if (!awaitedEvents.isEmpty()) {
-                    awaitedEvents.forEach(awaitedEvent -> {
-                        // completing the future might trigger afterCompletion handles in the current thread
-                        awaitedEvent.getCompletableFuture().complete(event);
-                        awaitedEventMap.remove(awaitedEvent.getEventType(), awaitedEvent);
-                    });
+                matches = awaitedEvent.test(event);
+            } catch (Exception e) {
+                logger.error("Exception in filter predicate of awaited " + event.getClass().getSimpleName(), e);
+                if (awaitedEvent.claim()) {
+                    remove(awaitedEvent);
+                    EventHandlerPool.execute(() -> awaitedEvent.getCompletableFuture().completeExceptionally(e));
                 }
-            } finally {
-                readLock.unlock();
+                continue;
             }
-        });
-    }
 
-    public <E extends GenericEvent> E awaitEvent(Class<E> eventType, Predicate<E> predicate, long timeout, TimeUnit timeUnit) throws InterruptedException, TimeoutException {
-        CompletableFuture<E> completableFuture = awaitEvent(eventType, predicate);
-        try {
-            return completableFuture.get(timeout, timeUnit);
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
+            if (matches && awaitedEvent.claim()) {
+                matchedCount.increment();
+                remove(awaitedEvent);
+                // completing the future might trigger afterCompletion handles in the current thread
+                EventHandlerPool.execute(() -> awaitedEvent.complete(event));
+            }
         }
     }
 
+    /**
+     * Await the next event of the given type that matches the predicate. The future is completed exceptionally with a
+     * {@link TimeoutException} if no matching event occurs within the given time.
+     */
+    public <E extends GenericEvent> CompletableFuture<E> awaitEvent(Class<E> eventType, Predicate<E> predicate, long timeout, TimeUnit timeUnit) {
+        AwaitedEvent<E> awaitedEvent = register(eventType, predicate);
+        ScheduledFuture<?> timeoutFuture = DaemonThreadPool.schedule(() -> {
+            if (awaitedEvent.claim()) {
+                timedOutCount.increment();
+                remove(awaitedEvent);
+                // hand off completion so that dependent stages do not hold up the shared scheduler thread
+                EventHandlerPool.execute(() -> awaitedEvent.getCompletableFuture().completeExceptionally(new TimeoutException()));
+            }
+        }, timeUnit.toMillis(timeout));
+        awaitedEvent.getCompletableFuture().whenComplete((event, error) -> timeoutFuture.cancel(false));
+        return awaitedEvent.getCompletableFuture();
+    }
+
+    /**
+     * Await the next event of the given type that matches the predicate. The waiter is unregistered when the returned
+     * future is completed or cancelled by the caller, e.g. using {@link CompletableFuture#orTimeout(long, TimeUnit)}.
+     */
     public <E extends GenericEvent> CompletableFuture<E> awaitEvent(Class<E> eventType, Predicate<E> predicate) {
-        ReentrantReadWriteLock.WriteLock writeLock = mapLock.writeLock();
-        writeLock.lock();
-        try {
-            AwaitedEvent<E> awaitedEvent = new AwaitedEvent<>(eventType, predicate);
-            awaitedEventMap.put(eventType, awaitedEvent);
-            return awaitedEvent.getCompletableFuture();
-        } finally {
-            writeLock.unlock();
+        return register(eventType, predicate).getCompletableFuture();
+    }
+
+    /**
+     * @return the number of registered waiters that have not been completed yet
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return the number of events that have been checked against the predicate of a waiter
+     */
+    public long getCheckedCount() {
+        return checkedCount.sum();
+    }
+
+    /**
+     * @return the number of waiters that have been completed by a matching event
+     */
+    public long getMatchedCount() {
+        return matchedCount.sum();
+    }
+
+    /**
+     * @return the number of waiters that have been removed because their timeout elapsed before a matching event arrived
+     */
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    private <E extends GenericEvent> AwaitedEvent<E> register(Class<E> eventType, Predicate<E> predicate) {
+        AwaitedEvent<E> awaitedEvent = new AwaitedEvent<>(eventType, predicate);
+        pendingCount.incrementAndGet();
+        awaitedEventMap.computeIfAbsent(eventType, type -> new CopyOnWriteArrayList<>()).add(awaitedEvent);
+        // unregister the waiter if the future is completed externally
+        awaitedEvent.getCompletableFuture().whenComplete((event, error) -> {
+            if (awaitedEvent.claim()) {
+                remove(awaitedEvent);
+            }
+        });
+        return awaitedEvent;
+    }
+
+    private void remove(AwaitedEvent<?> awaitedEvent) {
+        // the empty list is kept for the next waiter of the same type
+        List<AwaitedEvent<?>> awaitedEvents = awaitedEventMap.get(awaitedEvent.getEventType());
+        if (awaitedEvents != null) {
+            awaitedEvents.remove(awaitedEvent);
         }
+        pendingCount.decrementAndGet();
     }
 
     private static class AwaitedEvent<E extends GenericEvent> {
@@ -80,6 +156,8 @@ public class EventWaiter extends ListenerAdapter {
         private final Class<E> eventType;
         private final Predicate<E> filterPredicate;
         private final CompletableFuture<E> completableFuture;
+        // set by whichever of the listener, the timeout or an external completion removes the waiter first
+        private final AtomicBoolean claimed = new AtomicBoolean();
 
         private AwaitedEvent(Class<E> eventType, Predicate<E> filterPredicate) {
             this.eventType = eventType;
@@ -91,13 +169,21 @@ public class EventWaiter extends ListenerAdapter {
             return eventType;
         }
 
-        public Predicate<E> getFilterPredicate() {
-            return filterPredicate;
-        }
-
         public CompletableFuture<E> getCompletableFuture() {
             return completableFuture;
         }
+
+        private boolean test(GenericEvent event) {
+            return !claimed.get() && filterPredicate.test(eventType.cast(event));
+        }
+
+        private void complete(GenericEvent event) {
+            completableFuture.complete(eventType.cast(event));
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
     }
 
 }
@@ -32,7 +32,6 @@ import net.robinfriedli.aiode.concurrent.EventHandlerPool;
 import net.robinfriedli.aiode.discord.GuildContext;
 import net.robinfriedli.aiode.discord.GuildManager;
 import net.robinfriedli.aiode.discord.MessageService;
-import net.robinfriedli.aiode.discord.property.properties.ColorSchemeProperty;
 import net.robinfriedli.aiode.entities.GrantedRole;
 import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.PrivateBotInstance;
@@ -149,7 +148,7 @@ public class GuildManagementListener extends ListenerAdapter {
                     EmbedBuilder embedBuilder = new EmbedBuilder();
                     embedBuilder.setTitle("Deletion of role referenced by your permission configuration");
                     embedBuilder.setDescription(String.format("The deleted role '%s' was referenced by the permission configuration. Check the current permissions by using the permission command.", role.getName()));
-                    embedBuilder.setColor(ColorSchemeProperty.getColor(guildContext.getSpecification(session)));
+                    embedBuilder.setColor(guildContext.getSettings().getColor());
                     TextChannel textChannel = guildManager.getDefaultTextChannelForGuild(guild);
                     if (textChannel != null) {
                         messageService.sendTemporary(embedBuilder.build(), textChannel);
@@ -178,13 +177,15 @@ public class GuildManagementListener extends ListenerAdapter {
                                 EmbedBuilder embedBuilder = new EmbedBuilder();
                                 embedBuilder.setTitle("Renamed");
                                 embedBuilder.setDescription(String.format("Aiode has been renamed to '%s'. This new name can be used as command prefix.", name));
-                                embedBuilder.setColor(ColorSchemeProperty.getColor(guildContext.getSpecification(session)));
+                                embedBuilder.setColor(guildContext.getSettings().getColor());
                                 TextChannel textChannel = guildManager.getDefaultTextChannelForGuild(guild);
                                 if (textChannel != null) {
                                     messageService.sendTemporary(embedBuilder.build(), textChannel);
                                 }
                             }
                         });
+                        // the bot name is not changed by a command, so the GuildPropertyInterceptor does not update the settings
+                        hibernateComponent.consumeSession(session -> guildManager.updateSettings(guildContext.getSpecification(session)));
                     }
                 }
             ));
@@ -13,11 +13,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.dv8tion.jda.api.JDA;
-import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.robinfriedli.aiode.Aiode;
-import net.robinfriedli.aiode.concurrent.CommandExecutionQueueManager;
 import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
 import net.robinfriedli.aiode.discord.GuildManager;
 import net.robinfriedli.aiode.entities.xml.StartupTaskContribution;
@@ -68,16 +66,11 @@ public class StartupListener extends ListenerAdapter {
                 }
             }
 
-            CommandExecutionQueueManager executionQueueManager = aiode.getExecutionQueueManager();
             GuildManager guildManager = aiode.getGuildManager();
 
-            StaticSessionProvider.consumeSession(session -> {
-                // setup current thread session and handle all guilds within one session instead of opening a new session for each
-                for (Guild guild : jda.getGuilds()) {
-                    executionQueueManager.addGuild(guild);
-                    guildManager.addGuild(guild);
-                }
-            });
+            // setup current thread session and handle all guilds within one session instead of opening a new session for each,
+            // the GuildContext and execution queue of each guild are created lazily when the guild is first used
+            StaticSessionProvider.consumeSession(session -> guildManager.bootstrapGuilds(jda));
 
             for (StartupTaskContribution element : startupTaskContributions) {
                 if (element.getAttribute("runForEachShard").getBool()) {
@@ -21,10 +21,9 @@ import net.robinfriedli.aiode.concurrent.EventHandlerPool;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.concurrent.ThreadContext;
 import net.robinfriedli.aiode.discord.GuildManager;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
-import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.StoredScript;
 import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import net.robinfriedli.aiode.scripting.GroovyScriptCache;
 import net.robinfriedli.aiode.scripting.GroovyVariableManager;
 import net.robinfriedli.aiode.scripting.SafeGroovyScriptRunner;
 import net.robinfriedli.aiode.scripting.ScriptCommandRunner;
@@ -42,6 +41,7 @@ public class VoiceChannelListener extends ListenerAdapter {
     private final AudioManager audioManager;
     private final CommandManager commandManager;
     private final GroovySandboxComponent groovySandboxComponent;
+    private final GroovyScriptCache groovyScriptCache;
     private final GroovyVariableManager groovyVariableManager;
     private final GuildManager guildManager;
     private final HibernateComponent hibernateComponent;
@@ -54,6 +54,7 @@ public class VoiceChannelListener extends ListenerAdapter {
         AudioManager audioManager,
         CommandManager commandManager,
         GroovySandboxComponent groovySandboxComponent,
+        GroovyScriptCache groovyScriptCache,
         GroovyVariableManager groovyVariableManager,
         GuildManager guildManager,
         HibernateComponent hibernateComponent,
@@ -64,6 +65,7 @@ public class VoiceChannelListener extends ListenerAdapter {
         this.audioManager = audioManager;
         this.commandManager = commandManager;
         this.groovySandboxComponent = groovySandboxComponent;
+        this.groovyScriptCache = groovyScriptCache;
         this.groovyVariableManager = groovyVariableManager;
         this.guildManager = guildManager;
         this.hibernateComponent = hibernateComponent;
@@ -150,15 +152,8 @@ public class VoiceChannelListener extends ListenerAdapter {
     }
 
     private boolean isAutoPauseEnabled(Guild guild) {
-        return hibernateComponent.invokeWithSession(session -> {
-            GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-            GuildManager guildManager = Aiode.get().getGuildManager();
-            GuildSpecification specification = guildManager.getContextForGuild(guild).getSpecification(session);
-
-            return guildPropertyManager
-                .getPropertyValueOptional("enableAutoPause", Boolean.class, specification)
-                .orElse(true);
-        });
+        GuildManager guildManager = Aiode.get().getGuildManager();
+        return guildManager.getContextForGuild(guild).getSettings().isEnableAutoPause();
     }
 
     private void runScriptTriggers(String event, AudioChannel targetChannel, ExecutionContext executionContext) {
@@ -183,6 +178,7 @@ public class VoiceChannelListener extends ListenerAdapter {
             SafeGroovyScriptRunner groovyScriptRunner = new SafeGroovyScriptRunner(
                 executionContext,
                 groovySandboxComponent,
+                groovyScriptCache,
                 groovyVariableManager,
                 securityManager,
                 false
@@ -1,15 +1,22 @@
 package net.robinfriedli.aiode.discord.property;
 
+import java.awt.Color;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.Lists;
+import net.robinfriedli.aiode.discord.property.properties.ArgumentPrefixProperty;
+import net.robinfriedli.aiode.discord.property.properties.ColorSchemeProperty;
 import net.robinfriedli.aiode.entities.GuildSpecification;
-import net.robinfriedli.aiode.entities.xml.GenericClassContribution;
 import net.robinfriedli.aiode.entities.xml.GuildPropertyContribution;
+import net.robinfriedli.aiode.exceptions.InvalidPropertyValueException;
 import net.robinfriedli.aiode.util.SearchEngine;
 import net.robinfriedli.jxp.api.JxpBackend;
 import net.robinfriedli.jxp.persist.Context;
@@ -17,15 +24,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import static net.robinfriedli.jxp.queries.Conditions.*;
-
 /**
- * Manager of guild properties defined in guildProperties.xml
+ * Manager of guild properties defined in guildProperties.xml. The properties are instantiated once when the manager is
+ * created and build the {@link GuildSettings} of each guild.
  */
 @Component
 public class GuildPropertyManager {
 
     private final Context propertyContext;
+    private final Map<String, AbstractGuildProperty> properties;
 
     public GuildPropertyManager(@Value("classpath:xml-contributions/guildProperties.xml") Resource commandResource, JxpBackend jxpBackend) {
         try {
@@ -33,23 +40,56 @@ public class GuildPropertyManager {
         } catch (IOException e) {
             throw new RuntimeException("Could not instantiate " + getClass().getSimpleName(), e);
         }
+
+        Map<String, AbstractGuildProperty> properties = new LinkedHashMap<>();
+        for (GuildPropertyContribution contribution : propertyContext.getInstancesOf(GuildPropertyContribution.class)) {
+            properties.put(contribution.getProperty(), contribution.instantiate());
+        }
+        this.properties = Collections.unmodifiableMap(properties);
     }
 
     public List<AbstractGuildProperty> getProperties() {
-        return propertyContext.getInstancesOf(GuildPropertyContribution.class).stream()
-            .map(GenericClassContribution::instantiate)
-            .collect(Collectors.toList());
+        return Lists.newArrayList(properties.values());
     }
 
     @Nullable
     public AbstractGuildProperty getProperty(String property) {
-        GuildPropertyContribution contribution = propertyContext.query(attribute("property").is(property), GuildPropertyContribution.class).getOnlyResult();
+        return properties.get(property);
+    }
+
+    /**
+     * Resolve the values of all properties for the provided specification, this is the only place where the guild
+     * property values are read from the {@link GuildSpecification} for the {@link GuildSettings}.
+     */
+    public GuildSettings buildSettings(GuildSpecification specification) {
+        Map<String, Object> values = new HashMap<>();
+        Map<String, Object> setValues = new HashMap<>();
+        for (AbstractGuildProperty property : properties.values()) {
+            Object setValue = property.extractPersistedValue(specification);
+            if (setValue != null) {
+                setValues.put(property.getProperty(), setValue);
+            }
+
+            Object value = property.get(specification);
+            if (value != null) {
+                values.put(property.getProperty(), value);
+            }
+        }
 
-        if (contribution != null) {
-            return contribution.instantiate();
+        ArgumentPrefixProperty.Config argumentPrefixConfig = getPropertyOptional("argumentPrefix")
+            .map(property -> ArgumentPrefixProperty.createConfig(property, (Character) values.get("argumentPrefix")))
+            .orElseGet(() -> new ArgumentPrefixProperty.Config(ArgumentPrefixProperty.DEFAULT_FALLBACK, ArgumentPrefixProperty.DEFAULT_FALLBACK));
+        Color color;
+        try {
+            color = getPropertyOptional("color")
+                .map(property -> ((ColorSchemeProperty) property).getAsColor(specification))
+                .orElse(ColorSchemeProperty.DEFAULT_FALLBACK);
+        } catch (InvalidPropertyValueException e) {
+            // the colour is validated when set, but do not fail setting up the guild because of a broken value
+            color = ColorSchemeProperty.DEFAULT_FALLBACK;
         }
 
-        return null;
+        return new GuildSettings(values, setValues, argumentPrefixConfig, color);
     }
 
     public Optional<AbstractGuildProperty> getPropertyOptional(String property) {
@@ -67,7 +107,7 @@ public class GuildPropertyManager {
             .getOnlyResult();
 
         if (contribution != null) {
-            return contribution.instantiate();
+            return properties.get(contribution.getProperty());
         }
 
         return null;
@@ -0,0 +1,135 @@
+package net.robinfriedli.aiode.discord.property;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+import net.robinfriedli.aiode.discord.GuildContext;
+import net.robinfriedli.aiode.discord.property.properties.ArgumentPrefixProperty;
+import net.robinfriedli.aiode.discord.property.properties.BotNameProperty;
+import net.robinfriedli.aiode.discord.property.properties.PrefixProperty;
+import net.robinfriedli.aiode.discord.property.properties.TempMessageTimeoutProperty;
+import net.robinfriedli.aiode.entities.GuildSpecification;
+import net.robinfriedli.aiode.persist.interceptors.GuildPropertyInterceptor;
+
+/**
+ * Immutable snapshot of the values of all properties defined in guildProperties.xml for one guild, built by
+ * {@link GuildPropertyManager#buildSettings(GuildSpecification)} when the {@link GuildContext} is set up and replaced
+ * after the {@link GuildPropertyInterceptor} sees a committed change. Reading a setting does not load the
+ * {@link GuildSpecification}, the values of frequently read properties are resolved to typed fields on construction.
+ */
+public class GuildSettings {
+
+    private final Map<String, Object> values;
+    private final Map<String, Object> setValues;
+
+    @Nullable
+    private final String setPrefix;
+    @Nullable
+    private final String setBotName;
+    private final String prefix;
+    private final String botName;
+    private final ArgumentPrefixProperty.Config argumentPrefixConfig;
+    private final Color color;
+    private final boolean sendPlaybackNotification;
+    private final boolean enableAutoPause;
+    private final boolean enableScripting;
+    private final int tempMessageTimeout;
+    private final int autoQueueMode;
+
+    /**
+     * @param values    the values of all properties, falling back to the default value if not set
+     * @param setValues the persisted values of all properties that are set
+     * @param color     the parsed value of the color property
+     */
+    GuildSettings(Map<String, Object> values, Map<String, Object> setValues, ArgumentPrefixProperty.Config argumentPrefixConfig, Color color) {
+        this.values = Collections.unmodifiableMap(values);
+        this.setValues = Collections.unmodifiableMap(setValues);
+        this.argumentPrefixConfig = argumentPrefixConfig;
+        this.color = color;
+        setPrefix = (String) setValues.get("prefix");
+        setBotName = (String) setValues.get("botName");
+        prefix = get("prefix", String.class, PrefixProperty.DEFAULT_FALLBACK);
+        botName = get("botName", String.class, BotNameProperty.DEFAULT_FALLBACK);
+        sendPlaybackNotification = get("sendPlaybackNotification", Boolean.class, true);
+        enableAutoPause = get("enableAutoPause", Boolean.class, true);
+        enableScripting = get("enableScripting", Boolean.class, true);
+        tempMessageTimeout = get("tempMessageTimeout", Integer.class, TempMessageTimeoutProperty.DEFAULT_FALLBACK);
+        autoQueueMode = get("autoQueueMode", Integer.class, 1);
+    }
+
+    /**
+     * @return the value of the property or its default value if not set, empty if the property does not exist
+     */
+    public <T> Optional<T> getOptional(String property, Class<T> type) {
+        return Optional.ofNullable(values.get(property)).map(type::cast);
+    }
+
+    public <T> T get(String property, Class<T> type, T fallback) {
+        Object value = values.get(property);
+        return value != null ? type.cast(value) : fallback;
+    }
+
+    /**
+     * @return the persisted value of the property, ignoring the default value
+     */
+    public <T> Optional<T> getSetValue(String property, Class<T> type) {
+        return Optional.ofNullable(setValues.get(property)).map(type::cast);
+    }
+
+    /**
+     * @return the persisted prefix or null if not set. Does not fall back to the default value.
+     */
+    @Nullable
+    public String getSetPrefix() {
+        return setPrefix;
+    }
+
+    /**
+     * @return the persisted bot name or null if not set. Does not fall back to the default value.
+     */
+    @Nullable
+    public String getSetBotName() {
+        return setBotName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getBotName() {
+        return botName;
+    }
+
+    public ArgumentPrefixProperty.Config getArgumentPrefixConfig() {
+        return argumentPrefixConfig;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public boolean isSendPlaybackNotification() {
+        return sendPlaybackNotification;
+    }
+
+    public boolean isEnableAutoPause() {
+        return enableAutoPause;
+    }
+
+    public boolean isEnableScripting() {
+        return enableScripting;
+    }
+
+    public int getTempMessageTimeout() {
+        return tempMessageTimeout;
+    }
+
+    public int getAutoQueueMode() {
+        return autoQueueMode;
+    }
+
+}
@@ -2,10 +2,11 @@ package net.robinfriedli.aiode.discord.property.properties;
 
 import java.util.Objects;
 
-import net.robinfriedli.aiode.Aiode;
+import javax.annotation.Nullable;
+
 import net.robinfriedli.aiode.command.parser.CommandParser;
+import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
 import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.xml.GuildPropertyContribution;
 import net.robinfriedli.aiode.exceptions.InvalidPropertyValueException;
@@ -28,21 +29,22 @@ public class ArgumentPrefixProperty extends AbstractGuildProperty {
      * @return the set argument prefix for the current guild
      */
     public static Config getForCurrentContext() {
-        GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-
-        return guildPropertyManager.getPropertyOptional("argumentPrefix")
-            .map(p -> {
-                String defaultValueString = p.getDefaultValue();
-                char[] chars = defaultValueString.toCharArray();
-                if (chars.length != 1) {
-                    throw new IllegalStateException("Default value for argumentPrefix is not a single char");
-                }
+        return ExecutionContext.Current.require().getGuildContext().getSettings().getArgumentPrefixConfig();
+    }
 
-                char defaultArgumentPrefix = chars[0];
-                char argumentPrefix = p.get(Character.class);
+    /**
+     * Create the config for the provided argumentPrefix property and value, falling back to the default value of the
+     * property if the value is null.
+     */
+    public static Config createConfig(AbstractGuildProperty property, @Nullable Character argumentPrefix) {
+        String defaultValueString = property.getDefaultValue();
+        char[] chars = defaultValueString.toCharArray();
+        if (chars.length != 1) {
+            throw new IllegalStateException("Default value for argumentPrefix is not a single char");
+        }
 
-                return new Config(argumentPrefix, defaultArgumentPrefix);
-            }).orElseGet(() -> new Config(DEFAULT_FALLBACK, DEFAULT_FALLBACK));
+        char defaultArgumentPrefix = chars[0];
+        return new Config(argumentPrefix != null ? argumentPrefix : defaultArgumentPrefix, defaultArgumentPrefix);
     }
 
     @Override
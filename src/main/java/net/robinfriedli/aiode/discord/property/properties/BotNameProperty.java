@@ -9,7 +9,6 @@ import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.discord.GuildContext;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
 import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.xml.GuildPropertyContribution;
 import net.robinfriedli.aiode.exceptions.InvalidPropertyValueException;
@@ -27,12 +26,7 @@ public class BotNameProperty extends AbstractGuildProperty {
     }
 
     public static String getForContext(GuildContext guildContext, Session session) {
-        GuildSpecification specification = guildContext.getSpecification(session);
-        GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-
-        return guildPropertyManager
-            .getPropertyValueOptional("botName", String.class, specification)
-            .orElse(DEFAULT_FALLBACK);
+        return guildContext.getSettings().getBotName();
     }
 
     @Override
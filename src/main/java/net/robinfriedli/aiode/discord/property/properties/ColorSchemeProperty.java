@@ -5,7 +5,6 @@ import java.awt.Color;
 import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
 import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.xml.GuildPropertyContribution;
 import net.robinfriedli.aiode.exceptions.InvalidPropertyValueException;
@@ -31,14 +30,14 @@ public class ColorSchemeProperty extends AbstractGuildProperty {
     }
 
     public static Color getColor() {
-        GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-        ColorSchemeProperty colorProperty = (ColorSchemeProperty) guildPropertyManager.getProperty("color");
+        ExecutionContext executionContext = ExecutionContext.Current.get();
+        if (executionContext != null) {
+            return executionContext.getGuildContext().getSettings().getColor();
+        }
+
+        ColorSchemeProperty colorProperty = (ColorSchemeProperty) Aiode.get().getGuildPropertyManager().getProperty("color");
         if (colorProperty != null) {
-            if (ExecutionContext.Current.isSet()) {
-                return colorProperty.getAsColor();
-            } else {
-                return ColorSchemeProperty.parseColor(colorProperty.getDefaultValue());
-            }
+            return ColorSchemeProperty.parseColor(colorProperty.getDefaultValue());
         }
 
         return DEFAULT_FALLBACK;
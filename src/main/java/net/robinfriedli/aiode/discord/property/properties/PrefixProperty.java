@@ -8,7 +8,7 @@ import net.robinfriedli.aiode.boot.SpringPropertiesConfig;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.discord.GuildContext;
 import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
-import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
+import net.robinfriedli.aiode.discord.property.GuildSettings;
 import net.robinfriedli.aiode.entities.GuildSpecification;
 import net.robinfriedli.aiode.entities.xml.GuildPropertyContribution;
 import net.robinfriedli.aiode.exceptions.InvalidCommandException;
@@ -38,21 +38,18 @@ public class PrefixProperty extends AbstractGuildProperty {
             return guild.getSelfMember().getAsMention() + " ";
         }
 
-        GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-        return guildPropertyManager.getPropertyOptional("prefix")
-            .flatMap(property -> property.getSetValue(String.class))
-            .or(() -> guildPropertyManager.getPropertyOptional("botName")
-                .flatMap(property -> property.getSetValue(String.class))
-                .map(s -> s + " "))
-            .orElse(DEFAULT_FALLBACK + " ");
+        GuildSettings settings = ExecutionContext.Current.require().getGuildContext().getSettings();
+        if (settings.getSetPrefix() != null) {
+            return settings.getSetPrefix();
+        } else if (settings.getSetBotName() != null) {
+            return settings.getSetBotName() + " ";
+        } else {
+            return DEFAULT_FALLBACK + " ";
+        }
     }
 
     public static String getForContext(GuildContext guildContext, Session session) {
-        GuildSpecification specification = guildContext.getSpecification(session);
-        GuildPropertyManager guildPropertyManager = Aiode.get().getGuildPropertyManager();
-        return guildPropertyManager
-            .getPropertyValueOptional("prefix", String.class, specification)
-            .orElse(DEFAULT_FALLBACK);
+        return guildContext.getSettings().getPrefix();
     }
 
     @Override
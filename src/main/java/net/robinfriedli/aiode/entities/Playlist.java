@@ -213,25 +213,29 @@ public class Playlist implements Serializable, SanitizedEntity {
      */
     public List<SpotifyTrack> asTrackList(SpotifyApi spotifyApi) {
         SpotifyTrackBulkLoadingService service = new SpotifyTrackBulkLoadingService(spotifyApi);
-        List<SpotifyTrack> tracks = Lists.newArrayList();
-        for (PlaylistItem item : getItemsSorted()) {
+        List<PlaylistItem> playlistItems = getItemsSorted();
+        // duplicate items are loaded once and passed to all their actions at the same time, so sort by index afterwards
+        List<Pair<SpotifyTrack, Integer>> tracksWithIndex = Lists.newArrayList();
+        for (int i = 0; i < playlistItems.size(); i++) {
+            PlaylistItem item = playlistItems.get(i);
+            int finalI = i;
             if (item instanceof Song) {
                 String id = ((Song) item).getId();
-                service.add(createItem(id, TRACK), tracks::add);
+                service.add(createItem(id, TRACK), track -> tracksWithIndex.add(Pair.of(track, finalI)));
             } else if (item instanceof Episode) {
                 String id = ((Episode) item).getId();
-                service.add(createItem(id, EPISODE), tracks::add);
+                service.add(createItem(id, EPISODE), track -> tracksWithIndex.add(Pair.of(track, finalI)));
             } else if (item instanceof Video && ((Video) item).getRedirectedSpotifyId() != null) {
                 Video video = (Video) item;
                 String redirectedSpotifyId = video.getRedirectedSpotifyId();
                 SpotifyItemKind kindEntity = video.getRedirectedSpotifyKind();
                 SpotifyTrackKind kind = kindEntity != null ? kindEntity.asEnum() : TRACK;
-                service.add(createItem(redirectedSpotifyId, kind), tracks::add);
+                service.add(createItem(redirectedSpotifyId, kind), track -> tracksWithIndex.add(Pair.of(track, finalI)));
             }
         }
 
         service.perform();
-        return tracks;
+        return tracksWithIndex.stream().sorted(Comparator.comparing(Pair::getRight)).map(Pair::getLeft).collect(Collectors.toList());
     }
 
     public Set<Song> getSongs() {
@@ -0,0 +1,72 @@
+package net.robinfriedli.aiode.entities;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Hash of the set of slash commands last uploaded by a bot application, either the global command list if guildId is
+ * {@link #GLOBAL_GUILD_ID} or the preset commands of a guild. Used on startup to skip uploading slash commands that have not changed.
+ * Commands are registered per application, so each bot instance with a separate bot account has its own fingerprints.
+ */
+@Entity
+@Table(name = "slash_command_fingerprint")
+public class SlashCommandFingerprint implements Serializable {
+
+    // stored instead of null so that the unique constraint on application_id and guild_id applies to the global list
+    public static final String GLOBAL_GUILD_ID = "global";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "pk")
+    private long pk;
+    @Column(name = "application_id", nullable = false)
+    private String applicationId;
+    @Column(name = "guild_id", nullable = false)
+    private String guildId;
+    @Column(name = "fingerprint", nullable = false)
+    private String fingerprint;
+    @Column(name = "last_updated", nullable = false)
+    private LocalDateTime lastUpdated;
+
+    public SlashCommandFingerprint() {
+    }
+
+    public SlashCommandFingerprint(String applicationId, String guildId, String fingerprint) {
+        this.applicationId = applicationId;
+        this.guildId = guildId;
+        setFingerprint(fingerprint);
+    }
+
+    public long getPk() {
+        return pk;
+    }
+
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    public String getGuildId() {
+        return guildId;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+        lastUpdated = LocalDateTime.now();
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+}
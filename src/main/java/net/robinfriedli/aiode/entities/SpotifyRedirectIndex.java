@@ -2,9 +2,15 @@ package net.robinfriedli.aiode.entities;
 
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.ForeignKey;
@@ -74,6 +80,26 @@ public class SpotifyRedirectIndex implements Serializable {
         return session.createQuery(query).setHibernateFlushMode(FlushMode.MANUAL).uniqueResultOptional();
     }
 
+    /**
+     * Query the existing indices for all provided spotify track ids in as few queries as possible.
+     *
+     * @return the found indices mapped by their spotify id
+     */
+    public static Map<String, SpotifyRedirectIndex> queryExistingIndices(Session session, Collection<String> spotifyTrackIds) {
+        List<String> ids = spotifyTrackIds.stream().filter(id -> !Strings.isNullOrEmpty(id)).distinct().collect(Collectors.toList());
+        Map<String, SpotifyRedirectIndex> indices = new HashMap<>();
+        for (List<String> partition : Lists.partition(ids, 1000)) {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaQuery<SpotifyRedirectIndex> query = cb.createQuery(SpotifyRedirectIndex.class);
+            Root<SpotifyRedirectIndex> root = query.from(SpotifyRedirectIndex.class);
+            query.where(root.get("spotifyId").in(partition));
+            for (SpotifyRedirectIndex index : session.createQuery(query).setHibernateFlushMode(FlushMode.MANUAL).getResultList()) {
+                indices.put(index.getSpotifyId(), index);
+            }
+        }
+        return indices;
+    }
+
     public long getPk() {
         return pk;
     }
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Objects;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
@@ -22,12 +23,16 @@ import net.robinfriedli.aiode.command.commands.scripting.ScriptCommand;
 import net.robinfriedli.aiode.entities.xml.CommandContribution;
 import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
 import net.robinfriedli.aiode.scripting.ScriptUsageType;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "stored_script", indexes = {
     @Index(name = "stored_script_guild_id_idx", columnList = "guild_id"),
     @Index(name = "stored_script_guild_identifier_usage_unique_idx", columnList = "guild_id, identifier, script_usage_pk", unique = true)
 })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class StoredScript implements Serializable, SanitizedEntity {
 
     @Id
@@ -219,6 +224,8 @@ public class StoredScript implements Serializable, SanitizedEntity {
 
     @Entity
     @Table(name = "script_usage")
+    @Cacheable
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     public static class ScriptUsage extends LookupEntity {
 
         @Id
@@ -2,8 +2,6 @@ package net.robinfriedli.aiode.login;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -39,7 +37,7 @@ public class LoginHandler implements HttpHandler {
 
     @Override
     public void handle(HttpExchange httpExchange) throws IOException {
-        String html = Files.readString(Path.of("html/login.html"));
+        String html = ServerUtil.getTemplate("html/login.html");
         try {
             Map<String, String> parameterMap = ServerUtil.getParameters(httpExchange);
 
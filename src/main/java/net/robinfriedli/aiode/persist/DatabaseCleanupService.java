@@ -0,0 +1,320 @@
+package net.robinfriedli.aiode.persist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaDelete;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.ISnowflake;
+import net.dv8tion.jda.api.sharding.ShardManager;
+import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
+import net.robinfriedli.aiode.discord.GuildManager;
+import net.robinfriedli.aiode.entities.AccessConfiguration;
+import net.robinfriedli.aiode.entities.Episode;
+import net.robinfriedli.aiode.entities.FilebrokerTrack;
+import net.robinfriedli.aiode.entities.GrantedRole;
+import net.robinfriedli.aiode.entities.GuildSpecification;
+import net.robinfriedli.aiode.entities.Playlist;
+import net.robinfriedli.aiode.entities.PlaylistItem;
+import net.robinfriedli.aiode.entities.Preset;
+import net.robinfriedli.aiode.entities.Song;
+import net.robinfriedli.aiode.entities.StoredScript;
+import net.robinfriedli.aiode.entities.UrlTrack;
+import net.robinfriedli.aiode.entities.Video;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Deletes data associated with guilds the bot is no longer a part of while the bot keeps running. The stale rows of
+ * each table are found using keyset pagination over the primary key, each batch is selected and deleted in its own
+ * short transaction. The ids of the active guilds are bound as a single array parameter. Guilds that join while the
+ * cleanup is running are checked again before each batch is deleted. Guilds assigned to a private bot instance are never
+ * treated as stale because the guilds of other instances are not known to this instance.
+ */
+@Component
+public class DatabaseCleanupService {
+
+    private static final List<Class<? extends PlaylistItem>> PLAYLIST_ITEM_TYPES = List.of(
+        Song.class,
+        Video.class,
+        UrlTrack.class,
+        Episode.class,
+        FilebrokerTrack.class
+    );
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final int batchSize;
+    private final GuildManager guildManager;
+    private final HibernateComponent hibernateComponent;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ShardManager shardManager;
+
+    public DatabaseCleanupService(
+        @Value("${aiode.preferences.db_cleanup_batch_size:500}") int batchSize,
+        GuildManager guildManager,
+        HibernateComponent hibernateComponent,
+        ShardManager shardManager
+    ) {
+        this.batchSize = batchSize;
+        this.guildManager = guildManager;
+        this.hibernateComponent = hibernateComponent;
+        this.shardManager = shardManager;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Run the cleanup in the current thread.
+     *
+     * @return the number of deleted entities per type
+     * @throws IllegalStateException if the cleanup is already running or not all shards are connected, in which case
+     *                               the guilds of the disconnected shards would be considered stale
+     */
+    public Result clean() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Database cleanup is already running");
+        }
+
+        try {
+            Set<String> activeGuildIds = getActiveGuildIds();
+            String[] activeGuildIdArray = activeGuildIds.toArray(new String[0]);
+            Long[] activeGuildIdLongArray = activeGuildIds.stream().map(Long::parseLong).toArray(Long[]::new);
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            logger.info("Starting database cleanup for {} active guilds", activeGuildIds.size());
+
+            Result result = new Result();
+            result.playlists = cleanTable("playlist", "t.guild_id", activeGuildIdArray, this::deletePlaylists);
+            result.guildSpecifications = cleanTable("guild_specification", "t.guild_id", activeGuildIdArray, (session, pks) -> {
+                result.accessConfigurations += deleteAccessConfigurations(session, pks);
+                return deleteByPk(session, GuildSpecification.class, pks);
+            });
+            result.presets = cleanTable("preset", "t.guild_id", activeGuildIdArray, (session, pks) -> deleteByPk(session, Preset.class, pks));
+            result.scripts = cleanTable(
+                "stored_script",
+                "cast(t.guild_id as varchar)",
+                activeGuildIdLongArray,
+                (session, pks) -> deleteByPk(session, StoredScript.class, pks)
+            );
+
+            logger.info("Finished database cleanup after {}ms: {}", stopwatch.elapsed().toMillis(), result);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Set<String> getActiveGuildIds() {
+        if (shardManager.getShards().size() != shardManager.getShardsTotal()) {
+            throw new IllegalStateException("Cannot clean database on a node that does not run all shards");
+        }
+
+        for (JDA shard : shardManager.getShards()) {
+            if (shard.getStatus() != JDA.Status.CONNECTED || !shard.getUnavailableGuilds().isEmpty()) {
+                throw new IllegalStateException("Cannot clean database while shard " + shard.getShardInfo() + " is not fully connected");
+            }
+        }
+
+        Set<String> activeGuildIds = shardManager.getGuilds().stream().map(ISnowflake::getId).collect(Collectors.toSet());
+        activeGuildIds.addAll(guildManager.getGuildContexts().stream().map(g -> g.getGuild().getId()).collect(Collectors.toSet()));
+        return activeGuildIds;
+    }
+
+    /**
+     * Delete the rows of the given table that reference guilds that are not active batch by batch.
+     *
+     * @param table          the table to clean, must have a pk and guild_id column
+     * @param guildIdColumn  the expression selecting the guild id of the table aliased as t as string
+     * @param activeGuildIds the ids of the active guilds as array of the type of the guild_id column
+     * @param deleteFunction deletes the entities with the provided pks and their dependants, returns the number of
+     *                       deleted entities
+     * @return the total number of deleted entities
+     */
+    private int cleanTable(String table, String guildIdColumn, Object[] activeGuildIds, BiFunction<Session, List<Long>, Integer> deleteFunction) {
+        String query = String.format(
+            "select t.pk, %1$s from %2$s t where t.pk > :lastPk and t.guild_id <> all(:activeGuildIds) " +
+                "and not exists(select 1 from guild_specification gs where gs.guild_id = %1$s and gs.assigned_private_bot_instance is not null) " +
+                "order by t.pk limit :batchSize",
+            guildIdColumn,
+            table
+        );
+
+        long lastPk = 0;
+        int deletedCount = 0;
+        int batchCount = 0;
+        while (true) {
+            long currentLastPk = lastPk;
+            Batch batch = inTransaction(session -> {
+                List<Object[]> rows = session.createNativeQuery(query, Object[].class)
+                    .setParameter("lastPk", currentLastPk)
+                    .setParameter("activeGuildIds", activeGuildIds)
+                    .setParameter("batchSize", batchSize)
+                    .getResultList();
+
+                if (rows.isEmpty()) {
+                    return null;
+                }
+
+                List<Long> stalePks = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                    // skip guilds that joined after the cleanup started
+                    if (shardManager.getGuildById((String) row[1]) == null) {
+                        stalePks.add(((Number) row[0]).longValue());
+                    }
+                }
+
+                long batchLastPk = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+                int batchDeletedCount = stalePks.isEmpty() ? 0 : deleteFunction.apply(session, stalePks);
+                return new Batch(batchLastPk, batchDeletedCount, rows.size() < batchSize);
+            });
+
+            if (batch == null) {
+                break;
+            }
+
+            lastPk = batch.lastPk;
+            deletedCount += batch.deletedCount;
+            logger.info("Database cleanup of {}: batch {} deleted {}, {} in total", table, ++batchCount, batch.deletedCount, deletedCount);
+
+            if (batch.last) {
+                break;
+            }
+        }
+
+        return deletedCount;
+    }
+
+    private <E> E inTransaction(Function<Session, E> function) {
+        SessionFactory sessionFactory = hibernateComponent.getSessionFactory();
+        try (Session session = sessionFactory.openSession()) {
+            Transaction transaction = session.beginTransaction();
+            try {
+                E result = function.apply(session);
+                transaction.commit();
+                return result;
+            } catch (Throwable e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private int deletePlaylists(Session session, List<Long> playlistPks) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        for (Class<? extends PlaylistItem> itemType : PLAYLIST_ITEM_TYPES) {
+            @SuppressWarnings("unchecked")
+            Class<PlaylistItem> playlistItemClass = (Class<PlaylistItem>) itemType;
+            CriteriaDelete<PlaylistItem> stalePlaylistItemsQuery = cb.createCriteriaDelete(playlistItemClass);
+            Root<PlaylistItem> playlistItemRoot = stalePlaylistItemsQuery.from(playlistItemClass);
+            stalePlaylistItemsQuery.where(cb.in(playlistItemRoot.get("playlist").get("pk")).value(playlistPks));
+            session.createMutationQuery(stalePlaylistItemsQuery).executeUpdate();
+        }
+
+        return deleteByPk(session, Playlist.class, playlistPks);
+    }
+
+    private int deleteAccessConfigurations(Session session, List<Long> guildSpecificationPks) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaQuery<Long> staleAccessConfigurationQuery = cb.createQuery(Long.class);
+        Root<AccessConfiguration> from = staleAccessConfigurationQuery.from(AccessConfiguration.class);
+        staleAccessConfigurationQuery.select(from.get("pk"))
+            .where(cb.in(from.get("guildSpecification").get("pk")).value(guildSpecificationPks));
+        List<Long> staleAccessConfigurationIds = session.createQuery(staleAccessConfigurationQuery).getResultList();
+
+        if (staleAccessConfigurationIds.isEmpty()) {
+            return 0;
+        }
+
+        CriteriaDelete<GrantedRole> staleGrantedRolesQuery = cb.createCriteriaDelete(GrantedRole.class);
+        Root<GrantedRole> grantedRoleRoot = staleGrantedRolesQuery.from(GrantedRole.class);
+        staleGrantedRolesQuery.where(cb.in(grantedRoleRoot.get("accessConfiguration").get("pk")).value(staleAccessConfigurationIds));
+        session.createMutationQuery(staleGrantedRolesQuery).executeUpdate();
+
+        return deleteByPk(session, AccessConfiguration.class, staleAccessConfigurationIds);
+    }
+
+    private <E> int deleteByPk(Session session, Class<E> entityType, List<Long> pks) {
+        CriteriaBuilder cb = session.getCriteriaBuilder();
+        CriteriaDelete<E> deleteQuery = cb.createCriteriaDelete(entityType);
+        Root<E> from = deleteQuery.from(entityType);
+        deleteQuery.where(cb.in(from.get("pk")).value(pks));
+        return session.createMutationQuery(deleteQuery).executeUpdate();
+    }
+
+    private static class Batch {
+
+        private final long lastPk;
+        private final int deletedCount;
+        private final boolean last;
+
+        private Batch(long lastPk, int deletedCount, boolean last) {
+            this.lastPk = lastPk;
+            this.deletedCount = deletedCount;
+            this.last = last;
+        }
+
+    }
+
+    public static class Result {
+
+        private int playlists;
+        private int guildSpecifications;
+        private int accessConfigurations;
+        private int presets;
+        private int scripts;
+
+        public int getPlaylists() {
+            return playlists;
+        }
+
+        public int getGuildSpecifications() {
+            return guildSpecifications;
+        }
+
+        public int getAccessConfigurations() {
+            return accessConfigurations;
+        }
+
+        public int getPresets() {
+            return presets;
+        }
+
+        public int getScripts() {
+            return scripts;
+        }
+
+        public boolean isEmpty() {
+            return playlists == 0 && guildSpecifications == 0 && accessConfigurations == 0 && presets == 0 && scripts == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%d playlists, %d guild specifications, %d access configurations, %d presets, %d scripts",
+                playlists,
+                guildSpecifications,
+                accessConfigurations,
+                presets,
+                scripts
+            );
+        }
+
+    }
+
+}
@@ -0,0 +1,564 @@
+package net.robinfriedli.aiode.persist;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.channel.middleman.AudioChannel;
+import net.robinfriedli.aiode.audio.ChartService;
+import net.robinfriedli.aiode.audio.Playable;
+import net.robinfriedli.aiode.audio.spotify.PlayableTrackWrapper;
+import net.robinfriedli.aiode.audio.spotify.SpotifyTrack;
+import net.robinfriedli.aiode.audio.spotify.SpotifyTrackKind;
+import net.robinfriedli.aiode.audio.spotify.SpotifyTrackRedirect;
+import net.robinfriedli.aiode.audio.youtube.YouTubeVideo;
+import net.robinfriedli.aiode.boot.AbstractShutdownable;
+import net.robinfriedli.aiode.boot.configurations.HibernateComponent;
+import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
+import net.robinfriedli.aiode.entities.Artist;
+import net.robinfriedli.aiode.entities.CommandHistory;
+import net.robinfriedli.aiode.entities.PlaybackHistory;
+import net.robinfriedli.aiode.entities.PlaybackHistorySource;
+import net.robinfriedli.aiode.entities.SpotifyItemKind;
+import net.robinfriedli.aiode.entities.UserPlaybackHistory;
+import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
+import org.springframework.stereotype.Component;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+
+/**
+ * Writes {@link PlaybackHistory} (including the {@link UserPlaybackHistory} and {@link Artist} relations) and
+ * {@link CommandHistory} entries asynchronously. Entries are added to a bounded buffer and written by a single thread
+ * in batches of up to {@link #MAX_BATCH_SIZE} entries, collected for at most {@link #MAX_BATCH_DELAY_MS}, using batched
+ * JDBC statements in one transaction. The primary keys of {@link PlaybackHistorySource} and {@link SpotifyItemKind}
+ * lookup entities and artists are cached. When the buffer is full, new entries are dropped and counted rather than
+ * blocking the playback or command thread. The remaining entries are written on shutdown. Writing playback history
+ * entries also increments the chart counts read by the {@link ChartService}.
+ */
+@Component
+public class HistoryWriter extends AbstractShutdownable {
+
+    private static final int CAPACITY = 10000;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long MAX_BATCH_DELAY_MS = 1000;
+
+    private static final String INSERT_COMMAND_HISTORY_STATEMENT = "insert into command_history " +
+        "(timestamp, start_millis, command_identifier, is_widget, command_context_id, command_body, input, guild, " +
+        "guild_id, user_name, user_id, completed_successfully, failed_manually, duration_ms, unexpected_exception, " +
+        "error_message, aborted) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_PLAYBACK_HISTORY_STATEMENT = "insert into playback_history " +
+        "(timestamp, title, track_id, guild, guild_id, fk_source, fk_spotify_item_kind) values (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_PLAYBACK_HISTORY_STATEMENT = "insert into user_playback_history " +
+        "(user_name, user_id, playback_history_pk) values (?, ?, ?)";
+    private static final String INSERT_PLAYBACK_HISTORY_ARTIST_STATEMENT = "insert into playback_history_artist " +
+        "(playback_history_pk, artist_pk) values (?, ?)";
+    private static final String INSERT_ARTIST_STATEMENT = "insert into artist (id, name) values (?, ?) on conflict (id) do nothing";
+    private static final String INCREMENT_TRACK_CHART_COUNT_STATEMENT = "insert into track_chart_count " +
+        "(scope, scope_id, period, fk_source, track_id, fk_spotify_item_kind, count) values (?, ?, ?, ?, ?, ?, ?) " +
+        "on conflict (scope, scope_id, period, fk_source, track_id) do update set count = track_chart_count.count + excluded.count";
+    private static final String INCREMENT_ARTIST_CHART_COUNT_STATEMENT = "insert into artist_chart_count " +
+        "(scope, scope_id, period, artist_pk, count) values (?, ?, ?, ?, ?) " +
+        "on conflict (scope, scope_id, period, artist_pk) do update set count = artist_chart_count.count + excluded.count";
+
+    private static final String DEADLOCK_DETECTED_SQL_STATE = "40P01";
+    @SuppressWarnings("rawtypes")
+    private static final Comparator<Comparable> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+    // orders the keys of the chart counts column by column, the key columns at the same index always have the same type
+    private static final Comparator<List<Object>> CHART_KEY_ORDER = (a, b) -> {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            @SuppressWarnings("rawtypes")
+            int comparison = NULLS_FIRST.compare((Comparable) a.get(i), (Comparable) b.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    };
+
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final BlockingQueue<HistoryEntry> buffer = new ArrayBlockingQueue<>(CAPACITY);
+    private final Cache<String, Long> artistPks = CacheBuilder.newBuilder().maximumSize(50000).build();
+    private final HibernateComponent hibernateComponent;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<String, Long> lookupEntityPks = new ConcurrentHashMap<>();
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    public HistoryWriter(HibernateComponent hibernateComponent) {
+        this.hibernateComponent = hibernateComponent;
+        writerThread = new LoggingThreadFactory("history-writer").newThread(this::run);
+        writerThread.start();
+    }
+
+    /**
+     * Add a {@link PlaybackHistory} entry for the provided playable and a {@link UserPlaybackHistory} entry for each
+     * user currently in the provided audio channel.
+     */
+    public void addPlaybackHistory(Playable playable, Guild guild, @Nullable AudioChannel audioChannel) {
+        PlaybackHistoryEntry entry;
+        try {
+            entry = new PlaybackHistoryEntry(LocalDateTime.now(), playable, guild, audioChannel);
+        } catch (UnavailableResourceException e) {
+            // should never happen since when a track is being played that obviously means it was loaded
+            logger.warn("Trying to create a history for a track that didn't load successfully: " + playable);
+            return;
+        }
+
+        add(entry);
+    }
+
+    public void addCommandHistory(CommandHistory commandHistory) {
+        add(new CommandHistoryEntry(commandHistory));
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedEntries.get();
+    }
+
+    @Override
+    public void shutdown(int delayMs) {
+        running = false;
+        try {
+            writerThread.join(Math.max(delayMs, MAX_BATCH_DELAY_MS * 2));
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void add(HistoryEntry entry) {
+        if (!buffer.offer(entry)) {
+            long dropped = droppedEntries.incrementAndGet();
+            if (dropped % 1000 == 1) {
+                logger.warn("History buffer is full, dropped {} entries so far", dropped);
+            }
+        }
+    }
+
+    private void run() {
+        List<HistoryEntry> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running || !buffer.isEmpty()) {
+            try {
+                HistoryEntry first = buffer.poll(MAX_BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + MAX_BATCH_DELAY_MS;
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    buffer.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= MAX_BATCH_SIZE || remaining <= 0 || !running) {
+                        break;
+                    }
+
+                    HistoryEntry next = buffer.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<HistoryEntry> batch) {
+        try {
+            writeBatch(batch);
+        } catch (Exception e) {
+            if (!isDeadlock(e)) {
+                logger.error(String.format("Failed to write batch of %d history entries", batch.size()), e);
+                return;
+            }
+
+            // the transaction has been rolled back, retry once
+            logger.warn("Deadlock detected writing batch of {} history entries, retrying", batch.size());
+            try {
+                writeBatch(batch);
+            } catch (Exception retryException) {
+                logger.error(String.format("Failed to write batch of %d history entries", batch.size()), retryException);
+            }
+        }
+    }
+
+    private void writeBatch(List<HistoryEntry> batch) {
+        // only cache the pks of created artists once the transaction has been committed
+        Map<String, Long> createdArtistPks = new HashMap<>();
+        hibernateComponent.consumeSessionWithoutInterceptors(session -> session.doWork(connection -> {
+            List<CommandHistory> commandHistories = new ArrayList<>();
+            List<PlaybackHistoryEntry> playbackHistories = new ArrayList<>();
+            for (HistoryEntry entry : batch) {
+                if (entry instanceof CommandHistoryEntry commandHistoryEntry) {
+                    commandHistories.add(commandHistoryEntry.commandHistory);
+                } else if (entry instanceof PlaybackHistoryEntry playbackHistoryEntry) {
+                    playbackHistories.add(playbackHistoryEntry);
+                }
+            }
+
+            writeCommandHistories(connection, commandHistories);
+            writePlaybackHistories(connection, playbackHistories, createdArtistPks);
+        }));
+        artistPks.putAll(createdArtistPks);
+    }
+
+    private static boolean isDeadlock(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (DEADLOCK_DETECTED_SQL_STATE.equals(next.getSQLState())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void writeCommandHistories(Connection connection, List<CommandHistory> commandHistories) throws SQLException {
+        if (commandHistories.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_COMMAND_HISTORY_STATEMENT)) {
+            for (CommandHistory history : commandHistories) {
+                statement.setTimestamp(1, history.getTimestamp() != null ? Timestamp.valueOf(history.getTimestamp()) : null);
+                statement.setLong(2, history.getStartMillis());
+                statement.setString(3, history.getCommandIdentifier());
+                statement.setBoolean(4, history.isWidget());
+                statement.setString(5, history.getCommandContextId());
+                statement.setString(6, history.getCommandBody());
+                statement.setString(7, history.getInput());
+                statement.setString(8, history.getGuild());
+                statement.setString(9, history.getGuildId());
+                statement.setString(10, history.getUser());
+                statement.setString(11, history.getUserId());
+                statement.setBoolean(12, history.isCompletedSuccessfully());
+                statement.setBoolean(13, history.isFailedManually());
+                statement.setLong(14, history.getDurationMs());
+                statement.setBoolean(15, history.isUnexpectedException());
+                statement.setString(16, history.getErrorMessage());
+                statement.setBoolean(17, history.isAborted());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    private void writePlaybackHistories(Connection connection, List<PlaybackHistoryEntry> playbackHistories, Map<String, Long> createdArtistPks) throws SQLException {
+        if (playbackHistories.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> artistPks = resolveArtistPks(connection, playbackHistories, createdArtistPks);
+
+        List<Long> playbackHistoryPks = new ArrayList<>(playbackHistories.size());
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_PLAYBACK_HISTORY_STATEMENT, new String[]{"pk"})) {
+            for (PlaybackHistoryEntry entry : playbackHistories) {
+                statement.setTimestamp(1, Timestamp.valueOf(entry.timestamp));
+                statement.setString(2, entry.title);
+                statement.setString(3, entry.trackId);
+                statement.setString(4, entry.guild);
+                statement.setString(5, entry.guildId);
+                statement.setLong(6, getLookupEntityPk(connection, "playback_history_source", entry.source));
+                if (entry.spotifyItemKind != null) {
+                    statement.setLong(7, getLookupEntityPk(connection, "spotify_item_kind", entry.spotifyItemKind));
+                } else {
+                    statement.setNull(7, Types.BIGINT);
+                }
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                while (generatedKeys.next()) {
+                    playbackHistoryPks.add(generatedKeys.getLong(1));
+                }
+            }
+        }
+
+        if (playbackHistoryPks.size() != playbackHistories.size()) {
+            throw new IllegalStateException(String.format(
+                "Expected %d generated keys for playback history batch but got %d",
+                playbackHistories.size(),
+                playbackHistoryPks.size()
+            ));
+        }
+
+        try (PreparedStatement userStatement = connection.prepareStatement(INSERT_USER_PLAYBACK_HISTORY_STATEMENT);
+             PreparedStatement artistStatement = connection.prepareStatement(INSERT_PLAYBACK_HISTORY_ARTIST_STATEMENT)) {
+            for (int i = 0; i < playbackHistories.size(); i++) {
+                PlaybackHistoryEntry entry = playbackHistories.get(i);
+                long playbackHistoryPk = playbackHistoryPks.get(i);
+                for (Map.Entry<String, String> listener : entry.listeners.entrySet()) {
+                    userStatement.setString(1, listener.getValue());
+                    userStatement.setString(2, listener.getKey());
+                    userStatement.setLong(3, playbackHistoryPk);
+                    userStatement.addBatch();
+                }
+                for (String artistId : entry.artists.keySet()) {
+                    Long artistPk = artistPks.get(artistId);
+                    if (artistPk != null) {
+                        artistStatement.setLong(1, playbackHistoryPk);
+                        artistStatement.setLong(2, artistPk);
+                        artistStatement.addBatch();
+                    }
+                }
+            }
+
+            userStatement.executeBatch();
+            artistStatement.executeBatch();
+        }
+
+        incrementChartCounts(connection, playbackHistories, artistPks);
+    }
+
+    /**
+     * Increment the counts the {@link ChartService} reads the charts from for each scope (globally, the guild and each
+     * listener) and period (all time and the month of the entry) of the provided entries. Counts are summed up per
+     * batch first so that each row is only updated once per batch. The rows are upserted in the order of their unique
+     * key so that concurrent writers, e.g. the nodes of a multi instance deployment all updating the global counts,
+     * lock the rows in the same order and cannot deadlock each other.
+     */
+    private void incrementChartCounts(Connection connection, List<PlaybackHistoryEntry> playbackHistories, Map<String, Long> artistPks) throws SQLException {
+        // keys are lists of scope, scope id, period and fk_source, track_id and fk_spotify_item_kind or artist_pk
+        Map<List<Object>, Long> trackCounts = new TreeMap<>(CHART_KEY_ORDER);
+        Map<List<Object>, Long> artistCounts = new TreeMap<>(CHART_KEY_ORDER);
+        for (PlaybackHistoryEntry entry : playbackHistories) {
+            Long sourcePk = getLookupEntityPk(connection, "playback_history_source", entry.source);
+            Long spotifyItemKindPk = entry.spotifyItemKind != null ? getLookupEntityPk(connection, "spotify_item_kind", entry.spotifyItemKind) : null;
+            List<List<Object>> chartScopes = new ArrayList<>();
+            for (String period : List.of(ChartService.ALL_TIME_PERIOD, ChartService.getMonthlyPeriod(entry.timestamp.toLocalDate()))) {
+                chartScopes.add(List.of(ChartService.Scope.GLOBAL.name(), ChartService.GLOBAL_SCOPE_ID, period));
+                chartScopes.add(List.of(ChartService.Scope.GUILD.name(), entry.guildId, period));
+                for (String userId : entry.listeners.keySet()) {
+                    chartScopes.add(List.of(ChartService.Scope.USER.name(), userId, period));
+                }
+            }
+
+            for (List<Object> chartScope : chartScopes) {
+                if (entry.trackId != null) {
+                    trackCounts.merge(Arrays.asList(chartScope.get(0), chartScope.get(1), chartScope.get(2), sourcePk, entry.trackId, spotifyItemKindPk), 1L, Long::sum);
+                }
+                for (String artistId : entry.artists.keySet()) {
+                    Long artistPk = artistPks.get(artistId);
+                    if (artistPk != null) {
+                        artistCounts.merge(List.of(chartScope.get(0), chartScope.get(1), chartScope.get(2), artistPk), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement trackStatement = connection.prepareStatement(INCREMENT_TRACK_CHART_COUNT_STATEMENT);
+             PreparedStatement artistStatement = connection.prepareStatement(INCREMENT_ARTIST_CHART_COUNT_STATEMENT)) {
+            for (Map.Entry<List<Object>, Long> trackCount : trackCounts.entrySet()) {
+                List<Object> key = trackCount.getKey();
+                trackStatement.setString(1, (String) key.get(0));
+                trackStatement.setString(2, (String) key.get(1));
+                trackStatement.setString(3, (String) key.get(2));
+                trackStatement.setLong(4, (Long) key.get(3));
+                trackStatement.setString(5, (String) key.get(4));
+                if (key.get(5) != null) {
+                    trackStatement.setLong(6, (Long) key.get(5));
+                } else {
+                    trackStatement.setNull(6, Types.BIGINT);
+                }
+                trackStatement.setLong(7, trackCount.getValue());
+                trackStatement.addBatch();
+            }
+            for (Map.Entry<List<Object>, Long> artistCount : artistCounts.entrySet()) {
+                List<Object> key = artistCount.getKey();
+                artistStatement.setString(1, (String) key.get(0));
+                artistStatement.setString(2, (String) key.get(1));
+                artistStatement.setString(3, (String) key.get(2));
+                artistStatement.setLong(4, (Long) key.get(3));
+                artistStatement.setLong(5, artistCount.getValue());
+                artistStatement.addBatch();
+            }
+
+            trackStatement.executeBatch();
+            artistStatement.executeBatch();
+        }
+    }
+
+    /**
+     * Get the primary keys of all artists of the provided entries, creating the artists that do not exist yet. The pks
+     * of created artists are added to the provided map.
+     */
+    private Map<String, Long> resolveArtistPks(Connection connection, List<PlaybackHistoryEntry> playbackHistories, Map<String, Long> createdArtistPks) throws SQLException {
+        Map<String, String> artists = new LinkedHashMap<>();
+        for (PlaybackHistoryEntry entry : playbackHistories) {
+            artists.putAll(entry.artists);
+        }
+
+        Map<String, Long> resolvedPks = new HashMap<>(artistPks.getAllPresent(artists.keySet()));
+        // sorted for the same reason as the chart counts, see incrementChartCounts
+        Set<String> missingIds = artists.keySet().stream().filter(id -> !resolvedPks.containsKey(id)).collect(Collectors.toCollection(TreeSet::new));
+        if (missingIds.isEmpty()) {
+            return resolvedPks;
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_ARTIST_STATEMENT)) {
+            for (String id : missingIds) {
+                statement.setString(1, id);
+                statement.setString(2, artists.get(id));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement("select pk, id from artist where id = any(?)")) {
+            statement.setArray(1, connection.createArrayOf("varchar", missingIds.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    long pk = resultSet.getLong(1);
+                    String id = resultSet.getString(2);
+                    resolvedPks.put(id, pk);
+                    createdArtistPks.put(id, pk);
+                }
+            }
+        }
+
+        return resolvedPks;
+    }
+
+    private long getLookupEntityPk(Connection connection, String table, String uniqueId) throws SQLException {
+        String key = table + ":" + uniqueId;
+        Long cachedPk = lookupEntityPks.get(key);
+        if (cachedPk != null) {
+            return cachedPk;
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select pk, unique_id from " + table)) {
+            while (resultSet.next()) {
+                lookupEntityPks.put(table + ":" + resultSet.getString(2), resultSet.getLong(1));
+            }
+        }
+
+        Long pk = lookupEntityPks.get(key);
+        if (pk == null) {
+            throw new IllegalStateException(String.format("No %s found for unique id %s", table, uniqueId));
+        }
+        return pk;
+    }
+
+    private static abstract class HistoryEntry {
+    }
+
+    private static class CommandHistoryEntry extends HistoryEntry {
+
+        private final CommandHistory commandHistory;
+
+        private CommandHistoryEntry(CommandHistory commandHistory) {
+            this.commandHistory = commandHistory;
+        }
+
+    }
+
+    /**
+     * Snapshot of the data required to write a {@link PlaybackHistory} entry, taken when the track starts playing.
+     */
+    private static class PlaybackHistoryEntry extends HistoryEntry {
+
+        private final LocalDateTime timestamp;
+        private final String title;
+        private final String trackId;
+        private final String guild;
+        private final String guildId;
+        private final String source;
+        @Nullable
+        private final String spotifyItemKind;
+        // artist id to name
+        private final Map<String, String> artists = new LinkedHashMap<>();
+        // user id to name
+        private final Map<String, String> listeners = new LinkedHashMap<>();
+
+        private PlaybackHistoryEntry(LocalDateTime timestamp, Playable playable, Guild guild, @Nullable AudioChannel audioChannel) throws UnavailableResourceException {
+            this.timestamp = timestamp;
+            SpotifyTrack spotifyTrack = null;
+            if (playable instanceof PlayableTrackWrapper) {
+                spotifyTrack = ((PlayableTrackWrapper) playable).getTrack();
+            }
+            if (playable instanceof YouTubeVideo) {
+                spotifyTrack = ((YouTubeVideo) playable).getRedirectedSpotifyTrack();
+            }
+            if (playable instanceof SpotifyTrackRedirect) {
+                spotifyTrack = ((SpotifyTrackRedirect) playable).getSpotifyTrack();
+            }
+            if (spotifyTrack != null) {
+                title = spotifyTrack.getName();
+                spotifyItemKind = spotifyTrack.exhaustiveMatch(
+                    track -> {
+                        for (ArtistSimplified artist : track.getArtists()) {
+                            if (artist.getId() != null) {
+                                artists.put(artist.getId(), artist.getName());
+                            }
+                        }
+
+                        return SpotifyTrackKind.TRACK.name();
+                    },
+                    episode -> SpotifyTrackKind.EPISODE.name()
+                );
+            } else {
+                title = playable.getDisplay();
+                spotifyItemKind = null;
+            }
+            source = playable.getSource().name();
+            trackId = playable.getId();
+            this.guild = guild.getName();
+            guildId = guild.getId();
+
+            if (audioChannel != null) {
+                Member selfMember = guild.getSelfMember();
+                for (Member member : audioChannel.getMembers()) {
+                    if (!member.equals(selfMember)) {
+                        listeners.put(member.getUser().getId(), member.getUser().getName());
+                    }
+                }
+            }
+        }
+
+    }
+
+}
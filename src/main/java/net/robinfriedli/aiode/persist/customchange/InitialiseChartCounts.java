@@ -0,0 +1,97 @@
+package net.robinfriedli.aiode.persist.customchange;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import net.robinfriedli.aiode.audio.ChartService;
+
+/**
+ * Aggregates the existing playback history into the chart count tables once, after which the counts are incremented
+ * when writing new playback history entries. Only the counts for all time and the current month are created since the
+ * counts of past months are not displayed.
+ */
+public class InitialiseChartCounts implements CustomTaskChange {
+
+    private static final String INSERT_TRACK_COUNTS_STATEMENT = "insert into track_chart_count " +
+        "(scope, scope_id, period, fk_source, track_id, fk_spotify_item_kind, count) " +
+        "select ?, %s, ?, p.fk_source, p.track_id, max(p.fk_spotify_item_kind), count(*) " +
+        "from playback_history as p %s " +
+        "where p.track_id is not null and p.fk_source is not null and p.timestamp >= ? %s " +
+        "group by %sp.fk_source, p.track_id";
+    private static final String INSERT_ARTIST_COUNTS_STATEMENT = "insert into artist_chart_count " +
+        "(scope, scope_id, period, artist_pk, count) " +
+        "select ?, %s, ?, a.artist_pk, count(*) " +
+        "from playback_history_artist as a join playback_history as p on p.pk = a.playback_history_pk %s " +
+        "where p.timestamp >= ? %s " +
+        "group by %sa.artist_pk";
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        LocalDate startOfMonth = LocalDate.now().withDayOfMonth(1);
+        try {
+            for (String statement : new String[]{INSERT_TRACK_COUNTS_STATEMENT, INSERT_ARTIST_COUNTS_STATEMENT}) {
+                insertCounts(connection, statement, ChartService.ALL_TIME_PERIOD, LocalDateTime.of(1970, 1, 1, 0, 0));
+                insertCounts(connection, statement, ChartService.getMonthlyPeriod(startOfMonth), startOfMonth.atStartOfDay());
+            }
+        } catch (DatabaseException | SQLException e) {
+            throw new CustomChangeException(e);
+        }
+    }
+
+    private void insertCounts(JdbcConnection connection, String statement, String period, LocalDateTime since) throws DatabaseException, SQLException {
+        insertCounts(connection, String.format(statement, "?", "", "", ""), ChartService.Scope.GLOBAL, period, since);
+        insertCounts(connection, String.format(statement, "p.guild_id", "", "and p.guild_id is not null", "p.guild_id, "), ChartService.Scope.GUILD, period, since);
+        insertCounts(
+            connection,
+            String.format(statement, "u.user_id", "join user_playback_history as u on u.playback_history_pk = p.pk", "and u.user_id is not null", "u.user_id, "),
+            ChartService.Scope.USER,
+            period,
+            since
+        );
+    }
+
+    private void insertCounts(JdbcConnection connection, String sql, ChartService.Scope scope, String period, LocalDateTime since) throws DatabaseException, SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int idx = 1;
+            statement.setString(idx++, scope.name());
+            if (scope == ChartService.Scope.GLOBAL) {
+                statement.setString(idx++, ChartService.GLOBAL_SCOPE_ID);
+            }
+            statement.setString(idx++, period);
+            statement.setTimestamp(idx, Timestamp.valueOf(since));
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "successfully initialised chart counts";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return null;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import org.slf4j.Logger;
 
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.robinfriedli.aiode.command.CustomCommandIndex;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.entities.Preset;
@@ -13,11 +14,19 @@ import org.hibernate.Interceptor;
 
 public class AlertPresetCreationInterceptor extends CollectingInterceptor {
 
+    private final CustomCommandIndex customCommandIndex;
     private final MessageChannel channel;
     private final MessageService messageService;
 
-    public AlertPresetCreationInterceptor(Interceptor next, Logger logger, ExecutionContext executionContext, MessageService messageService) {
+    public AlertPresetCreationInterceptor(
+        Interceptor next,
+        Logger logger,
+        CustomCommandIndex customCommandIndex,
+        ExecutionContext executionContext,
+        MessageService messageService
+    ) {
         super(next, logger);
+        this.customCommandIndex = customCommandIndex;
         channel = executionContext.getChannel();
         this.messageService = messageService;
     }
@@ -27,6 +36,7 @@ public class AlertPresetCreationInterceptor extends CollectingInterceptor {
         List<Preset> createdPresets = getCreatedEntities(Preset.class);
         List<Preset> deletedPresets = getDeletedEntities(Preset.class);
 
+        updateIndex(createdPresets, deletedPresets);
 
         if (!createdPresets.isEmpty()) {
             if (createdPresets.size() == 1) {
@@ -48,4 +58,25 @@ public class AlertPresetCreationInterceptor extends CollectingInterceptor {
             }
         }
     }
+
+    private void updateIndex(List<Preset> createdPresets, List<Preset> deletedPresets) {
+        for (Preset createdPreset : createdPresets) {
+            customCommandIndex.addPreset(createdPreset);
+        }
+
+        for (Preset deletedPreset : deletedPresets) {
+            customCommandIndex.removePreset(deletedPreset);
+        }
+
+        for (Preset updatedPreset : getUpdatedEntities(Preset.class)) {
+            if (isFieldTouched(updatedPreset, "name")) {
+                Object originalName = getOriginalValue(updatedPreset, "name");
+                if (originalName instanceof String) {
+                    customCommandIndex.removePreset(updatedPreset.getGuildId(), updatedPreset.getPk(), (String) originalName);
+                }
+                customCommandIndex.addPreset(updatedPreset);
+            }
+        }
+    }
+
 }
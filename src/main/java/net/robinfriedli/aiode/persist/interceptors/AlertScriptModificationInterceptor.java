@@ -6,21 +6,29 @@ import org.slf4j.Logger;
 
 import com.google.common.collect.Lists;
 import net.robinfriedli.aiode.command.CommandContext;
+import net.robinfriedli.aiode.command.CustomCommandIndex;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.entities.StoredScript;
+import net.robinfriedli.aiode.scripting.GroovyScriptCache;
 import org.hibernate.Interceptor;
 
 public class AlertScriptModificationInterceptor extends CollectingInterceptor {
 
     private final CommandContext commandContext;
+    private final CustomCommandIndex customCommandIndex;
+    private final GroovyScriptCache groovyScriptCache;
     private final MessageService messageService;
 
     public AlertScriptModificationInterceptor(Interceptor next,
                                               Logger logger,
                                               CommandContext commandContext,
+                                              CustomCommandIndex customCommandIndex,
+                                              GroovyScriptCache groovyScriptCache,
                                               MessageService messageService) {
         super(next, logger);
         this.commandContext = commandContext;
+        this.customCommandIndex = customCommandIndex;
+        this.groovyScriptCache = groovyScriptCache;
         this.messageService = messageService;
     }
 
@@ -30,6 +38,8 @@ public class AlertScriptModificationInterceptor extends CollectingInterceptor {
         List<StoredScript> deletedEntities = getDeletedEntities(StoredScript.class);
         List<StoredScript> updatedEntities = getUpdatedEntities(StoredScript.class);
 
+        updateIndex(createdEntities, deletedEntities, updatedEntities);
+        invalidateCache(createdEntities, deletedEntities, updatedEntities);
         alertScriptModification("Created", createdEntities);
         alertScriptModification("Deleted", deletedEntities);
 
@@ -54,6 +64,34 @@ public class AlertScriptModificationInterceptor extends CollectingInterceptor {
         alertScriptModification("Deactivated", deactivatedScripts);
     }
 
+    private void updateIndex(List<StoredScript> createdEntities, List<StoredScript> deletedEntities, List<StoredScript> updatedEntities) {
+        for (StoredScript createdEntity : createdEntities) {
+            customCommandIndex.addScript(createdEntity);
+        }
+
+        for (StoredScript deletedEntity : deletedEntities) {
+            customCommandIndex.removeScript(deletedEntity);
+        }
+
+        for (StoredScript updatedEntity : updatedEntities) {
+            if (isFieldTouched(updatedEntity, "identifier")) {
+                Object originalIdentifier = getOriginalValue(updatedEntity, "identifier");
+                if (originalIdentifier instanceof String) {
+                    customCommandIndex.removeScript(String.valueOf(updatedEntity.getGuildId()), updatedEntity.getPk(), (String) originalIdentifier);
+                }
+                customCommandIndex.addScript(updatedEntity);
+            }
+        }
+    }
+
+    private void invalidateCache(List<StoredScript> createdEntities, List<StoredScript> deletedEntities, List<StoredScript> updatedEntities) {
+        for (List<StoredScript> affectedEntities : List.of(createdEntities, deletedEntities, updatedEntities)) {
+            for (StoredScript affectedEntity : affectedEntities) {
+                groovyScriptCache.invalidate(affectedEntity);
+            }
+        }
+    }
+
     private void alertScriptModification(String verb, List<StoredScript> affectedEntities) {
         if (!affectedEntities.isEmpty()) {
             if (affectedEntities.size() == 1) {
@@ -4,18 +4,21 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.command.AbstractCommand;
 import net.robinfriedli.aiode.command.CommandContext;
 import net.robinfriedli.aiode.command.parser.ArgumentBuildingMode;
 import net.robinfriedli.aiode.command.parser.CommandParseListener;
 import net.robinfriedli.aiode.command.parser.CommandParser;
+import net.robinfriedli.aiode.discord.GuildManager;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.discord.property.AbstractGuildProperty;
 import net.robinfriedli.aiode.discord.property.GuildPropertyManager;
@@ -33,8 +36,10 @@ import org.hibernate.type.Type;
 public class GuildPropertyInterceptor extends ChainableInterceptor {
 
     private final CommandContext commandContext;
+    private final GuildManager guildManager;
     private final GuildPropertyManager guildPropertyManager;
     private final Map<AbstractGuildProperty, Pair<Object, Object>> changedProperties;
+    private final Set<GuildSpecification> changedSpecifications;
     private final MessageService messageService;
     private final QueryBuilderFactory queryBuilderFactory;
     private final SessionFactory sessionFactory;
@@ -42,23 +47,27 @@ public class GuildPropertyInterceptor extends ChainableInterceptor {
     public GuildPropertyInterceptor(Interceptor next,
                                     Logger logger,
                                     CommandContext commandContext,
+                                    GuildManager guildManager,
                                     GuildPropertyManager guildPropertyManager,
                                     MessageService messageService,
                                     QueryBuilderFactory queryBuilderFactory,
                                     SessionFactory sessionFactory) {
         super(next, logger);
         this.commandContext = commandContext;
+        this.guildManager = guildManager;
         this.guildPropertyManager = guildPropertyManager;
         this.messageService = messageService;
         this.queryBuilderFactory = queryBuilderFactory;
         this.sessionFactory = sessionFactory;
         changedProperties = new HashMap<>();
+        changedSpecifications = Sets.newHashSet();
     }
 
     // use onFlushDirty instead of onFlushDirtyChained as exceptions should get thrown
     @Override
     public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types) {
-        if (entity instanceof GuildSpecification) {
+        if (entity instanceof GuildSpecification guildSpecification) {
+            changedSpecifications.add(guildSpecification);
             for (int i = 0; i < currentState.length; i++) {
                 String propertyName = propertyNames[i];
                 Object current = currentState[i];
@@ -103,6 +112,10 @@ public class GuildPropertyInterceptor extends ChainableInterceptor {
     @Override
     public void afterTransactionCompletionChained(Transaction tx) {
         if (!tx.getRollbackOnly()) {
+            for (GuildSpecification changedSpecification : changedSpecifications) {
+                guildManager.updateSettings(changedSpecification);
+            }
+
             if (!changedProperties.isEmpty()) {
                 StringBuilder successMessageBuilder = new StringBuilder();
                 for (AbstractGuildProperty property : changedProperties.keySet()) {
@@ -115,6 +128,7 @@ public class GuildPropertyInterceptor extends ChainableInterceptor {
             }
         }
         changedProperties.clear();
+        changedSpecifications.clear();
     }
 
     private void updatePresets(AbstractGuildProperty argumentPrefixProperty, Character oldArgumentPrefix, char newArgumentPrefix, Session session) {
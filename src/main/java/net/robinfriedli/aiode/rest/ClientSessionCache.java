@@ -0,0 +1,121 @@
+package net.robinfriedli.aiode.rest;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.robinfriedli.aiode.entities.ClientSession;
+import net.robinfriedli.aiode.rest.endpoints.SessionManagementEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches client sessions validated by the {@link RequestInterceptorHandler} keyed by session id and IP address, since
+ * web clients poll continuously and each request would otherwise query the session. Entries hold the guild, member
+ * and text channel the session resolved to and the results of permission checks made for the session's member.
+ * Entries expire shortly after being written so that changes to access configurations or the session made by another
+ * instance are picked up, and are invalidated by the {@link SessionManagementEndpoint} when a session is modified.
+ */
+@Component
+public class ClientSessionCache {
+
+    private final Cache<Key, Entry> cache = CacheBuilder.newBuilder()
+        .maximumSize(10000)
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .build();
+
+    @Nullable
+    public Entry get(UUID sessionId, String ipAddress) {
+        return cache.getIfPresent(new Key(sessionId, ipAddress));
+    }
+
+    public Entry put(ClientSession clientSession) {
+        Entry entry = new Entry(clientSession.getGuildId(), clientSession.getUserId(), clientSession.getTextChannelId());
+        cache.put(new Key(clientSession.getSessionId(), clientSession.getIpAddress()), entry);
+        return entry;
+    }
+
+    public void invalidate(UUID sessionId, String ipAddress) {
+        cache.invalidate(new Key(sessionId, ipAddress));
+    }
+
+    /**
+     * Invalidate the entries of the session with the provided id for all IP addresses.
+     */
+    public void invalidate(UUID sessionId) {
+        cache.asMap().keySet().removeIf(key -> key.sessionId.equals(sessionId));
+    }
+
+    /**
+     * A validated client session. Holds the ids of the guild, member and text channel rather than the JDA entities as
+     * those are replaced when a shard reconnects, resolving them through the JDA cache is cheap.
+     */
+    public static class Entry {
+
+        private final long guildId;
+        private final long userId;
+        private final long textChannelId;
+        private final Map<String, Boolean> permissions = new ConcurrentHashMap<>();
+
+        private Entry(long guildId, long userId, long textChannelId) {
+            this.guildId = guildId;
+            this.userId = userId;
+            this.textChannelId = textChannelId;
+        }
+
+        public long getGuildId() {
+            return guildId;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public long getTextChannelId() {
+            return textChannelId;
+        }
+
+        /**
+         * Check the permission with the provided identifier, reusing the result of a previous check for this session.
+         */
+        public boolean askPermission(String permissionIdentifier, Predicate<String> permissionCheck) {
+            return permissions.computeIfAbsent(permissionIdentifier, permissionCheck::test);
+        }
+
+    }
+
+    private static class Key {
+
+        private final UUID sessionId;
+        private final String ipAddress;
+
+        private Key(UUID sessionId, String ipAddress) {
+            this.sessionId = sessionId;
+            this.ipAddress = ipAddress;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return sessionId.equals(key.sessionId) && ipAddress.equals(key.ipAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionId, ipAddress);
+        }
+
+    }
+
+}
@@ -4,6 +4,8 @@ import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -31,6 +33,7 @@ import se.michaelthelin.spotify.SpotifyApi;
 @Component
 public class RequestInterceptorHandler implements HandlerInterceptor {
 
+    private final ClientSessionCache clientSessionCache;
     private final GuildManager guildManager;
     private final HibernateComponent hibernateComponent;
     private final QueryBuilderFactory queryBuilderFactory;
@@ -38,7 +41,8 @@ public class RequestInterceptorHandler implements HandlerInterceptor {
     private final ShardManager shardManager;
     private final SpotifyApi.Builder spotifyApiBuilder;
 
-    public RequestInterceptorHandler(GuildManager guildManager, HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory, SecurityManager securityManager, ShardManager shardManager, SpotifyApi.Builder spotifyApiBuilder) {
+    public RequestInterceptorHandler(ClientSessionCache clientSessionCache, GuildManager guildManager, HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory, SecurityManager securityManager, ShardManager shardManager, SpotifyApi.Builder spotifyApiBuilder) {
+        this.clientSessionCache = clientSessionCache;
         this.guildManager = guildManager;
         this.hibernateComponent = hibernateComponent;
         this.queryBuilderFactory = queryBuilderFactory;
@@ -62,31 +66,48 @@ public class RequestInterceptorHandler implements HandlerInterceptor {
                     .findAny()
                     .orElse(null);
             }
-            ClientSession clientSession = null;
+            ClientSessionCache.Entry clientSession = null;
             ExecutionContext executionContext = null;
             if (sessionId != null) {
                 UUID uuid = UUID.fromString(sessionId);
                 String remoteAddr = request.getRemoteAddr();
 
-                Optional<ClientSession> existingClientSession = hibernateComponent.invokeWithSession(session ->
-                    queryBuilderFactory.find(ClientSession.class)
-                        .where((cb, root) -> cb.and(
-                            cb.equal(root.get("sessionId"), uuid),
-                            cb.equal(root.get("ipAddress"), remoteAddr)
-                        ))
-                        .build(session)
-                        .uniqueResultOptional());
-
-                if (existingClientSession.isPresent()) {
-                    clientSession = existingClientSession.get();
-                    executionContext = setupExecutionContext(clientSession);
-
-                    if (executionContext == null) {
-                        response.sendError(403, "Could not connect to guild or user. Either the bot is having connection issues or the bot is longer part of the connected guild or the connected member is no longer part of this guild.");
-                        threadContext.clear();
-                        return false;
+                ClientSessionCache.Entry cachedClientSession = clientSessionCache.get(uuid, remoteAddr);
+                if (cachedClientSession != null) {
+                    executionContext = setupExecutionContext(cachedClientSession);
+                    if (executionContext != null) {
+                        clientSession = cachedClientSession;
+                    } else {
+                        // reload and validate the session, the guild, member or text channel may have changed
+                        clientSessionCache.invalidate(uuid, remoteAddr);
                     }
+                }
 
+                if (clientSession == null) {
+                    Optional<ClientSession> existingClientSession = hibernateComponent.invokeWithSession(session ->
+                        queryBuilderFactory.find(ClientSession.class)
+                            .where((cb, root) -> cb.and(
+                                cb.equal(root.get("sessionId"), uuid),
+                                cb.equal(root.get("ipAddress"), remoteAddr)
+                            ))
+                            .build(session)
+                            .uniqueResultOptional());
+
+                    if (existingClientSession.isPresent()) {
+                        ClientSession foundClientSession = existingClientSession.get();
+                        executionContext = setupExecutionContext(foundClientSession);
+
+                        if (executionContext == null) {
+                            response.sendError(403, "Could not connect to guild or user. Either the bot is having connection issues or the bot is longer part of the connected guild or the connected member is no longer part of this guild.");
+                            threadContext.clear();
+                            return false;
+                        }
+
+                        clientSession = clientSessionCache.put(foundClientSession);
+                    }
+                }
+
+                if (executionContext != null) {
                     ExecutionContext.Current.set(executionContext);
                 }
             }
@@ -104,8 +125,9 @@ public class RequestInterceptorHandler implements HandlerInterceptor {
                     String[] requiredPermissions = methodAnnotation.requiredPermissions();
                     if (requiredPermissions.length > 0) {
                         Member member = executionContext.getMember();
+                        ClientSessionCache.Entry finalClientSession = clientSession;
                         boolean unauthorized = Arrays.stream(requiredPermissions)
-                            .noneMatch(perm -> securityManager.askPermission(perm, member));
+                            .noneMatch(perm -> finalClientSession.askPermission(perm, p -> securityManager.askPermission(p, member)));
 
                         if (unauthorized) {
                             response.sendError(403, String.format("Member '%s' does not have any of the required permissions: %s", member.getEffectiveName(), String.join(", ", requiredPermissions)));
@@ -129,9 +151,28 @@ public class RequestInterceptorHandler implements HandlerInterceptor {
         ThreadContext.Current.clear();
     }
 
-    private ExecutionContext setupExecutionContext(ClientSession clientSession) {
-        SessionFactory sessionFactory = hibernateComponent.getSessionFactory();
+    @Nullable
+    private ExecutionContext setupExecutionContext(ClientSessionCache.Entry clientSession) {
+        Guild guild = shardManager.getGuildById(clientSession.getGuildId());
+        if (guild == null) {
+            return null;
+        }
 
+        Member member = guild.getMemberById(clientSession.getUserId());
+        if (member == null) {
+            return null;
+        }
+
+        TextChannel textChannel = guild.getTextChannelById(clientSession.getTextChannelId());
+        if (textChannel == null) {
+            return null;
+        }
+
+        return createExecutionContext(guild, member, textChannel);
+    }
+
+    @Nullable
+    private ExecutionContext setupExecutionContext(ClientSession clientSession) {
         Guild guild = shardManager.getGuildById(clientSession.getGuildId());
         if (guild == null) {
             return null;
@@ -152,6 +193,11 @@ public class RequestInterceptorHandler implements HandlerInterceptor {
             });
         }
 
+        return createExecutionContext(guild, member, textChannel);
+    }
+
+    private ExecutionContext createExecutionContext(Guild guild, Member member, TextChannel textChannel) {
+        SessionFactory sessionFactory = hibernateComponent.getSessionFactory();
         JDA jda = guild.getJDA();
         GuildContext guildContext = guildManager.getContextForGuild(guild);
         return new ExecutionContext(guild, guildContext, jda, member, sessionFactory, spotifyApiBuilder, (TextChannelImpl) textChannel);
@@ -13,6 +13,7 @@ import se.michaelthelin.spotify.SpotifyApi;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ClientSessionCache clientSessionCache;
     private final GuildManager guildManager;
     private final HibernateComponent hibernateComponent;
     private final QueryBuilderFactory queryBuilderFactory;
@@ -20,7 +21,8 @@ public class WebConfig implements WebMvcConfigurer {
     private final ShardManager shardManager;
     private final SpotifyApi.Builder spotifyApiBuilder;
 
-    public WebConfig(GuildManager guildManager, HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory, SecurityManager securityManager, ShardManager shardManager, SpotifyApi.Builder spotifyApiBuilder) {
+    public WebConfig(ClientSessionCache clientSessionCache, GuildManager guildManager, HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory, SecurityManager securityManager, ShardManager shardManager, SpotifyApi.Builder spotifyApiBuilder) {
+        this.clientSessionCache = clientSessionCache;
         this.guildManager = guildManager;
         this.hibernateComponent = hibernateComponent;
         this.queryBuilderFactory = queryBuilderFactory;
@@ -31,7 +33,7 @@ public class WebConfig implements WebMvcConfigurer {
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new RequestInterceptorHandler(guildManager, hibernateComponent, queryBuilderFactory, securityManager, shardManager, spotifyApiBuilder));
+        registry.addInterceptor(new RequestInterceptorHandler(clientSessionCache, guildManager, hibernateComponent, queryBuilderFactory, securityManager, shardManager, spotifyApiBuilder));
     }
 
 }
@@ -18,6 +18,7 @@ import net.robinfriedli.aiode.discord.GuildManager;
 import net.robinfriedli.aiode.entities.ClientSession;
 import net.robinfriedli.aiode.entities.GeneratedToken;
 import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import net.robinfriedli.aiode.rest.ClientSessionCache;
 import net.robinfriedli.aiode.rest.SessionBean;
 import net.robinfriedli.aiode.rest.exceptions.MissingAccessException;
 import org.springframework.http.HttpStatus;
@@ -30,12 +31,14 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class SessionManagementEndpoint {
 
+    private final ClientSessionCache clientSessionCache;
     private final GuildManager guildManager;
     private final HibernateComponent hibernateComponent;
     private final QueryBuilderFactory queryBuilderFactory;
     private final ShardManager shardManager;
 
-    public SessionManagementEndpoint(GuildManager guildManager, HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory, ShardManager shardManager) {
+    public SessionManagementEndpoint(ClientSessionCache clientSessionCache, GuildManager guildManager, HibernateComponent hibernateComponent, QueryBuilderFactory queryBuilderFactory, ShardManager shardManager) {
+        this.clientSessionCache = clientSessionCache;
         this.guildManager = guildManager;
         this.hibernateComponent = hibernateComponent;
         this.queryBuilderFactory = queryBuilderFactory;
@@ -58,6 +61,8 @@ public class SessionManagementEndpoint {
                 deleteQuery.where(deleteQueryCb.equal(deleteQueryRoot.get("token"), oldToken));
 
                 session.createMutationQuery(deleteQuery).executeUpdate();
+                // the client is replacing its token, drop the cached session established with the previous token
+                clientSessionCache.invalidate(oldToken);
             }
 
             do {
@@ -128,6 +133,7 @@ public class SessionManagementEndpoint {
                     clientSession.setTextChannelId(finalTextChannel.getIdLong());
                     session.update(clientSession);
                 });
+                clientSessionCache.invalidate(uuid, remoteAddr);
             }
 
             setSessionCookie(response, sessionId);
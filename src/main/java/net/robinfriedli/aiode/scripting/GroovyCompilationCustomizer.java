@@ -1,7 +1,6 @@
 package net.robinfriedli.aiode.scripting;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -9,7 +8,6 @@ import java.util.Set;
 
 import com.google.common.collect.Lists;
 import groovy.lang.Closure;
-import net.robinfriedli.aiode.Aiode;
 import org.codehaus.groovy.ast.ClassCodeExpressionTransformer;
 import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
@@ -216,19 +214,8 @@ public class GroovyCompilationCustomizer extends CompilationCustomizer {
                 Class<?> type = declaringClass.getTypeClass();
                 String methodName = methodCall.getMethodAsString();
 
-                Collection<GroovyWhitelistManager.WhitelistedClassContribution> whitelistContributions = groovyWhitelistManager.findWhitelistContributions(type);
-                for (GroovyWhitelistManager.WhitelistedClassContribution whitelistContribution : whitelistContributions) {
-                    if (whitelistContribution.getMaxMethodInvocations() > 0) {
-                        return createCountedInvocationCall(methodCall, currentCope, declaringClass, methodName);
-                    } else {
-                        GroovyWhitelistManager.WhitelistedMethodContribution methodContribution = whitelistContribution
-                            .getWhitelistedMethodContributions()
-                            .get(methodName);
-
-                        if (methodContribution != null && methodContribution.getMaxInvocationCount() > 0) {
-                            return createCountedInvocationCall(methodCall, currentCope, declaringClass, methodName);
-                        }
-                    }
+                if (groovyWhitelistManager.hasInvocationLimit(type, methodName)) {
+                    return createCountedInvocationCall(methodCall, currentCope, declaringClass, methodName);
                 }
             }
 
@@ -458,43 +445,7 @@ public class GroovyCompilationCustomizer extends CompilationCustomizer {
             Class<?> type,
             String methodName
         ) {
-            GroovyWhitelistManager groovyWhitelistManager = Aiode.get().getGroovySandboxComponent().getGroovyWhitelistManager();
-            Collection<GroovyWhitelistManager.WhitelistedClassContribution> whitelistContributions = groovyWhitelistManager
-                .findWhitelistContributions(type);
-
-            for (GroovyWhitelistManager.WhitelistedClassContribution whitelistContribution : whitelistContributions) {
-                whitelistContribution.incrementMethodInvocationCount();
-                int maxMethodInvocations = whitelistContribution.getMaxMethodInvocations();
-
-                if (maxMethodInvocations > 0 && whitelistContribution.getCurrentMethodInvocationCount() > maxMethodInvocations) {
-                    throw new SecurityException(
-                        String.format(
-                            "Reached the maximum invocation count of %d for methods on %s",
-                            maxMethodInvocations,
-                            whitelistContribution.getType()
-                        )
-                    );
-                }
-
-                GroovyWhitelistManager.WhitelistedMethodContribution methodContribution = whitelistContribution
-                    .getWhitelistedMethodContributions()
-                    .get(methodName);
-
-                if (methodContribution != null) {
-                    methodContribution.incrementInvocationCount();
-                    int maxInvocationCount = methodContribution.getMaxInvocationCount();
-
-                    if (maxInvocationCount > 0 && methodContribution.getCurrentInvocationCount() > maxInvocationCount) {
-                        throw new SecurityException(
-                            String.format(
-                                "Reached the maximum invocation count of %d for method %s",
-                                maxInvocationCount,
-                                methodContribution.getType().getName() + "#" + methodContribution.getMethod()
-                            )
-                        );
-                    }
-                }
-            }
+            GroovyWhitelistManager.getCurrentInvocationCounter().countInvocation(type, methodName);
 
             return methodInvocationClosure.call();
         }
@@ -502,7 +453,7 @@ public class GroovyCompilationCustomizer extends CompilationCustomizer {
         // invoked by groovy
         @SuppressWarnings("unused")
         public static void checkMethodCall(Class<?> type, String methodName) {
-            GroovyWhitelistManager groovyWhitelistManager = Aiode.get().getGroovySandboxComponent().getGroovyWhitelistManager();
+            GroovyWhitelistManager groovyWhitelistManager = GroovyWhitelistManager.getCurrentInvocationCounter().getGroovyWhitelistManager();
 
             if (!groovyWhitelistManager.checkMethodCall(type, methodName, false)) {
                 throw new SecurityException(String.format("Method invocation not allowed: '%s#%s'", type.getSimpleName(), methodName));
@@ -512,13 +463,13 @@ public class GroovyCompilationCustomizer extends CompilationCustomizer {
         // invoked by groovy
         @SuppressWarnings("unused")
         public static void incrementGlobalCounter() {
-            Integer prevVal = GroovyWhitelistManager.GLOBAL_INVOCATION_COUNT.get();
+            GroovyWhitelistManager.InvocationCounter invocationCounter = GroovyWhitelistManager.getCurrentInvocationCounter();
 
-            if (prevVal >= GLOBAL_INVOCATION_LIMIT) {
+            if (invocationCounter.getGlobalInvocationCount() >= GLOBAL_INVOCATION_LIMIT) {
                 throw new SecurityException("Reached the global limit of method invocations and loop iterations of " + GLOBAL_INVOCATION_LIMIT);
             }
 
-            GroovyWhitelistManager.GLOBAL_INVOCATION_COUNT.set(prevVal + 1);
+            invocationCounter.incrementGlobalInvocationCount();
         }
 
     }
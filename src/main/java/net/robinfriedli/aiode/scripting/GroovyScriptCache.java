@@ -0,0 +1,197 @@
+package net.robinfriedli.aiode.scripting;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.GroovyShell;
+import net.robinfriedli.aiode.boot.configurations.GroovySandboxComponent;
+import net.robinfriedli.aiode.entities.StoredScript;
+import net.robinfriedli.aiode.persist.interceptors.AlertScriptModificationInterceptor;
+import net.robinfriedli.aiode.persist.qb.QueryBuilderFactory;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the classes compiled from groovy scripts, since applying the {@link TypeCheckingExtension} and
+ * {@link GroovyCompilationCustomizer} is by far the most expensive part of running a script, and the primary keys of
+ * the active interceptor and finalizer scripts per guild, which are otherwise queried for each command. The compiled
+ * classes are bounded by the total length of their sources and keyed by the script, its source, the compiler
+ * configuration and the types of the available variables. Both caches are invalidated by the
+ * {@link AlertScriptModificationInterceptor} when a script is modified.
+ * <p>
+ * The interceptor only sees modifications made by this instance. Compiled classes are keyed by the source so they cannot
+ * go stale, but scripts created or activated by another instance are only picked up once the cached primary keys
+ * expire, at most {@link #ACTIVE_SCRIPTS_TTL_SECONDS} seconds after they were loaded. Scripts deleted or deactivated
+ * elsewhere are filtered out immediately when loading them by primary key.
+ */
+@Component
+public class GroovyScriptCache {
+
+    private static final long MAX_CACHED_SOURCE_LENGTH = 2_000_000;
+    private static final long ACTIVE_SCRIPTS_TTL_SECONDS = 60;
+    private static final AtomicLong SCRIPT_COUNTER = new AtomicLong();
+
+    private final boolean partitioned;
+    private final Cache<CompiledScriptKey, Class<?>> compiledScripts = CacheBuilder.newBuilder()
+        .maximumWeight(MAX_CACHED_SOURCE_LENGTH)
+        .<CompiledScriptKey, Class<?>>weigher((key, value) -> key.getSource().length())
+        .expireAfterAccess(12, TimeUnit.HOURS)
+        .build();
+    private final Cache<String, List<Long>> activeScripts = CacheBuilder.newBuilder()
+        .maximumSize(10000)
+        .expireAfterWrite(ACTIVE_SCRIPTS_TTL_SECONDS, TimeUnit.SECONDS)
+        .build();
+    private final GroovySandboxComponent groovySandboxComponent;
+    private final GroovyVariableManager groovyVariableManager;
+    private final QueryBuilderFactory queryBuilderFactory;
+
+    public GroovyScriptCache(
+        @Value("${aiode.preferences.mode_partitioned}") boolean partitioned,
+        GroovySandboxComponent groovySandboxComponent,
+        GroovyVariableManager groovyVariableManager,
+        QueryBuilderFactory queryBuilderFactory
+    ) {
+        this.partitioned = partitioned;
+        this.groovySandboxComponent = groovySandboxComponent;
+        this.groovyVariableManager = groovyVariableManager;
+        this.queryBuilderFactory = queryBuilderFactory;
+    }
+
+    /**
+     * Get the compiled class for the provided script, compiling it if it is not cached. Must be called from the thread
+     * that runs the script as the types of the variables of the current thread are resolved at compile time.
+     *
+     * @param pk         the pk of the stored script or 0 for ad hoc scripts
+     * @param source     the groovy code
+     * @param privileged whether to compile the script with the privileged compiler configuration
+     * @return the compiled script class
+     */
+    public Class<?> getCompiledScript(long pk, String source, boolean privileged) {
+        CompiledScriptKey key = new CompiledScriptKey(pk, source, privileged, groovyVariableManager.getVariableSignature());
+        Class<?> cachedClass = compiledScripts.getIfPresent(key);
+        if (cachedClass != null) {
+            return cachedClass;
+        }
+
+        // compile outside of Cache#get to propagate compilation errors and SecurityExceptions unwrapped
+        CompilerConfiguration compilerConfiguration = privileged
+            ? groovySandboxComponent.getPrivilegedCompilerConfiguration()
+            : groovySandboxComponent.getCompilerConfiguration();
+        // use a separate class loader per script so that the class can be unloaded once evicted
+        GroovyClassLoader classLoader = new GroovyClassLoader(Thread.currentThread().getContextClassLoader(), compilerConfiguration);
+        GroovyCodeSource codeSource = new GroovyCodeSource(source, "Script" + SCRIPT_COUNTER.incrementAndGet() + ".groovy", GroovyShell.DEFAULT_CODE_BASE);
+        codeSource.setCachable(false);
+        Class<?> scriptClass = classLoader.parseClass(codeSource);
+
+        compiledScripts.put(key, scriptClass);
+        return scriptClass;
+    }
+
+    /**
+     * Get the active scripts with the provided usage (e.g. "interceptor" or "finalizer") for the guild of the current
+     * session. The primary keys are cached while the scripts themselves are loaded from the second level cache.
+     */
+    public List<StoredScript> getActiveScripts(Session session, String guildId, String usageId) {
+        String cacheKey = getPartition(guildId) + ":" + usageId;
+        List<Long> scriptPks = activeScripts.getIfPresent(cacheKey);
+        if (scriptPks == null) {
+            scriptPks = queryBuilderFactory.select(StoredScript.class, "pk", Long.class)
+                .where((cb, root, subQueryFactory) -> cb.and(
+                    cb.isTrue(root.get("active")),
+                    cb.equal(
+                        root.get("scriptUsage").get("pk"),
+                        subQueryFactory.createUncorrelatedSubQuery(StoredScript.ScriptUsage.class, "pk", Long.class)
+                            .where((cb1, root1) -> cb1.equal(root1.get("uniqueId"), usageId))
+                            .build(session)
+                    )
+                ))
+                .orderBy((from, cb) -> cb.asc(from.get("pk")))
+                .build(session)
+                .getResultList();
+            activeScripts.put(cacheKey, List.copyOf(scriptPks));
+        }
+
+        List<StoredScript> scripts = scriptPks.stream()
+            .map(pk -> session.get(StoredScript.class, pk))
+            .filter(Objects::nonNull)
+            .filter(StoredScript::isActive)
+            .collect(Collectors.toList());
+
+        if (scripts.size() != scriptPks.size()) {
+            // modified by another instance, reload next time
+            activeScripts.invalidate(cacheKey);
+        }
+
+        return scripts;
+    }
+
+    public void invalidate(StoredScript storedScript) {
+        long pk = storedScript.getPk();
+        compiledScripts.asMap().keySet().removeIf(key -> key.getPk() == pk);
+
+        StoredScript.ScriptUsage scriptUsage = storedScript.getScriptUsage();
+        if (scriptUsage != null) {
+            activeScripts.invalidate(getPartition(String.valueOf(storedScript.getGuildId())) + ":" + scriptUsage.getUniqueId());
+        }
+    }
+
+    private String getPartition(String guildId) {
+        return partitioned ? guildId : "";
+    }
+
+    private static class CompiledScriptKey {
+
+        private final long pk;
+        private final String source;
+        private final boolean privileged;
+        private final String variableSignature;
+        private final int hashCode;
+
+        private CompiledScriptKey(long pk, String source, boolean privileged, String variableSignature) {
+            this.pk = pk;
+            this.source = source;
+            this.privileged = privileged;
+            this.variableSignature = variableSignature;
+            hashCode = Objects.hash(pk, source, privileged, variableSignature);
+        }
+
+        long getPk() {
+            return pk;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CompiledScriptKey key)) {
+                return false;
+            }
+            return pk == key.pk
+                && privileged == key.privileged
+                && hashCode == key.hashCode
+                && source.equals(key.source)
+                && variableSignature.equals(key.variableSignature);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+}
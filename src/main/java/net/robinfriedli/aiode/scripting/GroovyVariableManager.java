@@ -8,6 +8,7 @@ import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
+import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 import net.robinfriedli.aiode.concurrent.ThreadContext;
 import net.robinfriedli.aiode.entities.xml.GenericClassContribution;
@@ -53,11 +54,28 @@ public class GroovyVariableManager {
     }
 
     public void prepareShell(GroovyShell groovyShell) {
+        prepareBinding(groovyShell.getContext());
+    }
+
+    public void prepareBinding(Binding binding) {
         for (Map.Entry<String, ?> variable : getVariables().entrySet()) {
-            groovyShell.setVariable(variable.getKey(), variable.getValue());
+            binding.setVariable(variable.getKey(), variable.getValue());
         }
     }
 
+    /**
+     * Describe the names and types of the variables available in the current context. Since the {@link TypeCheckingExtension}
+     * resolves variables to their runtime type at compile time, a statically compiled script may only be reused for
+     * the same signature.
+     */
+    public String getVariableSignature() {
+        return getVariables().entrySet()
+            .stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(variable -> variable.getKey() + ":" + (variable.getValue() != null ? variable.getValue().getClass().getName() : "null"))
+            .collect(Collectors.joining(","));
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, ?> getVariables() {
         Map<String, ?> cachedVariables = ThreadContext.Current.get(CACHE_KEY, Map.class);
@@ -1,13 +1,17 @@
 package net.robinfriedli.aiode.scripting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.google.api.client.util.Sets;
+import net.robinfriedli.aiode.Aiode;
 import net.robinfriedli.aiode.util.ClassDescriptorNode;
 import net.robinfriedli.jxp.api.XmlElement;
 import net.robinfriedli.jxp.persist.Context;
@@ -18,16 +22,43 @@ import static net.robinfriedli.jxp.queries.Conditions.*;
 /**
  * Manages the groovy whitelist configuration offering checks for method invocations and property reassignment access
  * and invocation count management.
+ * <p>
+ * Since these checks are also performed at runtime for each invocation of a method with an invocation limit, the closest
+ * whitelist contributions of each class are resolved once and memoized in a {@link ClassValue} along with the access
+ * decision and invocation limits of each method called on that class. The invocation counts of a script execution are
+ * held by a single {@link InvocationCounter} installed for the thread running the script.
  */
 public class GroovyWhitelistManager {
 
-    // global counter for method invocations and loop iterations
-    static final ThreadLocal<Integer> GLOBAL_INVOCATION_COUNT = ThreadLocal.withInitial(() -> 0);
+    // the maximum number of memoized method resolutions per class, method pointers may check arbitrary method names
+    private static final int MAX_RESOLVED_METHODS = 1000;
+    private static final ThreadLocal<InvocationCounter> CURRENT_INVOCATION_COUNTER = new ThreadLocal<>();
 
     private final Map<Class<?>, WhitelistedClassContribution> whitelistContributions;
+    private final ClassValue<ResolvedClass> resolvedClasses = new ClassValue<>() {
+        @Override
+        protected ResolvedClass computeValue(Class<?> type) {
+            return new ResolvedClass(type, resolveWhitelistContributions(type));
+        }
+    };
+    private final int counterSlotCount;
 
     public GroovyWhitelistManager(Map<Class<?>, WhitelistedClassContribution> whitelistContributions) {
         this.whitelistContributions = whitelistContributions;
+
+        // assign an index in the counts of the InvocationCounter to each contribution that limits invocations
+        int slot = 0;
+        for (WhitelistedClassContribution classContribution : whitelistContributions.values()) {
+            if (classContribution.getMaxMethodInvocations() > 0) {
+                classContribution.setCounterSlot(slot++);
+            }
+            for (WhitelistedMethodContribution methodContribution : classContribution.getWhitelistedMethodContributions().values()) {
+                if (methodContribution.getMaxInvocationCount() > 0) {
+                    methodContribution.setCounterSlot(slot++);
+                }
+            }
+        }
+        counterSlotCount = slot;
     }
 
     public static GroovyWhitelistManager createFromConfiguration(Context configuration) {
@@ -119,16 +150,43 @@ public class GroovyWhitelistManager {
         return new GroovyWhitelistManager(whitelistContributions);
     }
 
-    public boolean checkMethodCall(Class<?> type, String method, boolean isGenerated) {
-        Collection<WhitelistedClassContribution> whitelistContributions = findWhitelistContributions(type);
-        for (WhitelistedClassContribution whitelistContribution : whitelistContributions) {
-            if (("<init>".equals(method) && whitelistContribution.allowConstructorCall())
-                || whitelistContribution.checkMethodAccess(type, method, isGenerated)) {
-                return true;
-            }
+    /**
+     * Returns the thread's current {@link InvocationCounter}. Scripts are run with a counter installed by
+     * {@link #installInvocationCounter()}; if none is installed yet, a counter for the whitelist manager bean is
+     * installed and used.
+     */
+    public static InvocationCounter getCurrentInvocationCounter() {
+        InvocationCounter invocationCounter = CURRENT_INVOCATION_COUNTER.get();
+        if (invocationCounter == null) {
+            invocationCounter = Aiode.get().getGroovySandboxComponent().getGroovyWhitelistManager().installInvocationCounter();
         }
 
-        return false;
+        return invocationCounter;
+    }
+
+    /**
+     * Install a new {@link InvocationCounter} for the current thread. All scripts run by the current thread until
+     * {@link #removeInvocationCounter()} is called count as one execution and share the same invocation limits.
+     */
+    public InvocationCounter installInvocationCounter() {
+        InvocationCounter invocationCounter = new InvocationCounter(this);
+        CURRENT_INVOCATION_COUNTER.set(invocationCounter);
+        return invocationCounter;
+    }
+
+    public void removeInvocationCounter() {
+        CURRENT_INVOCATION_COUNTER.remove();
+    }
+
+    public boolean checkMethodCall(Class<?> type, String method, boolean isGenerated) {
+        return resolvedClasses.get(type).getMethod(method).isAllowed(isGenerated);
+    }
+
+    /**
+     * @return true if invocations of the provided method on the provided type are limited and need to be counted
+     */
+    public boolean hasInvocationLimit(Class<?> type, String method) {
+        return resolvedClasses.get(type).getMethod(method).limits.length > 0;
     }
 
     public boolean checkPropertyWriteAccess(Class<?> type, String property) {
@@ -152,17 +210,16 @@ public class GroovyWhitelistManager {
      * @return the found contributions
      */
     public Collection<WhitelistedClassContribution> findWhitelistContributions(Class<?> type) {
+        return resolvedClasses.get(type).contributions;
+    }
+
+    private Collection<WhitelistedClassContribution> resolveWhitelistContributions(Class<?> type) {
         Set<WhitelistedClassContribution> matchingContributions = whitelistContributions.entrySet().stream()
             .filter(entry -> entry.getKey().isAssignableFrom(type))
             .map(Map.Entry::getValue)
             .collect(Collectors.toSet());
 
-        return selectClosestNodes(matchingContributions, type);
-    }
-
-    public void resetInvocationCounts() {
-        GLOBAL_INVOCATION_COUNT.set(0);
-        whitelistContributions.values().forEach(WhitelistedClassContribution::resetCurrentInvocationCount);
+        return Collections.unmodifiableCollection(selectClosestNodes(matchingContributions, type));
     }
 
     enum ClassAccessMode {
@@ -186,19 +243,18 @@ public class GroovyWhitelistManager {
         private final Class<?> type;
         private final ClassAccessMode accessMode;
         private final int maxMethodInvocations;
-        private final ThreadLocal<Integer> currentInvocationCount;
 
         private final Map<String, WhitelistedMethodContribution> whitelistedMethodContributions = new HashMap<>();
         private final Map<String, WhitelistedPropertyWriteAccessContribution> whitelistedPropertyWriteAccessContributions = new HashMap<>();
 
         private Collection<WhitelistedClassContribution> parentContributions;
+        private int counterSlot = -1;
 
         public WhitelistedClassContribution(boolean allowConstructorCall, ClassAccessMode accessMode, Class<?> type, int maxMethodInvocations) {
             this.allowConstructorCall = allowConstructorCall;
             this.type = type;
             this.accessMode = accessMode;
             this.maxMethodInvocations = maxMethodInvocations;
-            currentInvocationCount = ThreadLocal.withInitial(() -> 0);
         }
 
         public boolean allowConstructorCall() {
@@ -283,17 +339,16 @@ public class GroovyWhitelistManager {
             return maxMethodInvocations;
         }
 
-        public int getCurrentMethodInvocationCount() {
-            return currentInvocationCount.get();
-        }
-
-        public void resetCurrentInvocationCount() {
-            currentInvocationCount.set(0);
-            whitelistedMethodContributions.values().forEach(WhitelistedMethodContribution::resetCurrentInvocationCount);
+        /**
+         * @return the index of the invocation count of this class in the {@link InvocationCounter} or -1 if invocations
+         * are not limited
+         */
+        public int getCounterSlot() {
+            return counterSlot;
         }
 
-        public void incrementMethodInvocationCount() {
-            currentInvocationCount.set(getCurrentMethodInvocationCount() + 1);
+        void setCounterSlot(int counterSlot) {
+            this.counterSlot = counterSlot;
         }
 
         public Map<String, WhitelistedMethodContribution> getWhitelistedMethodContributions() {
@@ -337,15 +392,15 @@ public class GroovyWhitelistManager {
         private final boolean inheritable;
         private final boolean onlyGenerated;
         private final int maxInvocationCount;
-        private final ThreadLocal<Integer> currentInvocationCount;
         private final WhitelistedClassContribution classContribution;
 
+        private int counterSlot = -1;
+
         public WhitelistedMethodContribution(String method, boolean inheritable, boolean onlyGenerated, int maxInvocationCount, WhitelistedClassContribution classContribution) {
             this.method = method;
             this.inheritable = inheritable;
             this.onlyGenerated = onlyGenerated;
             this.maxInvocationCount = maxInvocationCount;
-            currentInvocationCount = ThreadLocal.withInitial(() -> 0);
             this.classContribution = classContribution;
 
             classContribution.addWhitelistedMethod(this);
@@ -366,16 +421,16 @@ public class GroovyWhitelistManager {
             return maxInvocationCount;
         }
 
-        public int getCurrentInvocationCount() {
-            return currentInvocationCount.get();
-        }
-
-        public void resetCurrentInvocationCount() {
-            currentInvocationCount.set(0);
+        /**
+         * @return the index of the invocation count of this method in the {@link InvocationCounter} or -1 if invocations
+         * are not limited
+         */
+        public int getCounterSlot() {
+            return counterSlot;
         }
 
-        public void incrementInvocationCount() {
-            currentInvocationCount.set(getCurrentInvocationCount() + 1);
+        void setCounterSlot(int counterSlot) {
+            this.counterSlot = counterSlot;
         }
 
         public WhitelistedClassContribution getClassContribution() {
@@ -421,4 +476,140 @@ public class GroovyWhitelistManager {
 
     }
 
+    /**
+     * The closest whitelist contributions of a class and the memoized resolutions of the methods called on it.
+     */
+    private static class ResolvedClass {
+
+        private final Class<?> type;
+        private final Collection<WhitelistedClassContribution> contributions;
+        private final Map<String, ResolvedMethod> methods = new ConcurrentHashMap<>();
+
+        private ResolvedClass(Class<?> type, Collection<WhitelistedClassContribution> contributions) {
+            this.type = type;
+            this.contributions = contributions;
+        }
+
+        private ResolvedMethod getMethod(String method) {
+            ResolvedMethod resolvedMethod = methods.get(method);
+            if (resolvedMethod != null) {
+                return resolvedMethod;
+            }
+
+            resolvedMethod = resolveMethod(method);
+            if (methods.size() < MAX_RESOLVED_METHODS) {
+                methods.putIfAbsent(method, resolvedMethod);
+            }
+            return resolvedMethod;
+        }
+
+        private ResolvedMethod resolveMethod(String method) {
+            boolean allowed = false;
+            boolean allowedGenerated = false;
+            List<InvocationLimit> limits = new ArrayList<>();
+            for (WhitelistedClassContribution contribution : contributions) {
+                boolean constructorCall = "<init>".equals(method) && contribution.allowConstructorCall();
+                allowed |= constructorCall || contribution.checkMethodAccess(type, method, false);
+                allowedGenerated |= constructorCall || contribution.checkMethodAccess(type, method, true);
+
+                if (contribution.getCounterSlot() >= 0) {
+                    limits.add(new InvocationLimit(
+                        contribution.getCounterSlot(),
+                        contribution.getMaxMethodInvocations(),
+                        "methods on " + contribution.getType()
+                    ));
+                }
+
+                WhitelistedMethodContribution methodContribution = contribution.getWhitelistedMethodContributions().get(method);
+                if (methodContribution != null && methodContribution.getCounterSlot() >= 0) {
+                    limits.add(new InvocationLimit(
+                        methodContribution.getCounterSlot(),
+                        methodContribution.getMaxInvocationCount(),
+                        "method " + methodContribution.getType().getName() + "#" + methodContribution.getMethod()
+                    ));
+                }
+            }
+
+            return new ResolvedMethod(allowed, allowedGenerated, limits.toArray(new InvocationLimit[0]));
+        }
+
+    }
+
+    private static class ResolvedMethod {
+
+        private final boolean allowed;
+        private final boolean allowedGenerated;
+        private final InvocationLimit[] limits;
+
+        private ResolvedMethod(boolean allowed, boolean allowedGenerated, InvocationLimit[] limits) {
+            this.allowed = allowed;
+            this.allowedGenerated = allowedGenerated;
+            this.limits = limits;
+        }
+
+        private boolean isAllowed(boolean isGenerated) {
+            return isGenerated ? allowedGenerated : allowed;
+        }
+
+    }
+
+    private static class InvocationLimit {
+
+        private final int slot;
+        private final int maxInvocations;
+        private final String description;
+
+        private InvocationLimit(int slot, int maxInvocations, String description) {
+            this.slot = slot;
+            this.maxInvocations = maxInvocations;
+            this.description = description;
+        }
+
+    }
+
+    /**
+     * Holds the invocation counts of one script execution, replacing a thread local counter per contribution. Only
+     * accessed by the thread running the script.
+     */
+    public static class InvocationCounter {
+
+        private final GroovyWhitelistManager groovyWhitelistManager;
+        private final int[] counts;
+        // global counter for method invocations and loop iterations
+        private int globalInvocationCount;
+
+        private InvocationCounter(GroovyWhitelistManager groovyWhitelistManager) {
+            this.groovyWhitelistManager = groovyWhitelistManager;
+            counts = new int[groovyWhitelistManager.counterSlotCount];
+        }
+
+        public GroovyWhitelistManager getGroovyWhitelistManager() {
+            return groovyWhitelistManager;
+        }
+
+        /**
+         * Count an invocation of the provided method against all limits that apply to it.
+         *
+         * @throws SecurityException if a limit has been exceeded
+         */
+        public void countInvocation(Class<?> type, String method) {
+            for (InvocationLimit limit : groovyWhitelistManager.resolvedClasses.get(type).getMethod(method).limits) {
+                if (++counts[limit.slot] > limit.maxInvocations) {
+                    throw new SecurityException(
+                        String.format("Reached the maximum invocation count of %d for %s", limit.maxInvocations, limit.description)
+                    );
+                }
+            }
+        }
+
+        public int getGlobalInvocationCount() {
+            return globalInvocationCount;
+        }
+
+        public void incrementGlobalInvocationCount() {
+            globalInvocationCount++;
+        }
+
+    }
+
 }
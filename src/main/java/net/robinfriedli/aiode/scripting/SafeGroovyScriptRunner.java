@@ -12,6 +12,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.User;
@@ -25,13 +26,16 @@ import net.robinfriedli.aiode.command.SecurityManager;
 import net.robinfriedli.aiode.concurrent.ExecutionContext;
 import net.robinfriedli.aiode.concurrent.ForkTaskThreadPool;
 import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
 import net.robinfriedli.aiode.discord.MessageService;
 import net.robinfriedli.aiode.discord.property.properties.ColorSchemeProperty;
 import net.robinfriedli.aiode.entities.StoredScript;
 import net.robinfriedli.aiode.exceptions.CommandFailure;
 import net.robinfriedli.aiode.exceptions.ExceptionUtils;
+import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
 import net.robinfriedli.threadpool.ThreadPool;
 import org.codehaus.groovy.control.MultipleCompilationErrorsException;
+import org.codehaus.groovy.runtime.InvokerHelper;
 
 /**
  * Class that provides safe execution of untrusted groovy scripts by setting up a sandboxed {@link GroovyShell} with compilation
@@ -41,26 +45,29 @@ import org.codehaus.groovy.control.MultipleCompilationErrorsException;
  * using the isPrivileged constructor parameter, reducing the number of applied compilation customizers and ignoring time
  * limits while still applying the ImportCustomizer and ThreadInterrupt customizer to enable optionally interrupting the
  * script manually using the abort command. Whitelisted methods and properties are configured in the groovyWhitelist.xml
- * file.
+ * file. Compiled scripts are cached by the {@link GroovyScriptCache}, so running the same script again only requires
+ * instantiating the compiled class with a fresh {@link Binding}.
  */
 public class SafeGroovyScriptRunner {
 
-    private static final ForkTaskThreadPool GLOBAL_POOL = new ForkTaskThreadPool(
-        ThreadPool.Builder.create()
+    private static final ForkTaskThreadPool GLOBAL_POOL = new ForkTaskThreadPool(VirtualThreads.createPool(
+        "script-execution-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
             .setCoreSize(3)
             .setMaxSize(Integer.MAX_VALUE)
             .setKeepAlive(60L, TimeUnit.SECONDS)
             .setWorkQueue(new SynchronousQueue<>())
             .setThreadFactory(new LoggingThreadFactory("script-execution-pool"))
             .build()
-    );
+    ));
 
     static {
         Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(GLOBAL_POOL));
     }
 
     private final ExecutionContext context;
-    private final GroovySandboxComponent groovySandboxComponent;
+    private final GroovyScriptCache groovyScriptCache;
     private final GroovyVariableManager groovyVariableManager;
     private final GroovyWhitelistManager groovyWhitelistManager;
     private final SecurityManager securityManager;
@@ -69,12 +76,13 @@ public class SafeGroovyScriptRunner {
     public SafeGroovyScriptRunner(
         ExecutionContext context,
         GroovySandboxComponent groovySandboxComponent,
+        GroovyScriptCache groovyScriptCache,
         GroovyVariableManager groovyVariableManager,
         SecurityManager securityManager,
         boolean isPrivileged
     ) {
         this.context = context;
-        this.groovySandboxComponent = groovySandboxComponent;
+        this.groovyScriptCache = groovyScriptCache;
         this.groovyWhitelistManager = groovySandboxComponent.getGroovyWhitelistManager();
         this.groovyVariableManager = groovyVariableManager;
         this.securityManager = securityManager;
@@ -130,11 +138,12 @@ public class SafeGroovyScriptRunner {
      * @throws TimeoutException   if not all scripts finish within the given time limit
      */
     public void doRunScripts(List<StoredScript> scripts, AtomicReference<StoredScript> currentScript, long timeout, TimeUnit timeUnit) throws ExecutionException, TimeoutException {
-        GroovyShell groovyShell = createShell();
+        checkPrivileges();
         Future<Object> result = scriptExecution(() -> {
+            Binding binding = createBinding();
             for (StoredScript script : scripts) {
                 currentScript.set(script);
-                groovyShell.evaluate(script.getScript());
+                runCompiledScript(script.getPk(), script.getScript(), binding);
             }
             return null;
         });
@@ -143,7 +152,7 @@ public class SafeGroovyScriptRunner {
     }
 
     /**
-     * Evaluate the script by running it using the groovy shell set up for this instance. If isPrivileged is false
+     * Evaluate the script by running it using the compiler configuration set up for this instance. If isPrivileged is false
      * static compilation, the type checking extensions to check whitelisted method invocations and property access and
      * other compilation customizers are applied and the script runs under a timeout.
      *
@@ -155,8 +164,8 @@ public class SafeGroovyScriptRunner {
      * @throws TimeoutException   if the script runs into a timeout
      */
     public Object evaluateScript(String script, long timeout, TimeUnit timeUnit) throws ExecutionException, TimeoutException {
-        GroovyShell groovyShell = createShell();
-        Future<Object> result = scriptExecution(() -> groovyShell.evaluate(script));
+        checkPrivileges();
+        Future<Object> result = scriptExecution(() -> runCompiledScript(0, script, createBinding()));
 
         return runScriptWithTimeout(result, timeout, timeUnit);
     }
@@ -230,10 +239,11 @@ public class SafeGroovyScriptRunner {
 
     private <T> Future<T> scriptExecution(Callable<T> execution) {
         return GLOBAL_POOL.submit(() -> {
+            groovyWhitelistManager.installInvocationCounter();
             try {
                 return execution.call();
             } finally {
-                groovyWhitelistManager.resetInvocationCounts();
+                groovyWhitelistManager.removeInvocationCounter();
             }
         });
     }
@@ -256,22 +266,24 @@ public class SafeGroovyScriptRunner {
         }
     }
 
-    private GroovyShell createShell() {
-        GroovyShell groovyShell;
+    private Object runCompiledScript(long pk, String script, Binding binding) {
+        Class<?> scriptClass = groovyScriptCache.getCompiledScript(pk, script, isPrivileged);
+        return InvokerHelper.createScript(scriptClass, binding).run();
+    }
 
+    private void checkPrivileges() {
         if (isPrivileged) {
             User user = context.getUser();
             if (!securityManager.isAdmin(user)) {
                 throw new SecurityException(String.format("Cannot set up privileged shell for user %s, only allowed for admin users.", user.getAsMention()));
             }
-            groovyShell = new GroovyShell(groovySandboxComponent.getPrivilegedCompilerConfiguration());
-        } else {
-            groovyShell = new GroovyShell(groovySandboxComponent.getCompilerConfiguration());
         }
+    }
 
-        groovyVariableManager.prepareShell(groovyShell);
-
-        return groovyShell;
+    private Binding createBinding() {
+        Binding binding = new Binding();
+        groovyVariableManager.prepareBinding(binding);
+        return binding;
     }
 
 }
@@ -12,6 +12,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import net.robinfriedli.aiode.boot.AbstractShutdownable;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
 import net.robinfriedli.aiode.entities.xml.HttpHandlerContribution;
 import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
 import net.robinfriedli.jxp.api.JxpBackend;
@@ -44,17 +45,21 @@ public class HttpServerManager extends AbstractShutdownable {
     public void start() throws IOException {
         httpServer = HttpServer.create(new InetSocketAddress(port), 0);
 
-        ExecutorService executorService = new ThreadPoolExecutor(5, 50, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactory() {
-            final AtomicLong threadId = new AtomicLong(1);
+        ExecutorService executorService = VirtualThreads.createPool(
+            "http-server",
+            new LoggingUncaughtExceptionHandler(),
+            () -> new ThreadPoolExecutor(5, 50, 30, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactory() {
+                final AtomicLong threadId = new AtomicLong(1);
 
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread thread = new Thread(r);
-                thread.setName("http-server-thread-" + threadId.getAndIncrement());
-                thread.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
-                return thread;
-            }
-        });
+                @Override
+                public Thread newThread(@NotNull Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setName("http-server-thread-" + threadId.getAndIncrement());
+                    thread.setUncaughtExceptionHandler(new LoggingUncaughtExceptionHandler());
+                    return thread;
+                }
+            })
+        );
         httpServer.setExecutor(executorService);
 
         for (HttpHandlerContribution contribution : httpHandlersContext.getInstancesOf(HttpHandlerContribution.class)) {
@@ -2,8 +2,6 @@ package net.robinfriedli.aiode.servers;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -39,7 +37,7 @@ public class PlaylistViewHandler implements HttpHandler {
     public void handle(HttpExchange exchange) throws IOException {
         Session session = null;
         try {
-            String html = Files.readString(Path.of("html/playlist_view.html"));
+            String html = ServerUtil.getTemplate("html/playlist_view.html");
             Map<String, String> parameterMap = ServerUtil.getParameters(exchange);
             String guildId = parameterMap.get("guildId");
             String name = parameterMap.get("name");
@@ -1,16 +1,19 @@
 package net.robinfriedli.aiode.servers;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Collections;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import net.dv8tion.jda.api.entities.Guild;
@@ -19,11 +22,27 @@ import net.robinfriedli.aiode.audio.AudioManager;
 import net.robinfriedli.aiode.audio.AudioPlayback;
 import net.robinfriedli.aiode.audio.Playable;
 import net.robinfriedli.aiode.audio.queue.AudioQueue;
+import net.robinfriedli.aiode.audio.queue.QueueSnapshot;
 import net.robinfriedli.aiode.exceptions.InvalidRequestException;
+import net.robinfriedli.aiode.exceptions.UnavailableResourceException;
 import net.robinfriedli.aiode.util.Util;
 
+/**
+ * Handler that displays the queue of a guild, split into pages of {@link #PAGE_SIZE} tracks. The page is rendered from a
+ * {@link QueueSnapshot} without holding the queue lock and streamed to the client. Rendered pages are cached per guild
+ * until the queue is modified, unless the page contains tracks that have not finished loading yet.
+ */
 public class QueueViewHandler implements HttpHandler {
 
+    private static final int PAGE_SIZE = 500;
+    private static final String TEMPLATE_PATH = "html/queue_view.html";
+    private static final String CONTENT_PLACEHOLDER = "%s";
+
+    private final Cache<String, RenderedPage> renderedPages = CacheBuilder.newBuilder()
+        .maximumSize(1000)
+        .expireAfterAccess(10, TimeUnit.MINUTES)
+        .build();
+    private final Logger logger = LoggerFactory.getLogger(getClass());
     private final ShardManager shardManager;
     private final AudioManager audioManager;
 
@@ -34,88 +53,210 @@ public class QueueViewHandler implements HttpHandler {
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
+        String header;
+        String footer;
+        String guildId;
+        QueueSnapshot snapshot;
+        int page;
+        String content;
         try {
-            String html = Files.readString(Path.of("html/queue_view.html"));
+            String html = ServerUtil.getTemplate(TEMPLATE_PATH);
             Map<String, String> parameterMap = ServerUtil.getParameters(exchange);
-            String guildId = parameterMap.get("guildId");
-
-            if (guildId != null) {
-                Guild guild = shardManager.getGuildById(guildId);
-                if (guild != null) {
-                    AudioPlayback playback = audioManager.getPlaybackForGuild(guild);
-                    AudioQueue queue = playback.getAudioQueue();
-                    String content;
-                    String current = new String();
-                    if (!queue.isEmpty()) {
-                        Lock readLock = queue.getLock().readLock();
-                        readLock.lock();
-                        try {
-                            int position = queue.getPosition();
-                            List<Playable> previous = queue.listPrevLocked(position);
-                            List<Playable> next = queue.listNextLocked(queue.getSize() - position);
-
-                            StringBuilder listBuilder = new StringBuilder();
-                            if (!previous.isEmpty()) {
-                                if (previous.size() > 20) {
-                                    listBuilder.append("<a href=\"#current\">Jump to current track</a>").append(System.lineSeparator());
-                                }
-                                appendList(listBuilder, previous, "Previous");
-                            }
-                            if (!next.isEmpty()) {
-                                appendList(listBuilder, next, "Next");
-                            }
-                            current = queue.getCurrentLocked().getTitle();
-                            content = listBuilder.toString();
-                        } finally {
-                            readLock.unlock();
-                        }
-                    } else {
-                        content = "Queue is empty";
-                    }
-
-                    String response = String.format(html,
-                        boolToString(playback.isPaused()),
-                        boolToString(playback.isShuffle()),
-                        boolToString(playback.isRepeatAll()),
-                        boolToString(playback.isRepeatOne()),
-                        current,
-                        content);
-
-                    byte[] bytes = response.getBytes();
-                    exchange.sendResponseHeaders(200, bytes.length);
-                    OutputStream outputStream = exchange.getResponseBody();
-                    outputStream.write(bytes);
-                    outputStream.close();
-                } else {
-                    throw new InvalidRequestException("Guild " + guildId + " not found");
-                }
-            } else {
+            guildId = parameterMap.get("guildId");
+
+            if (guildId == null) {
                 throw new InvalidRequestException("No guild provided");
             }
+
+            Guild guild = shardManager.getGuildById(guildId);
+            if (guild == null) {
+                throw new InvalidRequestException("Guild " + guildId + " not found");
+            }
+
+            AudioPlayback playback = audioManager.getPlaybackForGuild(guild);
+            AudioQueue queue = playback.getAudioQueue();
+            snapshot = queue.snapshot();
+            page = getPage(parameterMap.get("page"), snapshot);
+
+            Playable current = snapshot.getCurrent();
+            // the content placeholder is the last parameter of the template
+            int contentIdx = html.lastIndexOf(CONTENT_PLACEHOLDER);
+            header = String.format(html.substring(0, contentIdx),
+                boolToString(playback.isPaused()),
+                boolToString(playback.isShuffle()),
+                boolToString(playback.isRepeatAll()),
+                boolToString(playback.isRepeatOne()),
+                current != null ? current.getTitleNow() : "");
+            footer = html.substring(contentIdx + CONTENT_PLACEHOLDER.length());
+
+            RenderedPage renderedPage = renderedPages.getIfPresent(guildId);
+            if (renderedPage != null && renderedPage.version == snapshot.getVersion() && renderedPage.page == page) {
+                content = renderedPage.content;
+            } else {
+                content = null;
+            }
         } catch (InvalidRequestException e) {
             ServerUtil.handleError(exchange, e);
+            return;
         } catch (Exception e) {
             ServerUtil.handleError(exchange, e);
-            LoggerFactory.getLogger(getClass()).error("Error in HttpHandler", e);
+            logger.error("Error in HttpHandler", e);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        // response length 0 means the response is sent using chunked transfer encoding
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            writer.write(header);
+            writer.flush();
+            if (content != null) {
+                writer.write(content);
+            } else {
+                writer.write(renderPage(guildId, snapshot, page));
+            }
+            writer.write(footer);
+        } catch (IOException e) {
+            logger.warn("Failed to write queue view for guild " + guildId, e);
         }
     }
 
-    private void appendList(StringBuilder listBuilder, List<Playable> playables, String title) {
+    private String renderPage(String guildId, QueueSnapshot snapshot, int page) {
+        if (snapshot.isEmpty()) {
+            return "Queue is empty";
+        }
+
+        int position = snapshot.getPosition();
+        int pageCount = getPageCount(snapshot);
+        int fromIdx = (page - 1) * PAGE_SIZE;
+        int toIdx = Math.min(fromIdx + PAGE_SIZE, snapshot.getSize());
+        List<Playable> tracks = snapshot.getTracks();
+        StringBuilder listBuilder = new StringBuilder();
+
+        if (pageCount > 1) {
+            appendPageNavigation(listBuilder, guildId, page, pageCount, getPageOfPosition(position));
+        } else if (position > 20) {
+            listBuilder.append("<a href=\"#current\">Jump to current track</a>").append(System.lineSeparator());
+        }
+
+        boolean complete = true;
+        if (fromIdx < position) {
+            complete = appendList(listBuilder, tracks.subList(fromIdx, Math.min(position, toIdx)), "Previous");
+        }
+        if (position >= fromIdx && position < toIdx) {
+            listBuilder.append("<span id=\"current\"></span>").append(System.lineSeparator());
+        }
+        if (toIdx > position + 1) {
+            complete &= appendList(listBuilder, tracks.subList(Math.max(position + 1, fromIdx), toIdx), "Next");
+        }
+
+        String content = listBuilder.toString();
+        // titles of tracks that are still loading change without modifying the queue
+        if (complete) {
+            renderedPages.put(guildId, new RenderedPage(snapshot.getVersion(), page, content));
+        }
+        return content;
+    }
+
+    /**
+     * @return true if all playables have been loaded
+     */
+    private boolean appendList(StringBuilder listBuilder, List<Playable> playables, String title) {
+        boolean complete = true;
         listBuilder.append("<h3 class=\"home-text4 home-text3 home-text8\">").append(title).append("</h3>").append(System.lineSeparator());
         listBuilder.append("<table class=\"content-table\">").append(System.lineSeparator());
         listBuilder.append("<tbody>").append(System.lineSeparator());
         for (Playable playable : playables) {
+            String display;
+            try {
+                display = playable.getDisplayNow(null);
+            } catch (UnavailableResourceException e) {
+                display = Playable.UNAVAILABLE_STRING;
+            }
+            if (display == null) {
+                display = Playable.LOADING_STRING;
+                complete = false;
+            }
+
             listBuilder.append("<tr>").append(System.lineSeparator());
-            listBuilder.append("<td>").append(playable.getDisplayNow()).append("</td>").append(System.lineSeparator());
+            listBuilder.append("<td>").append(display).append("</td>").append(System.lineSeparator());
             listBuilder.append("<td>").append(Util.normalizeMillis(playable.getDurationNow())).append("</td>").append(System.lineSeparator());
             listBuilder.append("</tr>").append(System.lineSeparator());
         }
         listBuilder.append("</tbody>").append(System.lineSeparator());
         listBuilder.append("</table>");
+        return complete;
+    }
+
+    private void appendPageNavigation(StringBuilder listBuilder, String guildId, int page, int pageCount, int currentPage) {
+        listBuilder.append("<p>");
+        if (page > 1) {
+            appendPageLink(listBuilder, guildId, page - 1, "Previous page", "");
+            listBuilder.append(" | ");
+        }
+        listBuilder.append("Page ").append(page).append(" of ").append(pageCount);
+        if (page < pageCount) {
+            listBuilder.append(" | ");
+            appendPageLink(listBuilder, guildId, page + 1, "Next page", "");
+        }
+        listBuilder.append(" | ");
+        appendPageLink(listBuilder, guildId, currentPage, "Jump to current track", "#current");
+        listBuilder.append("</p>").append(System.lineSeparator());
+    }
+
+    private void appendPageLink(StringBuilder listBuilder, String guildId, int page, String text, String anchor) {
+        listBuilder
+            .append("<a href=\"?guildId=").append(guildId).append("&page=").append(page).append(anchor).append("\">")
+            .append(text)
+            .append("</a>");
+    }
+
+    /**
+     * @return the requested page or the page containing the current track if no page was requested
+     */
+    private int getPage(String pageParameter, QueueSnapshot snapshot) throws InvalidRequestException {
+        if (pageParameter == null) {
+            return getPageOfPosition(snapshot.getPosition());
+        }
+
+        int page;
+        try {
+            page = Integer.parseInt(pageParameter);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid page " + pageParameter);
+        }
+
+        if (page < 1 || page > getPageCount(snapshot)) {
+            throw new InvalidRequestException("Page " + page + " does not exist");
+        }
+
+        return page;
+    }
+
+    private int getPageCount(QueueSnapshot snapshot) {
+        return Math.max(1, (snapshot.getSize() + PAGE_SIZE - 1) / PAGE_SIZE);
+    }
+
+    private int getPageOfPosition(int position) {
+        return Math.max(position, 0) / PAGE_SIZE + 1;
     }
 
     private String boolToString(boolean bool) {
         return bool ? "On" : "Off";
     }
 
+    private static class RenderedPage {
+
+        private final long version;
+        private final int page;
+        private final String content;
+
+        private RenderedPage(long version, int page, String content) {
+            this.version = version;
+            this.page = page;
+            this.content = content;
+        }
+
+    }
+
 }
@@ -2,12 +2,14 @@ package net.robinfriedli.aiode.servers;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
@@ -16,8 +18,10 @@ import com.sun.net.httpserver.HttpExchange;
 
 public class ServerUtil {
 
+    private static final Map<String, String> TEMPLATES = new ConcurrentHashMap<>();
+
     public static void handleError(HttpExchange exchange, Throwable e) throws IOException {
-        String html = Files.readString(Path.of("html/default_error_page.html"));
+        String html = getTemplate("html/default_error_page.html");
         String response = String.format(html, e.getMessage());
         exchange.sendResponseHeaders(500, response.getBytes().length);
         OutputStream responseBody = exchange.getResponseBody();
@@ -32,4 +36,21 @@ public class ServerUtil {
         return parameterMap;
     }
 
+    /**
+     * Get the content of the html template at the given path, which is only read from the file system once.
+     */
+    public static String getTemplate(String path) throws IOException {
+        try {
+            return TEMPLATES.computeIfAbsent(path, p -> {
+                try {
+                    return Files.readString(Path.of(p));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
 }
@@ -1,49 +1,112 @@
 package net.robinfriedli.aiode.util;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.google.common.collect.Lists;
+import net.robinfriedli.aiode.Aiode;
+import net.robinfriedli.aiode.boot.ShutdownableExecutorService;
+import net.robinfriedli.aiode.concurrent.ForkTaskThreadPool;
+import net.robinfriedli.aiode.concurrent.LoggingThreadFactory;
+import net.robinfriedli.aiode.concurrent.VirtualThreads;
+import net.robinfriedli.aiode.exceptions.CommandRuntimeException;
+import net.robinfriedli.aiode.exceptions.handler.handlers.LoggingUncaughtExceptionHandler;
+import net.robinfriedli.threadpool.ThreadPool;
 
 /**
  * Utility class that aids loading a large number of items in as little requests as possible and performs an action with
- * each result
+ * each result. Each distinct key is only loaded once, the result is passed to all actions added for that key. If the
+ * parallelism is greater than 1, up to that many batches are loaded concurrently while the results are still applied
+ * in the order of the batches on the thread calling {@link #perform()} as soon as the respective batch completes, so
+ * actions do not need to be thread safe.
  *
  * @param <K> the type of key to load each result with
  * @param <V> the type of items that are operated upon after loading
  */
 public class BulkOperationService<K, V> {
 
+    private static final ForkTaskThreadPool LOADING_POOL = new ForkTaskThreadPool(VirtualThreads.createPool(
+        "bulk-operation-pool",
+        new LoggingUncaughtExceptionHandler(),
+        () -> ThreadPool.Builder.create()
+            .setCoreSize(3)
+            .setMaxSize(20)
+            .setKeepAlive(1L, TimeUnit.MINUTES)
+            .setThreadFactory(new LoggingThreadFactory("bulk-operation-pool")).build()
+    ));
+
+    static {
+        Aiode.SHUTDOWNABLES.add(new ShutdownableExecutorService(LOADING_POOL));
+    }
+
     // the amount of items that can be loaded within one request
     protected final int size;
     // the function that executes loading the items, the provided list does not exceed the size defined by the size
     // parameter; if the amount of items loaded exceeds the size this function is called several times; returns the loaded
     // items paired with the key they were loaded with
     protected final Function<List<K>, List<Pair<K, V>>> loadFunc;
-    // the keys for all items that will be loaded
+    // the maximum amount of batches loaded concurrently
+    protected final int parallelism;
+    // the distinct keys for all items that will be loaded in the order they were added
     protected final List<K> keys = Lists.newArrayList();
     // the map containing all keys mapped to the action that should be performed with the loaded item
     protected final Map<K, ResultConsumerManager<V>> actionMap = new HashMap<>();
 
     public BulkOperationService(int size, Function<List<K>, List<Pair<K, V>>> loadFunc) {
+        this(size, 1, loadFunc);
+    }
+
+    public BulkOperationService(int size, int parallelism, Function<List<K>, List<Pair<K, V>>> loadFunc) {
         this.size = size;
+        this.parallelism = Math.max(parallelism, 1);
         this.loadFunc = loadFunc;
     }
 
     public void perform() {
         List<List<K>> batches = Lists.partition(keys, size);
-        for (List<K> batch : batches) {
-            List<Pair<K, V>> loadedBatch = loadFunc.apply(batch);
-            for (Pair<K, V> keyValuePair : loadedBatch) {
-                K key = keyValuePair.getLeft();
-                V value = keyValuePair.getRight();
-                actionMap.get(key).next().accept(value);
+        if (parallelism == 1 || batches.size() <= 1) {
+            for (List<K> batch : batches) {
+                applyResults(loadFunc.apply(batch));
+            }
+            return;
+        }
+
+        Iterator<List<K>> batchIterator = batches.iterator();
+        Deque<Future<List<Pair<K, V>>>> pendingBatches = new ArrayDeque<>(parallelism);
+        try {
+            while (pendingBatches.size() < parallelism && batchIterator.hasNext()) {
+                pendingBatches.add(submit(batchIterator.next()));
+            }
+
+            while (!pendingBatches.isEmpty()) {
+                List<Pair<K, V>> loadedBatch = pendingBatches.poll().get();
+                if (batchIterator.hasNext()) {
+                    pendingBatches.add(submit(batchIterator.next()));
+                }
+                applyResults(loadedBatch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandRuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new CommandRuntimeException(e.getCause());
+        } finally {
+            for (Future<List<Pair<K, V>>> pendingBatch : pendingBatches) {
+                pendingBatch.cancel(true);
             }
         }
     }
@@ -59,17 +122,33 @@ public class BulkOperationService<K, V> {
             throw new NullPointerException();
         }
 
-        keys.add(key);
         ResultConsumerManager<V> existingManager = actionMap.get(key);
         if (existingManager != null) {
             existingManager.add(action);
         } else {
+            keys.add(key);
             ResultConsumerManager<V> resultConsumerManager = new ResultConsumerManager<>();
             resultConsumerManager.add(action);
             actionMap.put(key, resultConsumerManager);
         }
     }
 
+    private Future<List<Pair<K, V>>> submit(List<K> batch) {
+        return LOADING_POOL.submit(() -> loadFunc.apply(batch));
+    }
+
+    /**
+     * Pass each loaded item to all actions added for its key
+     */
+    private void applyResults(List<Pair<K, V>> loadedBatch) {
+        for (Pair<K, V> keyValuePair : loadedBatch) {
+            ResultConsumerManager<V> resultConsumer = actionMap.get(keyValuePair.getLeft());
+            if (resultConsumer != null) {
+                resultConsumer.acceptAll(keyValuePair.getRight());
+            }
+        }
+    }
+
     protected static class ResultConsumerManager<T> {
 
         private final List<Consumer<T>> resultConsumers = Lists.newArrayList();
@@ -96,6 +175,12 @@ public class BulkOperationService<K, V> {
             return iterator.hasNext();
         }
 
+        public void acceptAll(T result) {
+            for (Consumer<T> resultConsumer : resultConsumers) {
+                resultConsumer.accept(result);
+            }
+        }
+
         public void add(Consumer<T> consumer) {
             if (iterator != null) {
                 // invalidate iterator
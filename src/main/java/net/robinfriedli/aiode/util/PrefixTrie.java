@@ -0,0 +1,148 @@
+package net.robinfriedli.aiode.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Case insensitive trie mapping string keys to values of type V, used to find the longest key that the provided input
+ * starts with in a single pass over the input, e.g. to find the command, preset or script a command input refers to.
+ * Modifications are synchronised while lookups do not lock.
+ *
+ * @param <V> the type of the mapped values
+ */
+public class PrefixTrie<V> {
+
+    private final Node<V> root = new Node<>();
+    private volatile int size;
+
+    private static char normalize(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Map the provided key to the provided value, replacing the previous value mapped to the key, if any.
+     *
+     * @return the previous value or null
+     */
+    @Nullable
+    public synchronized V put(String key, V value) {
+        Node<V> current = root;
+        for (int i = 0; i < key.length(); i++) {
+            current = current.children.computeIfAbsent(normalize(key.charAt(i)), k -> new Node<>());
+        }
+
+        V previous = current.value;
+        current.value = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * Remove the value mapped to the provided key and prune the nodes that are no longer needed.
+     *
+     * @return the removed value or null
+     */
+    @Nullable
+    public synchronized V remove(String key) {
+        return remove(root, key, 0);
+    }
+
+    /**
+     * Remove the value mapped to the provided key only if it is currently mapped to the provided value.
+     *
+     * @return true if the value was removed
+     */
+    public synchronized boolean remove(String key, V value) {
+        if (value.equals(get(key))) {
+            remove(key);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Nullable
+    public V get(String key) {
+        Node<V> current = root;
+        for (int i = 0; i < key.length() && current != null; i++) {
+            current = current.children.get(normalize(key.charAt(i)));
+        }
+
+        return current != null ? current.value : null;
+    }
+
+    /**
+     * Find the value mapped to the longest key the provided input starts with (ignoring case).
+     *
+     * @param input the input, e.g. the command body entered by the user
+     * @return the value mapped to the longest matching key or null if no key matches
+     */
+    @Nullable
+    public V findLongestPrefixOf(String input) {
+        V match = root.value;
+        Node<V> current = root;
+        for (int i = 0; i < input.length(); i++) {
+            current = current.children.get(normalize(input.charAt(i)));
+            if (current == null) {
+                break;
+            }
+
+            V value = current.value;
+            if (value != null) {
+                match = value;
+            }
+        }
+
+        return match;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        root.children.clear();
+        root.value = null;
+        size = 0;
+    }
+
+    @Nullable
+    private V remove(Node<V> node, String key, int idx) {
+        if (idx == key.length()) {
+            V previous = node.value;
+            node.value = null;
+            if (previous != null) {
+                size--;
+            }
+            return previous;
+        }
+
+        char c = normalize(key.charAt(idx));
+        Node<V> child = node.children.get(c);
+        if (child == null) {
+            return null;
+        }
+
+        V removed = remove(child, key, idx + 1);
+        if (child.value == null && child.children.isEmpty()) {
+            node.children.remove(c);
+        }
+        return removed;
+    }
+
+    private static class Node<V> {
+
+        private final Map<Character, Node<V>> children = new ConcurrentHashMap<>();
+        private volatile V value;
+
+    }
+
+}
@@ -1,6 +1,5 @@
 package net.robinfriedli.aiode.audio.queue
 
-import com.google.common.collect.Lists
 import net.dv8tion.jda.api.EmbedBuilder
 import net.dv8tion.jda.api.entities.Guild
 import net.robinfriedli.aiode.Aiode
@@ -9,39 +8,38 @@ import net.robinfriedli.aiode.audio.Playable
 import net.robinfriedli.aiode.audio.playables.PlayableContainer
 import net.robinfriedli.aiode.audio.playables.PlayableFactory
 import net.robinfriedli.aiode.audio.playables.containers.SinglePlayableContainer
-import net.robinfriedli.aiode.discord.property.properties.ColorSchemeProperty
 import net.robinfriedli.aiode.entities.GuildSpecification
 import net.robinfriedli.aiode.exceptions.NoResultsFoundException
 import net.robinfriedli.aiode.exceptions.UserException
-import net.robinfriedli.aiode.persist.StaticSessionProvider
 import net.robinfriedli.aiode.util.EmojiConstants
 import net.robinfriedli.aiode.util.Util
-import org.hibernate.Session
 import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ThreadLocalRandom
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.locks.ReadWriteLock
 import java.util.concurrent.locks.ReentrantReadWriteLock
-import java.util.stream.Collectors
-import java.util.stream.IntStream
-import kotlin.streams.toList
-
 
+/**
+ * The queue of tracks of a guild. The entire state of the queue is held by an immutable [State] consisting of a
+ * persistent [QueueRope] of the tracks in their original order, the shuffled order as a permutation of indices into that
+ * rope, if shuffle is enabled, and the current position. Modifications create a new state sharing all unmodified parts
+ * of the rope with the previous state and are serialised by the write lock of [lock], while reading never locks and
+ * operates on the state that was current when starting to read.
+ */
 class AudioQueue(val maxSize: Int?) {
 
-    @Volatile
-    var isShuffle: Boolean = false
+    var isShuffle: Boolean
+        get() = state.shuffledOrder != null
         set(value) {
             val writeLock = lock.writeLock()
             writeLock.lock()
             try {
-                if (!isEmpty()) {
-                    if (value) {
-                        doRandomize(true)
-                    } else if (isShuffle) {
-                        disableShuffle()
-                    }
+                if (value) {
+                    doRandomize(true)
+                } else if (isShuffle) {
+                    disableShuffle()
                 }
-                field = value
             } finally {
                 writeLock.unlock()
             }
@@ -49,58 +47,73 @@ class AudioQueue(val maxSize: Int?) {
 
     @Volatile
     var repeatOne: Boolean = false
+        set(value) {
+            field = value
+            notifyChangeListeners()
+        }
 
     @Volatile
     var repeatAll: Boolean = false
+        set(value) {
+            field = value
+            notifyChangeListeners()
+        }
 
-    @Volatile
-    var currIdx: Int = -1
+    val currIdx: Int
+        get() = state.position
 
-    @Volatile
-    var size: Int = 0
+    val size: Int
+        get() = state.size
 
-    private val nodeList: QueueNodeList = QueueNodeList()
-    private val shuffledOrder = ArrayList<Int>()
+    /**
+     * Incremented on each modification of the tracks, their order or the current position.
+     */
+    val version: Long
+        get() = state.version
 
     @Volatile
-    private var flattenedQueue: List<Playable>? = null
+    private var state: State = State(null, null, -1, 0)
 
+    /**
+     * Serialises modifications of the queue, reading does not require the read lock.
+     */
     val lock: ReadWriteLock = ReentrantReadWriteLock()
 
-    fun getTracks(): List<Playable> {
-        val readLock = lock.readLock()
-        readLock.lock()
-        try {
-            val trackList: MutableList<Playable> = ArrayList(size)
-            if (isShuffle) {
-                for (pos in shuffledOrder) {
-                    trackList.add(getPlayableAtIndexLocked(pos))
-                }
-            } else {
-                val flattenedQueue = flattenedQueue
-                if (flattenedQueue != null) {
-                    return flattenedQueue
-                }
-                for (node in nodeList) {
-                    trackList.addAll(node.getPlayables())
-                }
-            }
+    private val changeListeners: MutableList<ChangeListener> = CopyOnWriteArrayList()
 
-            return trackList
-        } finally {
-            readLock.unlock()
-        }
+    fun addChangeListener(listener: ChangeListener) {
+        changeListeners.add(listener)
+    }
+
+    fun removeChangeListener(listener: ChangeListener) {
+        changeListeners.remove(listener)
+    }
+
+    /**
+     * @return an unmodifiable view of the tracks in the order they are played in
+     */
+    fun getTracks(): List<Playable> {
+        return state.getTracks()
     }
 
     fun getPosition(): Int {
         return currIdx
     }
 
+    /**
+     * Create an immutable [QueueSnapshot] of the current state. Since the state is never modified this does not copy
+     * any tracks.
+     */
+    fun snapshot(): QueueSnapshot {
+        val state = state
+        return QueueSnapshot(state.version, state.position, state.getTracks())
+    }
+
     fun setPosition(idx: Int) {
         val writeLock = lock.writeLock()
         writeLock.lock()
         try {
-            currIdx = idx
+            update(position = idx)
         } finally {
             writeLock.unlock()
         }
@@ -110,40 +123,16 @@ class AudioQueue(val maxSize: Int?) {
      * Require the track at the current position or throw if empty / never iterated
      */
     fun getCurrent(): Playable {
-        val readLock = lock.readLock()
-        readLock.lock()
-        return try {
-            getCurrentLocked()
-        } finally {
-            readLock.unlock()
-        }
-    }
-
-    fun getCurrentLocked(): Playable {
-        return if (isShuffle) {
-            getPlayableAtIndexLocked(shuffledOrder[currIdx])
-        } else {
-            getPlayableAtIndexLocked(currIdx)
-        }
+        val state = state
+        return state.getPlayable(state.position)
     }
 
+    /**
+     * @return the track at the given index of the original order, ignoring shuffle
+     */
     fun getPlayableAtIndex(idx: Int): Playable {
-        val readLock = lock.readLock()
-        readLock.lock()
-        return try {
-            getPlayableAtIndexLocked(idx)
-        } finally {
-            readLock.unlock()
-        }
-    }
-
-    private fun getPlayableAtIndexLocked(idx: Int): Playable {
-        val flattenedQueue = this.flattenedQueue
-        return if (flattenedQueue != null) {
-            flattenedQueue[idx]
-        } else {
-            nodeList.getPlayableAtIndex(idx)
-        }
+        val tracks = state.tracks ?: throw IndexOutOfBoundsException("Index $idx out of bounds for empty queue")
+        return tracks.get(idx)
     }
 
     fun iterate() {
@@ -157,32 +146,25 @@ class AudioQueue(val maxSize: Int?) {
     }
 
     fun iterateLocked() {
-        currIdx = nextPosition()
+        update(position = nextPosition(state))
     }
 
     fun reverse() {
         val writeLock = lock.writeLock()
         writeLock.lock()
         try {
-            currIdx = previousPosition()
+            update(position = previousPosition(state))
         } finally {
             writeLock.unlock()
         }
     }
 
     fun peekNext(): Playable? {
-        val readLock = lock.readLock()
-        readLock.lock()
-        try {
-            return if (isShuffle && currIdx < shuffledOrder.size - 1) {
-                getPlayableAtIndexLocked(shuffledOrder[currIdx + 1])
-            } else if (!isShuffle && currIdx < size - 1) {
-                getPlayableAtIndexLocked(currIdx + 1)
-            } else {
-                null
-            }
-        } finally {
-            readLock.unlock()
+        val state = state
+        return if (state.position < state.size - 1) {
+            state.getPlayable(state.position + 1)
+        } else {
+            null
         }
     }
 
@@ -191,11 +173,12 @@ class AudioQueue(val maxSize: Int?) {
     }
 
     fun hasNext(ignoreRepeat: Boolean): Boolean {
-        if (isEmpty()) {
+        val state = state
+        if (state.size == 0) {
             return false
         }
 
-        val inBound = currIdx < size - 1
+        val inBound = state.position < state.size - 1
         return if (ignoreRepeat) {
             inBound
         } else {
@@ -208,11 +191,12 @@ class AudioQueue(val maxSize: Int?) {
     }
 
     fun hasPrevious(ignoreRepeat: Boolean): Boolean {
-        if (isEmpty()) {
+        val state = state
+        if (state.size == 0) {
             return false
         }
 
-        val inBound = currIdx > 0
+        val inBound = state.position > 0
         return if (ignoreRepeat) {
             inBound
         } else {
@@ -369,134 +353,74 @@ class AudioQueue(val maxSize: Int?) {
      * already applied
      */
     fun buildMessageEmbed(playback: AudioPlayback, guild: Guild): EmbedBuilder {
-        val readLock = lock.readLock()
-        readLock.lock()
-        try {
-            val position = getPosition()
-            val embedBuilder = EmbedBuilder()
-            val springPropertiesConfig = Aiode.get().springPropertiesConfig
-            val baseUri = springPropertiesConfig.requireApplicationProperty("aiode.server.base_uri")
-            val optionBuilder = StringBuilder()
-
-            appendIcon(optionBuilder, EmojiConstants.PLAY, playback.isPlaying)
-            appendIcon(optionBuilder, EmojiConstants.PAUSE, playback.isPaused)
-            appendIcon(optionBuilder, EmojiConstants.SHUFFLE, playback.isShuffle)
-            appendIcon(optionBuilder, EmojiConstants.REPEAT, playback.isRepeatAll)
-            appendIcon(optionBuilder, EmojiConstants.REPEAT_ONE, playback.isRepeatOne)
-            optionBuilder.append(EmojiConstants.VOLUME).append(playback.volume)
-            embedBuilder.setDescription(optionBuilder.toString())
-
-            val url = baseUri + String.format("/queue?guildId=%s", guild.id)
-            embedBuilder.addField("", "[Full list]($url)", false)
-
-            if (isEmpty()) {
-                embedBuilder.addField("", "(empty)", false)
-            } else {
-                val prevBuilder = StringBuilder()
-                val nextBuilder = StringBuilder()
-                if (position > 0) {
-                    if (position > 5) {
-                        prevBuilder.append("...").append(System.lineSeparator())
-                    }
-                    val previous: List<Playable> = listPrevLocked(5)
-                    for (prev in previous) {
-                        appendPlayable(prevBuilder, prev)
-                    }
+        val state = state
+        val position = state.position
+        val embedBuilder = EmbedBuilder()
+        val springPropertiesConfig = Aiode.get().springPropertiesConfig
+        val baseUri = springPropertiesConfig.requireApplicationProperty("aiode.server.base_uri")
+        val optionBuilder = StringBuilder()
+
+        appendIcon(optionBuilder, EmojiConstants.PLAY, playback.isPlaying)
+        appendIcon(optionBuilder, EmojiConstants.PAUSE, playback.isPaused)
+        appendIcon(optionBuilder, EmojiConstants.SHUFFLE, playback.isShuffle)
+        appendIcon(optionBuilder, EmojiConstants.REPEAT, playback.isRepeatAll)
+        appendIcon(optionBuilder, EmojiConstants.REPEAT_ONE, playback.isRepeatOne)
+        optionBuilder.append(EmojiConstants.VOLUME).append(playback.volume)
+        embedBuilder.setDescription(optionBuilder.toString())
+
+        val url = baseUri + String.format("/queue?guildId=%s", guild.id)
+        embedBuilder.addField("", "[Full list]($url)", false)
+
+        if (state.size == 0) {
+            embedBuilder.addField("", "(empty)", false)
+        } else {
+            val prevBuilder = StringBuilder()
+            val nextBuilder = StringBuilder()
+            if (position > 0) {
+                if (position > 5) {
+                    prevBuilder.append("...").append(System.lineSeparator())
                 }
-                if (prevBuilder.toString().isNotEmpty()) {
-                    embedBuilder.addField("Previous", prevBuilder.toString(), false)
+                val previous: List<Playable> = listPrev(state, 5)
+                for (prev in previous) {
+                    appendPlayable(prevBuilder, prev)
                 }
-                val currentPosition = Util.normalizeMillis(playback.currentPositionMs)
-                val current = getCurrentLocked()
-                val duration = Util.normalizeMillis(current.durationMs())
-                embedBuilder.addField(
-                    "Current",
-                    "| " + current.displayNow + " - " + currentPosition + " / " + duration,
-                    false
-                )
-                if (position < size - 1) {
-                    val next: List<Playable> = listNextLocked(5)
-                    for (n in next) {
-                        appendPlayable(nextBuilder, n)
-                    }
-                    if (size > position + 6) {
-                        nextBuilder.append("...")
-                    }
+            }
+            if (prevBuilder.toString().isNotEmpty()) {
+                embedBuilder.addField("Previous", prevBuilder.toString(), false)
+            }
+            val currentPosition = Util.normalizeMillis(playback.currentPositionMs)
+            val current = state.getPlayable(position)
+            val duration = Util.normalizeMillis(current.durationMs())
+            embedBuilder.addField(
+                "Current",
+                "| " + current.displayNow + " - " + currentPosition + " / " + duration,
+                false
+            )
+            if (position < state.size - 1) {
+                val next: List<Playable> = listNext(state, 5)
+                for (n in next) {
+                    appendPlayable(nextBuilder, n)
                 }
-                if (nextBuilder.toString().isNotEmpty()) {
-                    embedBuilder.addField("Next", nextBuilder.toString(), false)
+                if (state.size > position + 6) {
+                    nextBuilder.append("...")
                 }
-                val albumCoverUrl = current.albumCoverUrl
-                embedBuilder.setThumbnail(Objects.requireNonNullElseGet(albumCoverUrl) { "$baseUri/resources-public/img/aiode-logo.png" })
             }
-            val color = StaticSessionProvider.invokeWithSession { session: Session? ->
-                val specification = Aiode.get().guildManager.getContextForGuild(guild).getSpecification(session)
-                ColorSchemeProperty.getColor(specification)
+            if (nextBuilder.toString().isNotEmpty()) {
+                embedBuilder.addField("Next", nextBuilder.toString(), false)
             }
-            embedBuilder.setColor(color)
-            return embedBuilder
-        } finally {
-            readLock.unlock()
+            val albumCoverUrl = current.albumCoverUrl
+            embedBuilder.setThumbnail(Objects.requireNonNullElseGet(albumCoverUrl) { "$baseUri/resources-public/img/aiode-logo.png" })
         }
+        embedBuilder.setColor(Aiode.get().guildManager.getContextForGuild(guild).settings.color)
+        return embedBuilder
     }
 
     fun listNext(limit: Int): List<Playable> {
-        val readLock = lock.readLock()
-        readLock.lock()
-        return try {
-            listNextLocked(limit)
-        } finally {
-            readLock.unlock()
-        }
-    }
-
-    fun listNextLocked(limit: Int): List<Playable> {
-        val trackList: MutableList<Playable> = ArrayList(limit)
-        var idx = currIdx
-
-        while (trackList.size < limit && (repeatAll || idx < size - 1)) {
-            if (idx < size - 1) {
-                idx += 1
-            } else {
-                idx = 0
-            }
-
-            if (isShuffle) {
-                trackList.add(getPlayableAtIndexLocked(shuffledOrder[idx]))
-            } else {
-                trackList.add(getPlayableAtIndexLocked(idx))
-            }
-        }
-
-        return trackList
+        return listNext(state, limit)
     }
 
     fun listPrev(limit: Int): List<Playable> {
-        val readLock = lock.readLock()
-        readLock.lock()
-        return try {
-            listPrevLocked(limit)
-        } finally {
-            readLock.unlock()
-        }
-    }
-
-    fun listPrevLocked(limit: Int): List<Playable> {
-        // use linked list as items are always inserted at head
-        val trackList: MutableList<Playable> = LinkedList()
-        var idx = currIdx
-
-        while (trackList.size < limit && idx > 0) {
-            idx -= 1
-
-            if (isShuffle) {
-                trackList.add(0, getPlayableAtIndexLocked(shuffledOrder[idx]))
-            } else {
-                trackList.add(0, getPlayableAtIndexLocked(idx))
-            }
-        }
-
-        return trackList
+        return listPrev(state, limit)
     }
 
     fun reset() {
@@ -506,7 +430,7 @@ class AudioQueue(val maxSize: Int?) {
             if (!isEmpty()) {
                 iterateLocked()
             } else {
-                currIdx = -1
+                update(position = -1)
             }
         } finally {
             writeLock.unlock()
@@ -523,140 +447,251 @@ class AudioQueue(val maxSize: Int?) {
         }
     }
 
-    private fun doRandomize(protectCurrent: Boolean) {
-        shuffledOrder.clear()
-        val indices: MutableList<Int> = IntStream.range(0, size).boxed().collect(Collectors.toList())
-        val retainedIdx = if (protectCurrent && currIdx >= 0) {
-            indices.removeAt(currIdx)
-        } else {
-            null
+    private fun listNext(state: State, limit: Int): List<Playable> {
+        val trackList: MutableList<Playable> = ArrayList(limit)
+        var idx = state.position
+
+        while (trackList.size < limit && (repeatAll || idx < state.size - 1)) {
+            if (idx < state.size - 1) {
+                idx += 1
+            } else {
+                idx = 0
+            }
+
+            trackList.add(state.getPlayable(idx))
         }
-        indices.shuffle()
-        if (retainedIdx != null) {
-            indices.add(0, retainedIdx)
+
+        return trackList
+    }
+
+    private fun listPrev(state: State, limit: Int): List<Playable> {
+        val fromIdx = maxOf(state.position - limit, 0)
+        val trackList: MutableList<Playable> = ArrayList(maxOf(state.position - fromIdx, 0))
+        for (idx in fromIdx until state.position) {
+            trackList.add(state.getPlayable(idx))
         }
-        shuffledOrder.addAll(indices)
-        currIdx = if (!isEmpty()) {
-            0
+
+        return trackList
+    }
+
+    /**
+     * Publish a new state based on the current state, must only be called while holding the write lock.
+     */
+    private fun update(
+        tracks: QueueRope? = state.tracks,
+        shuffledOrder: IntArray? = state.shuffledOrder,
+        position: Int = state.position
+    ) {
+        state = State(tracks, shuffledOrder, position, state.version + 1)
+        notifyChangeListeners()
+    }
+
+    private fun notifyChangeListeners() {
+        for (listener in changeListeners) {
+            listener.onQueueChanged(this)
+        }
+    }
+
+    private fun doRandomize(protectCurrent: Boolean) {
+        val state = state
+        val size = state.size
+        val retainedIdx = if (protectCurrent && state.position >= 0 && size > 0) {
+            state.getIndex(state.position)
         } else {
             -1
         }
+
+        val shuffledOrder = IntArray(size)
+        var offset = 0
+        if (retainedIdx >= 0) {
+            shuffledOrder[0] = retainedIdx
+            offset = 1
+        }
+        var i = offset
+        for (idx in 0 until size) {
+            if (idx != retainedIdx) {
+                shuffledOrder[i++] = idx
+            }
+        }
+        shuffle(shuffledOrder, offset, size)
+
+        update(shuffledOrder = shuffledOrder, position = if (size > 0) 0 else -1)
     }
 
     private fun disableShuffle() {
         // when setting the queue from shuffle back to normal the current track index has to be adjusted since
         // currentTrack acts as cursor rather than actual queue position in shuffle mode
-        currIdx = shuffledOrder[currIdx];
-        shuffledOrder.clear()
+        val state = state
+        val position = if (state.position >= 0) {
+            state.getIndex(state.position)
+        } else {
+            state.position
+        }
+        update(shuffledOrder = null, position = position)
     }
 
     private fun doInsert(idx: Int, fragment: QueueFragment) {
-        if (isShuffle) {
-            nodeList.insert(size, QueueNode(fragment, 0), false)
-            val random = Random()
-            val end = size + fragment.size()
-            val indices = IntStream.range(size, end).boxed().collect(Collectors.toCollection { ArrayList() })
-
-            if (idx == size) {
-                indices.shuffle()
+        val state = state
+        val size = state.size
+        val fragmentSize = fragment.size()
+        if (idx > size || idx < 0) {
+            throw IndexOutOfBoundsException("Index $idx out of bounds for queue of size $size")
+        }
+
+        if (maxSize != null && size + fragmentSize > maxSize) {
+            throw UserException("Queue exceeds maximum size of $maxSize tracks")
+        }
+
+        val inserted = QueueRope.of(fragment)
+        val shuffledOrder = state.shuffledOrder
+        if (shuffledOrder != null) {
+            // in shuffle mode the tracks are appended to the original order and inserted into the shuffled order
+            val tracks = QueueRope.concat(state.tracks, inserted)
+            val newShuffledOrder = if (idx == size) {
                 // when appending items to the end of the queue, randomise them by inserting them at random indices after the current position
-                for (index in indices) {
-                    val insertionIndex = random.nextInt(currIdx + 1, end)
-                    if (insertionIndex < shuffledOrder.size) {
-                        shuffledOrder.add(insertionIndex, index)
-                    } else {
-                        shuffledOrder.add(index)
-                    }
-                }
+                insertShuffled(shuffledOrder, state.position + 1, size, fragmentSize)
             } else {
                 // when inserting tracks into the queue at a specific position, keep them in order
-                shuffledOrder.addAll(idx, indices)
+                insertOrdered(shuffledOrder, idx, size, fragmentSize)
             }
+            update(tracks = tracks, shuffledOrder = newShuffledOrder, position = if (size == 0) 0 else state.position)
         } else {
-            nodeList.insert(idx, QueueNode(fragment, 0))
+            val tracks = QueueRope.insert(state.tracks, idx, inserted)
+            // inserting tracks at or before the current position shifts the current track back, move the position
+            // along with it so that the current track stays current
+            val position = if (size == 0) {
+                0
+            } else if (idx <= state.position) {
+                state.position + fragmentSize
+            } else {
+                state.position
+            }
+            update(tracks = tracks, position = position)
         }
+    }
 
-        rebuildFlattenedQueue()
+    private fun doRemove(fromIdx: Int, toIdx: Int): Int {
+        val state = state
+        val shuffledOrder = state.shuffledOrder
+        if (shuffledOrder == null) {
+            update(tracks = QueueRope.remove(state.tracks, fromIdx, toIdx))
+            return toIdx - fromIdx
+        }
 
-        if (size == 0) {
-            size += fragment.size()
-            iterate()
-        } else {
-            size += fragment.size()
+        val size = state.size
+        val removed = BooleanArray(size)
+        for (i in fromIdx until toIdx) {
+            removed[shuffledOrder[i]] = true
         }
-    }
 
-    private fun doRemove(fromIdx: Int, toIdx: Int): Int {
-        return if (isShuffle) {
-            // instead of removing each index one by one gather adjacent indices and remove each range
-            val indices = IntStream.range(fromIdx, toIdx).map { i -> shuffledOrder[i] }.sorted().toList()
-            if (indices.isEmpty()) {
-                return 0
-            }
-            shuffledOrder.removeIf { i -> indices.contains(i) }
-            val indexRanges = Lists.newArrayList<Pair<Int, Int>>()
-            var currStart: Int? = null
-            for (i in 1 until indices.size) {
-                val curr = indices[i]
-                val prev = indices[i - 1]
-                if (curr > prev + 1) {
-                    indexRanges.add(Pair(currStart ?: indices[0], prev + 1))
-                    currStart = curr
-                }
+        // remove each range of adjacent indices from the rope, highest first so that lower indices remain valid
+        var tracks = state.tracks
+        var rangeEnd = -1
+        for (idx in size - 1 downTo 0) {
+            if (removed[idx] && rangeEnd < 0) {
+                rangeEnd = idx + 1
+            } else if (!removed[idx] && rangeEnd >= 0) {
+                tracks = QueueRope.remove(tracks, idx + 1, rangeEnd)
+                rangeEnd = -1
             }
-            indexRanges.add(Pair(currStart ?: indices[0], indices.last() + 1))
-
-            var removed = 0
-            // remove highest indexes first to avoid removal of lower index invalidating higher indexes
-            for ((from, to) in indexRanges.reversed()) {
-                val removedRange = nodeList.remove(from, to)
-                for (i in 0 until shuffledOrder.size) {
-                    if (shuffledOrder[i] > from) {
-                        shuffledOrder[i] = shuffledOrder[i] - removedRange
-                    }
-                }
-                removed += removedRange
+        }
+        if (rangeEnd >= 0) {
+            tracks = QueueRope.remove(tracks, 0, rangeEnd)
+        }
+
+        // shift each remaining index by the number of removed indices below it
+        val removedBefore = IntArray(size)
+        var removedCount = 0
+        for (idx in 0 until size) {
+            removedBefore[idx] = removedCount
+            if (removed[idx]) {
+                removedCount++
             }
+        }
 
-            rebuildFlattenedQueue()
-            removed
-        } else {
-            val removed = nodeList.remove(fromIdx, toIdx)
-            rebuildFlattenedQueue()
-            removed
+        val newShuffledOrder = IntArray(size - removedCount)
+        var j = 0
+        for (i in 0 until size) {
+            if (i < fromIdx || i >= toIdx) {
+                val idx = shuffledOrder[i]
+                newShuffledOrder[j++] = idx - removedBefore[idx]
+            }
         }
+
+        update(tracks = tracks, shuffledOrder = newShuffledOrder)
+        return removedCount
     }
 
     private fun doClear(retainCurrent: Boolean) {
-        if (retainCurrent && currIdx >= 0) {
-            val current = getCurrentLocked()
-            nodeList.clear(SinglePlayableQueueFragment(this, current, SinglePlayableContainer(current)))
-            size = 1
-            currIdx = 0
-            doRandomize(true)
-            rebuildFlattenedQueue()
+        val state = state
+        if (retainCurrent && state.position >= 0) {
+            val current = state.getPlayable(state.position)
+            val tracks = QueueRope.of(SinglePlayableQueueFragment(this, current, SinglePlayableContainer(current)))
+            update(tracks = tracks, shuffledOrder = state.shuffledOrder?.let { intArrayOf(0) }, position = 0)
         } else {
-            nodeList.clear()
-            flattenedQueue = null
-            shuffledOrder.clear()
-            size = 0
-            currIdx = -1
+            update(tracks = null, shuffledOrder = state.shuffledOrder?.let { IntArray(0) }, position = -1)
         }
     }
 
-    private fun nextPosition(): Int {
-        return if (currIdx < size - 1) {
-            currIdx + 1
+    private fun nextPosition(state: State): Int {
+        return if (state.position < state.size - 1) {
+            state.position + 1
         } else {
             0
         }
     }
 
-    private fun previousPosition(): Int {
-        return if (currIdx > 0) {
-            currIdx - 1
+    private fun previousPosition(state: State): Int {
+        return if (state.position > 0) {
+            state.position - 1
         } else {
-            if (repeatAll) getTracks().size - 1 else 0
+            if (repeatAll) state.size - 1 else 0
+        }
+    }
+
+    /**
+     * Insert the indices from firstIdx to firstIdx + count (exclusive) into the shuffled order at random positions
+     * after fromPosition, keeping the relative order of the existing indices.
+     */
+    private fun insertShuffled(shuffledOrder: IntArray, fromPosition: Int, firstIdx: Int, count: Int): IntArray {
+        val insertedIndices = IntArray(count) { firstIdx + it }
+        shuffle(insertedIndices, 0, count)
+
+        val start = fromPosition.coerceIn(0, shuffledOrder.size)
+        val result = IntArray(shuffledOrder.size + count)
+        System.arraycopy(shuffledOrder, 0, result, 0, start)
+        val random = ThreadLocalRandom.current()
+        var existingIdx = start
+        var insertedIdx = 0
+        for (i in start until result.size) {
+            // pick an inserted index for each slot with a probability that results in a uniformly random interleaving
+            val remainingInserted = count - insertedIdx
+            if (remainingInserted > 0 && random.nextInt(result.size - i) < remainingInserted) {
+                result[i] = insertedIndices[insertedIdx++]
+            } else {
+                result[i] = shuffledOrder[existingIdx++]
+            }
+        }
+        return result
+    }
+
+    private fun insertOrdered(shuffledOrder: IntArray, position: Int, firstIdx: Int, count: Int): IntArray {
+        val result = IntArray(shuffledOrder.size + count)
+        System.arraycopy(shuffledOrder, 0, result, 0, position)
+        for (i in 0 until count) {
+            result[position + i] = firstIdx + i
+        }
+        System.arraycopy(shuffledOrder, position, result, position + count, shuffledOrder.size - position)
+        return result
+    }
+
+    private fun shuffle(indices: IntArray, fromIdx: Int, toIdx: Int) {
+        val random = ThreadLocalRandom.current()
+        for (i in toIdx - 1 downTo fromIdx + 1) {
+            val j = fromIdx + random.nextInt(i - fromIdx + 1)
+            val tmp = indices[i]
+            indices[i] = indices[j]
+            indices[j] = tmp
         }
     }
 
@@ -676,258 +711,61 @@ class AudioQueue(val maxSize: Int?) {
         trackListBuilder.append("| ").append(display).append(" - ").append(Util.normalizeMillis(durationMs)).append(System.lineSeparator())
     }
 
-    private fun rebuildFlattenedQueue() {
-        val flattenedQueue: MutableList<Playable> = ArrayList(size)
-        for (queueNode in nodeList) {
-            flattenedQueue.addAll(queueNode.getPlayables())
-        }
-        this.flattenedQueue = flattenedQueue
-    }
-
-    private inner class QueueNodeList : Iterable<QueueNode> {
-        @Volatile
-        var head: QueueNode? = null
-
-        @Volatile
-        var tail: QueueNode? = null
-
-        override fun iterator(): Iterator<QueueNode> {
-            return object : Iterator<QueueNode> {
-
-                var next = head
-
-                override fun hasNext(): Boolean {
-                    return next != null
-                }
-
-                override fun next(): QueueNode {
-                    val ret = next!!
-                    next = ret.next
-                    return ret
-                }
-
-            }
-        }
-
-        fun clear(retainCurrent: QueueFragment? = null) {
-            if (retainCurrent != null) {
-                val node = QueueNode(retainCurrent, 0)
-                head = node
-                tail = node
-            } else {
-                head = null
-                tail = null
-            }
-        }
-
-        fun insert(idx: Int, node: QueueNode, updateQueueIndex: Boolean = true) {
-            if (idx > size || idx < 0) {
-                throw IndexOutOfBoundsException("Index $idx out of bounds for queue of size $size")
-            }
-
-            if (maxSize != null && size + node.fragment.size() > maxSize) {
-                throw UserException("Queue exceeds maximum size of $maxSize tracks")
-            }
-
-            if (head == null) {
-                head = node
-                tail = node
-            } else if (idx == 0) {
-                head!!.prev = node
-                node.next = head!!
-                head = node
-            } else if (idx == size) {
-                tail!!.next = node
-                node.prev = tail!!
-                tail = node
-            } else {
-                val (offset, foundNode) = getNodeAtIndex(idx)
-                if (offset == 0) {
-                    // index points to first item in node, can just insert new node ahead of the found node
-                    linkBefore(node, foundNode)
-                } else {
-                    // new node is inserted within the found node, fracture the found node and place new node between the two fractures
-                    val fractureIdx = foundNode.fracture(offset)
-                    val fracturedNode = QueueNode(foundNode.fragment, fractureIdx)
-                    linkAfter(node, foundNode)
-                    linkAfter(fracturedNode, node)
-                }
-            }
-
-            if (updateQueueIndex && idx <= currIdx) {
-                currIdx += node.size()
-            }
-        }
-
-        fun remove(fromIdx: Int, toIdx: Int): Int {
-            if (fromIdx < 0) {
-                throw IndexOutOfBoundsException("Index $fromIdx out of bounds for queue of size $size")
-            }
-            if (toIdx > size) {
-                throw IndexOutOfBoundsException("Index $toIdx out of bounds for queue of size $size")
-            }
-            if (fromIdx >= toIdx) {
-                throw IllegalArgumentException("toIdx must be greater than fromIdx")
-            }
-
-            var toRemove = toIdx - fromIdx
-            var (offset, node) = getNodeAtIndex(fromIdx)
-            do {
-                val next = node.next
-                if (offset > 0) {
-                    val fractureIdx = node.fracture(offset)
-                    val fracturedNode = QueueNode(node.fragment, fractureIdx)
-                    val fracturedSize = fracturedNode.size()
-                    if (fracturedSize > toRemove) {
-                        val nextNodeFracture = node.fracture(offset + toRemove)
-                        // e.g. given remove index 3 - 8 (excluding) from node:
-                        // 0 1 2 | 3 4 5 6 7 | 8 9
-                        // create fracture at 3 and 8
-                        // dismiss the first fracture that points to the range of removed items
-                        // insert second fracture after the original node
-                        // creates the following state: {QueueNode(fracture 0: [0, 1, 2]), (unlinked) QueueNode(fracture 1: [3, 4, 5, 6, 7]), QueueNode(fracture 2: [8, 9])}
-                        linkAfter(QueueNode(node.fragment, nextNodeFracture), node)
-                        size -= fracturedNode.size()
-                        toRemove = 0
-                    } else {
-                        toRemove -= fracturedSize
-                        size -= fracturedSize
-                    }
-                } else if (toRemove >= node.size()) {
-                    toRemove -= node.size()
-                    removeNode(node)
-                } else {
-                    val nextFracture = node.fracture(toRemove)
-                    val nextNode = QueueNode(node.fragment, nextFracture)
-                    val prevNode = node.prev
-                    toRemove -= node.size()
-                    removeNode(node)
-                    if (prevNode != null) {
-                        linkAfter(nextNode, prevNode)
-                    } else {
-                        val currHead = head
-                        nextNode.next = currHead
-                        head = nextNode
-                        if (currHead == null) {
-                            tail = nextNode
-                        } else {
-                            currHead.prev = nextNode
-                        }
-                    }
-                }
+    /**
+     * Immutable state of the queue. The shuffled order is null if shuffle is disabled, in which case the position
+     * refers to the original order, else the position refers to the shuffled order.
+     */
+    private class State(val tracks: QueueRope?, val shuffledOrder: IntArray?, val position: Int, val version: Long) {
 
-                if (next != null) {
-                    node = next
-                } else if (toRemove > 0) {
-                    throw IllegalStateException("Reached end of list")
-                }
-                offset = 0
-            } while (toRemove > 0)
+        val size: Int
+            get() = QueueRope.sizeOf(tracks)
 
-            return toIdx - fromIdx
+        /**
+         * @return the index in the original order of the track at the given position in the play order
+         */
+        fun getIndex(position: Int): Int {
+            return shuffledOrder?.get(position) ?: position
         }
 
-        fun removeNode(node: QueueNode) {
-            val next = node.next
-            val prev = node.prev
-            if (prev == null) {
-                head = next
-            } else {
-                prev.next = next
-                next?.prev = null
-            }
-            if (next == null) {
-                tail = prev
-            } else {
-                next.prev = prev
-                node.next = null
+        fun getPlayable(position: Int): Playable {
+            if (tracks == null) {
+                throw IndexOutOfBoundsException("Position $position out of bounds for empty queue")
             }
-            size -= node.size()
+            return tracks.get(getIndex(position))
         }
 
-        fun getPlayableAtIndex(idx: Int): Playable {
-            val (offset, node) = getNodeAtIndex(idx)
-            return node.getPlayable(offset)
+        fun getTracks(): List<Playable> {
+            return PlayOrderList(this)
         }
 
-        /**
-         * Find the QueueNode where the provided index lies within the node's QueueFragment and return the offset within that
-         * QueueFragment (0 if the index points to the start of the QueueFragment / the QueueFragment is a [SinglePlayableQueueFragment])
-         */
-        fun getNodeAtIndex(idx: Int): Pair<Int, QueueNode> {
-            if (idx < 0 || size <= idx) {
-                throw IllegalArgumentException("Index $idx out of bounds for size $size")
-            }
-
-            if (idx <= size / 2) {
-                var currentNode = head!!
-                var startIdx = 0
-                var nextStartIdx = currentNode.size()
-
-                while (nextStartIdx <= idx) {
-                    startIdx = nextStartIdx
-                    currentNode = currentNode.next!!
-                    nextStartIdx += currentNode.size()
-                }
-
-                return Pair(idx - startIdx, currentNode)
-            } else {
-                var currentNode = tail!!
-                var nextStartIdx = size - currentNode.size()
-
-                while (nextStartIdx > idx) {
-                    currentNode = currentNode.prev!!
-                    nextStartIdx -= currentNode.size()
-                }
+    }
 
-                return Pair(idx - nextStartIdx, currentNode)
-            }
-        }
+    /**
+     * Listener notified after the tracks, their order, the current position or the repeat options of an [AudioQueue]
+     * changed. Modifications of the tracks and the position are notified while holding the write lock, so listeners
+     * must not block or modify the queue.
+     */
+    fun interface ChangeListener {
 
-        private fun linkAfter(node: QueueNode, predecessor: QueueNode) {
-            val successor = predecessor.next
-            node.prev = predecessor
-            node.next = successor
-            predecessor.next = node
-            if (successor == null) {
-                tail = node
-            } else {
-                successor.prev = node
-            }
-        }
+        fun onQueueChanged(queue: AudioQueue)
 
-        private fun linkBefore(node: QueueNode, successor: QueueNode) {
-            val predecessor = successor.prev
-            node.prev = predecessor
-            node.next = successor
-            successor.prev = node
-            if (predecessor == null) {
-                head = node
-            } else {
-                predecessor.next = node
-            }
-        }
     }
 
-    class QueueNode(val fragment: QueueFragment, val fractureIdx: Int) {
-        var next: QueueNode? = null
-        var prev: QueueNode? = null
+    /**
+     * Unmodifiable view of the tracks of a [State] in the order they are played in.
+     */
+    private class PlayOrderList(private val state: State) : kotlin.collections.AbstractList<Playable>() {
 
-        fun getPlayables(): List<Playable> {
-            return fragment.getPlayablesInFracture(fractureIdx)
-        }
+        override val size: Int
+            get() = state.size
 
-        fun getPlayable(idx: Int): Playable {
-            return fragment.getPlayableInFracture(fractureIdx, idx)
-        }
-
-        fun size(): Int {
-            return fragment.sizeOfFracture(fractureIdx)
+        override fun get(index: Int): Playable {
+            if (index < 0 || index >= size) {
+                throw IndexOutOfBoundsException("Index $index out of bounds for size $size")
+            }
+            return state.getPlayable(index)
         }
 
-        fun fracture(idx: Int): Int {
-            return fragment.addFracture(fractureIdx, idx)
-        }
     }
 
 }
@@ -0,0 +1,155 @@
+package net.robinfriedli.aiode.audio.queue
+
+import net.robinfriedli.aiode.audio.Playable
+
+/**
+ * Persistent, height balanced binary tree over slices of [QueueFragment]s representing the tracks of the [AudioQueue] in
+ * their original order. Nodes are never modified, [insert] and [remove] return a new rope that shares all untouched
+ * subtrees with the previous rope, so that readers may keep using the previous version without synchronisation. Lookup
+ * by index, insertion and removal of a range take O(log n) with respect to the number of slices.
+ */
+internal sealed class QueueRope {
+
+    abstract val size: Int
+    abstract val height: Int
+
+    abstract fun get(idx: Int): Playable
+
+    /**
+     * Leaf referencing the tracks of a [QueueFragment] from start (inclusive) to end (exclusive). Inserting a fragment
+     * into the middle of an existing fragment or removing part of a fragment splits the leaf into two slices of the
+     * same fragment.
+     */
+    class Leaf(val fragment: QueueFragment, val start: Int, val end: Int) : QueueRope() {
+
+        override val size: Int
+            get() = end - start
+
+        override val height: Int
+            get() = 1
+
+        override fun get(idx: Int): Playable {
+            if (idx < 0 || idx >= size) {
+                throw IndexOutOfBoundsException("Index $idx out of bounds for size $size")
+            }
+            return fragment.getPlayables()[start + idx]
+        }
+
+    }
+
+    class Branch(val left: QueueRope, val right: QueueRope) : QueueRope() {
+
+        override val size: Int = left.size + right.size
+        override val height: Int = maxOf(left.height, right.height) + 1
+
+        override fun get(idx: Int): Playable {
+            return if (idx < left.size) {
+                left.get(idx)
+            } else {
+                right.get(idx - left.size)
+            }
+        }
+
+    }
+
+    companion object {
+
+        fun of(fragment: QueueFragment): QueueRope {
+            return Leaf(fragment, 0, fragment.size())
+        }
+
+        fun sizeOf(rope: QueueRope?): Int {
+            return rope?.size ?: 0
+        }
+
+        fun insert(rope: QueueRope?, idx: Int, inserted: QueueRope): QueueRope {
+            val (before, after) = split(rope, idx)
+            return concat(concat(before, inserted), after)!!
+        }
+
+        /**
+         * Remove the tracks from fromIdx (inclusive) to toIdx (exclusive), returning null if the rope is empty after
+         * the removal.
+         */
+        fun remove(rope: QueueRope?, fromIdx: Int, toIdx: Int): QueueRope? {
+            val (before, rest) = split(rope, fromIdx)
+            val (_, after) = split(rest, toIdx - fromIdx)
+            return concat(before, after)
+        }
+
+        /**
+         * Split the rope into a rope containing the first idx tracks and a rope containing the remaining tracks.
+         */
+        fun split(rope: QueueRope?, idx: Int): Pair<QueueRope?, QueueRope?> {
+            if (rope == null) {
+                return Pair(null, null)
+            }
+            if (idx <= 0) {
+                return Pair(null, rope)
+            }
+            if (idx >= rope.size) {
+                return Pair(rope, null)
+            }
+
+            return when (rope) {
+                is Leaf -> Pair(
+                    Leaf(rope.fragment, rope.start, rope.start + idx),
+                    Leaf(rope.fragment, rope.start + idx, rope.end)
+                )
+                is Branch -> if (idx < rope.left.size) {
+                    val (before, after) = split(rope.left, idx)
+                    Pair(before, concat(after, rope.right))
+                } else if (idx == rope.left.size) {
+                    Pair(rope.left, rope.right)
+                } else {
+                    val (before, after) = split(rope.right, idx - rope.left.size)
+                    Pair(concat(rope.left, before), after)
+                }
+            }
+        }
+
+        fun concat(left: QueueRope?, right: QueueRope?): QueueRope? {
+            if (left == null) {
+                return right
+            }
+            if (right == null) {
+                return left
+            }
+
+            return if (left is Branch && left.height > right.height + 1) {
+                // descend the right spine of the higher tree until the heights match, rebalancing on the way back up
+                balance(left.left, concat(left.right, right)!!)
+            } else if (right is Branch && right.height > left.height + 1) {
+                balance(concat(left, right.left)!!, right.right)
+            } else {
+                Branch(left, right)
+            }
+        }
+
+        /**
+         * Join two subtrees whose heights differ by at most 2, applying a single or double rotation if they differ by 2.
+         */
+        private fun balance(left: QueueRope, right: QueueRope): QueueRope {
+            val diff = left.height - right.height
+            return if (diff > 1 && left is Branch) {
+                val leftRight = left.right
+                if (left.left.height >= leftRight.height || leftRight !is Branch) {
+                    Branch(left.left, Branch(leftRight, right))
+                } else {
+                    Branch(Branch(left.left, leftRight.left), Branch(leftRight.right, right))
+                }
+            } else if (diff < -1 && right is Branch) {
+                val rightLeft = right.left
+                if (right.right.height >= rightLeft.height || rightLeft !is Branch) {
+                    Branch(Branch(left, rightLeft), right.right)
+                } else {
+                    Branch(Branch(left, rightLeft.left), Branch(rightLeft.right, right.right))
+                }
+            } else {
+                Branch(left, right)
+            }
+        }
+
+    }
+
+}
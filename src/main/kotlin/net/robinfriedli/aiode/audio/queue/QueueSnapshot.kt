@@ -0,0 +1,28 @@
+package net.robinfriedli.aiode.audio.queue
+
+import net.robinfriedli.aiode.audio.Playable
+
+/**
+ * Immutable view of the [AudioQueue] at a specific [version], holding the tracks in the order they are played in, i.e.
+ * in shuffled order if shuffle is enabled, and the current position within that order. Readers can render the snapshot
+ * without holding the queue lock.
+ */
+class QueueSnapshot(val version: Long, val position: Int, val tracks: List<Playable>) {
+
+    fun isEmpty(): Boolean {
+        return tracks.isEmpty()
+    }
+
+    fun getSize(): Int {
+        return tracks.size
+    }
+
+    fun getCurrent(): Playable? {
+        return if (position >= 0 && position < tracks.size) {
+            tracks[position]
+        } else {
+            null
+        }
+    }
+
+}
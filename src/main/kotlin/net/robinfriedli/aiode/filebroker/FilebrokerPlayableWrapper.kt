@@ -4,7 +4,7 @@ import com.google.common.base.Strings
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack
 import net.dv8tion.jda.api.entities.User
 import net.robinfriedli.aiode.Aiode
-import net.robinfriedli.aiode.audio.AbstractSoftCachedPlayable
+import net.robinfriedli.aiode.audio.AbstractCachedPlayable
 import net.robinfriedli.aiode.audio.AudioTrackLoader
 import net.robinfriedli.aiode.audio.Playable
 import net.robinfriedli.aiode.entities.FilebrokerTrack
@@ -19,7 +19,7 @@ import java.net.URI
 import java.util.*
 import java.util.concurrent.TimeUnit
 
-class FilebrokerPlayableWrapper(val post: FilebrokerApi.Post) : AbstractSoftCachedPlayable() {
+class FilebrokerPlayableWrapper(val post: FilebrokerApi.Post) : AbstractCachedPlayable() {
 
     private val logger: Logger = LoggerFactory.getLogger(this.javaClass)
 
@@ -1,6 +1,5 @@
 package net.robinfriedli.aiode.filebroker
 
-import com.google.common.collect.Lists
 import net.robinfriedli.aiode.util.BulkOperationService
 import net.robinfriedli.filebroker.FilebrokerApi
 import org.apache.commons.lang3.tuple.Pair
@@ -43,22 +42,4 @@ class FilebrokerPostBulkLoadingService(private val filebrokerApi: FilebrokerApi)
             }
             return@Function posts.map { post -> Pair.of(post.pk, post) }
         }
-    ) {
-    override fun perform() {
-        val batches: List<List<Long>> = Lists.partition(keys, size)
-        for (batch in batches) {
-            val loadedBatch: List<Pair<Long, FilebrokerApi.PostDetailed>> = loadFunc.apply(batch)
-            for (keyValuePair in loadedBatch) {
-                val key = keyValuePair.left
-                val value = keyValuePair.right
-                // as opposed to the spotify api, the filebroker api does not return the same post multiple times if the
-                // same key is included multiple times in the request, thus the same post should be applied to all mapped
-                // consumers
-                val resultConsumer = actionMap[key]!!
-                while (resultConsumer.hasNext()) {
-                    resultConsumer.next().accept(value)
-                }
-            }
-        }
-    }
-}
+    )
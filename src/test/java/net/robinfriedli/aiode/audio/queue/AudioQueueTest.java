@@ -0,0 +1,192 @@
+package net.robinfriedli.aiode.audio.queue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.*;
+
+import net.robinfriedli.aiode.audio.Playable;
+
+import static com.google.common.truth.Truth.*;
+
+public class AudioQueueTest {
+
+    @Test
+    public void testInsertAndRemove() {
+        Random random = new Random(1);
+        AudioQueue queue = new AudioQueue(null);
+        List<Playable> model = new ArrayList<>();
+        int position = -1;
+
+        for (int i = 0; i < 300; i++) {
+            if (model.isEmpty() || random.nextInt(3) > 0) {
+                TestQueueFragment fragment = new TestQueueFragment(queue, 1 + random.nextInt(5));
+                int idx = random.nextInt(model.size() + 1);
+                queue.insert(idx, fragment);
+                if (model.isEmpty()) {
+                    position = 0;
+                } else if (idx <= position) {
+                    position += fragment.size();
+                }
+                model.addAll(idx, fragment.getPlayables());
+            } else {
+                int fromIdx = random.nextInt(model.size());
+                int toIdx = fromIdx + 1 + random.nextInt(Math.min(model.size() - fromIdx, 5));
+                assertThat(queue.remove(fromIdx, toIdx)).isEqualTo(toIdx - fromIdx);
+                model.subList(fromIdx, toIdx).clear();
+            }
+
+            assertThat(queue.getTracks()).containsExactlyElementsIn(model).inOrder();
+            assertThat(queue.getPosition()).isEqualTo(position);
+        }
+    }
+
+    @Test
+    public void testInsertKeepsCurrentTrack() {
+        AudioQueue queue = new AudioQueue(null);
+        queue.add(new TestQueueFragment(queue, 3));
+        queue.setPosition(1);
+        Playable current = queue.getCurrent();
+
+        queue.insert(1, new TestQueueFragment(queue, 2));
+        assertThat(queue.getPosition()).isEqualTo(3);
+        assertThat(queue.getCurrent()).isSameInstanceAs(current);
+
+        queue.insert(0, new TestQueueFragment(queue, 1));
+        assertThat(queue.getPosition()).isEqualTo(4);
+        assertThat(queue.getCurrent()).isSameInstanceAs(current);
+
+        queue.insertNext(new TestQueueFragment(queue, 2));
+        assertThat(queue.getPosition()).isEqualTo(4);
+        assertThat(queue.getCurrent()).isSameInstanceAs(current);
+    }
+
+    @Test
+    public void testShuffleInsertAndRemove() {
+        Random random = new Random(2);
+        AudioQueue queue = new AudioQueue(null);
+        queue.add(new TestQueueFragment(queue, 20));
+        queue.setPosition(5);
+        Playable current = queue.getCurrent();
+
+        queue.setShuffle(true);
+        assertThat(queue.getPosition()).isEqualTo(0);
+        assertThat(queue.getCurrent()).isSameInstanceAs(current);
+        assertThat(queue.getTracks()).containsExactlyElementsIn(getOriginalOrder(queue));
+
+        for (int i = 0; i < 200; i++) {
+            List<Playable> playOrder = new ArrayList<>(queue.getTracks());
+            List<Playable> originalOrder = getOriginalOrder(queue);
+            int position = queue.getPosition();
+
+            // only append if there are no tracks after the current track to insert before or remove
+            int operation = playOrder.size() > position + 1 ? random.nextInt(3) : 1;
+            if (operation == 0) {
+                // inserting at a specific position keeps the inserted tracks in order
+                TestQueueFragment fragment = new TestQueueFragment(queue, 1 + random.nextInt(5));
+                int idx = position + 1 + random.nextInt(playOrder.size() - position - 1);
+                queue.insert(idx, fragment);
+                playOrder.addAll(idx, fragment.getPlayables());
+                originalOrder.addAll(fragment.getPlayables());
+
+                assertThat(queue.getTracks()).containsExactlyElementsIn(playOrder).inOrder();
+            } else if (operation == 1) {
+                // appended tracks are inserted at random positions after the current position
+                TestQueueFragment fragment = new TestQueueFragment(queue, 1 + random.nextInt(5));
+                queue.add(fragment);
+                originalOrder.addAll(fragment.getPlayables());
+
+                List<Playable> tracks = queue.getTracks();
+                assertThat(tracks.subList(0, position + 1)).containsExactlyElementsIn(playOrder.subList(0, position + 1)).inOrder();
+                List<Playable> existingTracks = new ArrayList<>(tracks);
+                existingTracks.removeAll(fragment.getPlayables());
+                assertThat(existingTracks).containsExactlyElementsIn(playOrder).inOrder();
+            } else {
+                // removing a range of the play order removes the tracks from the original order using the removal mask
+                int fromIdx = position + 1 + random.nextInt(playOrder.size() - position - 1);
+                int toIdx = fromIdx + 1 + random.nextInt(Math.min(playOrder.size() - fromIdx, 5));
+                List<Playable> removed = new ArrayList<>(playOrder.subList(fromIdx, toIdx));
+                assertThat(queue.remove(fromIdx, toIdx)).isEqualTo(toIdx - fromIdx);
+                playOrder.subList(fromIdx, toIdx).clear();
+                originalOrder.removeAll(new HashSet<>(removed));
+
+                assertThat(queue.getTracks()).containsExactlyElementsIn(playOrder).inOrder();
+            }
+
+            assertThat(getOriginalOrder(queue)).containsExactlyElementsIn(originalOrder).inOrder();
+            assertThat(queue.getTracks()).containsExactlyElementsIn(originalOrder);
+            assertThat(queue.getPosition()).isEqualTo(position);
+            assertThat(queue.getCurrent()).isSameInstanceAs(current);
+        }
+    }
+
+    @Test
+    public void testDisableShuffle() {
+        AudioQueue queue = new AudioQueue(null);
+        queue.add(new TestQueueFragment(queue, 10));
+        List<Playable> originalOrder = new ArrayList<>(queue.getTracks());
+
+        queue.setShuffle(true);
+        queue.iterate();
+        queue.iterate();
+        Playable current = queue.getCurrent();
+
+        queue.setShuffle(false);
+        assertThat(queue.getTracks()).containsExactlyElementsIn(originalOrder).inOrder();
+        assertThat(queue.getCurrent()).isSameInstanceAs(current);
+        assertThat(queue.getPosition()).isEqualTo(originalOrder.indexOf(current));
+    }
+
+    @Test
+    public void testResetAndSetPosition() {
+        AudioQueue queue = new AudioQueue(null);
+        queue.reset();
+        assertThat(queue.getPosition()).isEqualTo(-1);
+
+        TestQueueFragment fragment = new TestQueueFragment(queue, 3);
+        queue.add(fragment);
+        assertThat(queue.getPosition()).isEqualTo(0);
+
+        queue.setPosition(1);
+        assertThat(queue.getCurrent()).isSameInstanceAs(fragment.getPlayables().get(1));
+        queue.reset();
+        assertThat(queue.getCurrent()).isSameInstanceAs(fragment.getPlayables().get(2));
+        queue.reset();
+        assertThat(queue.getCurrent()).isSameInstanceAs(fragment.getPlayables().get(0));
+
+        queue.clear();
+        assertThat(queue.getPosition()).isEqualTo(-1);
+        assertThat(queue.getTracks()).isEmpty();
+    }
+
+    @Test
+    public void testChangeListener() {
+        AudioQueue queue = new AudioQueue(null);
+        List<List<Playable>> notifiedUpcoming = new ArrayList<>();
+        queue.addChangeListener(changedQueue -> notifiedUpcoming.add(changedQueue.listNext(2)));
+
+        TestQueueFragment fragment = new TestQueueFragment(queue, 4);
+        queue.add(fragment);
+        assertThat(notifiedUpcoming).hasSize(1);
+        assertThat(notifiedUpcoming.get(0)).containsExactlyElementsIn(fragment.getPlayables().subList(1, 3)).inOrder();
+
+        queue.iterate();
+        assertThat(notifiedUpcoming.get(1)).containsExactlyElementsIn(fragment.getPlayables().subList(2, 4)).inOrder();
+
+        queue.setRepeatAll(true);
+        assertThat(notifiedUpcoming).hasSize(3);
+        queue.remove(2, 3);
+        assertThat(notifiedUpcoming.get(3)).containsExactly(fragment.getPlayables().get(3), fragment.getPlayables().get(0)).inOrder();
+    }
+
+    private static List<Playable> getOriginalOrder(AudioQueue queue) {
+        List<Playable> originalOrder = new ArrayList<>(queue.getSize());
+        for (int i = 0; i < queue.getSize(); i++) {
+            originalOrder.add(queue.getPlayableAtIndex(i));
+        }
+        return originalOrder;
+    }
+
+}
@@ -0,0 +1,117 @@
+package net.robinfriedli.aiode.audio.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.*;
+
+import kotlin.Pair;
+import net.robinfriedli.aiode.audio.Playable;
+
+import static com.google.common.truth.Truth.*;
+
+public class QueueRopeTest {
+
+    @Test
+    public void testInsert() {
+        Random random = new Random(1);
+        List<Playable> model = new ArrayList<>();
+        QueueRope rope = null;
+
+        for (int i = 0; i < 500; i++) {
+            TestQueueFragment fragment = new TestQueueFragment(null, 1 + random.nextInt(4));
+            int idx = random.nextInt(model.size() + 1);
+            rope = QueueRope.Companion.insert(rope, idx, QueueRope.Companion.of(fragment));
+            model.addAll(idx, fragment.getPlayables());
+
+            assertMatches(rope, model);
+        }
+    }
+
+    @Test
+    public void testSplit() {
+        List<Playable> model = new ArrayList<>();
+        QueueRope rope = createRope(new Random(2), 100, model);
+
+        for (int idx = 0; idx <= model.size(); idx++) {
+            Pair<QueueRope, QueueRope> split = QueueRope.Companion.split(rope, idx);
+
+            assertMatches(split.getFirst(), model.subList(0, idx));
+            assertMatches(split.getSecond(), model.subList(idx, model.size()));
+        }
+    }
+
+    @Test
+    public void testConcat() {
+        Random random = new Random(3);
+        List<Playable> leftModel = new ArrayList<>();
+        List<Playable> rightModel = new ArrayList<>();
+        QueueRope left = createRope(random, 200, leftModel);
+        QueueRope right = createRope(random, 3, rightModel);
+
+        List<Playable> model = new ArrayList<>(leftModel);
+        model.addAll(rightModel);
+        assertMatches(QueueRope.Companion.concat(left, right), model);
+
+        model = new ArrayList<>(rightModel);
+        model.addAll(leftModel);
+        assertMatches(QueueRope.Companion.concat(right, left), model);
+
+        assertThat(QueueRope.Companion.concat(null, right)).isSameInstanceAs(right);
+        assertThat(QueueRope.Companion.concat(left, null)).isSameInstanceAs(left);
+    }
+
+    @Test
+    public void testRemove() {
+        Random random = new Random(4);
+        List<Playable> model = new ArrayList<>();
+        QueueRope rope = createRope(random, 100, model);
+
+        while (!model.isEmpty()) {
+            int fromIdx = random.nextInt(model.size());
+            int toIdx = fromIdx + 1 + random.nextInt(Math.min(model.size() - fromIdx, 10));
+            rope = QueueRope.Companion.remove(rope, fromIdx, toIdx);
+            model.subList(fromIdx, toIdx).clear();
+
+            assertMatches(rope, model);
+        }
+
+        assertThat(rope).isNull();
+    }
+
+    private static QueueRope createRope(Random random, int fragmentCount, List<Playable> model) {
+        QueueRope rope = null;
+        for (int i = 0; i < fragmentCount; i++) {
+            TestQueueFragment fragment = new TestQueueFragment(null, 1 + random.nextInt(4));
+            int idx = random.nextInt(model.size() + 1);
+            rope = QueueRope.Companion.insert(rope, idx, QueueRope.Companion.of(fragment));
+            model.addAll(idx, fragment.getPlayables());
+        }
+        return rope;
+    }
+
+    private static void assertMatches(QueueRope rope, List<Playable> model) {
+        assertThat(QueueRope.Companion.sizeOf(rope)).isEqualTo(model.size());
+        for (int i = 0; i < model.size(); i++) {
+            assertThat(rope.get(i)).isSameInstanceAs(model.get(i));
+        }
+        if (rope != null) {
+            assertBalanced(rope);
+        }
+    }
+
+    private static void assertBalanced(QueueRope rope) {
+        if (rope instanceof QueueRope.Branch branch) {
+            QueueRope left = branch.getLeft();
+            QueueRope right = branch.getRight();
+            assertThat(Math.abs(left.getHeight() - right.getHeight())).isAtMost(1);
+            assertThat(branch.getHeight()).isEqualTo(Math.max(left.getHeight(), right.getHeight()) + 1);
+            assertBalanced(left);
+            assertBalanced(right);
+        } else {
+            assertThat(rope.getSize()).isGreaterThan(0);
+        }
+    }
+
+}
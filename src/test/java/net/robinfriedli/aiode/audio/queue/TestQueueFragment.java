@@ -0,0 +1,62 @@
+package net.robinfriedli.aiode.audio.queue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.robinfriedli.aiode.audio.Playable;
+import net.robinfriedli.aiode.audio.playables.PlayableContainer;
+
+/**
+ * Fragment of placeholder tracks that are only compared by identity.
+ */
+class TestQueueFragment implements QueueFragment {
+
+    private static final AtomicInteger PLAYABLE_COUNTER = new AtomicInteger();
+
+    private final AudioQueue queue;
+    private final List<Playable> playables;
+
+    TestQueueFragment(AudioQueue queue, int size) {
+        this.queue = queue;
+        playables = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            playables.add(createPlayable(PLAYABLE_COUNTER.incrementAndGet()));
+        }
+    }
+
+    @Override
+    public int size() {
+        return playables.size();
+    }
+
+    @Override
+    public PlayableContainer<?> getPlayableContainer() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AudioQueue getQueue() {
+        return queue;
+    }
+
+    @Override
+    public List<Playable> getPlayables() {
+        return playables;
+    }
+
+    private static Playable createPlayable(int id) {
+        return (Playable) Proxy.newProxyInstance(
+            Playable.class.getClassLoader(),
+            new Class<?>[]{Playable.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "toString" -> "playable" + id;
+                case "hashCode" -> id;
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(method.getName());
+            }
+        );
+    }
+
+}
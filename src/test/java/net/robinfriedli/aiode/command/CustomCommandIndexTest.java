@@ -0,0 +1,73 @@
+package net.robinfriedli.aiode.command;
+
+import org.testng.annotations.*;
+
+import net.robinfriedli.aiode.entities.Preset;
+import net.robinfriedli.aiode.entities.StoredScript;
+
+import static com.google.common.truth.Truth.*;
+
+public class CustomCommandIndexTest {
+
+    @Test
+    public void testLongestMatch() {
+        CustomCommandIndex customCommandIndex = new CustomCommandIndex(true, null);
+        customCommandIndex.addPreset(createPreset(1, "preset1", "1"));
+        customCommandIndex.addPreset(createPreset(2, "preset17", "1"));
+        customCommandIndex.addScript(createScript(3, "script1", 1, "script"));
+        customCommandIndex.addScript(createScript(4, "interceptor1", 1, "interceptor"));
+
+        assertThat(customCommandIndex.findPreset("1", "PRESET17 some input").getIdentifier()).isEqualTo("preset17");
+        assertThat(customCommandIndex.findPreset("1", "preset1 some input").getIdentifier()).isEqualTo("preset1");
+        assertThat(customCommandIndex.findScript("1", "script1 argument").getPk()).isEqualTo(3);
+        assertThat(customCommandIndex.findScript("1", "interceptor1")).isNull();
+        assertThat(customCommandIndex.findPreset("1", "play some song")).isNull();
+        assertThat(customCommandIndex.findPreset("2", "preset1")).isNull();
+    }
+
+    @Test
+    public void testSharedPartitionKeepsLowestPk() {
+        CustomCommandIndex customCommandIndex = new CustomCommandIndex(false, null);
+        customCommandIndex.addPreset(createPreset(5, "preset", "1"));
+        customCommandIndex.addPreset(createPreset(3, "preset", "2"));
+        customCommandIndex.addPreset(createPreset(7, "preset", "3"));
+
+        assertThat(customCommandIndex.findPreset("4", "preset").getPk()).isEqualTo(3);
+
+        customCommandIndex.removePreset("1", 5, "preset");
+        assertThat(customCommandIndex.findPreset("4", "preset").getPk()).isEqualTo(3);
+        customCommandIndex.removePreset("2", 3, "preset");
+        assertThat(customCommandIndex.findPreset("4", "preset")).isNull();
+    }
+
+    @Test
+    public void testRemove() {
+        CustomCommandIndex customCommandIndex = new CustomCommandIndex(true, null);
+        Preset preset = createPreset(1, "preset", "1");
+        customCommandIndex.addPreset(preset);
+        customCommandIndex.removePreset(preset);
+
+        assertThat(customCommandIndex.findPreset("1", "preset")).isNull();
+    }
+
+    private static Preset createPreset(long pk, String name, String guildId) {
+        Preset preset = new Preset();
+        preset.setPk(pk);
+        preset.setName(name);
+        preset.setGuildId(guildId);
+        return preset;
+    }
+
+    private static StoredScript createScript(long pk, String identifier, long guildId, String usage) {
+        StoredScript.ScriptUsage scriptUsage = new StoredScript.ScriptUsage();
+        scriptUsage.setUniqueId(usage);
+
+        StoredScript storedScript = new StoredScript();
+        storedScript.setPk(pk);
+        storedScript.setIdentifier(identifier);
+        storedScript.setGuildId(guildId);
+        storedScript.setScriptUsage(scriptUsage);
+        return storedScript;
+    }
+
+}
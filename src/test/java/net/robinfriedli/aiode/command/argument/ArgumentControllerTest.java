@@ -0,0 +1,147 @@
+package net.robinfriedli.aiode.command.argument;
+
+import java.util.List;
+
+import org.testng.annotations.*;
+
+import groovy.lang.Binding;
+import net.robinfriedli.aiode.boot.configurations.JxpComponent;
+import net.robinfriedli.aiode.command.AbstractCommand;
+import net.robinfriedli.aiode.command.CommandContext;
+import net.robinfriedli.aiode.command.CommandManager;
+import net.robinfriedli.aiode.command.commands.search.SearchCommand;
+import net.robinfriedli.aiode.entities.xml.CommandContribution;
+import net.robinfriedli.aiode.entities.xml.CommandHierarchyNode;
+import net.robinfriedli.aiode.exceptions.InvalidCommandException;
+import net.robinfriedli.jxp.persist.Context;
+
+import static com.google.common.truth.Truth.*;
+import static net.robinfriedli.jxp.queries.Conditions.*;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Verifies the arguments of the search command as configured in the commands.xml contributions. The groovy variables
+ * and prefixes of the current context are not available outside of a command execution, so the command uses an
+ * {@link ArgumentController} that only binds the command and uses the default prefixes.
+ */
+public class ArgumentControllerTest {
+
+    private Context commandContributionContext;
+
+    @BeforeClass
+    public void setUp() {
+        commandContributionContext = new JxpComponent().getJxpBackend().createContext(getClass().getResourceAsStream("/xml-contributions/commands.xml"));
+    }
+
+    @Test
+    public void testCompileContributions() {
+        @SuppressWarnings("rawtypes")
+        List<CommandHierarchyNode> commandHierarchyNodes = commandContributionContext.getInstancesOf(CommandHierarchyNode.class);
+        assertThat(commandHierarchyNodes).isNotEmpty();
+
+        for (CommandHierarchyNode<?> commandHierarchyNode : commandHierarchyNodes) {
+            for (ArgumentContributionDelegate argumentContributionDelegate : commandHierarchyNode.getArguments().values()) {
+                ArgumentScripts.compile(argumentContributionDelegate.unwrapArgumentContribution());
+            }
+        }
+    }
+
+    @Test
+    public void testVerify() {
+        ArgumentController argumentController = createSearchCommand("some query").getArgumentController();
+        argumentController.setArgument("spotify");
+        argumentController.setArgument("own");
+        argumentController.setArgument("select", "5");
+        argumentController.setArgument("market", "CH");
+
+        argumentController.verify();
+    }
+
+    @Test
+    public void testRuleViolation() {
+        ArgumentController argumentController = createSearchCommand("some query").getArgumentController();
+        argumentController.setArgument("youtube");
+        argumentController.setArgument("own");
+
+        InvalidCommandException e = expectThrows(InvalidCommandException.class, argumentController::verify);
+        assertThat(e).hasMessageThat().isEqualTo("Argument 'own' may only be used with Spotify.");
+    }
+
+    @Test
+    public void testRuleErrorMessageContainsValue() {
+        ArgumentController argumentController = createSearchCommand("some query").getArgumentController();
+        argumentController.setArgument("spotify");
+        argumentController.setArgument("market", "XX");
+
+        InvalidCommandException e = expectThrows(InvalidCommandException.class, argumentController::verify);
+        assertThat(e).hasMessageThat().isEqualTo("'XX' is not a valid ISO 3166-1 country code");
+    }
+
+    @Test
+    public void testValueCheckViolation() {
+        ArgumentController argumentController = createSearchCommand("some query").getArgumentController();
+        argumentController.setArgument("spotify");
+        argumentController.setArgument("select", "21");
+
+        InvalidCommandException e = expectThrows(InvalidCommandException.class, argumentController::verify);
+        assertThat(e).hasMessageThat().isEqualTo("Limit must be between 1 and 20");
+    }
+
+    private AbstractCommand createSearchCommand(String commandInput) {
+        CommandContribution commandContribution = commandContributionContext.query(and(
+            instanceOf(CommandContribution.class),
+            attribute("identifier").is("search")
+        ), CommandContribution.class).getOnlyResult();
+        // set up the arguments of the command hierarchy, done by the InitialiseCommandContributionsTask at startup
+        commandContribution.getArguments();
+
+        AbstractCommand command = new TestSearchCommand(
+            commandContribution,
+            null,
+            null,
+            commandInput,
+            false,
+            commandContribution.getIdentifier(),
+            commandContribution.getDescription(),
+            commandContribution.getCategory()
+        );
+        command.setCommandInput(commandInput);
+        return command;
+    }
+
+    public static class TestSearchCommand extends SearchCommand {
+
+        public TestSearchCommand(CommandContribution commandContribution, CommandContext commandContext, CommandManager commandManager, String commandString, boolean requiresInput, String identifier, String description, Category category) {
+            super(commandContribution, commandContext, commandManager, commandString, requiresInput, identifier, description, category);
+        }
+
+        @Override
+        protected ArgumentController createArgumentController() {
+            return new TestArgumentController(this);
+        }
+
+    }
+
+    public static class TestArgumentController extends ArgumentController {
+
+        public TestArgumentController(AbstractCommand sourceCommand) {
+            super(sourceCommand);
+        }
+
+        @Override
+        protected void prepareBinding(Binding binding) {
+        }
+
+        @Override
+        protected String getEffectiveCommandStart() {
+            return "$aiode ";
+        }
+
+        @Override
+        protected char getArgumentPrefix() {
+            return '$';
+        }
+
+    }
+
+}
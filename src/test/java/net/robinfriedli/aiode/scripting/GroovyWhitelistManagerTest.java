@@ -0,0 +1,130 @@
+package net.robinfriedli.aiode.scripting;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.*;
+
+import net.robinfriedli.aiode.boot.configurations.JxpComponent;
+import net.robinfriedli.jxp.persist.Context;
+
+import static com.google.common.truth.Truth.*;
+import static org.testng.Assert.expectThrows;
+
+public class GroovyWhitelistManagerTest {
+
+    private static final String WHITELIST_CONFIGURATION = """
+        <?xml version="1.0" encoding="UTF-8" standalone="no"?>
+        <whitelistConfiguration xmlns="whitelistSpace">
+          <whitelistMethods class="java.lang.Object" allowConstructorCall="true">
+            <method name="toString"/>
+            <method name="hashCode" inheritable="false"/>
+          </whitelistMethods>
+          <whitelistMethods class="java.util.AbstractList" maxMethodInvocations="3">
+            <method name="size"/>
+            <method name="get" maxInvocationCount="2"/>
+            <method name="iterator" onlyGenerated="true"/>
+          </whitelistMethods>
+          <whitelistClass class="java.lang.Integer"/>
+          <whitelistClass onlyGenerated="true" class="java.lang.StringBuilder"/>
+        </whitelistConfiguration>
+        """;
+
+    private GroovyWhitelistManager groovyWhitelistManager;
+
+    @BeforeMethod
+    public void setUp() {
+        Context configuration = new JxpComponent().getJxpBackend().createContext(
+            new ByteArrayInputStream(WHITELIST_CONFIGURATION.getBytes(StandardCharsets.UTF_8))
+        );
+        groovyWhitelistManager = GroovyWhitelistManager.createFromConfiguration(configuration);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        groovyWhitelistManager.removeInvocationCounter();
+    }
+
+    @Test
+    public void testMethodAccess() {
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "size", false)).isTrue();
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "clear", false)).isFalse();
+        assertThat(groovyWhitelistManager.checkMethodCall(Integer.class, "intValue", false)).isTrue();
+        assertThat(groovyWhitelistManager.checkMethodCall(Object.class, "<init>", false)).isTrue();
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "<init>", false)).isFalse();
+    }
+
+    @Test
+    public void testInheritedMethodAccess() {
+        // methods whitelisted for a superclass of the closest contribution
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "toString", false)).isTrue();
+        assertThat(groovyWhitelistManager.checkMethodCall(Object.class, "hashCode", false)).isTrue();
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "hashCode", false)).isFalse();
+    }
+
+    @Test
+    public void testOnlyGeneratedAccess() {
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "iterator", false)).isFalse();
+        assertThat(groovyWhitelistManager.checkMethodCall(ArrayList.class, "iterator", true)).isTrue();
+        assertThat(groovyWhitelistManager.checkMethodCall(StringBuilder.class, "append", false)).isFalse();
+        assertThat(groovyWhitelistManager.checkMethodCall(StringBuilder.class, "append", true)).isTrue();
+    }
+
+    @Test
+    public void testClassInvocationLimit() {
+        assertThat(groovyWhitelistManager.hasInvocationLimit(ArrayList.class, "size")).isTrue();
+        assertThat(groovyWhitelistManager.hasInvocationLimit(Integer.class, "intValue")).isFalse();
+
+        GroovyWhitelistManager.InvocationCounter invocationCounter = groovyWhitelistManager.installInvocationCounter();
+        for (int i = 0; i < 3; i++) {
+            invocationCounter.countInvocation(ArrayList.class, "size");
+        }
+
+        SecurityException e = expectThrows(SecurityException.class, () -> invocationCounter.countInvocation(ArrayList.class, "size"));
+        assertThat(e).hasMessageThat().isEqualTo("Reached the maximum invocation count of 3 for methods on class java.util.AbstractList");
+    }
+
+    @Test
+    public void testMethodInvocationLimit() {
+        GroovyWhitelistManager.InvocationCounter invocationCounter = groovyWhitelistManager.installInvocationCounter();
+        invocationCounter.countInvocation(ArrayList.class, "get");
+        invocationCounter.countInvocation(ArrayList.class, "get");
+
+        SecurityException e = expectThrows(SecurityException.class, () -> invocationCounter.countInvocation(ArrayList.class, "get"));
+        assertThat(e).hasMessageThat().isEqualTo("Reached the maximum invocation count of 2 for method java.util.AbstractList#get");
+    }
+
+    @Test
+    public void testCountsDoNotLeakBetweenExecutions() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            GroovyWhitelistManager.InvocationCounter firstCounter = executorService.submit(this::runExecution).get();
+            GroovyWhitelistManager.InvocationCounter secondCounter = executorService.submit(this::runExecution).get();
+
+            assertThat(secondCounter).isNotSameInstanceAs(firstCounter);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Reach the invocation limit of AbstractList methods within one execution, installing and removing the counter
+     * the way the SafeGroovyScriptRunner does.
+     */
+    private GroovyWhitelistManager.InvocationCounter runExecution() {
+        GroovyWhitelistManager.InvocationCounter invocationCounter = groovyWhitelistManager.installInvocationCounter();
+        try {
+            assertThat(GroovyWhitelistManager.getCurrentInvocationCounter()).isSameInstanceAs(invocationCounter);
+            invocationCounter.countInvocation(ArrayList.class, "get");
+            invocationCounter.countInvocation(ArrayList.class, "get");
+            invocationCounter.countInvocation(ArrayList.class, "size");
+            return invocationCounter;
+        } finally {
+            groovyWhitelistManager.removeInvocationCounter();
+        }
+    }
+
+}
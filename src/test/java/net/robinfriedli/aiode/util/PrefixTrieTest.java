@@ -0,0 +1,51 @@
+package net.robinfriedli.aiode.util;
+
+import org.testng.annotations.*;
+
+import static com.google.common.truth.Truth.*;
+
+public class PrefixTrieTest {
+
+    @Test
+    public void testFindLongestPrefix() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("play", "play");
+        trie.put("playlist", "playlist");
+        trie.put("p", "p");
+
+        assertThat(trie.findLongestPrefixOf("playlist $spotify test")).isEqualTo("playlist");
+        assertThat(trie.findLongestPrefixOf("PLAY some song")).isEqualTo("play");
+        assertThat(trie.findLongestPrefixOf("pause")).isEqualTo("p");
+        assertThat(trie.findLongestPrefixOf("queue")).isNull();
+        assertThat(trie.findLongestPrefixOf("")).isNull();
+    }
+
+    @Test
+    public void testPutAndGet() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        assertThat(trie.put("Preset", "first")).isNull();
+        assertThat(trie.put("preset", "second")).isEqualTo("first");
+
+        assertThat(trie.get("PRESET")).isEqualTo("second");
+        assertThat(trie.get("pre")).isNull();
+        assertThat(trie.get("presets")).isNull();
+        assertThat(trie.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRemove() {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        trie.put("play", "play");
+        trie.put("playlist", "playlist");
+
+        assertThat(trie.remove("playlist", "other")).isFalse();
+        assertThat(trie.remove("playlist", "playlist")).isTrue();
+        assertThat(trie.findLongestPrefixOf("playlist")).isEqualTo("play");
+        assertThat(trie.remove("playlist")).isNull();
+
+        assertThat(trie.remove("play")).isEqualTo("play");
+        assertThat(trie.findLongestPrefixOf("playlist")).isNull();
+        assertThat(trie.isEmpty()).isTrue();
+    }
+
+}